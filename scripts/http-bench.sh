@@ -0,0 +1,55 @@
+#!/bin/bash
+
+# HTTP transport benchmark for the Itinerarly backend
+# Compares HTTP/1.1, HTTP/1.1 + gzip and HTTP/2 (h2c via Upgrade) against a running instance.
+#
+# Usage: scripts/http-bench.sh [base-url] [path] [requests]
+#   COOKIE="auth-token=...; JSESSIONID=..." scripts/http-bench.sh http://localhost:8080 /api/v1/user/profile 200
+
+set -e
+
+BASE_URL=${1:-http://localhost:8080}
+ENDPOINT=${2:-/v3/api-docs}
+REQUESTS=${3:-100}
+COOKIE=${COOKIE:-}
+
+if ! command -v curl &> /dev/null; then
+    echo "❌ curl is required"
+    exit 1
+fi
+
+URL="$BASE_URL$ENDPOINT"
+echo "📊 Benchmarking $URL ($REQUESTS requests per mode)"
+echo ""
+
+run_mode() {
+    local name=$1
+    shift
+    # One curl process reuses its connection across all URLs, like a browser tab would
+    local urls=()
+    for ((i = 0; i < REQUESTS; i++)); do
+        urls+=(-o /dev/null "$URL")
+    done
+    local start end
+    start=$(date +%s%N)
+    local stats
+    stats=$(curl -s "$@" ${COOKIE:+-H "Cookie: $COOKIE"} \
+        -w '%{http_version} %{size_download} %{size_header} %{time_total}\n' "${urls[@]}")
+    end=$(date +%s%N)
+
+    echo "$stats" | awk -v name="$name" -v wall=$(( (end - start) / 1000000 )) '
+        { version = $1; body += $2; header += $3; total += $4; n++ }
+        END {
+            printf "%-22s http/%-4s body %8.0f B/req  headers %5.0f B/req  latency %7.2f ms/req  wall %6d ms\n",
+                name, version, body / n, header / n, total / n * 1000, wall
+        }'
+}
+
+run_mode "HTTP/1.1 identity" --http1.1 -H "Accept-Encoding: identity"
+run_mode "HTTP/1.1 gzip" --http1.1 --compressed
+run_mode "HTTP/2 (h2c) identity" --http2 -H "Accept-Encoding: identity"
+run_mode "HTTP/2 (h2c) gzip" --http2 --compressed
+
+echo ""
+echo "ℹ️  'body' is bytes on the wire; with gzip curl reports the compressed size."
+echo "ℹ️  HTTP/2 header bytes are counted before HPACK, so compare latency and wall time for the header savings."
@@ -0,0 +1,74 @@
+#!/bin/bash
+
+# Startup benchmark for the Itinerarly backend
+# Launches the application repeatedly and reports time until /actuator/health answers UP.
+#
+# Usage:
+#   scripts/startup-bench.sh [runs]                      # docker image, limited like docker-compose.prod.yml
+#   scripts/startup-bench.sh [runs] -- java -jar app.jar # any launch command
+#
+# Docker mode reads the production variables from .env (override with ENV_FILE).
+
+set -e
+
+RUNS=${1:-5}
+shift || true
+HEALTH_URL=${HEALTH_URL:-http://localhost:8080/actuator/health}
+TIMEOUT_SECONDS=${TIMEOUT_SECONDS:-180}
+IMAGE=${IMAGE:-itinerarly-backend:latest}
+ENV_FILE=${ENV_FILE:-.env}
+
+if [ "$1" == "--" ]; then
+    shift
+    LAUNCH=("$@")
+else
+    if ! command -v docker &> /dev/null; then
+        echo "❌ Docker is not available. Pass a launch command after --"
+        exit 1
+    fi
+    LAUNCH=(docker run --rm --name itinerarly-startup-bench -p 8080:8080 --cpus 0.5 --memory 1g
+            -e SPRING_PROFILES_ACTIVE=prod --env-file "$ENV_FILE" "$IMAGE")
+fi
+
+echo "⏱️  Measuring time-to-healthy over $RUNS runs"
+echo "   ${LAUNCH[*]}"
+echo ""
+
+results=()
+for ((run = 1; run <= RUNS; run++)); do
+    start=$(date +%s%N)
+    "${LAUNCH[@]}" > "/tmp/itinerarly-startup-$run.log" 2>&1 &
+    pid=$!
+
+    healthy=""
+    while [ $(( ($(date +%s%N) - start) / 1000000000 )) -lt "$TIMEOUT_SECONDS" ]; do
+        if curl -s "$HEALTH_URL" 2>/dev/null | grep -q '"status":"UP"'; then
+            healthy=$(( ($(date +%s%N) - start) / 1000000 ))
+            break
+        fi
+        if ! kill -0 "$pid" 2>/dev/null; then
+            break
+        fi
+        sleep 0.1
+    done
+
+    if [ "${LAUNCH[0]}" == "docker" ]; then
+        docker stop itinerarly-startup-bench > /dev/null 2>&1 || true
+    fi
+    kill "$pid" 2>/dev/null || true
+    wait "$pid" 2>/dev/null || true
+
+    if [ -z "$healthy" ]; then
+        echo "❌ Run $run did not become healthy, see /tmp/itinerarly-startup-$run.log"
+        exit 1
+    fi
+    echo "   run $run: ${healthy} ms"
+    results+=("$healthy")
+done
+
+printf '%s\n' "${results[@]}" | sort -n | awk '
+    { values[NR] = $1; sum += $1 }
+    END {
+        printf "\n✅ time-to-healthy  min %d ms  median %d ms  mean %d ms  max %d ms\n",
+            values[1], values[int((NR + 1) / 2)], sum / NR, values[NR]
+    }'
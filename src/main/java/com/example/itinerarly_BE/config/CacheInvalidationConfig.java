@@ -0,0 +1,51 @@
+package com.example.itinerarly_BE.config;
+
+import com.example.itinerarly_BE.repository.CacheInvalidationRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.DbPollingInvalidationBus;
+import com.example.itinerarly_BE.utl.InMemoryInvalidationBus;
+import com.example.itinerarly_BE.utl.InvalidationBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Picks the {@link InvalidationBus} with {@code app.cache.invalidation.bus}: {@code db} polls the
+ * {@code cache_invalidations} table and is needed as soon as more than one instance runs; {@code memory} keeps
+ * invalidations in-process for a single instance.
+ *
+ * <p>The setting is read when the bean is created, not in a bean condition, so {@code APP_CACHE_INVALIDATION_BUS} still
+ * applies to a {@code -Pfast-start} (AOT) build, whose bean definitions are fixed at build time.
+ */
+@Configuration
+public class CacheInvalidationConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationConfig.class);
+
+    @Bean
+    public InvalidationBus invalidationBus(@Value("${app.cache.invalidation.bus:memory}") String bus,
+                                           CacheInvalidationRepository repository,
+                                           DbBulkhead dbBulkhead,
+                                           MeterRegistry meterRegistry,
+                                           @Value("${app.cache.invalidation.db.retention-seconds:600}") long retentionSeconds,
+                                           @Value("${app.cache.invalidation.db.max-pending:10000}") int maxPending) {
+        switch (bus) {
+            case "db" -> {
+                logger.info("Cache invalidations are broadcast through the cache_invalidations table (retention {}s)", retentionSeconds);
+                return new DbPollingInvalidationBus(repository, dbBulkhead, Duration.ofSeconds(retentionSeconds),
+                        maxPending, meterRegistry);
+            }
+            case "memory" -> {
+                logger.info("Cache invalidations stay in this instance - set app.cache.invalidation.bus=db when running more than one");
+                return new InMemoryInvalidationBus();
+            }
+            default -> throw new IllegalArgumentException(
+                    "app.cache.invalidation.bus must be 'db' or 'memory', was '" + bus + "'");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.itinerarly_BE.config;
+
+import org.springframework.util.StringUtils;
+import org.springframework.web.cors.CorsConfiguration;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * {@link CorsConfiguration} whose origin check is compiled once instead of walking every pattern per request.
+ *
+ * <p>Patterns follow {@link CorsConfiguration#setAllowedOriginPatterns} syntax ({@code https://*.vercel.app},
+ * {@code http://localhost:*}, {@code http://localhost:[*]}); plain origins become a hash lookup, the rest are joined
+ * into one regex.
+ * Decisions are remembered per origin in a map that is cleared when it reaches {@code maxCachedOrigins}, so
+ * requests with made-up origins cannot grow it without bound.
+ */
+public class CachingCorsConfiguration extends CorsConfiguration {
+
+    private final Set<String> exactOrigins = new HashSet<>();
+    private final Pattern originPattern;
+    private final int maxCachedOrigins;
+    private final Map<String, Boolean> decisions = new ConcurrentHashMap<>();
+
+    public CachingCorsConfiguration(List<String> allowedOriginPatterns, int maxCachedOrigins) {
+        this.maxCachedOrigins = maxCachedOrigins;
+        setAllowedOriginPatterns(allowedOriginPatterns);
+
+        List<String> regexes = new ArrayList<>();
+        for (String pattern : allowedOriginPatterns) {
+            String value = trimTrailingSlash(pattern.trim());
+            if (value.contains("*") || value.endsWith("]")) {
+                regexes.add(toRegex(value));
+            } else {
+                exactOrigins.add(value.toLowerCase(Locale.ROOT));
+            }
+        }
+        this.originPattern = regexes.isEmpty() ? null : Pattern.compile(String.join("|", regexes));
+    }
+
+    @Override
+    public String checkOrigin(String origin) {
+        if (!StringUtils.hasText(origin)) {
+            return null;
+        }
+        Boolean allowed = decisions.get(origin);
+        if (allowed == null) {
+            allowed = matches(trimTrailingSlash(origin));
+            if (decisions.size() >= maxCachedOrigins) {
+                decisions.clear();
+            }
+            decisions.put(origin, allowed);
+        }
+        return allowed ? origin : null;
+    }
+
+    int cachedOrigins() {
+        return decisions.size();
+    }
+
+    private boolean matches(String origin) {
+        return exactOrigins.contains(origin.toLowerCase(Locale.ROOT))
+                || (originPattern != null && originPattern.matcher(origin).matches());
+    }
+
+    // Same translation as Spring's OriginPattern: '*' matches anything, a trailing ":[*]" or ":[8080,8081]" the port
+    private static String toRegex(String pattern) {
+        String ports = "";
+        if (pattern.endsWith("]") && pattern.contains(":[")) {
+            int start = pattern.lastIndexOf(":[");
+            String portList = pattern.substring(start + 2, pattern.length() - 1);
+            pattern = pattern.substring(0, start);
+            ports = "*".equals(portList) ? "(:\\d+)?" : ":(" + portList.replace(',', '|') + ")";
+        }
+        return "(?:" + Pattern.quote(pattern).replace("*", "\\E.*\\Q") + ports + ")";
+    }
+
+    private static String trimTrailingSlash(String origin) {
+        return origin.endsWith("/") ? origin.substring(0, origin.length() - 1) : origin;
+    }
+}
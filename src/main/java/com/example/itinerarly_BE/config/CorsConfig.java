@@ -7,13 +7,16 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
-import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
-import org.springframework.web.servlet.config.annotation.CorsRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+/**
+ * The one CORS configuration of the application. It is applied by Spring Security's {@code CorsFilter} (see
+ * {@link SecurityConfig}), which answers preflights before they reach Spring MVC, so controllers must not add
+ * {@code @CrossOrigin} or set {@code Access-Control-*} headers themselves.
+ */
 @Configuration
 public class CorsConfig {
 
@@ -22,20 +25,18 @@ public class CorsConfig {
     @Value("${app.frontend.url:https://itinerarly-fe.vercel.app}")
     private String frontendUrl;
 
+    @Value("${app.cors.allowed-origin-patterns:http://localhost:*,https://*.vercel.app}")
+    private List<String> allowedOriginPatterns;
+
+    @Value("${app.cors.origin-cache-size:1000}")
+    private int originCacheSize;
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
-        logger.info("Configuring CORS for cross-domain cookie support with frontend URL: {}", frontendUrl);
+        List<String> origins = new ArrayList<>(allowedOriginPatterns);
+        origins.add(frontendUrl);
 
-        CorsConfiguration configuration = new CorsConfiguration();
-
-        // Allow specific origins
-        configuration.setAllowedOriginPatterns(Arrays.asList(
-            "http://localhost:3000",
-            "http://localhost:*",
-            "https://itinerarly-fe.vercel.app",
-            "https://*.vercel.app",
-            frontendUrl
-        ));
+        CorsConfiguration configuration = new CachingCorsConfiguration(origins, originCacheSize);
 
         // Allow all standard HTTP methods plus OPTIONS for preflight
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "HEAD", "PATCH"));
@@ -58,38 +59,10 @@ public class CorsConfig {
         // Set preflight request cache time
         configuration.setMaxAge(3600L);
 
-        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
-        source.registerCorsConfiguration("/**", configuration);
-
         logger.info("CORS configuration completed - AllowCredentials: true, Origins: {}, MaxAge: {}",
             configuration.getAllowedOriginPatterns(), configuration.getMaxAge());
 
-        return source;
-    }
-
-    @Bean
-    public WebMvcConfigurer corsConfigurer() {
-        return new WebMvcConfigurer() {
-            @Override
-            public void addCorsMappings(CorsRegistry registry) {
-                logger.info("Adding CORS mappings for cross-domain cookie support with frontend URL: {}", frontendUrl);
-
-                registry.addMapping("/**")
-                        .allowedOriginPatterns(
-                            "http://localhost:3000",
-                            "http://localhost:*",
-                            "https://itinerarly-fe.vercel.app",
-                            "https://*.vercel.app",
-                            frontendUrl
-                        )
-                        .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS", "HEAD", "PATCH")
-                        .allowedHeaders("*")
-                        .allowCredentials(true)
-                        .exposedHeaders("Set-Cookie", "Authorization", "X-Auth-Token", "Access-Control-Allow-Credentials")
-                        .maxAge(3600);
-
-                logger.info("CORS mappings configured for cross-domain cookie support");
-            }
-        };
+        // Every path shares the same rules, so skip the per-request path matching of UrlBasedCorsConfigurationSource
+        return request -> configuration;
     }
 }
@@ -0,0 +1,94 @@
+package com.example.itinerarly_BE.config;
+
+import com.example.itinerarly_BE.model.User;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate second-level cache for {@link User}, backed by Caffeine through JCache.
+ *
+ * <p>Two regions: the entity by id and the {@code oauthId} natural id to id. Both hold at most
+ * {@code app.hibernate-cache.users.max-entries} users (size-based eviction) and drop entries
+ * {@code app.hibernate-cache.users.ttl-seconds} after they were written. The cache is per node, so the TTL bounds
+ * how long another node's change can go unseen; writes through Hibernate and bulk JPQL updates on this node update
+ * or invalidate it immediately.
+ *
+ * <p>{@code app.hibernate-cache.enabled} is read when Hibernate is configured rather than in a bean condition, which a
+ * {@code -Pfast-start} (AOT) build would fix at build time.
+ */
+@Configuration
+public class HibernateCacheConfig implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(HibernateCacheConfig.class);
+
+    @Value("${app.hibernate-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.hibernate-cache.users.max-entries:10000}")
+    private long maxEntries;
+
+    @Value("${app.hibernate-cache.users.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    // Explicit, or Hibernate would pick up JCache from the classpath on its own and create unbounded regions
+    static final Map<String, Object> DISABLED = Map.of("hibernate.cache.use_second_level_cache", false);
+
+    private CacheManager cacheManager;
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer() {
+        if (!enabled) {
+            logger.info("Hibernate second-level cache disabled");
+            return properties -> properties.putAll(DISABLED);
+        }
+        cacheManager = createCacheManager(maxEntries, ttlSeconds);
+        logger.info("Hibernate second-level cache for users: {} entries, {}s TTL", maxEntries, ttlSeconds);
+        return properties -> properties.putAll(hibernateProperties(cacheManager));
+    }
+
+    @Override
+    public void destroy() {
+        if (cacheManager != null) {
+            cacheManager.close();
+        }
+    }
+
+    /**
+     * A cache manager with the user regions created, so Hibernate can run with
+     * {@code missing_cache_strategy=fail} and never falls back to unbounded caches.
+     */
+    static CacheManager createCacheManager(long maxEntries, long ttlSeconds) {
+        CacheManager manager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("itinerarly-hibernate-" + UUID.randomUUID()), HibernateCacheConfig.class.getClassLoader());
+        for (String region : new String[]{User.CACHE_REGION, User.NATURAL_ID_CACHE_REGION}) {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(maxEntries));
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)));
+            manager.createCache(region, configuration);
+        }
+        return manager;
+    }
+
+    static Map<String, Object> hibernateProperties(CacheManager cacheManager) {
+        return Map.of(
+                "hibernate.cache.use_second_level_cache", true,
+                "hibernate.cache.region.factory_class", "jcache",
+                "hibernate.javax.cache.cache_manager", cacheManager,
+                "hibernate.javax.cache.missing_cache_strategy", "fail");
+    }
+}
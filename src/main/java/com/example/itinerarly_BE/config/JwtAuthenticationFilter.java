@@ -0,0 +1,79 @@
+package com.example.itinerarly_BE.config;
+
+import com.example.itinerarly_BE.utl.AccessTokenPrincipal;
+import com.example.itinerarly_BE.utl.AuthCookies;
+import com.example.itinerarly_BE.utl.JwtTokenUtil;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Authenticates {@code /api/**} requests from the access token in the {@code Authorization: Bearer} header or the
+ * {@code auth-token} cookie. The check is a signature and expiry test in memory. It runs in the stateless filter
+ * chain that {@link #hasValidAccessToken} selects, so these requests never read or create a session; requests without
+ * a valid token (expired, or a client from before access tokens) go through the session-based chain instead.
+ */
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    private final JwtTokenUtil jwtTokenUtil;
+    private final SecurityContextHolderStrategy securityContextHolderStrategy = SecurityContextHolder.getContextHolderStrategy();
+
+    public JwtAuthenticationFilter(JwtTokenUtil jwtTokenUtil) {
+        this.jwtTokenUtil = jwtTokenUtil;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    /**
+     * Streamed responses (the token balance stream, user exports) finish in an async dispatch that goes through the
+     * security chain again; without re-authenticating it, that dispatch is denied after the body has been written.
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String token = extractToken(request);
+        AccessTokenPrincipal principal = token != null ? jwtTokenUtil.parseAccessToken(token) : null;
+        if (principal != null) {
+            // A fresh context replaces the deferred one, so nothing is looked up for this request
+            SecurityContext context = securityContextHolderStrategy.createEmptyContext();
+            context.setAuthentication(new UsernamePasswordAuthenticationToken(
+                    principal, null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+            securityContextHolderStrategy.setContext(context);
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    public boolean hasValidAccessToken(HttpServletRequest request) {
+        if (shouldNotFilter(request)) {
+            return false;
+        }
+        String token = extractToken(request);
+        return token != null && jwtTokenUtil.parseAccessToken(token) != null;
+    }
+
+    static String extractToken(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            return authorization.substring(7);
+        }
+        return AuthCookies.read(request, AuthCookies.ACCESS_TOKEN);
+    }
+}
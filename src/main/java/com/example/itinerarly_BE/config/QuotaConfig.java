@@ -0,0 +1,66 @@
+package com.example.itinerarly_BE.config;
+
+import com.example.itinerarly_BE.model.QuotaSnapshot;
+import com.example.itinerarly_BE.utl.SlidingWindowQuota;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rolling quotas applied on top of the daily balance, written as {@code limit/period} pairs, e.g.
+ * {@code app.quota.windows=daily/24h,2/1m}. A limit of {@code daily} is the user's plan limit, so the default
+ * {@code daily/24h} keeps a user from spending a day's tokens just before midnight and another day's just after. An
+ * empty list turns them off.
+ */
+@Configuration
+public class QuotaConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuotaConfig.class);
+    private static final String DAILY_LIMIT = "daily";
+
+    @Value("${app.quota.windows:daily/24h}")
+    private String windows;
+
+    @Value("${app.quota.slots-per-window:60}")
+    private int slotsPerWindow;
+
+    @Bean
+    public SlidingWindowQuota slidingWindowQuota() {
+        List<SlidingWindowQuota.Window> parsed = parseWindows(windows);
+        // Snapshot size: 2 header bytes, 24 per window and 6 per used slot
+        if (2 + parsed.size() * (24 + 6 * slotsPerWindow) > QuotaSnapshot.MAX_COUNTERS_BYTES) {
+            throw new IllegalArgumentException("app.quota.windows and app.quota.slots-per-window do not fit in a quota snapshot of "
+                    + QuotaSnapshot.MAX_COUNTERS_BYTES + " bytes");
+        }
+        if (parsed.isEmpty()) {
+            logger.info("Rolling token quotas disabled - only the daily limit applies");
+        } else {
+            logger.info("Rolling token quotas: {} ({} slots per window)", windows, slotsPerWindow);
+        }
+        return new SlidingWindowQuota(parsed, slotsPerWindow);
+    }
+
+    static List<SlidingWindowQuota.Window> parseWindows(String spec) {
+        List<SlidingWindowQuota.Window> parsed = new ArrayList<>();
+        for (String window : spec.split(",")) {
+            if (window.isBlank()) {
+                continue;
+            }
+            String[] parts = window.trim().split("/");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Quota window must look like limit/period, e.g. daily/24h or 2/1m: " + window);
+            }
+            String limit = parts[0].trim();
+            parsed.add(new SlidingWindowQuota.Window(
+                    DAILY_LIMIT.equals(limit) ? SlidingWindowQuota.Window.DAILY : Integer.parseInt(limit),
+                    DurationStyle.detectAndParse(parts[1].trim())));
+        }
+        return parsed;
+    }
+}
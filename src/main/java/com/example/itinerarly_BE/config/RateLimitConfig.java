@@ -0,0 +1,58 @@
+package com.example.itinerarly_BE.config;
+
+import com.example.itinerarly_BE.utl.TokenBucketRateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class RateLimitConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitConfig.class);
+
+    @Value("${app.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.rate-limit.user.capacity:30}")
+    private int userCapacity;
+
+    @Value("${app.rate-limit.user.refill-per-minute:30}")
+    private int userRefillPerMinute;
+
+    @Value("${app.rate-limit.ip.capacity:60}")
+    private int ipCapacity;
+
+    @Value("${app.rate-limit.ip.refill-per-minute:60}")
+    private int ipRefillPerMinute;
+
+    @Value("${app.rate-limit.max-keys:10000}")
+    private int maxKeys;
+
+    @Value("${app.rate-limit.idle-eviction-seconds:600}")
+    private long idleEvictionSeconds;
+
+    @Bean
+    public RateLimitFilter rateLimitFilter() {
+        logger.info("Configuring API rate limiting - enabled: {}, user: {}/{} per min, ip: {}/{} per min, max keys: {}",
+            enabled, userCapacity, userRefillPerMinute, ipCapacity, ipRefillPerMinute, maxKeys);
+        return new RateLimitFilter(enabled,
+                new TokenBucketRateLimiter(userCapacity, userRefillPerMinute / 60.0, maxKeys, idleEvictionSeconds, TimeUnit.SECONDS),
+                new TokenBucketRateLimiter(ipCapacity, ipRefillPerMinute / 60.0, maxKeys, idleEvictionSeconds, TimeUnit.SECONDS));
+    }
+
+    /**
+     * The filter runs inside the Spring Security chain; keep Boot from registering it a second time with the
+     * servlet container.
+     */
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter rateLimitFilter) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(rateLimitFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.itinerarly_BE.config;
+
+import com.example.itinerarly_BE.utl.AccessTokenPrincipal;
+import com.example.itinerarly_BE.utl.TokenBucketRateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throttles {@code /api/**} per client IP and, when the access token or session identifies the user, per OAuth ID
+ * as well.
+ * Rejected requests get a 429 with {@code Retry-After} before they reach the session-backed controllers or
+ * the connection pool. Preflight requests are never throttled.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private final boolean enabled;
+    private final TokenBucketRateLimiter userLimiter;
+    private final TokenBucketRateLimiter ipLimiter;
+
+    public RateLimitFilter(boolean enabled, TokenBucketRateLimiter userLimiter, TokenBucketRateLimiter ipLimiter) {
+        this.enabled = enabled;
+        this.userLimiter = userLimiter;
+        this.ipLimiter = ipLimiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled
+                || HttpMethod.OPTIONS.matches(request.getMethod())
+                || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long now = System.nanoTime();
+
+        long waitNanos = ipLimiter.tryAcquire(request.getRemoteAddr(), now);
+        if (waitNanos == 0) {
+            String oauthId = callerOauthId(request);
+            if (oauthId != null) {
+                waitNanos = userLimiter.tryAcquire(oauthId, now);
+            }
+        }
+
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            logger.warn("Rate limit exceeded for {} {} from {} - retry after {}s",
+                request.getMethod(), request.getRequestURI(), request.getRemoteAddr(), retryAfterSeconds);
+
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\": \"Too many requests\", \"message\": \"Please slow down and retry in "
+                    + retryAfterSeconds + " seconds.\", \"errorCode\": \"RATE_LIMITED\", \"success\": false}");
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    @Scheduled(fixedDelayString = "${app.rate-limit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        int evicted = userLimiter.evictIdle(now) + ipLimiter.evictIdle(now);
+        if (evicted > 0) {
+            logger.debug("Evicted {} idle rate limit buckets ({} user, {} ip remaining)",
+                evicted, userLimiter.size(), ipLimiter.size());
+        }
+    }
+
+    private String callerOauthId(HttpServletRequest request) {
+        AccessTokenPrincipal principal = AccessTokenPrincipal.current();
+        if (principal != null) {
+            return principal.oauthId();
+        }
+        HttpSession session = request.getSession(false);
+        return session != null ? (String) session.getAttribute("oauth_id") : null;
+    }
+}
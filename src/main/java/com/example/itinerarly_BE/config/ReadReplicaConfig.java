@@ -0,0 +1,134 @@
+package com.example.itinerarly_BE.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+
+/**
+ * Builds the application's connection pool, and a primary/replica pair once {@code app.datasource.replica.url} is set.
+ *
+ * <p>The URL is checked when the pool is created rather than in a bean condition: a {@code -Pfast-start} (AOT) build
+ * fixes its bean definitions at build time, which would ignore a {@code DB_REPLICA_URL} given only at deploy time.
+ *
+ * <p>Both pools take their settings from {@code spring.datasource.hikari.*}; the replica can override any of them under
+ * {@code app.datasource.replica.hikari.*} and reuses the primary credentials unless its own are given. Reads opt in
+ * with {@code @Transactional(readOnly = true)}; see {@link ReplicaRoutingDataSource} for the routing rules.
+ */
+@Configuration
+public class ReadReplicaConfig implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadReplicaConfig.class);
+
+    @Value("${app.datasource.replica.url:}")
+    private String replicaUrl;
+
+    @Value("${app.datasource.replica.username:${spring.datasource.username:}}")
+    private String replicaUsername;
+
+    @Value("${app.datasource.replica.password:${spring.datasource.password:}}")
+    private String replicaPassword;
+
+    @Value("${app.datasource.replica.lag-query:}")
+    private String lagQuery;
+
+    @Value("${app.datasource.replica.max-lag-seconds:5}")
+    private long maxLagSeconds;
+
+    private final DataSourceProperties properties;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+
+    private HikariDataSource primaryPool;
+    private HikariDataSource replicaPool;
+
+    public ReadReplicaConfig(DataSourceProperties properties, Environment environment, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor() {
+        if (!StringUtils.hasText(replicaUrl)) {
+            return new ReplicaLagMonitor(null, lagQuery, maxLagSeconds, meterRegistry);
+        }
+        replicaPool = createPool("replica", replicaUrl, replicaUsername, replicaPassword,
+                DatabaseDriver.fromJdbcUrl(replicaUrl).getDriverClassName());
+        Binder.get(environment).bind("app.datasource.replica.hikari", Bindable.ofInstance(replicaPool));
+        return new ReplicaLagMonitor(replicaPool, lagQuery, maxLagSeconds, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaLagMonitor replicaLagMonitor) {
+        if (replicaPool == null) {
+            // No replica: the single pool keeps its configured (or Hikari's default) name
+            primaryPool = createPool(null, properties.determineUrl(), properties.determineUsername(),
+                    properties.determinePassword(), properties.determineDriverClassName());
+            return primaryPool;
+        }
+        primaryPool = createPool("primary", properties.determineUrl(), properties.determineUsername(),
+                properties.determinePassword(), properties.determineDriverClassName());
+        logger.info("Read replica routing enabled - primary: {}, replica: {}, max lag: {}s",
+            primaryPool.getJdbcUrl(), replicaPool.getJdbcUrl(), maxLagSeconds);
+        return new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primaryPool, replicaPool, replicaLagMonitor::isUsable));
+    }
+
+    @Bean
+    public FilterRegistrationBean<Filter> replicaPinResetFilter() {
+        FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>((request, response, chain) -> {
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                ReplicaRoutingDataSource.clearPrimaryPin();
+            }
+        });
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Override
+    public void destroy() {
+        if (primaryPool != null) {
+            primaryPool.close();
+        }
+        if (replicaPool != null) {
+            replicaPool.close();
+        }
+    }
+
+    private HikariDataSource createPool(String poolName, String url, String username, String password,
+                                        String driverClassName) {
+        HikariDataSource pool = new HikariDataSource();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        if (poolName != null) {
+            pool.setPoolName(poolName);
+        }
+        pool.setJdbcUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pool.setDriverClassName(driverClassName);
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return pool;
+    }
+}
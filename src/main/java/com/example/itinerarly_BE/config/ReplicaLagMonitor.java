@@ -0,0 +1,98 @@
+package com.example.itinerarly_BE.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Polls the read replica and decides whether {@link ReplicaRoutingDataSource} may route reads to it.
+ *
+ * <p>With {@code app.datasource.replica.lag-query} set, the replica is usable while the reported lag is at most
+ * {@code app.datasource.replica.max-lag-seconds}. The query may return MySQL's {@code SHOW REPLICA STATUS} row
+ * ({@code Seconds_Behind_Source}, or {@code Seconds_Behind_Master} on older servers) or a single numeric column; a
+ * {@code NULL} lag means replication is stopped. Without a lag query only connectivity is checked. Without a replica
+ * (a {@code null} data source) nothing is polled and reads stay on the primary.
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final DataSource replica;
+    private final String lagQuery;
+    private final long maxLagSeconds;
+
+    private volatile boolean usable;
+    private volatile double lagSeconds = Double.NaN;
+
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, long maxLagSeconds, MeterRegistry meterRegistry) {
+        this.replica = replica;
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLagSeconds;
+        if (replica == null) {
+            return;
+        }
+
+        Gauge.builder("db.replica.lag", this, monitor -> monitor.lagSeconds)
+                .baseUnit("seconds").register(meterRegistry);
+        Gauge.builder("db.replica.usable", this, monitor -> monitor.usable ? 1 : 0).register(meterRegistry);
+    }
+
+    public boolean isUsable() {
+        return usable;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-interval-ms:5000}")
+    public void check() {
+        if (replica == null) {
+            return;
+        }
+        Double lag;
+        try (Connection connection = replica.getConnection()) {
+            lag = StringUtils.hasText(lagQuery) ? queryLag(connection) : (connection.isValid(2) ? 0.0 : null);
+        } catch (SQLException e) {
+            logger.debug("Replica probe failed: {}", e.getMessage());
+            lag = null;
+        }
+
+        boolean nowUsable = lag != null && lag <= maxLagSeconds;
+        lagSeconds = lag != null ? lag : Double.NaN;
+        if (nowUsable != usable) {
+            if (nowUsable) {
+                logger.info("Read replica is usable (lag {}s) - routing read-only transactions to it", lag);
+            } else {
+                logger.warn("Read replica unavailable or lagging (lag {}s, max {}s) - routing reads to the primary",
+                    lag, maxLagSeconds);
+            }
+        }
+        usable = nowUsable;
+    }
+
+    private Double queryLag(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(lagQuery)) {
+            if (!rs.next()) {
+                return null;
+            }
+            ResultSetMetaData metaData = rs.getMetaData();
+            int column = 1;
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                String label = metaData.getColumnLabel(i);
+                if ("Seconds_Behind_Source".equalsIgnoreCase(label) || "Seconds_Behind_Master".equalsIgnoreCase(label)) {
+                    column = i;
+                    break;
+                }
+            }
+            double lag = rs.getDouble(column);
+            return rs.wasNull() ? null : lag;
+        }
+    }
+}
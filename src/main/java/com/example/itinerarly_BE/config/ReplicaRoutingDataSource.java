@@ -0,0 +1,48 @@
+package com.example.itinerarly_BE.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sends connections for {@code @Transactional(readOnly = true)} work to the read replica and everything else to the
+ * primary. Must sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} so the lookup
+ * happens after the transaction's read-only flag is known.
+ *
+ * <p>Reads fall back to the primary while {@code replicaUsable} reports the replica as down or lagging, and for the
+ * rest of the request once the thread has written, so a balance read right after a token debit never sees the
+ * pre-debit row. {@link #clearPrimaryPin()} ends that window.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Target { PRIMARY, REPLICA }
+
+    private static final ThreadLocal<Boolean> primaryPinned = ThreadLocal.withInitial(() -> false);
+
+    private final BooleanSupplier replicaUsable;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, BooleanSupplier replicaUsable) {
+        this.replicaUsable = replicaUsable;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    public static void clearPrimaryPin() {
+        primaryPinned.remove();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return !primaryPinned.get() && replicaUsable.getAsBoolean() ? Target.REPLICA : Target.PRIMARY;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            primaryPinned.set(true);
+        }
+        return Target.PRIMARY;
+    }
+}
@@ -2,26 +2,42 @@ package com.example.itinerarly_BE.config;
 
 import com.example.itinerarly_BE.model.User;
 import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.service.LoginPostProcessor;
+import com.example.itinerarly_BE.service.PlanCatalog;
+import com.example.itinerarly_BE.service.RefreshTokenService;
+import com.example.itinerarly_BE.service.UserCache;
+import com.example.itinerarly_BE.utl.AuthCookies;
+import com.example.itinerarly_BE.utl.DbBulkhead;
 import com.example.itinerarly_BE.utl.JwtTokenUtil;
+import com.example.itinerarly_BE.utl.OAuthProfile;
+import com.example.itinerarly_BE.utl.OAuthProfileExtractors;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.MediaType;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.AuthenticationFailureHandler;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
+import org.springframework.web.filter.CorsFilter;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @EnableWebSecurity
@@ -35,6 +51,9 @@ public class SecurityConfig {
     @Value("${app.frontend.url}")
     private String frontendUrl;
 
+    @Value("${app.auth.user-info-cookie:true}")
+    private boolean userInfoCookieEnabled;
+
     @Autowired
     public SecurityConfig(JwtTokenUtil jwtTokenUtil, UserRepository userRepository) {
         this.jwtTokenUtil = jwtTokenUtil;
@@ -42,12 +61,70 @@ public class SecurityConfig {
     }
 
     @Autowired
-    private TokenConfig tokenConfig;
+    private PlanCatalog planCatalog;
+
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
+    @Autowired
+    private DbBulkhead dbBulkhead;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private LoginPostProcessor loginPostProcessor;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private OAuthProfileExtractors oauthProfileExtractors;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Bean
+    public JwtAuthenticationFilter jwtAuthenticationFilter() {
+        return new JwtAuthenticationFilter(jwtTokenUtil);
+    }
+
+    /**
+     * Like the rate limit filter, this one only runs inside the Spring Security chain.
+     */
+    @Bean
+    public FilterRegistrationBean<JwtAuthenticationFilter> jwtAuthenticationFilterRegistration(JwtAuthenticationFilter jwtAuthenticationFilter) {
+        FilterRegistrationBean<JwtAuthenticationFilter> registration = new FilterRegistrationBean<>(jwtAuthenticationFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    /**
+     * API calls carrying a valid access token: authenticated in memory, no session is read or created, and no
+     * concurrent-session bookkeeping. Everything else falls through to the session-based chain below.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain accessTokenFilterChain(HttpSecurity http) throws Exception {
+        JwtAuthenticationFilter jwtAuthenticationFilter = jwtAuthenticationFilter();
+        http
+                .securityMatcher(jwtAuthenticationFilter::hasValidAccessToken)
+                .cors(Customizer.withDefaults())
+                // Same as the session chain, which ignores CSRF for /api/**
+                .csrf(csrf -> csrf.disable())
+                .sessionManagement(session -> session
+                        .sessionCreationPolicy(org.springframework.security.config.http.SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(auth -> auth.anyRequest().authenticated())
+                .logout(logout -> logout.disable())
+                .addFilterAfter(jwtAuthenticationFilter, CorsFilter.class)
+                .addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class);
+        return http.build();
+    }
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
-                .cors(cors -> cors.configure(http))
+                .cors(Customizer.withDefaults())
                 .csrf(csrf -> csrf
                         .ignoringRequestMatchers("/api/v1/logout", "/api/**", "/oauth2/**", "/login/**")
                         .csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse())
@@ -60,11 +137,13 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> {
                     auth.requestMatchers("/", "/favicon.ico", "/swagger-ui/**", "/v3/api-docs/**",
                             "/oauth2/authorization/**", "/api/v1/start", "/test", "/login/**",
-                            "/api/v1/auth/status", "/api/v1/auth/logout").permitAll();
+                            "/api/v1/auth/status", "/api/v1/auth/logout", "/api/v1/auth/refresh", "/api/v1/validate", "/actuator/health",
+                            "/.well-known/jwks.json").permitAll();
                     auth.requestMatchers("/api/**").authenticated();
                     auth.anyRequest().authenticated();
                 })
                 .logout(logout -> logout.disable())
+                .addFilterAfter(rateLimitFilter, CorsFilter.class)
                 .oauth2Login(oauth2 -> oauth2
                         .successHandler(oAuth2SuccessHandler())
                         .failureHandler(oAuth2FailureHandler())
@@ -74,107 +153,66 @@ public class SecurityConfig {
 
     private AuthenticationSuccessHandler oAuth2SuccessHandler() {
         return (request, response, authentication) -> {
+            // Until the redirect is sent; profile updates and the audit line run afterwards in LoginPostProcessor
+            long start = System.nanoTime();
+            String provider = null;
+            String outcome = "error";
             try {
-                logger.info("=== OAuth2 Success Handler Started ===");
-                logger.info("Request URL: {}", request.getRequestURL());
-                logger.info("Request headers: {}", request.getHeaderNames());
-                logger.info("Frontend URL configured: {}", frontendUrl);
-
-                OAuth2User oauth2User = (OAuth2User) authentication.getPrincipal();
-                logger.info("OAuth2User attributes: {}", oauth2User.getAttributes());
-
-                String oauthId = null;
-                String provider = null;
-                String email = null;
-                String name = null;
-                String username = null;
-                String avatarUrl = null;
-
-                // Google OAuth
-                if (oauth2User.getAttribute("iss") != null && oauth2User.getAttribute("iss").toString().contains("google")) {
-                    logger.info("Processing Google OAuth login");
-                    oauthId = oauth2User.getAttribute("sub").toString();
-                    provider = "google";
-                    email = oauth2User.getAttribute("email");
-                    name = oauth2User.getAttribute("name");
-                    username = oauth2User.getAttribute("email");
-                    avatarUrl = oauth2User.getAttribute("picture");
-                    logger.info("Google user - ID: {}, Email: {}, Name: {}", oauthId, email, name);
-                }
-                // GitHub OAuth
-                else if (oauth2User.getAttribute("login") != null) {
-                    logger.info("Processing GitHub OAuth login");
-                    oauthId = oauth2User.getAttribute("id").toString();
-                    provider = "github";
-                    email = oauth2User.getAttribute("email");
-                    name = oauth2User.getAttribute("name");
-                    username = oauth2User.getAttribute("login");
-                    avatarUrl = oauth2User.getAttribute("avatar_url");
-
-                    // Handle case where GitHub email might be null if private
-                    if (email == null) {
-                        email = username + "@github.local";
-                        logger.info("GitHub email was null, using fallback: {}", email);
-                    }
-                    logger.info("GitHub user - ID: {}, Email: {}, Name: {}, Username: {}", oauthId, email, name, username);
-                }
-                else {
-                    logger.error("Unsupported OAuth provider. Available attributes: {}", oauth2User.getAttributes());
+                logger.debug("=== OAuth2 Success Handler Started === Request URL: {}", request.getRequestURL());
+
+                OAuth2AuthenticationToken oauth2 = (OAuth2AuthenticationToken) authentication;
+                provider = oauth2.getAuthorizedClientRegistrationId();
+                logger.debug("OAuth2 attributes from {}: {}", provider, oauth2.getPrincipal().getAttributes());
+
+                OAuthProfile profile = oauthProfileExtractors.extract(oauth2);
+                if (profile == null) {
+                    logger.error("Unsupported OAuth provider: {}", provider);
                     throw new RuntimeException("Unsupported OAuth provider");
                 }
 
                 // Validate required fields
-                if (oauthId == null || provider == null || email == null) {
-                    logger.error("Missing required OAuth fields - oauthId: {}, provider: {}, email: {}", oauthId, provider, email);
+                String oauthId = profile.oauthId();
+                if (oauthId == null || profile.email() == null) {
+                    logger.error("Missing required OAuth fields - oauthId: {}, provider: {}, email: {}", oauthId, provider, profile.email());
                     throw new RuntimeException("Missing required OAuth fields");
                 }
 
-                logger.info("Looking up user in database with oauthId: {}", oauthId);
-                User user = userRepository.findByOauthId(oauthId)
-                        .orElse(new User());
+                User user = dbBulkhead.interactive(() -> userRepository.findByOauthId(oauthId)
+                        .orElse(new User()));
 
                 boolean isNewUser = user.getId() == null;
-                logger.info("User found in DB: {}, Is new user: {}", !isNewUser, isNewUser);
+                ZonedDateTime loginTime = ZonedDateTime.now(ZoneId.of("Asia/Kolkata"));
 
-                user.setOauthId(oauthId);
-                user.setEmail(email);
-                user.setName(name);
-                user.setUsername(username);
-                user.setAvatarUrl(avatarUrl);
-                user.setProvider(provider);
+                // The token and cookies below use the provider's current profile; returning users get it written
+                // back asynchronously, only new users need the insert before the redirect
+                profile.applyTo(user);
+                user.setLoginTime(loginTime);
 
+                User savedUser = user;
                 if (isNewUser) {
-                    user.setDailyTokens(tokenConfig.getDailyTokenLimit());
+                    user.setDailyTokens(planCatalog.dailyTokenLimit(user));
                     user.setLastTokenRefresh(LocalDate.now());
-                    user.setLoginTime(ZonedDateTime.now(ZoneId.of("Asia/Kolkata")));
-                    logger.info("Setting up new user with {} daily tokens", tokenConfig.getDailyTokenLimit());
+                    savedUser = dbBulkhead.interactive(() -> userRepository.save(user));
+                    logger.info("New user saved with ID: {} and {} daily tokens", savedUser.getId(), savedUser.getDailyTokens());
+                    // Clears a cached "not found" for this OAuth ID here and on the other instances
+                    userCache.invalidate(oauthId);
                 }
+                loginPostProcessor.submit(new LoginPostProcessor.Login(profile, isNewUser, loginTime));
 
-                User savedUser = userRepository.save(user);
-                logger.info("User saved successfully with ID: {}", savedUser.getId());
-
-                String jwt = jwtTokenUtil.generateToken(authentication);
-                logger.info("JWT token generated successfully. Length: {}", jwt.length());
-                logger.info("JWT token (first 50 chars): {}...", jwt.substring(0, Math.min(50, jwt.length())));
+                String jwt = jwtTokenUtil.generateToken(authentication, savedUser);
 
                 // Store JWT in session for server-side authentication
-                request.getSession().setAttribute("jwt_token", jwt);
-                request.getSession().setAttribute("user_id", savedUser.getId());
-                request.getSession().setAttribute("user_email", savedUser.getEmail());
-                request.getSession().setAttribute("user_name", savedUser.getName());
-                request.getSession().setAttribute("oauth_id", oauthId); // Add oauth_id to session
-
-                logger.info("User data stored in session. Session ID: {}, OAuth ID: {}", request.getSession().getId(), oauthId);
-
-                // Create HttpOnly JWT cookie for secure authentication
-                Cookie jwtCookie = new Cookie("auth-token", jwt);
-                jwtCookie.setHttpOnly(true);  // Keep JWT secure
-                jwtCookie.setPath("/");
-                jwtCookie.setMaxAge(86400); // 24 hours
-                jwtCookie.setSecure(true);
-                jwtCookie.setAttribute("SameSite", "None");
-
-                response.addCookie(jwtCookie);
+                HttpSession session = request.getSession();
+                session.setAttribute("jwt_token", jwt);
+                session.setAttribute("user_id", savedUser.getId());
+                session.setAttribute("user_email", savedUser.getEmail());
+                session.setAttribute("user_name", savedUser.getName());
+                session.setAttribute("oauth_id", oauthId); // Add oauth_id to session
+
+                // Short-lived access token for API calls, renewed with the refresh token via /api/v1/auth/refresh
+                response.addCookie(AuthCookies.accessToken(jwt, jwtTokenUtil.getAccessTokenTtlSeconds()));
+                String refreshToken = refreshTokenService.issue(savedUser);
+                response.addCookie(AuthCookies.refreshToken(refreshToken, refreshTokenService.getRefreshTokenTtlSeconds()));
 
                 Cookie loginIndicator = new Cookie("isLoggedIn", "true");
                 loginIndicator.setHttpOnly(false);
@@ -186,46 +224,40 @@ public class SecurityConfig {
                 response.addCookie(loginIndicator);
 
 
-                String userInfoJson = String.format("{\"name\":\"%s\",\"email\":\"%s\",\"provider\":\"%s\"}",
-                    savedUser.getName(), savedUser.getEmail(), savedUser.getProvider());
-                String encodedUserInfo = java.net.URLEncoder.encode(userInfoJson, java.nio.charset.StandardCharsets.UTF_8);
-
-                Cookie userInfoCookie = new Cookie("userInfo", encodedUserInfo);
-                userInfoCookie.setHttpOnly(false);
-                userInfoCookie.setPath("/");
-                userInfoCookie.setMaxAge(86400);
-                userInfoCookie.setSecure(true);
-                userInfoCookie.setAttribute("SameSite", "None");
-
-                response.addCookie(userInfoCookie);
+                // Display-only copy of the profile for the frontend; it rides along on every request, so it can be turned off
+                if (userInfoCookieEnabled) {
+                    String userInfoJson = String.format("{\"name\":\"%s\",\"email\":\"%s\",\"provider\":\"%s\"}",
+                        savedUser.getName(), savedUser.getEmail(), savedUser.getProvider());
+                    String encodedUserInfo = java.net.URLEncoder.encode(userInfoJson, java.nio.charset.StandardCharsets.UTF_8);
 
-                logger.info("Session-based authentication configured - JWT stored in session, indicator cookies set");
-                logger.info("JSESSIONID will be automatically generated: {}", request.getSession().getId());
-
-
-                response.setHeader("Access-Control-Allow-Origin", frontendUrl);
-                response.setHeader("Access-Control-Allow-Credentials", "true");
-                response.setHeader("Access-Control-Allow-Methods", "GET,POST,PUT,DELETE,OPTIONS");
-                response.setHeader("Access-Control-Allow-Headers", "Origin,Content-Type,Accept,Authorization,Cookie,Set-Cookie");
-                response.setHeader("Access-Control-Expose-Headers", "Set-Cookie,Authorization,X-Auth-Token,Access-Control-Allow-Credentials");
-
-
-                logger.info("Cross-domain CORS headers added to response");
-                logger.info("Frontend URL for CORS: {}", frontendUrl);
+                    Cookie userInfoCookie = new Cookie("userInfo", encodedUserInfo);
+                    userInfoCookie.setHttpOnly(false);
+                    userInfoCookie.setPath("/");
+                    userInfoCookie.setMaxAge(86400);
+                    userInfoCookie.setSecure(true);
+                    userInfoCookie.setAttribute("SameSite", "None");
 
+                    response.addCookie(userInfoCookie);
+                }
 
                 String redirectUrl = frontendUrl.endsWith("/") ? frontendUrl.substring(0, frontendUrl.length() - 1) : frontendUrl;
                 redirectUrl += "/start";
 
-                logger.info("Redirecting to: {}", redirectUrl);
                 response.sendRedirect(redirectUrl);
-                logger.info("=== OAuth2 Success Handler Completed Successfully ===");
+                outcome = "success";
+                logger.info("OAuth2 login for user ID {} ({}) redirected to {}", savedUser.getId(), provider, redirectUrl);
 
             } catch (Exception ex) {
                 logger.error("OAuth2 authentication failed with exception: ", ex);
                 response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
                 response.setContentType(MediaType.APPLICATION_JSON_VALUE);
                 response.getWriter().write("{\"error\": \"OAuth2 authentication failed: " + ex.getMessage() + "\"}");
+            } finally {
+                Timer.builder("auth.login.duration")
+                        .tag("provider", provider != null ? provider : "unknown")
+                        .tag("outcome", outcome)
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             }
         };
     }
@@ -0,0 +1,54 @@
+package com.example.itinerarly_BE.config;
+
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.UpgradeProtocol;
+import org.apache.coyote.http2.Http2Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Connector settings that Boot's {@code server.tomcat.*} properties do not cover.
+ *
+ * <p>HTTP/2 itself and response compression are switched on with {@code server.http2.enabled} and
+ * {@code server.compression.*}; this class tunes the HTTP/2 upgrade protocol Boot registers for that. Multiplexing
+ * plus HPACK means the {@code auth-token}, {@code userInfo} and session cookies that ride on every API call are sent
+ * in full once per connection rather than once per request.
+ */
+@Configuration
+public class ServerTuningConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServerTuningConfig.class);
+
+    @Value("${app.server.http2.max-concurrent-streams:100}")
+    private int maxConcurrentStreams;
+
+    @Value("${app.server.http2.max-concurrent-stream-execution:20}")
+    private int maxConcurrentStreamExecution;
+
+    @Value("${app.server.http2.keep-alive-timeout-ms:20000}")
+    private long http2KeepAliveTimeoutMs;
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> serverTuningCustomizer() {
+        return factory -> factory.addConnectorCustomizers(connector -> {
+            for (UpgradeProtocol upgradeProtocol : connector.findUpgradeProtocols()) {
+                if (upgradeProtocol instanceof Http2Protocol http2) {
+                    http2.setMaxConcurrentStreams(maxConcurrentStreams);
+                    http2.setMaxConcurrentStreamExecution(maxConcurrentStreamExecution);
+                    http2.setKeepAliveTimeout(http2KeepAliveTimeoutMs);
+                    logger.info("HTTP/2 (h2c) enabled - max streams: {}, max executing streams: {}, keep-alive: {}ms",
+                        maxConcurrentStreams, maxConcurrentStreamExecution, http2KeepAliveTimeoutMs);
+                }
+            }
+            if (connector.getProtocolHandler() instanceof AbstractProtocol<?> protocol) {
+                logger.info("Tomcat connector - max connections: {}, accept count: {}, keep-alive: {}ms",
+                    protocol.getMaxConnections(), protocol.getAcceptCount(), protocol.getKeepAliveTimeout());
+            }
+        });
+    }
+}
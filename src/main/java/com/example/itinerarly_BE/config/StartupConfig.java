@@ -0,0 +1,28 @@
+package com.example.itinerarly_BE.config;
+
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+@Configuration
+public class StartupConfig {
+
+    /**
+     * springdoc's OpenAPI generator and the {@code /v3/api-docs} controller, which would otherwise pull
+     * {@link SwaggerConfig} in at startup. They are created on the first docs request instead; the Swagger UI
+     * resource handling stays eager so its static pages keep resolving.
+     */
+    private static final Set<String> LAZY_BEANS = Set.of("openAPIBuilder", "openApiResource");
+
+    /**
+     * Static so it runs before any other configuration is instantiated.
+     */
+    @Bean
+    public static BeanFactoryPostProcessor nonCriticalBeansLazyInitializer() {
+        return beanFactory -> LAZY_BEANS.stream()
+                .filter(beanFactory::containsBeanDefinition)
+                .forEach(beanName -> beanFactory.getBeanDefinition(beanName).setLazyInit(true));
+    }
+}
@@ -9,7 +9,14 @@ public class TokenConfig {
     @Value("${app.daily-token-limit:6}")
     private int dailyTokenLimit;
 
+    @Value("${app.token-reservation.ttl-seconds:300}")
+    private long reservationTtlSeconds;
+
     public int getDailyTokenLimit() {
         return dailyTokenLimit;
     }
-}
\ No newline at end of file
+
+    public long getReservationTtlSeconds() {
+        return reservationTtlSeconds;
+    }
+}
@@ -0,0 +1,343 @@
+package com.example.itinerarly_BE.controller;
+
+import com.example.itinerarly_BE.model.ProviderUsageRollup;
+import com.example.itinerarly_BE.model.UsagePeriod;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.model.UserUsageRollup;
+import com.example.itinerarly_BE.repository.UserSummary;
+import com.example.itinerarly_BE.service.PlanCatalog;
+import com.example.itinerarly_BE.service.TokenService;
+import com.example.itinerarly_BE.service.UsageRollupService;
+import com.example.itinerarly_BE.service.UserExportService;
+import com.example.itinerarly_BE.utl.AdminAccess;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Operator endpoints, limited to the OAuth IDs in {@code app.admin.oauth-ids} (see {@link AdminAccess}).
+ */
+@RestController
+@RequestMapping("/api/v1/admin")
+public class AdminController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
+
+    // Usage reports cover the last 7 days or weeks unless asked otherwise, and at most about a year of days
+    private static final int DEFAULT_USAGE_PERIODS = 7;
+    private static final int MAX_USAGE_PERIODS = 366;
+    private static final int DEFAULT_TOP_USERS = 20;
+    private static final int MAX_TOP_USERS = 100;
+    private static final int DEFAULT_USER_PAGE = 100;
+    private static final int MAX_USER_PAGE = 1000;
+
+    @Autowired
+    private AdminAccess adminAccess;
+
+    @Autowired
+    private PlanCatalog planCatalog;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private UsageRollupService usageRollupService;
+
+    @Autowired
+    private UserExportService userExportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @GetMapping("/plans")
+    public ResponseEntity<?> getPlans(HttpServletRequest request) {
+        if (adminAccess.admin(request) == null) {
+            return forbidden();
+        }
+        return ResponseEntity.ok(plans(planCatalog.getSnapshot()));
+    }
+
+    /**
+     * Picks up edits to the {@code plans} table on every instance without a restart.
+     */
+    @PostMapping("/plans/reload")
+    public ResponseEntity<?> reloadPlans(HttpServletRequest request) {
+        String admin = adminAccess.admin(request);
+        if (admin == null) {
+            return forbidden();
+        }
+        PlanCatalog.Snapshot snapshot = planCatalog.reloadAndBroadcast();
+        logger.info("Plans reloaded by {}", admin);
+        return ResponseEntity.ok(plans(snapshot));
+    }
+
+    /**
+     * Body {@code {"planId": "pro"}}; a missing or null plan id moves the user back to the default plan.
+     */
+    @PutMapping("/users/{oauthId}/plan")
+    public ResponseEntity<?> changePlan(@PathVariable String oauthId,
+                                        @RequestBody(required = false) Map<String, String> body,
+                                        HttpServletRequest request) {
+        String admin = adminAccess.admin(request);
+        if (admin == null) {
+            return forbidden();
+        }
+        String planId = body != null ? body.get("planId") : null;
+        try {
+            User user = tokenService.changePlan(oauthId, planId);
+            if (user == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of(
+                            "error", "User not found",
+                            "message", "No user with this OAuth ID",
+                            "errorCode", "USER_NOT_FOUND",
+                            "success", false
+                        ));
+            }
+            logger.info("Plan of user {} changed to {} by {}", oauthId, planId, admin);
+            PlanCatalog.Limits plan = planCatalog.resolve(user.getPlanId());
+            Map<String, Object> response = new HashMap<>();
+            response.put("oauthId", oauthId);
+            response.put("planId", plan != null ? plan.id() : null);
+            response.put("dailyTokenLimit", planCatalog.dailyTokenLimit(user));
+            response.put("remainingTokens", user.getDailyTokens());
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of(
+                        "error", "Unknown plan",
+                        "message", e.getMessage(),
+                        "errorCode", "UNKNOWN_PLAN",
+                        "success", false
+                    ));
+        }
+    }
+
+    /**
+     * Tokens consumed and users active per OAuth provider, per day or week ({@code period=day|week}) between
+     * {@code from} and {@code to}, read from the rollup tables.
+     */
+    @GetMapping("/usage/providers")
+    public ResponseEntity<?> getProviderUsage(
+            @RequestParam(defaultValue = "day") String period,
+            @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate to,
+            HttpServletRequest request) {
+        if (adminAccess.admin(request) == null) {
+            return forbidden();
+        }
+        return usageReport(period, from, to, (usagePeriod, start, end) -> {
+            List<Map<String, Object>> rows = usageRollupService.providers(usagePeriod, start, end).stream()
+                    .map(this::providerUsage).toList();
+            return usage(usagePeriod, start, end, rows);
+        });
+    }
+
+    @GetMapping("/usage/users/{oauthId}")
+    public ResponseEntity<?> getUserUsage(
+            @PathVariable String oauthId,
+            @RequestParam(defaultValue = "day") String period,
+            @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate to,
+            HttpServletRequest request) {
+        if (adminAccess.admin(request) == null) {
+            return forbidden();
+        }
+        return usageReport(period, from, to, (usagePeriod, start, end) -> {
+            List<Map<String, Object>> rows = usageRollupService.user(oauthId, usagePeriod, start, end).stream()
+                    .map(this::userUsage).toList();
+            Map<String, Object> response = usage(usagePeriod, start, end, rows);
+            response.put("oauthId", oauthId);
+            return response;
+        });
+    }
+
+    /**
+     * The users who consumed the most tokens in the day or week that {@code date} (default today) falls in.
+     */
+    @GetMapping("/usage/top-users")
+    public ResponseEntity<?> getTopUsers(
+            @RequestParam(defaultValue = "day") String period,
+            @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate date,
+            @RequestParam(defaultValue = "" + DEFAULT_TOP_USERS) int limit,
+            HttpServletRequest request) {
+        if (adminAccess.admin(request) == null) {
+            return forbidden();
+        }
+        if (limit < 1 || limit > MAX_TOP_USERS) {
+            return invalidUsageQuery("limit must be between 1 and " + MAX_TOP_USERS);
+        }
+        LocalDate day = date != null ? date : LocalDate.now();
+        return usageReport(period, day, day, (usagePeriod, start, end) -> {
+            List<Map<String, Object>> rows = usageRollupService.topUsers(usagePeriod, start, limit).stream()
+                    .map(this::userUsage).toList();
+            return usage(usagePeriod, start, end, rows);
+        });
+    }
+
+    /**
+     * Users in id order, {@code limit} at a time. Pass the {@code nextAfter} of a page as {@code after} to get the
+     * next one; it is null on the last page.
+     */
+    @GetMapping("/users")
+    public ResponseEntity<?> listUsers(@RequestParam(defaultValue = "0") long after,
+                                       @RequestParam(defaultValue = "" + DEFAULT_USER_PAGE) int limit,
+                                       HttpServletRequest request) {
+        if (adminAccess.admin(request) == null) {
+            return forbidden();
+        }
+        if (limit < 1 || limit > MAX_USER_PAGE) {
+            return invalidUserQuery("limit must be between 1 and " + MAX_USER_PAGE);
+        }
+        List<UserSummary> users = userExportService.page(after, limit);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("users", users);
+        response.put("nextAfter", users.size() == limit ? users.get(users.size() - 1).id() : null);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Every user as newline-delimited JSON ({@code format=ndjson}) or CSV ({@code format=csv}), streamed as it is
+     * read so neither the server nor the database holds the whole table.
+     */
+    @GetMapping("/users/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "ndjson") String format,
+                                                             HttpServletRequest request) {
+        String admin = adminAccess.admin(request);
+        if (admin == null) {
+            return streamed(forbidden());
+        }
+        UserExportService.Format exportFormat;
+        try {
+            exportFormat = UserExportService.Format.valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return streamed(invalidUserQuery("format must be ndjson or csv"));
+        }
+        logger.info("User export as {} started by {}", exportFormat, admin);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"users-" + LocalDate.now() + "." + exportFormat.getExtension() + "\"")
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .body(out -> userExportService.export(exportFormat, out));
+    }
+
+    private ResponseEntity<?> usageReport(String period, LocalDate from, LocalDate to, UsageQuery query) {
+        UsagePeriod usagePeriod;
+        try {
+            usagePeriod = UsagePeriod.valueOf(period.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return invalidUsageQuery("period must be day or week");
+        }
+        LocalDate end = usagePeriod.start(to != null ? to : LocalDate.now());
+        LocalDate start = usagePeriod.start(from != null ? from : end.minusDays(
+                usagePeriod == UsagePeriod.DAY ? DEFAULT_USAGE_PERIODS - 1 : 7L * (DEFAULT_USAGE_PERIODS - 1)));
+        if (start.isAfter(end)) {
+            return invalidUsageQuery("from must not be after to");
+        }
+        if (start.plusDays(MAX_USAGE_PERIODS).isBefore(end)) {
+            return invalidUsageQuery("at most " + MAX_USAGE_PERIODS + " days can be reported at once");
+        }
+        return ResponseEntity.ok(query.run(usagePeriod, start, end));
+    }
+
+    private Map<String, Object> usage(UsagePeriod period, LocalDate from, LocalDate to,
+                                      List<Map<String, Object>> rows) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("period", period.name().toLowerCase(Locale.ROOT));
+        response.put("from", from.toString());
+        response.put("to", to.toString());
+        response.put("rows", rows);
+        return response;
+    }
+
+    private Map<String, Object> providerUsage(ProviderUsageRollup rollup) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("periodStart", rollup.getPeriodStart().toString());
+        row.put("provider", rollup.getProvider());
+        row.put("tokens", rollup.getTokens());
+        row.put("activeUsers", rollup.getActiveUsers());
+        return row;
+    }
+
+    private Map<String, Object> userUsage(UserUsageRollup rollup) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("periodStart", rollup.getPeriodStart().toString());
+        row.put("oauthId", rollup.getOauthId());
+        row.put("provider", rollup.getProvider());
+        row.put("tokens", rollup.getTokens());
+        return row;
+    }
+
+    private ResponseEntity<?> invalidUsageQuery(String message) {
+        return ResponseEntity.badRequest()
+                .body(Map.of(
+                    "error", "Invalid usage query",
+                    "message", message,
+                    "errorCode", "INVALID_USAGE_QUERY",
+                    "success", false
+                ));
+    }
+
+    private ResponseEntity<?> invalidUserQuery(String message) {
+        return ResponseEntity.badRequest()
+                .body(Map.of(
+                    "error", "Invalid user query",
+                    "message", message,
+                    "errorCode", "INVALID_USER_QUERY",
+                    "success", false
+                ));
+    }
+
+    /**
+     * An error response for an endpoint whose body is streamed: Spring only streams when the declared body type is
+     * {@link StreamingResponseBody}, so the JSON is written the same way.
+     */
+    private ResponseEntity<StreamingResponseBody> streamed(ResponseEntity<?> response) {
+        Object body = response.getBody();
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> objectMapper.writeValue(out, body));
+    }
+
+    private Map<String, Object> plans(PlanCatalog.Snapshot snapshot) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("plans", snapshot.plans().values());
+        response.put("defaultPlanId", planCatalog.getDefaultPlanId());
+        response.put("loadedAt", snapshot.loadedAt() != null ? snapshot.loadedAt().toString() : null);
+        return response;
+    }
+
+    private ResponseEntity<?> forbidden() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Map.of(
+                    "error", "Forbidden",
+                    "message", "Admin access required",
+                    "success", false
+                ));
+    }
+
+    @FunctionalInterface
+    private interface UsageQuery {
+        Map<String, Object> run(UsagePeriod period, LocalDate from, LocalDate to);
+    }
+}
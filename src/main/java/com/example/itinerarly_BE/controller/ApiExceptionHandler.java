@@ -0,0 +1,52 @@
+package com.example.itinerarly_BE.controller;
+
+import com.example.itinerarly_BE.utl.DbBulkheadFullException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
+
+import java.util.Map;
+
+/**
+ * Error responses for exceptions the controllers let through: {@code 503} with {@code Retry-After} when the
+ * {@link com.example.itinerarly_BE.utl.DbBulkhead} sheds a request, {@code 500} for anything unexpected. Spring MVC's
+ * own exceptions (bad parameters, unsupported methods, stream timeouts) keep their usual statuses through
+ * {@link ResponseEntityExceptionHandler}.
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler extends ResponseEntityExceptionHandler {
+
+    // Not "logger": the base class already has a field by that name
+    private static final Logger log = LoggerFactory.getLogger(ApiExceptionHandler.class);
+
+    @ExceptionHandler(DbBulkheadFullException.class)
+    public ResponseEntity<Map<String, Object>> databaseBusy(DbBulkheadFullException e, HttpServletRequest request) {
+        log.warn("Database busy, shedding {} {}: {}", request.getMethod(), request.getRequestURI(), e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of(
+                    "error", "Service busy",
+                    "message", "The server is under heavy load. Please try again shortly.",
+                    "errorCode", "DB_BUSY",
+                    "success", false
+                ));
+    }
+
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<Map<String, Object>> internalError(Exception e, HttpServletRequest request) {
+        log.error("Error handling {} {}: ", request.getMethod(), request.getRequestURI(), e);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of(
+                    "error", "Internal server error",
+                    "message", "An unexpected error occurred while processing your request. Please try again later.",
+                    "errorCode", "INTERNAL_ERROR",
+                    "success", false
+                ));
+    }
+}
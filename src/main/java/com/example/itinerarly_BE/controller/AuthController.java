@@ -1,11 +1,17 @@
 package com.example.itinerarly_BE.controller;
 
+import com.example.itinerarly_BE.service.RefreshTokenService;
+import com.example.itinerarly_BE.utl.AccessTokenPrincipal;
+import com.example.itinerarly_BE.utl.AuthCookies;
+import com.example.itinerarly_BE.utl.JwtTokenUtil;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -16,16 +22,36 @@ import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/auth")
-@CrossOrigin(origins = "${app.frontend.url}", allowCredentials = "true")
 public class AuthController {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
 
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+
+    /**
+     * Reports whether the caller is logged in. An access token answers this without the session, like the token
+     * endpoints do; clients that only hold a login session are still answered from the session.
+     */
     @GetMapping("/status")
     public ResponseEntity<Map<String, Object>> getAuthStatus(HttpServletRequest request) {
         Map<String, Object> response = new HashMap<>();
 
         try {
+            AccessTokenPrincipal principal = AccessTokenPrincipal.current();
+            if (principal != null) {
+                Map<String, Object> user = new HashMap<>();
+                user.put("id", principal.userId());
+                user.put("provider", principal.provider());
+                response.put("authenticated", true);
+                response.put("user", user);
+                logger.debug("User {} is authenticated via access token", principal.userId());
+                return ResponseEntity.ok(response);
+            }
+
             HttpSession session = request.getSession(false);
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
@@ -52,8 +78,8 @@ public class AuthController {
                 return ResponseEntity.ok(response);
             } else {
                 response.put("authenticated", false);
-                response.put("message", "No active session found");
-                logger.info("User is not authenticated - no session or JWT");
+                response.put("message", "No access token or active session found");
+                logger.info("User is not authenticated - no access token or session");
                 return ResponseEntity.ok(response);
             }
         } catch (Exception e) {
@@ -64,6 +90,35 @@ public class AuthController {
         }
     }
 
+    /**
+     * Trades the {@code refresh-token} cookie for a new access token and a new refresh token. The access token is
+     * also returned in the body for clients that send it as a Bearer header.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<Map<String, Object>> refresh(HttpServletRequest request, HttpServletResponse response) {
+        String rawToken = AuthCookies.read(request, AuthCookies.REFRESH_TOKEN);
+        if (rawToken == null || rawToken.isEmpty()) {
+            return refreshRejected(response, "No refresh token. Please log in.");
+        }
+
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(rawToken);
+        if (rotation == null) {
+            return refreshRejected(response, "Your session has expired. Please log in again.");
+        }
+
+        String jwt = jwtTokenUtil.generateToken(rotation.user());
+        response.addCookie(AuthCookies.accessToken(jwt, jwtTokenUtil.getAccessTokenTtlSeconds()));
+        response.addCookie(AuthCookies.refreshToken(rotation.refreshToken(), refreshTokenService.getRefreshTokenTtlSeconds()));
+        logger.debug("Access token refreshed for user ID {}", rotation.user().getId());
+
+        return ResponseEntity.ok(Map.of(
+            "accessToken", jwt,
+            "tokenType", "Bearer",
+            "expiresIn", jwtTokenUtil.getAccessTokenTtlSeconds(),
+            "authenticated", true
+        ));
+    }
+
     @PostMapping("/logout")
     public ResponseEntity<Map<String, String>> logout(HttpServletRequest request, HttpServletResponse response) {
         Map<String, String> result = new HashMap<>();
@@ -81,6 +136,12 @@ public class AuthController {
             // Clear authentication context
             SecurityContextHolder.clearContext();
 
+            String refreshToken = AuthCookies.read(request, AuthCookies.REFRESH_TOKEN);
+            if (refreshToken != null && !refreshToken.isEmpty()) {
+                refreshTokenService.revoke(refreshToken);
+            }
+            response.addCookie(AuthCookies.clearRefreshToken());
+
             // Clear all authentication-related cookies
             String[] cookiesToClear = {"auth-token", "isLoggedIn", "userInfo", "JSESSIONID"};
 
@@ -97,10 +158,6 @@ public class AuthController {
                 logger.info("Cleared cookie: {}", cookieName);
             }
 
-            // Add CORS headers
-            response.setHeader("Access-Control-Allow-Origin", request.getHeader("Origin"));
-            response.setHeader("Access-Control-Allow-Credentials", "true");
-
             result.put("message", "Logged out successfully");
             logger.info("Logout completed successfully");
             return ResponseEntity.ok(result);
@@ -111,4 +168,14 @@ public class AuthController {
             return ResponseEntity.status(500).body(result);
         }
     }
+
+    private ResponseEntity<Map<String, Object>> refreshRejected(HttpServletResponse response, String message) {
+        response.addCookie(AuthCookies.clearRefreshToken());
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of(
+                    "error", "Authentication required",
+                    "message", message,
+                    "authenticated", false
+                ));
+    }
 }
@@ -0,0 +1,47 @@
+package com.example.itinerarly_BE.controller;
+
+import com.example.itinerarly_BE.service.ResourceVersionCache;
+import com.example.itinerarly_BE.utl.JwtTokenUtil;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+/**
+ * Public keys for verifying ES256 access tokens, for services that check them without calling back here. The body
+ * is the byte array {@link JwtTokenUtil} serialized at startup; the key ring only changes on restart.
+ */
+@RestController
+public class JwksController {
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+
+    private byte[] jwks;
+    private String etag;
+
+    @PostConstruct
+    void init() {
+        jwks = jwtTokenUtil.getJwks();
+        etag = "\"" + DigestUtils.md5DigestAsHex(jwks) + "\"";
+    }
+
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> jwks(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Verifiers refetch on an unknown kid, so a short max-age is enough to pick up a new key after rotation
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic();
+        if (ResourceVersionCache.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(jwks);
+    }
+}
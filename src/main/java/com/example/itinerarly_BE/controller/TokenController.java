@@ -1,21 +1,34 @@
 package com.example.itinerarly_BE.controller;
 
+import com.example.itinerarly_BE.service.QuotaService;
+import com.example.itinerarly_BE.service.ResourceVersionCache;
+import com.example.itinerarly_BE.service.TokenBalanceStreamService;
+import com.example.itinerarly_BE.service.TokenReservationService;
 import com.example.itinerarly_BE.service.TokenService;
+import com.example.itinerarly_BE.utl.AccessTokenPrincipal;
+import com.example.itinerarly_BE.utl.DbBulkheadFullException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/tokens")
-@CrossOrigin(origins = "${app.frontend.url}", allowCredentials = "true")
 public class TokenController {
 
     private static final Logger logger = LoggerFactory.getLogger(TokenController.class);
@@ -23,135 +36,303 @@ public class TokenController {
     @Autowired
     private TokenService tokenService;
 
-    @GetMapping("/remaining")
-    public ResponseEntity<?> getRemainingTokens(HttpServletRequest request) {
-        try {
-            HttpSession session = request.getSession(false);
-            if (session == null || session.getAttribute("jwt_token") == null) {
-                logger.warn("No active session found for remaining tokens request");
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of(
-                            "error", "Authentication required",
-                            "message", "Please log in to check your token balance",
-                            "authenticated", false
-                        ));
-            }
+    @Autowired
+    private TokenReservationService tokenReservationService;
 
-            Long userId = (Long) session.getAttribute("user_id");
-            String userEmail = (String) session.getAttribute("user_email");
-            String oauthId = (String) session.getAttribute("oauth_id");
-
-            if (userId == null || oauthId == null) {
-                logger.error("User ID or OAuth ID not found in session");
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                        .body(Map.of(
-                            "error", "Session data incomplete",
-                            "message", "Authentication session is corrupted. Please log in again.",
-                            "authenticated", false
-                        ));
-            }
+    @Autowired
+    private TokenBalanceStreamService tokenBalanceStreamService;
+
+    @Autowired
+    private ResourceVersionCache resourceVersionCache;
+
+    @Autowired
+    private QuotaService quotaService;
 
-            logger.info("Getting remaining tokens for user: {} (OAuth ID: {})", userEmail, oauthId);
-            int remainingTokens = tokenService.getRemainingTokens(oauthId);
+    @GetMapping("/remaining")
+    public ResponseEntity<?> getRemainingTokens(HttpServletRequest request) {
+        Caller caller = caller(request);
+        if (caller == null) {
+            logger.warn("No access token or session found for remaining tokens request");
+            return unauthorized("Please log in to check your token balance");
+        }
 
-            logger.info("Retrieved remaining tokens for user {} (OAuth ID: {}): {}", userEmail, oauthId, remainingTokens);
-            return ResponseEntity.ok(Map.of(
-                "remainingTokens", remainingTokens,
-                "userId", userId,
-                "userEmail", userEmail,
-                "lastChecked", java.time.Instant.now().toString(),
-                "success", true
-            ));
+        Long userId = caller.userId();
+        String userEmail = caller.email();
+        String oauthId = caller.oauthId();
 
-        } catch (Exception e) {
-            logger.error("Error getting remaining tokens: ", e);
+        if (userId == null || oauthId == null) {
+            logger.error("User ID or OAuth ID not found in session");
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of(
-                        "error", "Internal server error",
-                        "message", "Unable to retrieve token balance. Please try again later.",
-                        "errorCode", "INTERNAL_ERROR",
-                        "success", false
+                        "error", "Session data incomplete",
+                        "message", "Authentication session is corrupted. Please log in again.",
+                        "authenticated", false
                     ));
         }
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        // The version cache holds the daily balance; the rolling quotas are in memory and added on every request
+        String cachedTag = quotaService.tag(resourceVersionCache.getBalanceTag(oauthId), oauthId);
+        if (ResourceVersionCache.matches(ifNoneMatch, cachedTag)) {
+            logger.debug("Token balance unchanged for OAuth ID {} - answering from version cache", oauthId);
+            return notModified(cachedTag);
+        }
+
+        logger.info("Getting remaining tokens for user: {} (OAuth ID: {})", userEmail, oauthId);
+        int dailyTokens = tokenService.getRemainingTokens(oauthId);
+        String dailyTag = ResourceVersionCache.balanceTag(dailyTokens, LocalDate.now());
+        resourceVersionCache.putBalanceTag(oauthId, dailyTag);
+        String tag = quotaService.tag(dailyTag, oauthId);
+        if (ResourceVersionCache.matches(ifNoneMatch, tag)) {
+            return notModified(tag);
+        }
+
+        int remainingTokens = Math.min(dailyTokens, quotaService.remaining(oauthId));
+        logger.info("Retrieved remaining tokens for user {} (OAuth ID: {}): {}", userEmail, oauthId, remainingTokens);
+        Map<String, Object> body = new HashMap<>();
+        body.put("remainingTokens", remainingTokens);
+        if (quotaService.isEnabled()) {
+            body.put("dailyTokens", dailyTokens);
+            body.put("quotaWindows", quotaWindows(oauthId));
+        }
+        body.put("userId", userId);
+        // Access tokens carry no email; the profile endpoint has it
+        if (userEmail != null) {
+            body.put("userEmail", userEmail);
+        }
+        body.put("lastChecked", java.time.Instant.now().toString());
+        body.put("success", true);
+        return ResponseEntity.ok()
+                .eTag(tag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(body);
     }
 
     @PostMapping("/consume")
     public ResponseEntity<?> consumeToken(HttpServletRequest request) {
-        try {
-            HttpSession session = request.getSession(false);
-            if (session == null || session.getAttribute("jwt_token") == null) {
-                logger.warn("No active session found for consume token request");
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(Map.of(
-                            "error", "Authentication required",
-                            "message", "Please log in to consume tokens",
-                            "authenticated", false
-                        ));
+        Caller caller = caller(request);
+        if (caller == null) {
+            logger.warn("No access token or session found for consume token request");
+            return unauthorized("Please log in to consume tokens");
+        }
+
+        Long userId = caller.userId();
+        String userEmail = caller.email();
+        String oauthId = caller.oauthId();
+
+        if (userId == null || oauthId == null) {
+            logger.error("User ID or OAuth ID not found in session for token consumption");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of(
+                        "error", "Session data incomplete",
+                        "message", "Authentication session is corrupted. Please log in again.",
+                        "authenticated", false
+                    ));
+        }
+
+        logger.info("Token consumption request for user: {} (OAuth ID: {})", userEmail, oauthId);
+
+        // First check remaining tokens before attempting consumption
+        int remainingBeforeConsumption = tokenService.getRemainingTokens(oauthId);
+        logger.info("User {} has {} tokens before consumption attempt", userEmail, remainingBeforeConsumption);
+
+        boolean success = tokenService.consumeToken(oauthId);
+        Map<String, Object> response = new HashMap<>();
+
+        if (success) {
+            int remainingTokens = Math.min(tokenService.getRemainingTokens(oauthId), quotaService.remaining(oauthId));
+            response.put("success", true);
+            response.put("remainingTokens", remainingTokens);
+            response.put("message", "Token consumed successfully");
+            response.put("consumedAt", java.time.Instant.now().toString());
+
+            logger.info("Token consumed successfully for user: {} (OAuth ID: {}). Remaining tokens: {}",
+                userEmail, oauthId, remainingTokens);
+            return ResponseEntity.ok(response);
+        } else {
+            // Get current token count for detailed error message
+            int currentTokens = tokenService.getRemainingTokens(oauthId);
+
+            response.put("success", false);
+
+            if (currentTokens > 0 && quotaService.remaining(oauthId) == 0) {
+                logger.warn("Token consumption refused for user: {} (OAuth ID: {}) - rolling quota exhausted",
+                    userEmail, oauthId);
+                return quotaExhausted(response, oauthId);
+            }
+
+            response.put("remainingTokens", currentTokens);
+            if (currentTokens == 0) {
+                response.put("error", "No tokens remaining");
+                response.put("message", "You have used all your daily tokens. Tokens reset daily at midnight.");
+                response.put("errorCode", "DAILY_LIMIT_EXCEEDED");
+            } else {
+                response.put("error", "Token consumption failed");
+                response.put("message", "Unable to consume token due to system error. Please try again.");
+                response.put("errorCode", "CONSUMPTION_FAILED");
             }
 
-            Long userId = (Long) session.getAttribute("user_id");
-            String userEmail = (String) session.getAttribute("user_email");
-            String oauthId = (String) session.getAttribute("oauth_id");
-
-            if (userId == null || oauthId == null) {
-                logger.error("User ID or OAuth ID not found in session for token consumption");
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                        .body(Map.of(
-                            "error", "Session data incomplete",
-                            "message", "Authentication session is corrupted. Please log in again.",
-                            "authenticated", false
-                        ));
+            logger.warn("Token consumption failed for user: {} (OAuth ID: {}) - Current tokens: {}",
+                userEmail, oauthId, currentTokens);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+    }
+
+    /**
+     * Streams {@code balance} events whenever the user's token count changes, starting with the current balance.
+     * Clients should use this instead of polling {@code /remaining}.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamTokenBalance(HttpServletRequest request) {
+        String oauthId = callerOauthId(request);
+        if (oauthId == null) {
+            logger.warn("No access token or session found for token stream request");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        SseEmitter emitter;
+        try {
+            emitter = tokenBalanceStreamService.subscribe(oauthId);
+        } catch (DbBulkheadFullException e) {
+            // No JSON body: the declared SseEmitter type is what makes MVC start the stream
+            logger.warn("Database busy, shedding token stream request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-store")
+                .header("X-Accel-Buffering", "no")
+                .body(emitter);
+    }
+
+    @PostMapping("/reserve")
+    public ResponseEntity<?> reserveToken(HttpServletRequest request) {
+        String oauthId = callerOauthId(request);
+        if (oauthId == null) {
+            logger.warn("No access token or session found for token reservation request");
+            return unauthorized("Please log in to reserve tokens");
+        }
+
+        String reservationId = tokenReservationService.reserve(oauthId);
+        Map<String, Object> response = new HashMap<>();
+        response.put("remainingTokens", tokenReservationService.getAvailableTokens(oauthId));
+
+        if (reservationId == null) {
+            response.put("success", false);
+            if (quotaService.remaining(oauthId) == 0) {
+                return quotaExhausted(response, oauthId);
             }
+            response.put("error", "No tokens remaining");
+            response.put("message", "You have used all your daily tokens. Tokens reset daily at midnight.");
+            response.put("errorCode", "DAILY_LIMIT_EXCEEDED");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+
+        response.put("success", true);
+        response.put("reservationId", reservationId);
+        response.put("expiresInSeconds", tokenReservationService.getReservationTtlSeconds());
+        return ResponseEntity.ok(response);
+    }
 
-            logger.info("Token consumption request for user: {} (OAuth ID: {})", userEmail, oauthId);
+    @PostMapping("/reservations/{reservationId}/commit")
+    public ResponseEntity<?> commitReservation(@PathVariable String reservationId, HttpServletRequest request) {
+        return resolveReservation(reservationId, request, true);
+    }
 
-            // First check remaining tokens before attempting consumption
-            int remainingBeforeConsumption = tokenService.getRemainingTokens(oauthId);
-            logger.info("User {} has {} tokens before consumption attempt", userEmail, remainingBeforeConsumption);
+    @PostMapping("/reservations/{reservationId}/release")
+    public ResponseEntity<?> releaseReservation(@PathVariable String reservationId, HttpServletRequest request) {
+        return resolveReservation(reservationId, request, false);
+    }
 
-            boolean success = tokenService.consumeToken(oauthId);
-            Map<String, Object> response = new HashMap<>();
+    private ResponseEntity<?> resolveReservation(String reservationId, HttpServletRequest request, boolean commit) {
+        String oauthId = callerOauthId(request);
+        if (oauthId == null) {
+            logger.warn("No access token or session found for token reservation {}", reservationId);
+            return unauthorized("Please log in to manage token reservations");
+        }
 
-            if (success) {
-                int remainingTokens = tokenService.getRemainingTokens(oauthId);
-                response.put("success", true);
-                response.put("remainingTokens", remainingTokens);
-                response.put("message", "Token consumed successfully");
-                response.put("consumedAt", java.time.Instant.now().toString());
+        boolean resolved = commit
+                ? tokenReservationService.commit(reservationId, oauthId)
+                : tokenReservationService.release(reservationId, oauthId);
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", resolved);
+        response.put("remainingTokens", tokenReservationService.getAvailableTokens(oauthId));
 
-                logger.info("Token consumed successfully for user: {} (OAuth ID: {}). Remaining tokens: {}",
-                    userEmail, oauthId, remainingTokens);
-                return ResponseEntity.ok(response);
-            } else {
-                // Get current token count for detailed error message
-                int currentTokens = tokenService.getRemainingTokens(oauthId);
-
-                response.put("success", false);
-                response.put("remainingTokens", currentTokens);
-
-                if (currentTokens == 0) {
-                    response.put("error", "No tokens remaining");
-                    response.put("message", "You have used all your daily tokens. Tokens reset daily at midnight.");
-                    response.put("errorCode", "DAILY_LIMIT_EXCEEDED");
-                } else {
-                    response.put("error", "Token consumption failed");
-                    response.put("message", "Unable to consume token due to system error. Please try again.");
-                    response.put("errorCode", "CONSUMPTION_FAILED");
-                }
-
-                logger.warn("Token consumption failed for user: {} (OAuth ID: {}) - Current tokens: {}",
-                    userEmail, oauthId, currentTokens);
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        if (!resolved) {
+            response.put("error", "Reservation not found");
+            response.put("message", "The reservation does not exist or has already expired.");
+            response.put("errorCode", "RESERVATION_NOT_FOUND");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<?> quotaExhausted(Map<String, Object> response, String oauthId) {
+        long retryAfterSeconds = (quotaService.retryAfterMillis(oauthId) + 999) / 1000;
+        response.put("remainingTokens", 0);
+        response.put("error", "Rolling quota exhausted");
+        response.put("message", "You have used the tokens allowed for now. Try again in " + retryAfterSeconds + " seconds.");
+        response.put("errorCode", "QUOTA_WINDOW_EXCEEDED");
+        response.put("retryAfterSeconds", retryAfterSeconds);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(response);
+    }
+
+    private List<Map<String, Object>> quotaWindows(String oauthId) {
+        return quotaService.usage(oauthId).stream().map(usage -> {
+            Map<String, Object> window = new LinkedHashMap<>();
+            window.put("limit", usage.limit());
+            window.put("periodSeconds", usage.window().period().toSeconds());
+            window.put("used", usage.used());
+            window.put("remaining", usage.remaining());
+            if (usage.resetsAtMillis() > 0) {
+                window.put("nextTokenAt", Instant.ofEpochMilli(usage.resetsAtMillis()).toString());
             }
-        } catch (Exception e) {
-            logger.error("Error in token consumption for session: ", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of(
-                        "error", "Internal server error",
-                        "message", "An unexpected error occurred while processing your request. Please try again later.",
-                        "errorCode", "INTERNAL_ERROR",
-                        "success", false
-                    ));
+            return window;
+        }).toList();
+    }
+
+    private ResponseEntity<?> notModified(String tag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(tag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .build();
+    }
+
+    /**
+     * The caller from the access token, which needs neither the session nor the database. Clients that only hold a
+     * login session (no or expired access token) are still served from the session.
+     */
+    private Caller caller(HttpServletRequest request) {
+        AccessTokenPrincipal principal = AccessTokenPrincipal.current();
+        if (principal != null) {
+            return new Caller(principal.userId(), principal.oauthId(), null);
+        }
+        HttpSession session = request.getSession(false);
+        if (session == null || session.getAttribute("jwt_token") == null) {
+            return null;
         }
+        return new Caller((Long) session.getAttribute("user_id"), (String) session.getAttribute("oauth_id"),
+                (String) session.getAttribute("user_email"));
+    }
+
+    private String callerOauthId(HttpServletRequest request) {
+        Caller caller = caller(request);
+        return caller != null ? caller.oauthId() : null;
+    }
+
+    private ResponseEntity<?> unauthorized(String message) {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of(
+                    "error", "Authentication required",
+                    "message", message,
+                    "authenticated", false
+                ));
+    }
+
+    private record Caller(Long userId, String oauthId, String email) {
     }
 }
\ No newline at end of file
@@ -1,12 +1,19 @@
 package com.example.itinerarly_BE.controller;
 
-import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.service.ResourceVersionCache;
+import com.example.itinerarly_BE.service.UserCache;
+import com.example.itinerarly_BE.utl.AccessTokenPrincipal;
+import com.example.itinerarly_BE.utl.OAuthProfileExtractors;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -15,37 +22,53 @@ import org.springframework.web.bind.annotation.RestController;
 public class UserController {
 
     @Autowired
-    private UserRepository userRepository;
+    private UserCache userCache;
+
+    @Autowired
+    private ResourceVersionCache resourceVersionCache;
+
+    @Autowired
+    private OAuthProfileExtractors oauthProfileExtractors;
 
     @GetMapping("/profile")
-    public ResponseEntity<?> getUserProfile(@AuthenticationPrincipal OAuth2User oauth2User) {
-        if (oauth2User == null) {
+    public ResponseEntity<?> getUserProfile(@AuthenticationPrincipal Object principal,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (!(principal instanceof OAuth2User) && !(principal instanceof AccessTokenPrincipal)) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
 
-        try {
-            String oauthId = null;
-
-            Object subAttribute = oauth2User.getAttribute("sub");
-
-            if (subAttribute != null) {
-                oauthId = subAttribute.toString();
-            } else {
-                Object idAttribute = oauth2User.getAttribute("id");
-                if (idAttribute != null) {
-                    oauthId = idAttribute.toString();
-                }
-            }
-
-            if (oauthId == null) {
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
-            }
-
-            return userRepository.findByOauthId(oauthId)
-                    .map(user -> ResponseEntity.ok().body(user))
-                    .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        String oauthId = principal instanceof AccessTokenPrincipal accessToken
+                ? accessToken.oauthId()
+                : oauthProfileExtractors.oauthId(SecurityContextHolder.getContext().getAuthentication());
+
+        if (oauthId == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+
+        String cachedTag = resourceVersionCache.getProfileTag(oauthId);
+        if (ResourceVersionCache.matches(ifNoneMatch, cachedTag)) {
+            return notModified(cachedTag);
         }
+
+        return userCache.get(oauthId)
+                .<ResponseEntity<?>>map(user -> {
+                    String tag = ResourceVersionCache.profileTag(user);
+                    resourceVersionCache.putProfileTag(oauthId, tag);
+                    if (ResourceVersionCache.matches(ifNoneMatch, tag)) {
+                        return notModified(tag);
+                    }
+                    return ResponseEntity.ok()
+                            .eTag(tag)
+                            .cacheControl(CacheControl.noCache().cachePrivate())
+                            .body(user);
+                })
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    private ResponseEntity<?> notModified(String tag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(tag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package com.example.itinerarly_BE.controller;
 
+import com.example.itinerarly_BE.utl.AuthCookies;
 import com.example.itinerarly_BE.utl.JwtTokenUtil;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -26,6 +27,8 @@ public class auth {
     @PostMapping("/api/v1/logout")
     public ResponseEntity<?> logout(HttpServletRequest request, HttpServletResponse response) {
         request.getSession().invalidate();
+        // The refresh cookie is scoped to /api/v1/auth and not sent here; /api/v1/auth/logout also revokes it
+        response.addCookie(AuthCookies.clearRefreshToken());
         Cookie cookie = new Cookie("auth-token", null);
         cookie.setPath("/");
         cookie.setHttpOnly(true);
@@ -0,0 +1,35 @@
+package com.example.itinerarly_BE.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One cache invalidation broadcast through the database. Nodes poll for rows above the last id they have seen;
+ * rows are purged after {@code app.cache.invalidation.jdbc.retention-seconds}.
+ */
+@Entity
+@Table(name = "cache_invalidations", indexes = {
+        @Index(name = "idx_cache_invalidations_published_at", columnList = "published_at")
+})
+@Data
+@NoArgsConstructor
+public class CacheInvalidation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "cache_name", nullable = false, length = 64)
+    private String cacheName;
+
+    @Column(name = "cache_key", nullable = false)
+    private String cacheKey;
+
+    @Column(name = "origin", nullable = false, length = 36)
+    private String origin;
+
+    @Column(name = "published_at", nullable = false)
+    private Instant publishedAt;
+}
@@ -0,0 +1,25 @@
+package com.example.itinerarly_BE.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A plan tier and its limits. Users reference it by {@code users.plan_id}; the rows are read into
+ * {@code PlanCatalog} rather than joined on every lookup.
+ */
+@Entity
+@Table(name = "plans")
+@Data
+@NoArgsConstructor
+public class Plan {
+    @Id
+    @Column(name = "id", length = 32)
+    private String id;
+
+    @Column(name = "name", nullable = false, length = 64)
+    private String name;
+
+    @Column(name = "daily_token_limit", nullable = false)
+    private Integer dailyTokenLimit;
+}
@@ -0,0 +1,52 @@
+package com.example.itinerarly_BE.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Tokens consumed through one OAuth provider in one day or week, and how many users consumed them, kept up to date
+ * by {@code UsageRollupService}.
+ */
+@Entity
+@Table(name = "usage_rollup_providers")
+@IdClass(ProviderUsageRollup.Key.class)
+@Data
+@NoArgsConstructor
+public class ProviderUsageRollup {
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(name = "period", length = 8)
+    private UsagePeriod period;
+
+    @Id
+    @Column(name = "period_start")
+    private LocalDate periodStart;
+
+    @Id
+    @Column(name = "provider", length = 32)
+    private String provider;
+
+    @Column(name = "tokens", nullable = false)
+    private Long tokens;
+
+    @Column(name = "active_users", nullable = false)
+    private Integer activeUsers;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private UsagePeriod period;
+        private LocalDate periodStart;
+        private String provider;
+    }
+}
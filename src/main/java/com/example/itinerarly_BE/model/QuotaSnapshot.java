@@ -0,0 +1,73 @@
+package com.example.itinerarly_BE.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * The rolling-window quota uses one instance recorded for one user, encoded by {@code SlidingWindowQuota}, so a
+ * restart does not hand out a fresh quota. Each instance writes its own row per user under a node id drawn at
+ * startup, and a starting instance adds up every row, so no instance overwrites another's uses. Rows are rewritten
+ * periodically while the user is active and purged once every window has passed.
+ */
+@Entity
+@IdClass(QuotaSnapshot.Key.class)
+@Table(name = "quota_snapshots", indexes = {
+        @Index(name = "idx_quota_snapshots_updated_at", columnList = "updated_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class QuotaSnapshot implements Persistable<QuotaSnapshot.Key> {
+
+    public static final int MAX_COUNTERS_BYTES = 8192;
+
+    @Id
+    @Column(name = "oauth_id", nullable = false)
+    private String oauthId;
+
+    @Id
+    @Column(name = "node_id", nullable = false, length = 36)
+    private String nodeId;
+
+    @Column(name = "counters", nullable = false, length = MAX_COUNTERS_BYTES)
+    private byte[] counters;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    // Lets saveAll insert new rows without first selecting them by id
+    @Transient
+    private boolean inserted;
+
+    public QuotaSnapshot(String oauthId, String nodeId) {
+        this.oauthId = oauthId;
+        this.nodeId = nodeId;
+        this.inserted = true;
+    }
+
+    @Override
+    public Key getId() {
+        return new Key(oauthId, nodeId);
+    }
+
+    @Override
+    public boolean isNew() {
+        return inserted;
+    }
+
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String oauthId;
+        private String nodeId;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.itinerarly_BE.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+
+/**
+ * One token use, appended by {@code TokenUsageRecorder} and never updated. Rows are written in batches off the
+ * request path, so a use shows up here shortly after the balance changed.
+ */
+@Entity
+@Table(name = "token_usage", indexes = {
+        @Index(name = "idx_token_usage_oauth_id_used_at", columnList = "oauth_id, used_at"),
+        @Index(name = "idx_token_usage_used_at", columnList = "used_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class TokenUsage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "oauth_id", nullable = false)
+    private String oauthId;
+
+    // VARCHAR rather than a MySQL ENUM column, so adding a source needs no migration
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(name = "source", nullable = false, length = 16)
+    private Source source;
+
+    @Column(name = "tokens", nullable = false)
+    private Integer tokens;
+
+    @Column(name = "used_at", nullable = false)
+    private Instant usedAt;
+
+    public enum Source {
+        /** {@code POST /consume} */
+        CONSUME,
+        /** A committed token reservation */
+        RESERVATION
+    }
+}
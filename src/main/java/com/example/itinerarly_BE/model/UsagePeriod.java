@@ -0,0 +1,24 @@
+package com.example.itinerarly_BE.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * The length of a usage rollup row. Weeks start on Monday.
+ */
+public enum UsagePeriod {
+    DAY,
+    WEEK;
+
+    /**
+     * The first day of the period {@code day} falls in.
+     */
+    public LocalDate start(LocalDate day) {
+        return this == DAY ? day : day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    public LocalDate next(LocalDate start) {
+        return this == DAY ? start.plusDays(1) : start.plusWeeks(1);
+    }
+}
@@ -3,6 +3,10 @@ package com.example.itinerarly_BE.model;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
@@ -10,13 +14,19 @@ import java.time.ZonedDateTime;
 
 @Entity
 @Table(name = "users")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
+@NaturalIdCache(region = User.NATURAL_ID_CACHE_REGION)
 @Data
 @NoArgsConstructor
 public class User {
+    public static final String CACHE_REGION = "users";
+    public static final String NATURAL_ID_CACHE_REGION = "users-by-oauth-id";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @NaturalId
     private String oauthId;
     private String email;
     private String name;
@@ -24,6 +34,10 @@ public class User {
     private String avatarUrl;
     private String provider;
 
+    // Null means the default plan (app.plans.default-plan)
+    @Column(name = "plan_id", length = 32)
+    private String planId;
+
     @Column(name = "daily_tokens")
     private Integer dailyTokens;
 
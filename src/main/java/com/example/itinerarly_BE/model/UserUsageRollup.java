@@ -0,0 +1,54 @@
+package com.example.itinerarly_BE.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Tokens one user consumed in one day or week, kept up to date by {@code UsageRollupService} as usage is written to
+ * {@code token_usage}.
+ */
+@Entity
+@Table(name = "usage_rollup_users", indexes = {
+        @Index(name = "idx_usage_rollup_users_oauth_id", columnList = "oauth_id, period, period_start")
+})
+@IdClass(UserUsageRollup.Key.class)
+@Data
+@NoArgsConstructor
+public class UserUsageRollup {
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(name = "period", length = 8)
+    private UsagePeriod period;
+
+    @Id
+    @Column(name = "period_start")
+    private LocalDate periodStart;
+
+    @Id
+    @Column(name = "oauth_id")
+    private String oauthId;
+
+    @Column(name = "provider", nullable = false, length = 32)
+    private String provider;
+
+    @Column(name = "tokens", nullable = false)
+    private Long tokens;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private UsagePeriod period;
+        private LocalDate periodStart;
+        private String oauthId;
+    }
+}
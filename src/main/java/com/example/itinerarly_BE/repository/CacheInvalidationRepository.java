@@ -0,0 +1,28 @@
+package com.example.itinerarly_BE.repository;
+
+import com.example.itinerarly_BE.model.CacheInvalidation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface CacheInvalidationRepository extends JpaRepository<CacheInvalidation, Long> {
+
+    /**
+     * The next invalidations after {@code id}. Read-write so it runs on the primary: polling a lagging replica would
+     * delay every invalidation by the replica lag.
+     */
+    @Transactional
+    List<CacheInvalidation> findTop500ByIdGreaterThanOrderByIdAsc(Long id);
+
+    @Transactional
+    @Query("SELECT COALESCE(MAX(c.id), 0) FROM CacheInvalidation c")
+    long findMaxId();
+
+    @Modifying
+    @Transactional
+    long deleteByPublishedAtBefore(Instant cutoff);
+}
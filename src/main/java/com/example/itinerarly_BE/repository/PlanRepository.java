@@ -0,0 +1,7 @@
+package com.example.itinerarly_BE.repository;
+
+import com.example.itinerarly_BE.model.Plan;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface PlanRepository extends JpaRepository<Plan, String> {
+}
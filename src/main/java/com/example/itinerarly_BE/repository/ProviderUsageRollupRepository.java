@@ -0,0 +1,14 @@
+package com.example.itinerarly_BE.repository;
+
+import com.example.itinerarly_BE.model.ProviderUsageRollup;
+import com.example.itinerarly_BE.model.UsagePeriod;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ProviderUsageRollupRepository extends JpaRepository<ProviderUsageRollup, ProviderUsageRollup.Key> {
+
+    List<ProviderUsageRollup> findByPeriodAndPeriodStartBetweenOrderByPeriodStartAscProviderAsc(
+            UsagePeriod period, LocalDate from, LocalDate to);
+}
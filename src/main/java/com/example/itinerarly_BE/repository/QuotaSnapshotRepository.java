@@ -0,0 +1,25 @@
+package com.example.itinerarly_BE.repository;
+
+import com.example.itinerarly_BE.model.QuotaSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface QuotaSnapshotRepository extends JpaRepository<QuotaSnapshot, QuotaSnapshot.Key> {
+
+    List<QuotaSnapshot> findByNodeIdAndOauthIdIn(String nodeId, Collection<String> oauthIds);
+
+    /**
+     * Read-write so it runs on the primary: a replica may not have the last snapshot written before a restart.
+     */
+    @Transactional
+    List<QuotaSnapshot> findByUpdatedAtAfter(Instant since);
+
+    @Modifying
+    @Transactional
+    long deleteByUpdatedAtBefore(Instant cutoff);
+}
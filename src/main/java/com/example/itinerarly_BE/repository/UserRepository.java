@@ -1,16 +1,108 @@
 package com.example.itinerarly_BE.repository;
 
 import com.example.itinerarly_BE.model.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
+
+    /**
+     * Always reads the primary database; use it for read-modify-write. Cached reads go through
+     * {@link #findReadOnlyByOauthId}.
+     */
     Optional<User> findByOauthId(String oauthId);
+
+    @Transactional(readOnly = true)
     Optional<User> findByEmail(String email);
 
+    /**
+     * Up to {@code limit} users with ids above {@code afterId}, in id order; pass the last id of a page to get the
+     * next one. Unlike {@code OFFSET}, every page is a short range scan on the primary key however deep it starts.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT new com.example.itinerarly_BE.repository.UserSummary(u.id, u.oauthId, u.email, u.name, " +
+            "u.username, u.provider, u.planId, u.dailyTokens, u.lastTokenRefresh, u.loginTime) " +
+            "FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<UserSummary> findPageAfter(@Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Deletes users who have not logged in since {@code cutoff} and returns them.
+     */
+    @Modifying
+    @Transactional
+    List<User> deleteByLoginTimeBefore(ZonedDateTime cutoff);
+
+    /**
+     * Debits {@code count} tokens in a single statement, all or nothing: nothing is debited unless the row belongs to
+     * {@code day} and still holds at least {@code count} tokens, so a debit can never take tokens that are not there.
+     * Consumes and reservations debit one token, node-local leases a block.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.dailyTokens = u.dailyTokens - :count " +
+            "WHERE u.oauthId = :oauthId AND u.lastTokenRefresh = :day AND u.dailyTokens >= :count")
+    int debitDailyTokens(@Param("oauthId") String oauthId, @Param("count") int count, @Param("day") LocalDate day);
+
+    /**
+     * Gives unused leased tokens back. Tokens leased on an earlier day are not added to a refreshed balance.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.dailyTokens = u.dailyTokens + :count WHERE u.oauthId = :oauthId AND u.lastTokenRefresh = :day")
+    int returnDailyTokens(@Param("oauthId") String oauthId, @Param("count") int count, @Param("day") LocalDate day);
+
+    /**
+     * Moves the user from {@code previousPlanId} to {@code planId} and, if the balance was refreshed for {@code day},
+     * changes it by {@code delta} (never below zero). One statement, so tokens debited meanwhile are not written back;
+     * nothing changes if the user is no longer on {@code previousPlanId}.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.planId = :planId, u.dailyTokens = " +
+            "CASE WHEN u.lastTokenRefresh = :day THEN GREATEST(0, u.dailyTokens + :delta) ELSE u.dailyTokens END " +
+            "WHERE u.oauthId = :oauthId " +
+            "AND (u.planId = :previousPlanId OR (u.planId IS NULL AND :previousPlanId IS NULL))")
+    int changePlan(@Param("oauthId") String oauthId, @Param("previousPlanId") String previousPlanId,
+                   @Param("planId") String planId, @Param("delta") int delta, @Param("day") LocalDate day);
+
+    /**
+     * Resets the balance to {@code limit}, the daily limit of {@code planId}, unless the row was already refreshed for
+     * {@code day} or the user is no longer on {@code planId}. A node that read the row before another node refreshed
+     * it and leased from it cannot overwrite that lease, and a refresh that read the plan before a
+     * {@link #changePlan plan change} cannot write the old plan's limit over it.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.dailyTokens = :limit, u.lastTokenRefresh = :day " +
+            "WHERE u.oauthId = :oauthId AND (u.lastTokenRefresh IS NULL OR u.lastTokenRefresh <> :day) " +
+            "AND (u.planId = :planId OR (u.planId IS NULL AND :planId IS NULL))")
+    int refreshDailyTokens(@Param("oauthId") String oauthId, @Param("planId") String planId,
+                           @Param("limit") int limit, @Param("day") LocalDate day);
+
+    /**
+     * The balance on the primary, empty if the user is missing or not refreshed for {@code day}.
+     */
+    @Transactional
+    @Query("SELECT u.dailyTokens FROM User u WHERE u.oauthId = :oauthId AND u.lastTokenRefresh = :day")
+    Optional<Integer> findDailyTokens(@Param("oauthId") String oauthId, @Param("day") LocalDate day);
+
+    /**
+     * Refreshes the provider profile and login time of an existing user without loading the row first.
+     */
     @Modifying
-    void deleteByLoginTimeBefore(ZonedDateTime cutoff);
-}
\ No newline at end of file
+    @Transactional
+    @Query("UPDATE User u SET u.email = :email, u.name = :name, u.username = :username, u.avatarUrl = :avatarUrl, " +
+            "u.loginTime = :loginTime WHERE u.oauthId = :oauthId")
+    int updateProfile(@Param("oauthId") String oauthId, @Param("email") String email, @Param("name") String name,
+                      @Param("username") String username, @Param("avatarUrl") String avatarUrl,
+                      @Param("loginTime") ZonedDateTime loginTime);
+}
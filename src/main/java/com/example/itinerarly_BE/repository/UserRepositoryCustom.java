@@ -0,0 +1,23 @@
+package com.example.itinerarly_BE.repository;
+
+import com.example.itinerarly_BE.model.User;
+
+import java.util.Optional;
+
+/**
+ * {@link UserRepository} methods that need the Hibernate session rather than a query.
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Loads a user by its {@code oauthId} natural id, answered from the second-level cache when the user was read or
+     * written recently and otherwise from the read replica. Do not use it to load a user that is about to be
+     * modified: the cached copy may be up to {@code app.hibernate-cache.users.ttl-seconds} behind another node.
+     */
+    Optional<User> findReadOnlyByOauthId(String oauthId);
+
+    /**
+     * Drops the user from this node's second-level cache after another node changed it. Never touches the database.
+     */
+    void evictCached(String oauthId);
+}
@@ -0,0 +1,49 @@
+package com.example.itinerarly_BE.repository;
+
+import com.example.itinerarly_BE.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceUnit;
+import org.hibernate.Session;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+class UserRepositoryImpl implements UserRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<User> findReadOnlyByOauthId(String oauthId) {
+        // Unlike a JPQL query, a natural id load checks the natural id and entity caches before the database
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).loadOptional(oauthId);
+    }
+
+    @Override
+    public void evictCached(String oauthId) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        EntityPersister persister = sessionFactory.getMappingMetamodel().getEntityDescriptor(User.class);
+        NaturalIdDataAccess naturalIds = persister.getNaturalIdCacheAccessStrategy();
+        if (naturalIds == null) {
+            return;
+        }
+        // Without a transaction the session never borrows a connection
+        try (SessionImplementor session = sessionFactory.openSession()) {
+            // The oauthId -> id mapping never changes, so only the entity entry it points to is evicted
+            Object id = naturalIds.get(session, naturalIds.generateCacheKey(oauthId, persister, session));
+            if (id != null) {
+                sessionFactory.getCache().evictEntityData(User.class, id);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.itinerarly_BE.repository;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+/**
+ * A user's columns as a plain value rather than a managed {@code User}, for listings and exports that read many rows
+ * and must not fill the persistence context or the second-level cache.
+ */
+public record UserSummary(Long id,
+                          String oauthId,
+                          String email,
+                          String name,
+                          String username,
+                          String provider,
+                          String planId,
+                          Integer dailyTokens,
+                          LocalDate lastTokenRefresh,
+                          ZonedDateTime loginTime) {
+}
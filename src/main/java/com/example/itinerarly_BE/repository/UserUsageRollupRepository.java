@@ -0,0 +1,18 @@
+package com.example.itinerarly_BE.repository;
+
+import com.example.itinerarly_BE.model.UsagePeriod;
+import com.example.itinerarly_BE.model.UserUsageRollup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface UserUsageRollupRepository extends JpaRepository<UserUsageRollup, UserUsageRollup.Key> {
+
+    List<UserUsageRollup> findByOauthIdAndPeriodAndPeriodStartBetweenOrderByPeriodStart(
+            String oauthId, UsagePeriod period, LocalDate from, LocalDate to);
+
+    List<UserUsageRollup> findByPeriodAndPeriodStartOrderByTokensDesc(UsagePeriod period, LocalDate periodStart,
+                                                                     Pageable pageable);
+}
@@ -0,0 +1,151 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.OAuthProfile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work left over after a login once the user id and access token exist: writing the provider's current profile
+ * (name, email, avatar) and login time back to the user row, and the login audit line.
+ *
+ * <p>The OAuth2 success handler queues a {@link Login} and redirects right away. At most one login per user is
+ * pending; a user logging in again before it was applied replaces it, so a burst of logins costs one
+ * {@code UPDATE}. Updates run on virtual threads through the batch side of {@link DbBulkhead}, and at most
+ * {@code app.auth.login-post-processing.max-pending} users are queued - beyond that the update is dropped and
+ * picked up on that user's next login.
+ */
+@Service
+public class LoginPostProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginPostProcessor.class);
+
+    private final UserRepository userRepository;
+    private final DbBulkhead dbBulkhead;
+    private final ResourceVersionCache resourceVersionCache;
+    private final UserCache userCache;
+    private final Executor executor;
+    private final int maxPending;
+
+    private final Map<String, Login> pending = new ConcurrentHashMap<>();
+
+    private final Counter coalesced;
+    private final Counter dropped;
+    private final Counter failed;
+    private final Timer applied;
+
+    @Autowired
+    public LoginPostProcessor(UserRepository userRepository,
+                              DbBulkhead dbBulkhead,
+                              ResourceVersionCache resourceVersionCache,
+                              UserCache userCache,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.auth.login-post-processing.max-pending:10000}") int maxPending) {
+        this(userRepository, dbBulkhead, resourceVersionCache, userCache, meterRegistry, maxPending,
+                Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    LoginPostProcessor(UserRepository userRepository, DbBulkhead dbBulkhead, ResourceVersionCache resourceVersionCache,
+                       UserCache userCache, MeterRegistry meterRegistry, int maxPending, Executor executor) {
+        this.userRepository = userRepository;
+        this.dbBulkhead = dbBulkhead;
+        this.resourceVersionCache = resourceVersionCache;
+        this.userCache = userCache;
+        this.maxPending = maxPending;
+        this.executor = executor;
+
+        Gauge.builder("auth.login.post_process.pending", pending, Map::size).register(meterRegistry);
+        this.coalesced = Counter.builder("auth.login.post_process.coalesced").register(meterRegistry);
+        this.dropped = Counter.builder("auth.login.post_process.dropped").register(meterRegistry);
+        this.failed = Counter.builder("auth.login.post_process.failed").register(meterRegistry);
+        this.applied = Timer.builder("auth.login.post_process").register(meterRegistry);
+    }
+
+    /**
+     * Queues the profile refresh and audit line for a login. Never blocks.
+     */
+    public void submit(Login login) {
+        if (pending.size() >= maxPending && !pending.containsKey(login.oauthId())) {
+            dropped.increment();
+            logger.warn("Login post-processing queue full ({} users) - skipping profile update for OAuth ID {}",
+                maxPending, login.oauthId());
+            return;
+        }
+        Login previous = pending.put(login.oauthId(), login);
+        if (previous != null) {
+            coalesced.increment();
+            return;
+        }
+        executor.execute(() -> apply(login.oauthId()));
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (executor instanceof ExecutorService service) {
+            service.shutdown();
+            if (!service.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Login post-processing did not finish, {} profile updates lost", pending.size());
+            }
+        }
+    }
+
+    private void apply(String oauthId) {
+        // Take the latest login; one submitted after this point schedules its own run
+        Login login = pending.remove(oauthId);
+        if (login == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            if (!login.newUser()) {
+                OAuthProfile profile = login.profile();
+                int updated = dbBulkhead.batch(() -> userRepository.updateProfile(oauthId, profile.email(),
+                        profile.name(), profile.username(), profile.avatarUrl(), login.loginTime()));
+                if (updated == 0) {
+                    logger.warn("Profile update after login found no user for OAuth ID {}", oauthId);
+                }
+                resourceVersionCache.evictProfile(oauthId);
+                userCache.invalidate(oauthId);
+            }
+            logger.info("Login audit - provider: {}, OAuth ID: {}, new user: {}, at {}",
+                login.profile().provider(), oauthId, login.newUser(), login.loginTime());
+        } catch (Exception e) {
+            failed.increment();
+            logger.error("Login post-processing failed for OAuth ID {}: {}", oauthId, e.getMessage());
+        } finally {
+            applied.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * What the provider reported at login. New users were already inserted with these values and only get the
+     * audit line.
+     */
+    public record Login(OAuthProfile profile, boolean newUser, ZonedDateTime loginTime) {
+
+        public String oauthId() {
+            return profile.oauthId();
+        }
+    }
+}
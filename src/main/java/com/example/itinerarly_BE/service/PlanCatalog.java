@@ -0,0 +1,177 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.config.TokenConfig;
+import com.example.itinerarly_BE.model.Plan;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.PlanRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.InvalidationBus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Plan limits by plan id, for the token paths that need a user's daily limit without another query.
+ *
+ * <p>The {@code plans} table is read into an immutable {@link Snapshot} that replaces the previous one in a single
+ * volatile write, so readers never see a half-loaded catalog. It is reloaded on startup, every
+ * {@code app.plans.refresh-interval-ms}, and on demand through {@link #reloadAndBroadcast}, which also tells the other
+ * nodes over the {@link InvalidationBus} to reload. A failed reload keeps the previous snapshot.
+ *
+ * <p>Users without a plan, or whose plan is not in the snapshot, get {@code app.plans.default-plan}, and
+ * {@code app.daily-token-limit} when that plan does not exist either.
+ */
+@Service
+public class PlanCatalog {
+
+    public static final String CACHE_NAME = "plans";
+
+    private static final Logger logger = LoggerFactory.getLogger(PlanCatalog.class);
+
+    private final PlanRepository planRepository;
+    private final TokenConfig tokenConfig;
+    private final DbBulkhead dbBulkhead;
+    private final InvalidationBus invalidationBus;
+    private final String defaultPlanId;
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), null);
+
+    private final Counter reloads;
+    private final Counter reloadsFailed;
+
+    @Autowired
+    public PlanCatalog(PlanRepository planRepository,
+                       TokenConfig tokenConfig,
+                       DbBulkhead dbBulkhead,
+                       InvalidationBus invalidationBus,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.plans.default-plan:free}") String defaultPlanId) {
+        this.planRepository = planRepository;
+        this.tokenConfig = tokenConfig;
+        this.dbBulkhead = dbBulkhead;
+        this.invalidationBus = invalidationBus;
+        this.defaultPlanId = defaultPlanId;
+
+        this.reloads = Counter.builder("plans.reloads").tag("result", "success").register(meterRegistry);
+        this.reloadsFailed = Counter.builder("plans.reloads").tag("result", "failure").register(meterRegistry);
+        Gauge.builder("plans.loaded", this, catalog -> catalog.snapshot.plans().size()).register(meterRegistry);
+
+        invalidationBus.subscribe(this::onInvalidation);
+    }
+
+    /**
+     * The daily token limit of the user's plan. Reads the current snapshot only.
+     */
+    public int dailyTokenLimit(User user) {
+        return dailyTokenLimit(user.getPlanId());
+    }
+
+    /**
+     * The daily token limit of a plan ({@code null} for the default one).
+     */
+    public int dailyTokenLimit(String planId) {
+        Limits plan = resolve(planId);
+        return plan != null ? plan.dailyTokenLimit() : tokenConfig.getDailyTokenLimit();
+    }
+
+    /**
+     * The plan the user is on, {@code null} when neither it nor the default plan is in the snapshot.
+     */
+    public Limits resolve(String planId) {
+        Snapshot current = snapshot;
+        Limits plan = planId != null ? current.plans().get(planId) : null;
+        return plan != null ? plan : current.plans().get(defaultPlanId);
+    }
+
+    public Optional<Limits> find(String planId) {
+        return Optional.ofNullable(snapshot.plans().get(planId));
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public String getDefaultPlanId() {
+        return defaultPlanId;
+    }
+
+    /**
+     * Reads the {@code plans} table and replaces the snapshot. Throws if the read fails, leaving the previous one.
+     */
+    public Snapshot reload() {
+        reloadLock.lock();
+        try {
+            List<Plan> rows = dbBulkhead.batch(() -> planRepository.findAll());
+            Map<String, Limits> plans = new LinkedHashMap<>();
+            rows.forEach(row -> plans.put(row.getId(), new Limits(row.getId(), row.getName(), row.getDailyTokenLimit())));
+            Snapshot loaded = new Snapshot(plans, Instant.now());
+            if (!loaded.plans().equals(snapshot.plans())) {
+                logger.info("Loaded {} plans: {}", plans.size(), plans.values());
+            }
+            snapshot = loaded;
+            reloads.increment();
+            return loaded;
+        } catch (RuntimeException e) {
+            reloadsFailed.increment();
+            throw e;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Reloads here and tells the other nodes to reload too, e.g. after the {@code plans} table was edited.
+     */
+    public Snapshot reloadAndBroadcast() {
+        Snapshot loaded = reload();
+        invalidationBus.publish(CACHE_NAME, CACHE_NAME);
+        return loaded;
+    }
+
+    @PostConstruct
+    @Scheduled(initialDelayString = "${app.plans.refresh-interval-ms:300000}",
+            fixedDelayString = "${app.plans.refresh-interval-ms:300000}")
+    public void refresh() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("Failed to reload plans, keeping the {} loaded at {}: ", snapshot.plans().size(),
+                    snapshot.loadedAt(), e);
+        }
+    }
+
+    void onInvalidation(InvalidationBus.Invalidation invalidation) {
+        if (CACHE_NAME.equals(invalidation.cache())) {
+            // Bus listeners must not block
+            Thread.startVirtualThread(this::refresh);
+        }
+    }
+
+    public record Limits(String id, String name, int dailyTokenLimit) {
+    }
+
+    /**
+     * @param loadedAt {@code null} until the first successful load
+     */
+    public record Snapshot(Map<String, Limits> plans, Instant loadedAt) {
+        public Snapshot {
+            plans = Collections.unmodifiableMap(new LinkedHashMap<>(plans));
+        }
+    }
+}
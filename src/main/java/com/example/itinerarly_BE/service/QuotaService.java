@@ -0,0 +1,218 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.model.QuotaSnapshot;
+import com.example.itinerarly_BE.repository.QuotaSnapshotRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.SlidingWindowQuota;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Rolling-window token quotas ({@code app.quota.windows}) checked in memory next to the daily balance, so usage
+ * that crosses midnight still counts and a burst limit can be set per minute. Windows whose limit is the daily one
+ * read it from the user's plan through {@link UserCache} and {@link PlanCatalog}.
+ *
+ * <p>Counters live in {@link SlidingWindowQuota} and are enforced per instance. Users whose counters changed are
+ * written to {@code quota_snapshots} every {@code app.quota.snapshot-interval-ms} and on shutdown, one row per user
+ * and instance. On startup the rows of every instance are added up, so a restart loses at most one interval of usage
+ * and starts from the uses made anywhere. All database work runs on the batch side of {@link DbBulkhead}.
+ */
+@Service
+public class QuotaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuotaService.class);
+
+    private final SlidingWindowQuota quota;
+    private final QuotaSnapshotRepository snapshotRepository;
+    private final DbBulkhead dbBulkhead;
+    private final TransactionOperations transactionOperations;
+    private final UserCache userCache;
+    private final PlanCatalog planCatalog;
+    // Drawn per start, so an instance never overwrites rows that an earlier run or another instance wrote
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+
+    private final Counter rejected;
+    private final Counter snapshotsWritten;
+    private final Counter snapshotsFailed;
+
+    @Autowired
+    public QuotaService(SlidingWindowQuota quota,
+                        QuotaSnapshotRepository snapshotRepository,
+                        DbBulkhead dbBulkhead,
+                        TransactionOperations transactionOperations,
+                        UserCache userCache,
+                        PlanCatalog planCatalog,
+                        MeterRegistry meterRegistry) {
+        this.quota = quota;
+        this.snapshotRepository = snapshotRepository;
+        this.dbBulkhead = dbBulkhead;
+        this.transactionOperations = transactionOperations;
+        this.userCache = userCache;
+        this.planCatalog = planCatalog;
+
+        this.rejected = Counter.builder("quota.rejected")
+                .description("Token uses refused because a rolling window was full").register(meterRegistry);
+        this.snapshotsWritten = Counter.builder("quota.snapshots.written").register(meterRegistry);
+        this.snapshotsFailed = Counter.builder("quota.snapshots.failed").register(meterRegistry);
+        Gauge.builder("quota.tracked.users", quota, SlidingWindowQuota::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return quota.isEnabled();
+    }
+
+    /**
+     * Counts one token use against every window, or refuses it if any window is full.
+     */
+    public boolean tryConsume(String oauthId) {
+        if (quota.tryConsume(oauthId, dailyLimit(oauthId), System.currentTimeMillis())) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Gives back a use that {@link #tryConsume} allowed but that did not go through.
+     */
+    public void refund(String oauthId) {
+        quota.refund(oauthId, System.currentTimeMillis());
+    }
+
+    /**
+     * Uses left in the tightest window, {@link Integer#MAX_VALUE} when no windows are configured.
+     */
+    public int remaining(String oauthId) {
+        return quota.remaining(oauthId, dailyLimit(oauthId), System.currentTimeMillis());
+    }
+
+    public List<SlidingWindowQuota.Usage> usage(String oauthId) {
+        return quota.usage(oauthId, dailyLimit(oauthId), System.currentTimeMillis());
+    }
+
+    /**
+     * Milliseconds until every full window has room again, {@code 0} if none is full.
+     */
+    public long retryAfterMillis(String oauthId) {
+        long now = System.currentTimeMillis();
+        long retryAt = now;
+        for (SlidingWindowQuota.Usage usage : quota.usage(oauthId, dailyLimit(oauthId), now)) {
+            if (usage.remaining() == 0 && usage.resetsAtMillis() > retryAt) {
+                retryAt = usage.resetsAtMillis();
+            }
+        }
+        return retryAt - now;
+    }
+
+    /**
+     * Adds what is left in each window to a balance ETag, so the tag changes when uses leave a window as well as
+     * when the balance changes.
+     */
+    public String tag(String balanceTag, String oauthId) {
+        if (balanceTag == null || !quota.isEnabled()) {
+            return balanceTag;
+        }
+        StringJoiner remaining = new StringJoiner(".", "-q", "\"");
+        usage(oauthId).forEach(usage -> remaining.add(String.valueOf(usage.remaining())));
+        return balanceTag.substring(0, balanceTag.length() - 1) + remaining;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        if (!quota.isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Instant since = Instant.ofEpochMilli(now).minus(quota.getRetention());
+        try {
+            List<QuotaSnapshot> snapshots = dbBulkhead.batch(() -> snapshotRepository.findByUpdatedAtAfter(since));
+            snapshots.forEach(snapshot -> quota.restore(snapshot.getOauthId(), snapshot.getCounters(), now));
+            logger.info("Restored rolling quota counters of {} users from {} snapshots",
+                    snapshots.stream().map(QuotaSnapshot::getOauthId).distinct().count(), snapshots.size());
+        } catch (Exception e) {
+            logger.error("Failed to restore rolling quota counters, starting empty: ", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.quota.snapshot-interval-ms:30000}")
+    public void snapshot() {
+        if (!quota.isEnabled()) {
+            return;
+        }
+        snapshotLock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            Map<String, byte[]> dirty = quota.snapshotDirty(now);
+            if (!dirty.isEmpty()) {
+                write(dirty, Instant.ofEpochMilli(now));
+            }
+            quota.evictIdle(now);
+            dbBulkhead.batch(() -> snapshotRepository.deleteByUpdatedAtBefore(
+                    Instant.ofEpochMilli(now).minus(quota.getRetention())));
+        } catch (Exception e) {
+            logger.error("Rolling quota snapshot failed: ", e);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Writing rolling quota counters before shutdown");
+        snapshot();
+    }
+
+    private int dailyLimit(String oauthId) {
+        if (!quota.hasDailyWindows()) {
+            return 0;
+        }
+        // A user the cache does not know is on the default plan; the consume itself refuses missing users
+        return userCache.get(oauthId).map(planCatalog::dailyTokenLimit)
+                .orElseGet(() -> planCatalog.dailyTokenLimit((String) null));
+    }
+
+    private void write(Map<String, byte[]> dirty, Instant now) {
+        try {
+            dbBulkhead.batch(() -> transactionOperations.executeWithoutResult(status -> {
+                // One select for the rows that exist, then inserts and updates go out in JDBC batches on commit
+                Map<String, QuotaSnapshot> existing = snapshotRepository
+                        .findByNodeIdAndOauthIdIn(nodeId, dirty.keySet()).stream()
+                        .collect(Collectors.toMap(QuotaSnapshot::getOauthId, Function.identity()));
+                List<QuotaSnapshot> rows = new ArrayList<>(dirty.size());
+                dirty.forEach((oauthId, counters) -> {
+                    QuotaSnapshot row = existing.computeIfAbsent(oauthId, id -> new QuotaSnapshot(id, nodeId));
+                    row.setCounters(counters);
+                    row.setUpdatedAt(now);
+                    rows.add(row);
+                });
+                snapshotRepository.saveAll(rows);
+            }));
+            snapshotsWritten.increment(dirty.size());
+        } catch (Exception e) {
+            logger.error("Failed to write rolling quota counters of {} users, will retry: ", dirty.size(), e);
+            snapshotsFailed.increment();
+            dirty.keySet().forEach(quota::markDirty);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.model.RefreshToken;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.RefreshTokenRepository;
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Rotating refresh tokens behind the short-lived access token. Each refresh spends the presented token and hands out
+ * a new one from the same family, valid for another {@code app.auth.refresh-token.ttl-seconds}. A token that is
+ * presented after it was spent means it was copied, so the whole family is revoked and the user has to log in again.
+ *
+ * <p>Only the SHA-256 of a token is stored. These are the only auth calls that touch the database.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DbBulkhead dbBulkhead;
+
+    @Value("${app.auth.refresh-token.ttl-seconds:86400}")
+    private long refreshTokenTtlSeconds;
+
+    /**
+     * Starts a new token family for a fresh login.
+     *
+     * @return the raw token for the {@code refresh-token} cookie
+     */
+    public String issue(User user) {
+        return dbBulkhead.interactive(() -> store(user.getId(), UUID.randomUUID().toString()));
+    }
+
+    /**
+     * Spends {@code rawToken} and issues its successor.
+     *
+     * @return the user and the new raw token, or {@code null} when the token is unknown, expired, reused or its user
+     *         is gone
+     */
+    public Rotation rotate(String rawToken) {
+        return dbBulkhead.interactive(() -> doRotate(rawToken));
+    }
+
+    /**
+     * Revokes the family of {@code rawToken} on logout. Unknown tokens are ignored.
+     */
+    public void revoke(String rawToken) {
+        dbBulkhead.interactive(() -> refreshTokenRepository.findByTokenHash(hash(rawToken))
+                .map(token -> refreshTokenRepository.revokeFamily(token.getFamilyId(), Instant.now()))
+                .orElse(0));
+    }
+
+    public long getRefreshTokenTtlSeconds() {
+        return refreshTokenTtlSeconds;
+    }
+
+    @Scheduled(fixedDelayString = "${app.auth.refresh-token.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        Instant cutoff = Instant.now();
+        dbBulkhead.batch(() -> refreshTokenRepository.deleteByExpiresAtBefore(cutoff));
+        logger.debug("Purged refresh tokens that expired before {}", cutoff);
+    }
+
+    private Rotation doRotate(String rawToken) {
+        RefreshToken token = refreshTokenRepository.findByTokenHash(hash(rawToken)).orElse(null);
+        if (token == null) {
+            logger.warn("Refresh rejected - unknown token");
+            return null;
+        }
+
+        Instant now = Instant.now();
+        if (token.getRevokedAt() != null || refreshTokenRepository.revoke(token.getId(), now) == 0) {
+            int revoked = refreshTokenRepository.revokeFamily(token.getFamilyId(), now);
+            logger.warn("Refresh token reuse detected for user ID {} (family {}) - revoked {} live tokens",
+                token.getUserId(), token.getFamilyId(), revoked);
+            return null;
+        }
+        if (token.getExpiresAt().isBefore(now)) {
+            logger.info("Refresh rejected - token for user ID {} expired at {}", token.getUserId(), token.getExpiresAt());
+            return null;
+        }
+
+        User user = userRepository.findById(token.getUserId()).orElse(null);
+        if (user == null) {
+            logger.warn("Refresh rejected - user ID {} no longer exists", token.getUserId());
+            return null;
+        }
+        return new Rotation(user, store(user.getId(), token.getFamilyId()));
+    }
+
+    private String store(Long userId, String familyId) {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        Instant now = Instant.now();
+        RefreshToken token = new RefreshToken();
+        token.setTokenHash(hash(rawToken));
+        token.setFamilyId(familyId);
+        token.setUserId(userId);
+        token.setCreatedAt(now);
+        token.setExpiresAt(now.plusSeconds(refreshTokenTtlSeconds));
+        refreshTokenRepository.save(token);
+        return rawToken;
+    }
+
+    static String hash(String rawToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(rawToken.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public record Rotation(User user, String refreshToken) {
+    }
+}
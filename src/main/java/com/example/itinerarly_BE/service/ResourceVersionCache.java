@@ -0,0 +1,155 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the current ETag of each user's token balance and profile so conditional GETs can be answered with
+ * {@code 304 Not Modified} before the database or JSON serialization is touched.
+ *
+ * <p>Balance tags are kept current from {@link TokenBalanceChangedEvent}s and carry the refresh date, so a tag
+ * from yesterday never matches. Profile tags are dropped on any balance change (the profile includes
+ * {@code dailyTokens}) and on login via {@link #evictProfile}. Each map is cleared when it reaches
+ * {@code app.etag.max-entries}; a miss only costs one database read.
+ *
+ * <p>Tags computed by controllers from a database read are ignored for {@code app.etag.settle-seconds} after a
+ * change, because that read may have been served by a read replica that has not applied the change yet.
+ */
+@Component
+public class ResourceVersionCache {
+
+    private final int maxEntries;
+    private final Map<String, String> balanceTags = new ConcurrentHashMap<>();
+    private final Map<String, String> profileTags = new ConcurrentHashMap<>();
+    private final Map<String, Long> changedAt = new ConcurrentHashMap<>();
+    private final long settleNanos;
+
+    public ResourceVersionCache(@Value("${app.etag.max-entries:10000}") int maxEntries,
+                                @Value("${app.etag.settle-seconds:0}") long settleSeconds) {
+        this.maxEntries = maxEntries;
+        this.settleNanos = TimeUnit.SECONDS.toNanos(settleSeconds);
+    }
+
+    public static String balanceTag(int remainingTokens, LocalDate refreshDay) {
+        return "W/\"b" + remainingTokens + "-" + refreshDay + "\"";
+    }
+
+    public static String profileTag(User user) {
+        String fields = String.join("\u001f",
+                String.valueOf(user.getId()), user.getOauthId(), user.getEmail(), user.getName(), user.getUsername(),
+                user.getAvatarUrl(), user.getProvider(), String.valueOf(user.getDailyTokens()),
+                String.valueOf(user.getLastTokenRefresh()), String.valueOf(user.getLoginTime()));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(fields.getBytes(StandardCharsets.UTF_8));
+            return "W/\"p" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Whether an {@code If-None-Match} header value matches the tag, using weak comparison.
+     */
+    public static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null || tag == null) {
+            return false;
+        }
+        String opaqueTag = stripWeak(tag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if ("*".equals(trimmed) || stripWeak(trimmed).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getBalanceTag(String oauthId) {
+        String tag = balanceTags.get(oauthId);
+        // Tags end with the refresh day; after midnight the balance must be re-read so it can be refreshed
+        return tag != null && tag.endsWith("-" + LocalDate.now() + "\"") ? tag : null;
+    }
+
+    public void putBalanceTag(String oauthId, String tag) {
+        if (settled(oauthId)) {
+            put(balanceTags, oauthId, tag);
+        }
+    }
+
+    public String getProfileTag(String oauthId) {
+        return profileTags.get(oauthId);
+    }
+
+    public void putProfileTag(String oauthId, String tag) {
+        if (settled(oauthId)) {
+            put(profileTags, oauthId, tag);
+        }
+    }
+
+    public void evictProfile(String oauthId) {
+        profileTags.remove(oauthId);
+        markChanged(oauthId);
+    }
+
+    /**
+     * Drops both tags of a user changed on another node, whose new balance this node does not know.
+     */
+    public void evict(String oauthId) {
+        balanceTags.remove(oauthId);
+        profileTags.remove(oauthId);
+        markChanged(oauthId);
+    }
+
+    @EventListener
+    public void onBalanceChanged(TokenBalanceChangedEvent event) {
+        put(balanceTags, event.oauthId(), balanceTag(event.remainingTokens(), LocalDate.now()));
+        profileTags.remove(event.oauthId());
+        markChanged(event.oauthId());
+    }
+
+    private void markChanged(String oauthId) {
+        if (settleNanos > 0) {
+            if (changedAt.size() >= maxEntries) {
+                changedAt.clear();
+            }
+            changedAt.put(oauthId, System.nanoTime());
+        }
+    }
+
+    private boolean settled(String oauthId) {
+        if (settleNanos == 0) {
+            return true;
+        }
+        Long changed = changedAt.get(oauthId);
+        if (changed == null) {
+            return true;
+        }
+        if (System.nanoTime() - changed < settleNanos) {
+            return false;
+        }
+        changedAt.remove(oauthId, changed);
+        return true;
+    }
+
+    private void put(Map<String, String> tags, String oauthId, String tag) {
+        if (tags.size() >= maxEntries && !tags.containsKey(oauthId)) {
+            tags.clear();
+        }
+        tags.put(oauthId, tag);
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
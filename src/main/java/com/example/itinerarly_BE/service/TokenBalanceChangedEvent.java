@@ -0,0 +1,14 @@
+package com.example.itinerarly_BE.service;
+
+/**
+ * Published whenever a user's token balance changes: consumption, daily refresh or the midnight reset.
+ *
+ * @param rowChanged {@code false} when only this node's view changed, e.g. a token taken from a local lease, and the
+ *                   {@code users} row other nodes read is the same as before
+ */
+public record TokenBalanceChangedEvent(String oauthId, int remainingTokens, boolean rowChanged) {
+
+    public TokenBalanceChangedEvent(String oauthId, int remainingTokens) {
+        this(oauthId, remainingTokens, true);
+    }
+}
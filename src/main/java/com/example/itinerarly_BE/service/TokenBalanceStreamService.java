@@ -0,0 +1,219 @@
+package com.example.itinerarly_BE.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes token balance changes to connected browsers over Server-Sent Events, replacing polling of
+ * {@code /api/v1/tokens/remaining}.
+ *
+ * <p>Idle connections cost no thread: emitters sit in the async servlet context and writes run on virtual threads.
+ * Each subscriber keeps only the latest undelivered balance, so a slow client gets coalesced updates instead of
+ * a growing queue.
+ */
+@Service
+public class TokenBalanceStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenBalanceStreamService.class);
+    private static final int NO_UPDATE = -1;
+
+    private final TokenService tokenService;
+    private final int maxConnections;
+    private final int maxConnectionsPerUser;
+    private final long emitterTimeoutMs;
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ExecutorService sender = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Counter balanceEvents;
+    private final Counter heartbeats;
+    private final Counter coalescedEvents;
+    private final Counter rejectedConnections;
+
+    public TokenBalanceStreamService(TokenService tokenService,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${app.token-stream.max-connections:5000}") int maxConnections,
+                                     @Value("${app.token-stream.max-connections-per-user:5}") int maxConnectionsPerUser,
+                                     @Value("${app.token-stream.timeout-ms:1800000}") long emitterTimeoutMs) {
+        this.tokenService = tokenService;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+
+        Gauge.builder("tokens.stream.connections", connections, AtomicInteger::get)
+                .description("Open token balance SSE connections")
+                .register(meterRegistry);
+        this.balanceEvents = Counter.builder("tokens.stream.events").tag("type", "balance").register(meterRegistry);
+        this.heartbeats = Counter.builder("tokens.stream.events").tag("type", "heartbeat").register(meterRegistry);
+        this.coalescedEvents = Counter.builder("tokens.stream.coalesced").register(meterRegistry);
+        this.rejectedConnections = Counter.builder("tokens.stream.rejected").register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream for the user and queues the current balance as its first event.
+     *
+     * @return the emitter, or {@code null} when the global or per-user connection limit is reached
+     * @throws com.example.itinerarly_BE.utl.DbBulkheadFullException when the balance cannot be read; the stream is
+     *         not opened
+     */
+    public SseEmitter subscribe(String oauthId) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            rejectedConnections.increment();
+            logger.warn("Token stream rejected for OAuth ID {} - connection limit {} reached", oauthId, maxConnections);
+            return null;
+        }
+
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(oauthId, emitter);
+        // Count and add in one step, so concurrent requests cannot all pass the per-user check
+        Set<Subscriber> userSubscribers = subscribers.compute(oauthId, (k, current) -> {
+            Set<Subscriber> set = current != null ? current : ConcurrentHashMap.newKeySet();
+            if (set.size() < maxConnectionsPerUser) {
+                set.add(subscriber);
+            }
+            return set.isEmpty() ? null : set;
+        });
+        if (userSubscribers == null || !userSubscribers.contains(subscriber)) {
+            connections.decrementAndGet();
+            rejectedConnections.increment();
+            logger.warn("Token stream rejected for OAuth ID {} - {} streams already open", oauthId, maxConnectionsPerUser);
+            return null;
+        }
+
+        int balance;
+        try {
+            balance = tokenService.getRemainingTokens(oauthId);
+        } catch (RuntimeException e) {
+            // The emitter never reaches MVC, so none of the callbacks below would ever free the slot
+            unsubscribe(subscriber);
+            throw e;
+        }
+
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        logger.info("Token stream opened for OAuth ID {} ({} open connections)", oauthId, connections.get());
+        subscriber.offer(balance);
+        return emitter;
+    }
+
+    @EventListener
+    public void onBalanceChanged(TokenBalanceChangedEvent event) {
+        Set<Subscriber> userSubscribers = subscribers.get(event.oauthId());
+        if (userSubscribers != null) {
+            userSubscribers.forEach(subscriber -> subscriber.offer(event.remainingTokens()));
+        }
+    }
+
+    @Scheduled(fixedRateString = "${app.token-stream.heartbeat-interval-ms:25000}")
+    public void sendHeartbeats() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(Subscriber::heartbeat));
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Closing {} token stream connections", connections.get());
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        sender.shutdown();
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        subscribers.computeIfPresent(subscriber.oauthId, (k, userSubscribers) -> {
+            userSubscribers.remove(subscriber);
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+        connections.decrementAndGet();
+        logger.debug("Token stream closed for OAuth ID {} ({} open connections)", subscriber.oauthId, connections.get());
+    }
+
+    private final class Subscriber {
+        private final String oauthId;
+        private final SseEmitter emitter;
+        private final AtomicInteger pendingBalance = new AtomicInteger(NO_UPDATE);
+        private final AtomicBoolean pendingHeartbeat = new AtomicBoolean();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(String oauthId, SseEmitter emitter) {
+            this.oauthId = oauthId;
+            this.emitter = emitter;
+        }
+
+        private void offer(int remainingTokens) {
+            if (pendingBalance.getAndSet(remainingTokens) != NO_UPDATE) {
+                coalescedEvents.increment();
+            }
+            schedule();
+        }
+
+        private void heartbeat() {
+            pendingHeartbeat.set(true);
+            schedule();
+        }
+
+        private void schedule() {
+            if (!closed.get() && sending.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    int balance = pendingBalance.getAndSet(NO_UPDATE);
+                    if (balance != NO_UPDATE) {
+                        pendingHeartbeat.set(false);
+                        emitter.send(SseEmitter.event()
+                                .name("balance")
+                                .data(Map.of("remainingTokens", balance, "timestamp", Instant.now().toString()),
+                                    MediaType.APPLICATION_JSON));
+                        balanceEvents.increment();
+                    } else if (pendingHeartbeat.getAndSet(false)) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                        heartbeats.increment();
+                    } else {
+                        sending.set(false);
+                        // Re-check so an update offered while we were releasing the flag is not stranded
+                        if ((pendingBalance.get() == NO_UPDATE && !pendingHeartbeat.get())
+                                || !sending.compareAndSet(false, true)) {
+                            return;
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                logger.debug("Token stream send failed for OAuth ID {}, closing: {}", oauthId, e.getMessage());
+                unsubscribe(this);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Node-local token leases ({@code app.token-lease.enabled}): a node takes a block of up to
+ * {@code app.token-lease.block-size} tokens out of a user's {@code users.daily_tokens} in one conditional UPDATE and
+ * serves consumes from it in memory, so most {@code /consume} calls write nothing. Reservations take their token from
+ * the lease as well. Every move out of the row is a conditional UPDATE that takes nothing the row does not hold, so a
+ * token is in the row, in exactly one lease or in one reservation, and no number of nodes can hand out more than the
+ * user's daily limit.
+ *
+ * <p>Leases are given back after {@code app.token-lease.ttl-seconds} and on shutdown; a node that dies keeps its
+ * lease's tokens out of circulation until the next daily refresh. Balance reads here see the row plus this node's
+ * lease, so a user's balance looks lower on other nodes while a lease is out.
+ *
+ * <p>Daily refreshes use a conditional UPDATE as well ({@link UserRepository#refreshDailyTokens}): a node that read
+ * yesterday's row must not reset a balance another node has already refreshed and leased from.
+ */
+@Service
+public class TokenLeaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenLeaseService.class);
+
+    // A conditional debit fails when the row holds fewer tokens than asked; retry with what is left a few times
+    private static final int LEASE_ATTEMPTS = 3;
+    // A refresh fails when the plan changed since the user was read; it is read again and retried a few times
+    private static final int REFRESH_ATTEMPTS = 3;
+
+    private final UserRepository userRepository;
+    private final UserCache userCache;
+    private final PlanCatalog planCatalog;
+    private final DbBulkhead dbBulkhead;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final int blockSize;
+    private final long ttlNanos;
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final Map<Unreturned, Integer> unreturned = new ConcurrentHashMap<>();
+    private final SingleFlight<String, Integer> acquisitions;
+    private final ReentrantLock sweepLock = new ReentrantLock();
+
+    private final Counter leased;
+    private final Counter returned;
+    private final Counter returnsFailed;
+
+    @Autowired
+    public TokenLeaseService(UserRepository userRepository,
+                             UserCache userCache,
+                             PlanCatalog planCatalog,
+                             DbBulkhead dbBulkhead,
+                             ApplicationEventPublisher eventPublisher,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.token-lease.enabled:false}") boolean enabled,
+                             @Value("${app.token-lease.block-size:2}") int blockSize,
+                             @Value("${app.token-lease.ttl-seconds:30}") long ttlSeconds) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("app.token-lease.block-size must be at least 1");
+        }
+        this.userRepository = userRepository;
+        this.userCache = userCache;
+        this.planCatalog = planCatalog;
+        this.dbBulkhead = dbBulkhead;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.blockSize = blockSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+
+        this.acquisitions = new SingleFlight<>("token-leases", meterRegistry);
+        this.leased = Counter.builder("token.leases.tokens").tag("action", "leased").register(meterRegistry);
+        this.returned = Counter.builder("token.leases.tokens").tag("action", "returned").register(meterRegistry);
+        this.returnsFailed = Counter.builder("token.leases.returns.failed").register(meterRegistry);
+        Gauge.builder("token.leases.active", leases, Map::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Takes one token from this node's lease, leasing a new block from the user's row when it is empty.
+     *
+     * @return {@code false} when neither the lease nor the row has a token left
+     */
+    public boolean tryConsume(String oauthId) {
+        LocalDate today = LocalDate.now();
+        while (true) {
+            if (takeLocal(oauthId, today)) {
+                return true;
+            }
+            // Concurrent consumers of an empty lease share one acquisition; if its block is gone by the time they
+            // get to it, they lease again
+            int granted = acquisitions.execute(oauthId, () -> dbBulkhead.interactive(() -> acquire(oauthId, today)));
+            if (granted == 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Puts back a token taken by {@link #tryConsume} whose consume did not go through.
+     */
+    public void putBack(String oauthId) {
+        LocalDate today = LocalDate.now();
+        Lease lease = leases.get(oauthId);
+        if (lease != null) {
+            synchronized (lease) {
+                if (!lease.retired && lease.day.equals(today)) {
+                    lease.remaining++;
+                    return;
+                }
+            }
+        }
+        // The lease was given back in the meantime, so the token goes straight to the row
+        giveBack(oauthId, today, 1);
+    }
+
+    /**
+     * Tokens the user has on this node: what is left in the row, refreshed first on a new day, plus this node's
+     * lease.
+     */
+    public int balance(User user) {
+        LocalDate today = LocalDate.now();
+        int row = today.equals(user.getLastTokenRefresh()) ? user.getDailyTokens() : refresh(user, today);
+        return row + localRemaining(user.getOauthId(), today);
+    }
+
+    public int localRemaining(String oauthId) {
+        return localRemaining(oauthId, LocalDate.now());
+    }
+
+    @Scheduled(fixedDelayString = "${app.token-lease.sweep-interval-ms:5000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        returnLeases(System.nanoTime(), false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        logger.info("Returning {} token leases before shutdown", leases.size());
+        returnLeases(System.nanoTime(), true);
+    }
+
+    /**
+     * Leases a block for {@code today}, refreshing the row first if it still belongs to an earlier day.
+     *
+     * @return tokens leased, {@code 0} if the user is missing or has none left
+     */
+    private int acquire(String oauthId, LocalDate today) {
+        User user = userCache.get(oauthId).orElse(null);
+        if (user == null) {
+            return 0;
+        }
+        if (!today.equals(user.getLastTokenRefresh())) {
+            refresh(user, today);
+        }
+
+        int block = blockSize;
+        for (int attempt = 0; attempt < LEASE_ATTEMPTS; attempt++) {
+            if (userRepository.debitDailyTokens(oauthId, block, today) > 0) {
+                addToLease(oauthId, today, block);
+                leased.increment(block);
+                // The row changed for every node; this node's balance did not, the tokens just moved into its lease
+                userCache.invalidate(oauthId);
+                logger.debug("Leased {} tokens for OAuth ID {}", block, oauthId);
+                return block;
+            }
+            int left = userRepository.findDailyTokens(oauthId, today).orElse(0);
+            if (left <= 0) {
+                return 0;
+            }
+            block = Math.min(block, left);
+        }
+        logger.debug("Gave up leasing tokens for OAuth ID {} after {} contended attempts", oauthId, LEASE_ATTEMPTS);
+        return 0;
+    }
+
+    /**
+     * @return what is left in the row for {@code today}
+     */
+    private int refresh(User user, LocalDate today) {
+        String oauthId = user.getOauthId();
+        for (int attempt = 0; attempt < REFRESH_ATTEMPTS; attempt++) {
+            User current = user;
+            int limit = planCatalog.dailyTokenLimit(current);
+            int updated = dbBulkhead.interactive(() ->
+                    userRepository.refreshDailyTokens(oauthId, current.getPlanId(), limit, today));
+            if (updated > 0) {
+                logger.info("Refreshed daily tokens for OAuth ID {} to {} tokens", oauthId, limit);
+                eventPublisher.publishEvent(new TokenBalanceChangedEvent(oauthId, limit + localRemaining(oauthId, today)));
+                return limit;
+            }
+            // Another node refreshed it, or the user changed plan, since the user was cached
+            userCache.invalidate(oauthId);
+            Optional<Integer> refreshed = dbBulkhead.interactive(() -> userRepository.findDailyTokens(oauthId, today));
+            if (refreshed.isPresent()) {
+                return refreshed.get();
+            }
+            user = dbBulkhead.interactive(() -> userRepository.findByOauthId(oauthId)).orElse(null);
+            if (user == null) {
+                return 0;
+            }
+        }
+        logger.warn("Plan of {} changed concurrently, balance not refreshed", oauthId);
+        return 0;
+    }
+
+    private boolean takeLocal(String oauthId, LocalDate today) {
+        Lease lease = leases.get(oauthId);
+        if (lease == null) {
+            return false;
+        }
+        synchronized (lease) {
+            if (lease.retired || !lease.day.equals(today) || lease.remaining == 0) {
+                return false;
+            }
+            lease.remaining--;
+            return true;
+        }
+    }
+
+    private void addToLease(String oauthId, LocalDate day, int tokens) {
+        while (true) {
+            Lease lease = leases.computeIfAbsent(oauthId, k -> new Lease(day));
+            synchronized (lease) {
+                if (lease.retired) {
+                    continue;
+                }
+                if (!lease.day.equals(day)) {
+                    // Yesterday's leftovers went with the refresh
+                    lease.retired = true;
+                    leases.remove(oauthId, lease);
+                    continue;
+                }
+                lease.remaining += tokens;
+                lease.expiresAt = System.nanoTime() + ttlNanos;
+                return;
+            }
+        }
+    }
+
+    private int localRemaining(String oauthId, LocalDate today) {
+        Lease lease = leases.get(oauthId);
+        if (lease == null) {
+            return 0;
+        }
+        synchronized (lease) {
+            return !lease.retired && lease.day.equals(today) ? lease.remaining : 0;
+        }
+    }
+
+    private void returnLeases(long now, boolean all) {
+        sweepLock.lock();
+        try {
+            LocalDate today = LocalDate.now();
+            unreturned.forEach((key, tokens) -> {
+                if (unreturned.remove(key, tokens)) {
+                    giveBack(key.oauthId(), key.day(), tokens);
+                }
+            });
+            for (Map.Entry<String, Lease> entry : leases.entrySet()) {
+                Lease lease = entry.getValue();
+                int tokens;
+                synchronized (lease) {
+                    if (!all && lease.day.equals(today) && lease.expiresAt - now > 0) {
+                        continue;
+                    }
+                    lease.retired = true;
+                    tokens = lease.remaining;
+                    lease.remaining = 0;
+                }
+                leases.remove(entry.getKey(), lease);
+                if (tokens > 0 && lease.day.equals(today)) {
+                    giveBack(entry.getKey(), lease.day, tokens);
+                }
+            }
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    private void giveBack(String oauthId, LocalDate day, int tokens) {
+        try {
+            int updated = dbBulkhead.batch(() -> userRepository.returnDailyTokens(oauthId, tokens, day));
+            if (updated > 0) {
+                returned.increment(tokens);
+                userCache.invalidate(oauthId);
+                logger.debug("Returned {} leased tokens for OAuth ID {}", tokens, oauthId);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to return {} leased tokens for OAuth ID {}, will retry: ", tokens, oauthId, e);
+            returnsFailed.increment();
+            unreturned.merge(new Unreturned(oauthId, day), tokens, Integer::sum);
+        }
+    }
+
+    private static final class Lease {
+        private final LocalDate day;
+        private int remaining;
+        private long expiresAt;
+        private boolean retired;
+
+        private Lease(LocalDate day) {
+            this.day = day;
+        }
+    }
+
+    private record Unreturned(String oauthId, LocalDate day) {
+    }
+}
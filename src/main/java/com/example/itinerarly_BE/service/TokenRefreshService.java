@@ -1,11 +1,18 @@
 package com.example.itinerarly_BE.service;
 
-import com.example.itinerarly_BE.config.TokenConfig;
 import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.repository.UserSummary;
+import com.example.itinerarly_BE.utl.DbBulkhead;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class TokenRefreshService {
@@ -14,14 +21,53 @@ public class TokenRefreshService {
     private UserRepository userRepository;
 
     @Autowired
-    private TokenConfig tokenConfig;
+    private PlanCatalog planCatalog;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private DbBulkhead dbBulkhead;
+
+    @Value("${app.token-refresh.page-size:500}")
+    private int pageSize;
+
+    /**
+     * Resets every balance not yet refreshed today to its plan's daily limit ({@link PlanCatalog}). Users are read in
+     * id order a page at a time as {@link UserSummary} values, so none is loaded into the persistence context, and each
+     * balance is reset by the conditional UPDATE the lazy refresh uses ({@link UserRepository#refreshDailyTokens}): a
+     * row that a request or another node already refreshed, and maybe consumed or leased from, is left alone. Events
+     * are published once each page is written.
+     */
     @Scheduled(cron = "0 0 0 * * *")
     public void refreshAllUserTokens() {
-        userRepository.findAll().forEach(user -> {
-            user.setDailyTokens(tokenConfig.getDailyTokenLimit());
-            user.setLastTokenRefresh(LocalDate.now());
-            userRepository.save(user);
-        });
+        LocalDate today = LocalDate.now();
+        long afterId = 0;
+        while (true) {
+            long after = afterId;
+            List<UserSummary> page = dbBulkhead.batch(() -> userRepository.findPageAfter(after, Limit.of(pageSize)));
+            Map<String, Integer> refreshed = dbBulkhead.batch(() -> refresh(page, today));
+            refreshed.forEach((oauthId, limit) ->
+                eventPublisher.publishEvent(new TokenBalanceChangedEvent(oauthId, limit)));
+            if (page.size() < pageSize) {
+                break;
+            }
+            afterId = page.get(page.size() - 1).id();
+        }
+    }
+
+    private Map<String, Integer> refresh(List<UserSummary> users, LocalDate today) {
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        for (UserSummary user : users) {
+            if (today.equals(user.lastTokenRefresh())) {
+                continue;
+            }
+            int limit = planCatalog.dailyTokenLimit(user.planId());
+            // Does nothing if the plan changed since the page was read; the user's next request refreshes instead
+            if (userRepository.refreshDailyTokens(user.oauthId(), user.planId(), limit, today) > 0) {
+                limits.put(user.oauthId(), limit);
+            }
+        }
+        return limits;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,230 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.config.TokenConfig;
+import com.example.itinerarly_BE.model.TokenUsage;
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Two-phase token accounting for long-running AI calls: {@link #reserve} takes a token out of the user's balance
+ * straight away, {@link #commit} keeps it once generation succeeds and {@link #release} gives it back when it fails.
+ * Holds that are never resolved expire after {@code app.token-reservation.ttl-seconds} and are given back as well.
+ *
+ * <p>A held token has already left {@code users.daily_tokens}, or with {@link TokenLeaseService leases} this node's
+ * lease, so {@code /consume} on any node cannot spend it a second time. Without leases a reserve costs what a
+ * {@code /consume} does, a conditional UPDATE and a read of the balance left; only with leases does it usually stay in
+ * memory. Released and expired holds go back to the row. Reservations live in memory only: holds still open at shutdown are given back, a node that dies keeps them out
+ * of circulation until the next daily refresh, and a token reserved on an earlier day is never added to a refreshed
+ * balance.
+ */
+@Service
+public class TokenReservationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenReservationService.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private TokenConfig tokenConfig;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private DbBulkhead dbBulkhead;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private QuotaService quotaService;
+
+    @Autowired
+    private TokenLeaseService tokenLeaseService;
+
+    @Autowired
+    private TokenUsageRecorder tokenUsageRecorder;
+
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+    // Held tokens whose return to the row failed, retried on the next sweep
+    private final Map<Held, Integer> unreturned = new ConcurrentHashMap<>();
+
+    /**
+     * Holds one token for the user.
+     *
+     * @return the reservation id, or {@code null} when the user has no tokens left or the rolling quota is used up
+     */
+    public String reserve(String oauthId) {
+        // A hold counts against the rolling quotas right away and is refunded if it is released or expires
+        if (!quotaService.tryConsume(oauthId)) {
+            logger.warn("Token reservation rejected for OAuth ID {} - rolling quota exhausted", oauthId);
+            return null;
+        }
+        LocalDate today = LocalDate.now();
+        boolean taken;
+        try {
+            taken = take(oauthId, today);
+        } catch (RuntimeException e) {
+            quotaService.refund(oauthId);
+            throw e;
+        }
+        if (!taken) {
+            quotaService.refund(oauthId);
+            logger.warn("Token reservation rejected for OAuth ID {} - no tokens remaining", oauthId);
+            return null;
+        }
+
+        String reservationId = UUID.randomUUID().toString();
+        Instant expiresAt = Instant.now().plusSeconds(tokenConfig.getReservationTtlSeconds());
+        reservations.put(reservationId, new Reservation(oauthId, today, expiresAt));
+        logger.info("Token reserved for OAuth ID {} (reservation: {}, expires: {})", oauthId, reservationId, expiresAt);
+        return reservationId;
+    }
+
+    /**
+     * Turns a hold into a consumed token. The token already left the balance when it was reserved.
+     *
+     * @return {@code false} if the reservation is unknown, expired or owned by another user
+     */
+    public boolean commit(String reservationId, String oauthId) {
+        Reservation reservation = claim(reservationId, oauthId);
+        if (reservation == null) {
+            return false;
+        }
+        tokenUsageRecorder.record(oauthId, TokenUsage.Source.RESERVATION, 1);
+        logger.info("Token reservation {} committed for OAuth ID {}", reservationId, oauthId);
+        return true;
+    }
+
+    /**
+     * Gives a held token back without consuming it.
+     *
+     * @return {@code false} if the reservation is unknown, expired or owned by another user
+     */
+    public boolean release(String reservationId, String oauthId) {
+        Reservation reservation = claim(reservationId, oauthId);
+        if (reservation == null) {
+            return false;
+        }
+        quotaService.refund(oauthId);
+        giveBack(oauthId, reservation.day, 1);
+        logger.info("Token reservation {} released for OAuth ID {}", reservationId, oauthId);
+        return true;
+    }
+
+    /**
+     * Tokens the user can still reserve or consume, taking the rolling quotas into account. Open holds are already
+     * out of the balance.
+     */
+    public int getAvailableTokens(String oauthId) {
+        return Math.min(tokenService.getRemainingTokens(oauthId), quotaService.remaining(oauthId));
+    }
+
+    public long getReservationTtlSeconds() {
+        return tokenConfig.getReservationTtlSeconds();
+    }
+
+    @Scheduled(fixedDelayString = "${app.token-reservation.sweep-interval-ms:5000}")
+    public void sweep() {
+        dbBulkhead.batch(() -> {
+            retryUnreturned();
+            expireReservations(Instant.now());
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Giving back {} open token reservations before shutdown", reservations.size());
+        dbBulkhead.batch(() -> {
+            retryUnreturned();
+            expireReservations(Instant.MAX);
+        });
+    }
+
+    int expireReservations(Instant now) {
+        int expired = 0;
+        for (Map.Entry<String, Reservation> entry : reservations.entrySet()) {
+            Reservation reservation = entry.getValue();
+            if (reservation.expiresAt.isBefore(now) && reservations.remove(entry.getKey(), reservation)) {
+                quotaService.refund(reservation.oauthId);
+                giveBack(reservation.oauthId, reservation.day, 1);
+                expired++;
+                logger.info("Token reservation {} for OAuth ID {} expired", entry.getKey(), reservation.oauthId);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Takes a token out of the user's balance for {@code today}, refreshing the balance first on a new day.
+     */
+    private boolean take(String oauthId, LocalDate today) {
+        if (tokenLeaseService.isEnabled()) {
+            // The row may be empty while this node's lease still holds the user's tokens
+            return tokenService.takeLeasedToken(oauthId);
+        }
+        // No balance read first: the conditional debit is the check, and the row is only read when it fails
+        Optional<Integer> remaining = tokenService.debitToken(oauthId, today);
+        // The remaining count publishes the change and drops the cached user on every node
+        remaining.ifPresent(tokens -> eventPublisher.publishEvent(new TokenBalanceChangedEvent(oauthId, tokens)));
+        return remaining.isPresent();
+    }
+
+    private void giveBack(String oauthId, LocalDate day, int tokens) {
+        try {
+            Optional<Integer> remaining = dbBulkhead.interactive(() ->
+                    userRepository.returnDailyTokens(oauthId, tokens, day) > 0
+                            ? userRepository.findDailyTokens(oauthId, day)
+                            : Optional.<Integer>empty());
+            remaining.ifPresent(balance -> eventPublisher.publishEvent(new TokenBalanceChangedEvent(oauthId, balance)));
+            if (remaining.isEmpty()) {
+                logger.debug("Not giving back {} held tokens for OAuth ID {} - reserved before the daily refresh",
+                    tokens, oauthId);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to give back {} held tokens for OAuth ID {}, will retry: ", tokens, oauthId, e);
+            unreturned.merge(new Held(oauthId, day), tokens, Integer::sum);
+        }
+    }
+
+    private void retryUnreturned() {
+        unreturned.forEach((held, tokens) -> {
+            if (unreturned.remove(held, tokens)) {
+                giveBack(held.oauthId(), held.day(), tokens);
+            }
+        });
+    }
+
+    private Reservation claim(String reservationId, String oauthId) {
+        Reservation reservation = reservations.get(reservationId);
+        if (reservation == null || !reservation.oauthId.equals(oauthId)) {
+            logger.warn("Token reservation {} not found for OAuth ID {}", reservationId, oauthId);
+            return null;
+        }
+        return reservations.remove(reservationId, reservation) ? reservation : null;
+    }
+
+    private record Reservation(String oauthId, LocalDate day, Instant expiresAt) {
+    }
+
+    private record Held(String oauthId, LocalDate day) {
+    }
+}
@@ -1,97 +1,268 @@
 package com.example.itinerarly_BE.service;
 
-import com.example.itinerarly_BE.config.TokenConfig;
+import com.example.itinerarly_BE.model.TokenUsage;
 import com.example.itinerarly_BE.model.User;
 import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.DbBulkheadFullException;
+import com.example.itinerarly_BE.utl.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import java.time.LocalDate;
+import java.util.Optional;
 
 @Service
 public class TokenService {
 
     private static final Logger logger = LoggerFactory.getLogger(TokenService.class);
 
+    private static final int PLAN_CHANGE_ATTEMPTS = 3;
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
-    private TokenConfig tokenConfig;
+    private PlanCatalog planCatalog;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private DbBulkhead dbBulkhead;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private QuotaService quotaService;
+
+    @Autowired
+    private TokenLeaseService tokenLeaseService;
+
+    @Autowired
+    private TokenUsageRecorder tokenUsageRecorder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
+    private SingleFlight<String, Integer> remainingTokenReads;
 
+    @PostConstruct
+    void init() {
+        remainingTokenReads = new SingleFlight<>("remaining-tokens", meterRegistry);
+    }
+
+    /**
+     * With {@link TokenLeaseService leases} enabled the token comes from this node's lease and the database is only
+     * written when a new block is leased.
+     */
     public boolean consumeToken(String oauthId) {
-        try {
-            logger.info("Attempting to consume token for OAuth ID: {}", oauthId);
+        if (tokenLeaseService.isEnabled()) {
+            return consumeLeasedToken(oauthId);
+        }
+        return dbBulkhead.interactive(() -> doConsumeToken(oauthId));
+    }
+
+    /**
+     * Concurrent calls for the same user (several tabs loading at once) share one read and at most one daily refresh.
+     * Waiting callers do not hold a {@link DbBulkhead} permit.
+     */
+    public int getRemainingTokens(String oauthId) {
+        return remainingTokenReads.execute(oauthId, () -> dbBulkhead.interactive(() -> doGetRemainingTokens(oauthId)));
+    }
+
+    @EventListener
+    public void onBalanceChanged(TokenBalanceChangedEvent event) {
+        // Reads starting after a change must not be handed the result of one that started before it
+        remainingTokenReads.forget(event.oauthId());
+    }
+
+    /**
+     * Moves the user to another plan ({@code null} for the default one). A balance already refreshed today changes by
+     * the difference between the two daily limits, so an upgrade applies at once instead of at the next refresh. The
+     * plan and balance change in one statement, so tokens consumed meanwhile stay consumed.
+     *
+     * @return the updated user, {@code null} if there is no such user
+     * @throws IllegalArgumentException if {@code planId} is not in the plan catalog
+     */
+    public User changePlan(String oauthId, String planId) {
+        if (planId != null && planCatalog.find(planId).isEmpty()) {
+            throw new IllegalArgumentException("Unknown plan: " + planId);
+        }
+        User updated = dbBulkhead.interactive(() -> {
+            for (int attempt = 0; attempt < PLAN_CHANGE_ATTEMPTS; attempt++) {
+                User user = userRepository.findByOauthId(oauthId).orElse(null);
+                if (user == null) {
+                    return null;
+                }
+                int delta = planCatalog.dailyTokenLimit(planId) - planCatalog.dailyTokenLimit(user);
+                // Fails only if another plan change got in first, then the difference is taken again from its plan
+                if (userRepository.changePlan(oauthId, user.getPlanId(), planId, delta, LocalDate.now()) > 0) {
+                    return userRepository.findByOauthId(oauthId).orElse(null);
+                }
+            }
+            throw new IllegalStateException("Plan of " + oauthId + " changed concurrently, try again");
+        });
+        if (updated == null) {
+            logger.warn("Cannot change plan, user not found with OAuth ID: {}", oauthId);
+            return null;
+        }
+        logger.info("User {} moved to plan {} with {} tokens left today", updated.getEmail(),
+            planId != null ? planId : planCatalog.getDefaultPlanId(), updated.getDailyTokens());
+        eventPublisher.publishEvent(new TokenBalanceChangedEvent(oauthId, updated.getDailyTokens()));
+        return updated;
+    }
+
+    /**
+     * Takes one token from this node's {@link TokenLeaseService lease} for a reservation, without recording usage.
+     * Only for use with leases enabled.
+     *
+     * @return {@code false} when neither the lease nor the row has a token left
+     */
+    public boolean takeLeasedToken(String oauthId) {
+        if (userCache.isKnownAbsent(oauthId) || !tokenLeaseService.tryConsume(oauthId)) {
+            return false;
+        }
+        publishLeasedBalance(oauthId);
+        return true;
+    }
 
+    public User getUserByOauthId(String oauthId) {
+        return userCache.get(oauthId).orElse(null);
+    }
+
+    /**
+     * Takes one token out of the user's row for {@code today} in a conditional UPDATE, refreshing a balance left over
+     * from an earlier day first. Records no usage; the caller does once the token is kept.
+     *
+     * @return the balance left, empty if the user is missing or has no tokens left
+     */
+    public Optional<Integer> debitToken(String oauthId, LocalDate today) {
+        return dbBulkhead.interactive(() -> {
+            if (userRepository.debitDailyTokens(oauthId, 1, today) > 0) {
+                return userRepository.findDailyTokens(oauthId, today);
+            }
+            // Missing, out of tokens, or not refreshed yet today
+            long loadStart = System.nanoTime();
             User user = userRepository.findByOauthId(oauthId).orElse(null);
             if (user == null) {
                 logger.error("User not found with OAuth ID: {}", oauthId);
-                return false;
+                userCache.markAbsent(oauthId, loadStart);
+                return Optional.empty();
             }
+            int balance = today.equals(user.getLastTokenRefresh()) ? user.getDailyTokens() : refreshBalance(user, today);
+            // Refreshed here, or by another request since the first debit
+            if (balance <= 0 || userRepository.debitDailyTokens(oauthId, 1, today) == 0) {
+                return Optional.empty();
+            }
+            return userRepository.findDailyTokens(oauthId, today);
+        });
+    }
 
-            logger.info("Found user: {} (ID: {}) with {} tokens, last refresh: {}",
-                user.getEmail(), user.getId(), user.getDailyTokens(), user.getLastTokenRefresh());
-
-            LocalDate today = LocalDate.now();
-            LocalDate lastRefresh = user.getLastTokenRefresh();
-
-            // Check if tokens need to be refreshed (null check added)
-            if (lastRefresh == null || !lastRefresh.equals(today)) {
-                logger.info("Refreshing daily tokens for user {} from {} to {} tokens",
-                    user.getEmail(), user.getDailyTokens(), tokenConfig.getDailyTokenLimit());
+    private boolean doConsumeToken(String oauthId) {
+        try {
+            logger.info("Attempting to consume token for OAuth ID: {}", oauthId);
 
-                user.setDailyTokens(tokenConfig.getDailyTokenLimit());
-                user.setLastTokenRefresh(today);
-                userRepository.save(user);
+            if (userCache.isKnownAbsent(oauthId)) {
+                logger.error("User not found with OAuth ID: {} (cached)", oauthId);
+                return false;
+            }
 
-                logger.info("Tokens refreshed successfully for user {}", user.getEmail());
+            if (!quotaService.tryConsume(oauthId)) {
+                logger.warn("Token consumption refused for OAuth ID {} - rolling quota exhausted", oauthId);
+                return false;
             }
+            Optional<Integer> remaining;
+            try {
+                remaining = debitToken(oauthId, LocalDate.now());
+            } catch (RuntimeException e) {
+                quotaService.refund(oauthId);
+                throw e;
+            }
+            if (remaining.isEmpty()) {
+                quotaService.refund(oauthId);
+                logger.warn("Token consumption failed for OAuth ID {} - no tokens remaining", oauthId);
+                return false;
+            }
+            tokenUsageRecorder.record(oauthId, TokenUsage.Source.CONSUME, 1);
+            eventPublisher.publishEvent(new TokenBalanceChangedEvent(oauthId, remaining.get()));
 
-            // Check if user has tokens available
-            if (user.getDailyTokens() > 0) {
-                int previousTokens = user.getDailyTokens();
-                user.setDailyTokens(user.getDailyTokens() - 1);
-                userRepository.save(user);
+            logger.info("Token consumed successfully for OAuth ID {}. Tokens left: {}", oauthId, remaining.get());
+            return true;
+        } catch (Exception e) {
+            logger.error("Unexpected error during token consumption for OAuth ID {}: ", oauthId, e);
+            return false;
+        }
+    }
 
-                logger.info("Token consumed successfully for user {}. Tokens: {} -> {}",
-                    user.getEmail(), previousTokens, user.getDailyTokens());
-                return true;
-            } else {
-                logger.warn("Token consumption failed for user {} - no tokens remaining (current: {})",
-                    user.getEmail(), user.getDailyTokens());
+    private boolean consumeLeasedToken(String oauthId) {
+        try {
+            if (userCache.isKnownAbsent(oauthId)) {
+                logger.error("User not found with OAuth ID: {} (cached)", oauthId);
                 return false;
             }
+            if (!tokenLeaseService.tryConsume(oauthId)) {
+                logger.warn("Token consumption failed for OAuth ID {} - no tokens remaining", oauthId);
+                return false;
+            }
+            if (!quotaService.tryConsume(oauthId)) {
+                tokenLeaseService.putBack(oauthId);
+                logger.warn("Token consumption refused for OAuth ID {} - rolling quota exhausted", oauthId);
+                return false;
+            }
+            tokenUsageRecorder.record(oauthId, TokenUsage.Source.CONSUME, 1);
+            int remaining = publishLeasedBalance(oauthId);
+
+            logger.info("Token consumed from lease for OAuth ID {}. Tokens left: {}", oauthId, remaining);
+            return true;
+        } catch (DbBulkheadFullException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Unexpected error during token consumption for OAuth ID {}: ", oauthId, e);
             return false;
         }
     }
 
-    public int getRemainingTokens(String oauthId) {
+    private int publishLeasedBalance(String oauthId) {
+        // Not through the coalesced read: one that started before the token was taken would report it as still there
+        int remaining = dbBulkhead.interactive(() -> doGetRemainingTokens(oauthId));
+        eventPublisher.publishEvent(new TokenBalanceChangedEvent(oauthId, remaining, false));
+        return remaining;
+    }
+
+    private int doGetRemainingTokens(String oauthId) {
         try {
             logger.debug("Getting remaining tokens for OAuth ID: {}", oauthId);
 
-            User user = userRepository.findByOauthId(oauthId).orElse(null);
+            User user = userCache.get(oauthId).orElse(null);
             if (user == null) {
                 logger.error("User not found with OAuth ID: {} when getting remaining tokens", oauthId);
                 return 0;
             }
 
-            LocalDate today = LocalDate.now();
-            LocalDate lastRefresh = user.getLastTokenRefresh();
+            if (tokenLeaseService.isEnabled()) {
+                return tokenLeaseService.balance(user);
+            }
 
-            // Check if tokens need to be refreshed (null check added)
-            if (lastRefresh == null || !lastRefresh.equals(today)) {
-                logger.info("Auto-refreshing daily tokens for user {} from {} to {} tokens",
-                    user.getEmail(), user.getDailyTokens(), tokenConfig.getDailyTokenLimit());
+            LocalDate today = LocalDate.now();
 
-                user.setDailyTokens(tokenConfig.getDailyTokenLimit());
-                user.setLastTokenRefresh(today);
-                userRepository.save(user);
+            // The cached user is shared between requests; a refresh works on the current row instead
+            if (!today.equals(user.getLastTokenRefresh())) {
+                user = userRepository.findByOauthId(oauthId).orElse(null);
+                if (user == null) {
+                    logger.error("User not found with OAuth ID: {} when refreshing tokens", oauthId);
+                    return 0;
+                }
+            }
 
-                logger.info("Auto-refresh completed for user {}", user.getEmail());
+            if (!today.equals(user.getLastTokenRefresh())) {
+                return refreshBalance(user, today);
             }
 
             logger.debug("Returning {} remaining tokens for user {}", user.getDailyTokens(), user.getEmail());
@@ -103,7 +274,33 @@ public class TokenService {
         }
     }
 
-    public User getUserByOauthId(String oauthId) {
-        return userRepository.findByOauthId(oauthId).orElse(null);
+    /**
+     * Resets a balance left over from an earlier day to the plan's limit in a conditional UPDATE, which changes
+     * nothing if another request or node refreshed the row first. If the user moved to another plan since it was
+     * read, the row is read again and the new plan's limit applied. The loaded user is not modified.
+     *
+     * @return the balance for {@code today}
+     */
+    private int refreshBalance(User user, LocalDate today) {
+        String oauthId = user.getOauthId();
+        for (int attempt = 0; attempt < PLAN_CHANGE_ATTEMPTS; attempt++) {
+            int dailyTokenLimit = planCatalog.dailyTokenLimit(user);
+            if (userRepository.refreshDailyTokens(oauthId, user.getPlanId(), dailyTokenLimit, today) > 0) {
+                logger.info("Refreshed daily tokens for user {} from {} to {} tokens",
+                    user.getEmail(), user.getDailyTokens(), dailyTokenLimit);
+                eventPublisher.publishEvent(new TokenBalanceChangedEvent(oauthId, dailyTokenLimit));
+                return dailyTokenLimit;
+            }
+            Optional<Integer> refreshed = userRepository.findDailyTokens(oauthId, today);
+            if (refreshed.isPresent()) {
+                return refreshed.get();
+            }
+            user = userRepository.findByOauthId(oauthId).orElse(null);
+            if (user == null) {
+                return 0;
+            }
+        }
+        logger.warn("Plan of {} changed concurrently, balance not refreshed", oauthId);
+        return 0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,226 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.model.TokenUsage;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends every token use to {@code token_usage} without a write on the request path: {@link #record} puts the use on
+ * a bounded queue and one background writer drains it in JDBC batches of up to {@code app.token-usage.batch-size}
+ * rows, which {@code rewriteBatchedStatements} sends to MySQL as multi-row inserts. The writer goes through
+ * {@link JdbcTemplate} because Hibernate does not batch inserts into {@code IDENTITY} tables. Each batch is added to
+ * the {@link UsageRollupService rollups} in the same transaction.
+ *
+ * <p>When the queue ({@code app.token-usage.queue-capacity}) is full, {@code app.token-usage.overflow=drop} (the
+ * default) drops the use and counts it in {@code token.usage.dropped}; {@code block} waits up to
+ * {@code app.token-usage.block-timeout-ms} for room first. Either way the balance has already changed, only the
+ * ledger row is lost. Batches that fail are retried a few times, then dropped. On shutdown the writer drains what
+ * is queued for up to {@code app.token-usage.shutdown-timeout-ms}.
+ */
+@Service
+public class TokenUsageRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenUsageRecorder.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO token_usage (oauth_id, source, tokens, used_at) VALUES (?, ?, ?, ?)";
+    private static final long POLL_MILLIS = 100;
+    private static final int WRITE_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UsageRollupService usageRollupService;
+    private final DbBulkhead dbBulkhead;
+    private final TransactionOperations transactionOperations;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Overflow overflow;
+    private final long blockTimeoutMillis;
+    private final long shutdownTimeoutMillis;
+
+    private final BlockingQueue<Usage> queue;
+    private volatile boolean running;
+    private Thread writer;
+
+    private final Counter recorded;
+    private final Counter dropped;
+    private final Counter written;
+    private final Counter failed;
+    private final DistributionSummary batchRows;
+    private final Timer batchWrites;
+
+    @Autowired
+    public TokenUsageRecorder(JdbcTemplate jdbcTemplate,
+                              UsageRollupService usageRollupService,
+                              DbBulkhead dbBulkhead,
+                              TransactionOperations transactionOperations,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.token-usage.enabled:true}") boolean enabled,
+                              @Value("${app.token-usage.queue-capacity:10000}") int queueCapacity,
+                              @Value("${app.token-usage.batch-size:500}") int batchSize,
+                              @Value("${app.token-usage.overflow:drop}") String overflow,
+                              @Value("${app.token-usage.block-timeout-ms:50}") long blockTimeoutMillis,
+                              @Value("${app.token-usage.shutdown-timeout-ms:10000}") long shutdownTimeoutMillis) {
+        if (queueCapacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("app.token-usage.queue-capacity and batch-size must be at least 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.usageRollupService = usageRollupService;
+        this.dbBulkhead = dbBulkhead;
+        this.transactionOperations = transactionOperations;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.overflow = Overflow.valueOf(overflow.trim().toUpperCase(Locale.ROOT));
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.recorded = Counter.builder("token.usage.recorded").register(meterRegistry);
+        this.dropped = Counter.builder("token.usage.dropped")
+                .description("Token uses not written to the ledger because the queue was full").register(meterRegistry);
+        this.written = Counter.builder("token.usage.written").register(meterRegistry);
+        this.failed = Counter.builder("token.usage.failed")
+                .description("Token uses not written to the ledger because their batch kept failing").register(meterRegistry);
+        this.batchRows = DistributionSummary.builder("token.usage.batch.rows").register(meterRegistry);
+        this.batchWrites = Timer.builder("token.usage.batch").register(meterRegistry);
+        Gauge.builder("token.usage.pending", queue, BlockingQueue::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = Thread.ofVirtual().name("token-usage-writer").start(this::drain);
+    }
+
+    /**
+     * Queues one use for the ledger. Never blocks with the default overflow policy.
+     */
+    public void record(String oauthId, TokenUsage.Source source, int tokens) {
+        if (!enabled) {
+            return;
+        }
+        Usage usage = new Usage(oauthId, source, tokens, Instant.now());
+        boolean queued;
+        if (overflow == Overflow.BLOCK) {
+            try {
+                queued = queue.offer(usage, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        } else {
+            queued = queue.offer(usage);
+        }
+        if (queued) {
+            recorded.increment();
+        } else {
+            dropped.increment();
+            // Debug only: under overload a line per dropped use would cost more than the insert it replaces
+            logger.debug("Token usage queue full ({} pending) - dropping ledger entry for OAuth ID {}",
+                queue.size(), oauthId);
+        }
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(shutdownTimeoutMillis);
+        if (writer.isAlive()) {
+            writer.interrupt();
+            logger.warn("Token usage writer did not finish, {} ledger entries lost", queue.size());
+        }
+    }
+
+    private void drain() {
+        List<Usage> batch = new ArrayList<>(batchSize);
+        // Keeps going after shutdown starts until the queue is empty
+        while (running || !queue.isEmpty()) {
+            try {
+                Usage first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Usage> batch) throws InterruptedException {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (Usage usage : batch) {
+            rows.add(new Object[]{usage.oauthId(), usage.source().name(), usage.tokens(), Timestamp.from(usage.usedAt())});
+        }
+        for (int attempt = 1; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                dbBulkhead.batch(() -> transactionOperations.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+                    usageRollupService.apply(batch);
+                }));
+                batchWrites.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                batchRows.record(rows.size());
+                written.increment(rows.size());
+                return;
+            } catch (Exception e) {
+                if (attempt == WRITE_ATTEMPTS) {
+                    failed.increment(rows.size());
+                    logger.error("Failed to write {} token usage entries after {} attempts, dropping them: ",
+                        rows.size(), WRITE_ATTEMPTS, e);
+                    return;
+                }
+                logger.warn("Failed to write {} token usage entries, retrying: {}", rows.size(), e.getMessage());
+                Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+            }
+        }
+    }
+
+    /**
+     * What {@link #record} does when the queue is full.
+     */
+    public enum Overflow {
+        DROP,
+        BLOCK
+    }
+
+    record Usage(String oauthId, TokenUsage.Source source, int tokens, Instant usedAt) {
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.model.ProviderUsageRollup;
+import com.example.itinerarly_BE.model.UsagePeriod;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.model.UserUsageRollup;
+import com.example.itinerarly_BE.repository.ProviderUsageRollupRepository;
+import com.example.itinerarly_BE.repository.UserUsageRollupRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Daily and weekly token totals per user and per OAuth provider, in {@code usage_rollup_users} and
+ * {@code usage_rollup_providers}, so usage reports read a handful of precomputed rows instead of scanning
+ * {@code token_usage}.
+ *
+ * <p>{@link TokenUsageRecorder} calls {@link #apply} with each batch it writes, in the same transaction, so the
+ * rollups always match the ledger. A batch becomes one {@code UPDATE ... SET tokens = tokens + ?} per touched row,
+ * sent as a JDBC batch, plus inserts for rows that do not exist yet; a user's first row in a period also adds one
+ * to their provider's {@code active_users}. Keys are written in a fixed order so concurrent writers on several
+ * nodes lock rows in the same order. Days follow the server's time zone, like the daily token refresh.
+ */
+@Service
+public class UsageRollupService {
+
+    static final String UNKNOWN_PROVIDER = "unknown";
+
+    private static final String UPDATE_USER_SQL = "UPDATE usage_rollup_users SET tokens = tokens + ? "
+            + "WHERE period = ? AND period_start = ? AND oauth_id = ?";
+    private static final String INSERT_USER_SQL = "INSERT INTO usage_rollup_users "
+            + "(period, period_start, oauth_id, provider, tokens) VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE_PROVIDER_SQL = "UPDATE usage_rollup_providers "
+            + "SET tokens = tokens + ?, active_users = active_users + ? "
+            + "WHERE period = ? AND period_start = ? AND provider = ?";
+    private static final String INSERT_PROVIDER_SQL = "INSERT INTO usage_rollup_providers "
+            + "(period, period_start, provider, tokens, active_users) VALUES (?, ?, ?, ?, ?)";
+
+    private static final Comparator<UserKey> USER_ORDER = Comparator.comparing(UserKey::period)
+            .thenComparing(UserKey::start).thenComparing(UserKey::oauthId);
+    private static final Comparator<ProviderKey> PROVIDER_ORDER = Comparator.comparing(ProviderKey::period)
+            .thenComparing(ProviderKey::start).thenComparing(ProviderKey::provider);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserCache userCache;
+    private final UserUsageRollupRepository userRollupRepository;
+    private final ProviderUsageRollupRepository providerRollupRepository;
+    private final DbBulkhead dbBulkhead;
+    private final ZoneId zone;
+
+    private final Counter rowsUpdated;
+    private final Counter rowsInserted;
+
+    @Autowired
+    public UsageRollupService(JdbcTemplate jdbcTemplate,
+                              UserCache userCache,
+                              UserUsageRollupRepository userRollupRepository,
+                              ProviderUsageRollupRepository providerRollupRepository,
+                              DbBulkhead dbBulkhead,
+                              MeterRegistry meterRegistry) {
+        this(jdbcTemplate, userCache, userRollupRepository, providerRollupRepository, dbBulkhead, meterRegistry,
+                ZoneId.systemDefault());
+    }
+
+    UsageRollupService(JdbcTemplate jdbcTemplate, UserCache userCache, UserUsageRollupRepository userRollupRepository,
+                       ProviderUsageRollupRepository providerRollupRepository, DbBulkhead dbBulkhead,
+                       MeterRegistry meterRegistry, ZoneId zone) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userCache = userCache;
+        this.userRollupRepository = userRollupRepository;
+        this.providerRollupRepository = providerRollupRepository;
+        this.dbBulkhead = dbBulkhead;
+        this.zone = zone;
+
+        this.rowsUpdated = Counter.builder("usage.rollups.rows").tag("action", "updated").register(meterRegistry);
+        this.rowsInserted = Counter.builder("usage.rollups.rows").tag("action", "inserted").register(meterRegistry);
+    }
+
+    /**
+     * Adds a batch of usage to the rollups. Runs inside the ledger writer's transaction; two nodes inserting the same
+     * new row make one of them fail, and the writer retries its batch, which then finds the row.
+     */
+    void apply(List<TokenUsageRecorder.Usage> batch) {
+        Map<String, String> providers = new HashMap<>();
+        Map<UserKey, Long> userTokens = new TreeMap<>(USER_ORDER);
+        for (TokenUsageRecorder.Usage usage : batch) {
+            String provider = providers.computeIfAbsent(usage.oauthId(), this::provider);
+            LocalDate day = LocalDate.ofInstant(usage.usedAt(), zone);
+            for (UsagePeriod period : UsagePeriod.values()) {
+                userTokens.merge(new UserKey(period, period.start(day), usage.oauthId(), provider),
+                        (long) usage.tokens(), Long::sum);
+            }
+        }
+
+        Map<ProviderKey, long[]> providerTotals = new TreeMap<>(PROVIDER_ORDER);
+        for (UserKey key : addToUsers(userTokens)) {
+            // First usage of this user in the period
+            providerTotals.computeIfAbsent(key.providerKey(), k -> new long[2])[1]++;
+        }
+        userTokens.forEach((key, tokens) ->
+                providerTotals.computeIfAbsent(key.providerKey(), k -> new long[2])[0] += tokens);
+        addToProviders(providerTotals);
+    }
+
+    public List<ProviderUsageRollup> providers(UsagePeriod period, LocalDate from, LocalDate to) {
+        return dbBulkhead.interactive(() -> providerRollupRepository
+                .findByPeriodAndPeriodStartBetweenOrderByPeriodStartAscProviderAsc(period, period.start(from), to));
+    }
+
+    public List<UserUsageRollup> user(String oauthId, UsagePeriod period, LocalDate from, LocalDate to) {
+        return dbBulkhead.interactive(() -> userRollupRepository
+                .findByOauthIdAndPeriodAndPeriodStartBetweenOrderByPeriodStart(oauthId, period, period.start(from), to));
+    }
+
+    /**
+     * The heaviest users of the period {@code day} falls in.
+     */
+    public List<UserUsageRollup> topUsers(UsagePeriod period, LocalDate day, int limit) {
+        return dbBulkhead.interactive(() -> userRollupRepository
+                .findByPeriodAndPeriodStartOrderByTokensDesc(period, period.start(day), PageRequest.of(0, limit)));
+    }
+
+    /**
+     * @return the keys that had no row yet
+     */
+    private List<UserKey> addToUsers(Map<UserKey, Long> userTokens) {
+        List<UserKey> keys = new ArrayList<>(userTokens.keySet());
+        List<Object[]> updates = new ArrayList<>(keys.size());
+        keys.forEach(key -> updates.add(new Object[]{
+                userTokens.get(key), key.period().name(), Date.valueOf(key.start()), key.oauthId()}));
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_USER_SQL, updates);
+
+        List<UserKey> missing = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (updated[i] == 0) {
+                UserKey key = keys.get(i);
+                missing.add(key);
+                inserts.add(new Object[]{
+                        key.period().name(), Date.valueOf(key.start()), key.oauthId(), key.provider(), userTokens.get(key)});
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_USER_SQL, inserts);
+        }
+        rowsUpdated.increment(keys.size() - missing.size());
+        rowsInserted.increment(missing.size());
+        return missing;
+    }
+
+    private void addToProviders(Map<ProviderKey, long[]> providerTotals) {
+        List<ProviderKey> keys = new ArrayList<>(providerTotals.keySet());
+        List<Object[]> updates = new ArrayList<>(keys.size());
+        keys.forEach(key -> {
+            long[] totals = providerTotals.get(key);
+            updates.add(new Object[]{totals[0], totals[1], key.period().name(), Date.valueOf(key.start()), key.provider()});
+        });
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_PROVIDER_SQL, updates);
+
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (updated[i] == 0) {
+                ProviderKey key = keys.get(i);
+                long[] totals = providerTotals.get(key);
+                inserts.add(new Object[]{key.period().name(), Date.valueOf(key.start()), key.provider(), totals[0], totals[1]});
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_PROVIDER_SQL, inserts);
+        }
+        rowsUpdated.increment(keys.size() - inserts.size());
+        rowsInserted.increment(inserts.size());
+    }
+
+    private String provider(String oauthId) {
+        String provider = userCache.get(oauthId).map(User::getProvider).orElse(null);
+        return provider != null ? provider : UNKNOWN_PROVIDER;
+    }
+
+    private record UserKey(UsagePeriod period, LocalDate start, String oauthId, String provider) {
+
+        ProviderKey providerKey() {
+            return new ProviderKey(period, start, provider);
+        }
+    }
+
+    private record ProviderKey(UsagePeriod period, LocalDate start, String provider) {
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.InvalidationBus;
+import com.example.itinerarly_BE.utl.SingleFlight;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Users by OAuth ID for the read paths: balance lookups in {@link TokenService} and the profile endpoint.
+ *
+ * <p>Two tiers, both per node. L1 is an in-process map checked before anything else, so a hit costs neither a
+ * {@link DbBulkhead} permit nor a pooled connection. A miss falls through to {@link UserRepository#findReadOnlyByOauthId},
+ * whose Hibernate second-level cache is L2, and then to the database; concurrent misses for the same user share one
+ * load through a {@link SingleFlight}. A change on one node is broadcast over the
+ * {@link InvalidationBus}; the other nodes drop the user from L2, L1 and the {@link ResourceVersionCache} tags.
+ * L1 entries expire after {@code app.cache.users.ttl-seconds}, which bounds staleness if an invalidation is lost.
+ *
+ * <p>Cached users are shared between requests and must not be modified; read-modify-write goes through
+ * {@link UserRepository#findByOauthId}. A load that started before an invalidation of the same user, or that ends
+ * within {@code app.cache.users.settle-seconds} after one (a lagging replica may still return the old row), is
+ * returned but not cached.
+ *
+ * <p>OAuth IDs that were not found (stale sessions, users removed by the cleanup job) are remembered in a separate
+ * bounded set for {@code app.cache.users.absent-ttl-seconds}, so repeated lookups skip the database. The set holds
+ * exact keys rather than a Bloom filter: a false positive would turn a real user away, a missed key only costs a
+ * query. Absence follows the same rules as a cached user - a racing load is not remembered, and {@link #invalidate},
+ * which the OAuth success handler calls after inserting a new user, drops it on every node.
+ */
+@Service
+public class UserCache {
+
+    public static final String CACHE_NAME = "users";
+    public static final String ABSENT_CACHE_NAME = "users.absent";
+
+    private final UserRepository userRepository;
+    private final DbBulkhead dbBulkhead;
+    private final InvalidationBus invalidationBus;
+    private final ResourceVersionCache resourceVersionCache;
+    private final int maxEntries;
+    private final long settleNanos;
+
+    private final Cache<String, User> users;
+    private final Cache<String, Boolean> absent;
+    private final SingleFlight<String, Optional<User>> loads;
+    private final Map<String, Long> invalidatedAt = new ConcurrentHashMap<>();
+    private volatile long invalidationsClearedAt = System.nanoTime();
+
+    private final Counter published;
+    private final Counter received;
+    private final Timer lag;
+
+    @Autowired
+    public UserCache(UserRepository userRepository,
+                     DbBulkhead dbBulkhead,
+                     InvalidationBus invalidationBus,
+                     ResourceVersionCache resourceVersionCache,
+                     MeterRegistry meterRegistry,
+                     @Value("${app.cache.users.max-entries:10000}") int maxEntries,
+                     @Value("${app.cache.users.ttl-seconds:30}") long ttlSeconds,
+                     @Value("${app.cache.users.settle-seconds:0}") long settleSeconds,
+                     @Value("${app.cache.users.absent-max-entries:10000}") int absentMaxEntries,
+                     @Value("${app.cache.users.absent-ttl-seconds:300}") long absentTtlSeconds) {
+        this.userRepository = userRepository;
+        this.dbBulkhead = dbBulkhead;
+        this.invalidationBus = invalidationBus;
+        this.resourceVersionCache = resourceVersionCache;
+        this.maxEntries = maxEntries;
+        this.settleNanos = TimeUnit.SECONDS.toNanos(settleSeconds);
+
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, CACHE_NAME);
+        this.absent = Caffeine.newBuilder()
+                .maximumSize(absentMaxEntries)
+                .expireAfterWrite(Duration.ofSeconds(absentTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, absent, ABSENT_CACHE_NAME);
+        this.loads = new SingleFlight<>(CACHE_NAME, meterRegistry);
+        this.published = Counter.builder("cache.invalidation.published").tag("cache", CACHE_NAME).register(meterRegistry);
+        this.received = Counter.builder("cache.invalidation.received").tag("cache", CACHE_NAME).register(meterRegistry);
+        this.lag = Timer.builder("cache.invalidation.lag").tag("cache", CACHE_NAME)
+                .description("Time from an invalidation being published on one node to it being applied on another")
+                .register(meterRegistry);
+
+        invalidationBus.subscribe(this::onInvalidation);
+    }
+
+    public Optional<User> get(String oauthId) {
+        User cached = users.getIfPresent(oauthId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        if (isKnownAbsent(oauthId)) {
+            return Optional.empty();
+        }
+        return loads.execute(oauthId, () -> load(oauthId));
+    }
+
+    /**
+     * Whether a recent lookup found no user with this OAuth ID. Never true for a user that exists on the primary,
+     * short of a creation that has not reached this node's invalidations yet.
+     */
+    public boolean isKnownAbsent(String oauthId) {
+        return absent.getIfPresent(oauthId) != null;
+    }
+
+    /**
+     * Records that a lookup starting at {@code loadStart} ({@link System#nanoTime()}) did not find the user. Ignored
+     * if the user was invalidated since, e.g. created while the lookup ran.
+     */
+    void markAbsent(String oauthId, long loadStart) {
+        absent.put(oauthId, Boolean.TRUE);
+        if (!cacheable(oauthId, loadStart)) {
+            absent.invalidate(oauthId);
+        }
+    }
+
+    /**
+     * Drops users that were deleted in a transaction started at {@code deleteStart} ({@link System#nanoTime()}) here
+     * and on every other node, and remembers them as absent here unless they were created again in the meantime.
+     */
+    public void deleted(Collection<String> oauthIds, long deleteStart) {
+        for (String oauthId : oauthIds) {
+            // Not evict(): marking the invalidation would make the absence below uncacheable
+            users.invalidate(oauthId);
+            loads.forget(oauthId);
+            invalidationBus.publish(CACHE_NAME, oauthId);
+            published.increment();
+            markAbsent(oauthId, deleteStart);
+        }
+    }
+
+    /**
+     * Drops the user here and on every other node. Call after the change is committed.
+     */
+    public void invalidate(String oauthId) {
+        evict(oauthId);
+        invalidationBus.publish(CACHE_NAME, oauthId);
+        published.increment();
+    }
+
+    @EventListener
+    public void onBalanceChanged(TokenBalanceChangedEvent event) {
+        if (event.rowChanged()) {
+            invalidate(event.oauthId());
+        }
+    }
+
+    public long size() {
+        return users.estimatedSize();
+    }
+
+    public long absentSize() {
+        return absent.estimatedSize();
+    }
+
+    void onInvalidation(InvalidationBus.Invalidation invalidation) {
+        if (!CACHE_NAME.equals(invalidation.cache())) {
+            return;
+        }
+        received.increment();
+        Duration delay = Duration.between(invalidation.publishedAt(), Instant.now());
+        lag.record(delay.isNegative() ? Duration.ZERO : delay);
+
+        String oauthId = invalidation.key();
+        // L2 first: a load that still reads the old L2 entry started before L1 is marked below and is not cached
+        userRepository.evictCached(oauthId);
+        evict(oauthId);
+        resourceVersionCache.evict(oauthId);
+    }
+
+    private Optional<User> load(String oauthId) {
+        long loadStart = System.nanoTime();
+        Optional<User> loaded = dbBulkhead.interactive(() -> userRepository.findReadOnlyByOauthId(oauthId));
+        loaded.ifPresentOrElse(user -> {
+            users.put(oauthId, user);
+            // Checked after the put: an invalidation marked before this point is seen here, one marked after it
+            // removes the entry itself
+            if (!cacheable(oauthId, loadStart)) {
+                users.asMap().remove(oauthId, user);
+            }
+        }, () -> markAbsent(oauthId, loadStart));
+        return loaded;
+    }
+
+    private void evict(String oauthId) {
+        if (invalidatedAt.size() >= maxEntries) {
+            invalidationsClearedAt = System.nanoTime();
+            invalidatedAt.clear();
+        }
+        invalidatedAt.put(oauthId, System.nanoTime());
+        users.invalidate(oauthId);
+        absent.invalidate(oauthId);
+        loads.forget(oauthId);
+    }
+
+    private boolean cacheable(String oauthId, long loadStart) {
+        Long changed = invalidatedAt.get(oauthId);
+        if (changed == null) {
+            return loadStart - invalidationsClearedAt > 0;
+        }
+        return loadStart - changed > 0 && System.nanoTime() - changed >= settleNanos;
+    }
+}
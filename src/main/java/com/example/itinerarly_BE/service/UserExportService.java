@@ -0,0 +1,194 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.repository.UserSummary;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the users table for the admin API without ever holding more than one page of it: listings are keyset pages
+ * of {@link UserSummary} rows ({@link UserRepository#findPageAfter}), and exports walk those pages from the first id
+ * to the last, writing each row to the response as it goes.
+ *
+ * <p>An export is a series of short queries of {@code app.admin.export.page-size} rows rather than one cursor held
+ * open for the whole download: MySQL Connector/J buffers a whole result set unless cursor fetch is switched on for
+ * every statement, and a slow client would otherwise keep a pooled connection for minutes. Each page takes a batch
+ * permit from {@link DbBulkhead}, so an export queues behind other background work instead of crowding out requests.
+ * Users added while an export runs are included if their id is past the page being read.
+ */
+@Service
+public class UserExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserExportService.class);
+
+    private static final String[] CSV_HEADER = {"id", "oauth_id", "email", "name", "username", "provider", "plan_id",
+            "daily_tokens", "last_token_refresh", "login_time"};
+
+    private final UserRepository userRepository;
+    private final DbBulkhead dbBulkhead;
+    private final ObjectWriter jsonWriter;
+    private final int pageSize;
+    private final Map<Format, Counter> rowsWritten = new EnumMap<>(Format.class);
+    private final Timer exports;
+
+    @Autowired
+    public UserExportService(UserRepository userRepository,
+                             DbBulkhead dbBulkhead,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.admin.export.page-size:1000}") int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("app.admin.export.page-size must be at least 1");
+        }
+        this.userRepository = userRepository;
+        this.dbBulkhead = dbBulkhead;
+        // Dates as ISO strings whatever the application-wide Jackson settings, like the CSV
+        this.jsonWriter = objectMapper.writerFor(UserSummary.class)
+                .without(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.pageSize = pageSize;
+        for (Format format : Format.values()) {
+            rowsWritten.put(format, Counter.builder("admin.export.rows")
+                    .tag("format", format.name().toLowerCase(Locale.ROOT)).register(meterRegistry));
+        }
+        this.exports = Timer.builder("admin.export").register(meterRegistry);
+    }
+
+    /**
+     * Up to {@code limit} users after the one with id {@code afterId} ({@code 0} for the first page).
+     */
+    public List<UserSummary> page(long afterId, int limit) {
+        return dbBulkhead.interactive(() -> userRepository.findPageAfter(afterId, Limit.of(limit)));
+    }
+
+    /**
+     * Writes every user to {@code out}, one page at a time, flushing after each page.
+     *
+     * @return the number of users written
+     * @throws IOException when the client goes away; the rest of the table is not read
+     */
+    public long export(Format format, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        long rows = 0;
+        try {
+            if (format == Format.CSV) {
+                writeCsvLine(writer, CSV_HEADER);
+            }
+            long afterId = 0;
+            while (true) {
+                long after = afterId;
+                List<UserSummary> page = dbBulkhead.batch(() ->
+                        userRepository.findPageAfter(after, Limit.of(pageSize)));
+                for (UserSummary user : page) {
+                    if (format == Format.CSV) {
+                        writeCsvLine(writer, csvValues(user));
+                    } else {
+                        writer.write(jsonWriter.writeValueAsString(user));
+                        writer.write('\n');
+                    }
+                }
+                writer.flush();
+                rows += page.size();
+                rowsWritten.get(format).increment(page.size());
+                if (page.size() < pageSize) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).id();
+            }
+            logger.info("Exported {} users as {}", rows, format);
+            return rows;
+        } catch (IOException e) {
+            logger.info("User export aborted after {} rows: {}", rows, e.getMessage());
+            throw e;
+        } finally {
+            exports.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String[] csvValues(UserSummary user) {
+        return new String[]{
+                String.valueOf(user.id()),
+                user.oauthId(),
+                user.email(),
+                user.name(),
+                user.username(),
+                user.provider(),
+                user.planId(),
+                user.dailyTokens() != null ? user.dailyTokens().toString() : null,
+                user.lastTokenRefresh() != null ? user.lastTokenRefresh().toString() : null,
+                user.loginTime() != null ? user.loginTime().toOffsetDateTime().toString() : null
+        };
+    }
+
+    private static void writeCsvLine(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(csvCell(values[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * RFC 4180 quoting. Names and usernames come from the OAuth provider, so a value a spreadsheet would read as a
+     * formula is prefixed with a quote.
+     */
+    static String csvCell(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        char first = value.charAt(0);
+        if (first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r') {
+            value = "'" + value;
+        }
+        if (value.chars().anyMatch(c -> c == ',' || c == '"' || c == '\n' || c == '\r')) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+}
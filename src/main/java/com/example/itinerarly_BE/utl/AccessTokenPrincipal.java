@@ -0,0 +1,21 @@
+package com.example.itinerarly_BE.utl;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Caller identified by a valid access token. {@code JwtAuthenticationFilter} makes it the authentication principal
+ * of the request, so controllers can read the user without the session.
+ */
+public record AccessTokenPrincipal(Long userId, String oauthId, String provider) {
+
+    /**
+     * The access-token caller of the current request, or {@code null} when the request was not authenticated by an
+     * access token (e.g. a session-only client).
+     */
+    public static AccessTokenPrincipal current() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof AccessTokenPrincipal principal
+                ? principal : null;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.itinerarly_BE.utl;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Who may call {@code /api/v1/admin/**}: signed-in users whose OAuth ID is listed in {@code app.admin.oauth-ids}.
+ * With the list empty (the default) nobody is.
+ */
+@Component
+public class AdminAccess {
+
+    private final Set<String> adminOauthIds;
+
+    public AdminAccess(@Value("${app.admin.oauth-ids:}") List<String> adminOauthIds) {
+        this.adminOauthIds = adminOauthIds.stream()
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * The caller's OAuth ID if it is an admin, otherwise {@code null}.
+     */
+    public String admin(HttpServletRequest request) {
+        String oauthId = null;
+        AccessTokenPrincipal principal = AccessTokenPrincipal.current();
+        if (principal != null) {
+            oauthId = principal.oauthId();
+        } else {
+            HttpSession session = request.getSession(false);
+            if (session != null && session.getAttribute("jwt_token") != null) {
+                oauthId = (String) session.getAttribute("oauth_id");
+            }
+        }
+        return oauthId != null && adminOauthIds.contains(oauthId) ? oauthId : null;
+    }
+}
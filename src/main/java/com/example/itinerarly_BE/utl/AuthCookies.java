@@ -0,0 +1,52 @@
+package com.example.itinerarly_BE.utl;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * The HttpOnly cookies carrying the access and refresh tokens. The refresh token is scoped to
+ * {@code /api/v1/auth}, so it is only sent to the refresh and logout endpoints, not with every API call.
+ */
+public final class AuthCookies {
+
+    public static final String ACCESS_TOKEN = "auth-token";
+    public static final String REFRESH_TOKEN = "refresh-token";
+    private static final String REFRESH_TOKEN_PATH = "/api/v1/auth";
+
+    private AuthCookies() {
+    }
+
+    public static Cookie accessToken(String jwt, long maxAgeSeconds) {
+        return secureCookie(ACCESS_TOKEN, jwt, "/", maxAgeSeconds);
+    }
+
+    public static Cookie refreshToken(String rawToken, long maxAgeSeconds) {
+        return secureCookie(REFRESH_TOKEN, rawToken, REFRESH_TOKEN_PATH, maxAgeSeconds);
+    }
+
+    public static Cookie clearRefreshToken() {
+        return secureCookie(REFRESH_TOKEN, "", REFRESH_TOKEN_PATH, 0);
+    }
+
+    public static String read(HttpServletRequest request, String name) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (name.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Cookie secureCookie(String name, String value, String path, long maxAgeSeconds) {
+        Cookie cookie = new Cookie(name, value);
+        cookie.setHttpOnly(true);
+        cookie.setPath(path);
+        cookie.setMaxAge((int) maxAgeSeconds);
+        cookie.setSecure(true);
+        cookie.setAttribute("SameSite", "None");
+        return cookie;
+    }
+}
@@ -1,27 +1,36 @@
 package com.example.itinerarly_BE.utl;
 
+import com.example.itinerarly_BE.model.User;
 import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.service.UserCache;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.List;
 
 @Component
 public class DataCleanupScheduler {
     private final UserRepository userRepository;
+    private final DbBulkhead dbBulkhead;
+    private final UserCache userCache;
 
-    public DataCleanupScheduler(UserRepository userRepository) {
+    public DataCleanupScheduler(UserRepository userRepository, DbBulkhead dbBulkhead, UserCache userCache) {
         this.userRepository = userRepository;
+        this.dbBulkhead = dbBulkhead;
+        this.userCache = userCache;
     }
 
 
     @Scheduled(fixedRate = 259200000)
-    @Transactional
     public void deleteOldData() {
         ZonedDateTime cutoff = ZonedDateTime.now(ZoneId.of("Asia/Kolkata")).minusDays(3);
-        userRepository.deleteByLoginTimeBefore(cutoff);
+        long deleteStart = System.nanoTime();
+        // The repository method opens the transaction, so the connection is only taken once the batch permit is held
+        List<User> deleted = dbBulkhead.batch(() -> userRepository.deleteByLoginTimeBefore(cutoff));
+        // Sessions of deleted users keep calling in until they expire; remember them as absent
+        userCache.deleted(deleted.stream().map(User::getOauthId).toList(), deleteStart);
         System.out.println("Old data deleted before: " + cutoff);
     }
 }
@@ -0,0 +1,129 @@
+package com.example.itinerarly_BE.utl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Splits the shared Hikari pool between request traffic and scheduled jobs.
+ *
+ * <p>Batch work (midnight token refresh, data cleanup, expired reservations) may hold at most
+ * {@code app.db-bulkhead.batch.max-concurrent} connections and queues for them, so the remaining connections are
+ * always free for users. Interactive work waits at most {@code app.db-bulkhead.interactive.acquire-timeout-ms} for a
+ * permit and then fails with {@link DbBulkheadFullException} instead of queueing on the pool.
+ *
+ * <p>Nested calls on the same thread reuse the outer permit, so services can call each other freely.
+ *
+ * <p>Jobs that keep overlapping runs apart while waiting here guard themselves with a
+ * {@link java.util.concurrent.locks.ReentrantLock} rather than {@code synchronized}: they run on virtual threads, and a
+ * virtual thread blocked inside a {@code synchronized} block pins its carrier for as long as it waits for a permit.
+ */
+@Component
+public class DbBulkhead {
+
+    private static final Logger logger = LoggerFactory.getLogger(DbBulkhead.class);
+
+    private final Semaphore interactivePermits;
+    private final Semaphore batchPermits;
+    private final long interactiveAcquireTimeoutMs;
+    private final ThreadLocal<Boolean> holdsPermit = ThreadLocal.withInitial(() -> false);
+
+    private final Timer interactiveWait;
+    private final Timer batchWait;
+    private final Counter interactiveRejected;
+
+    public DbBulkhead(MeterRegistry meterRegistry,
+                      @Value("${app.db-bulkhead.interactive.max-concurrent:8}") int interactiveMaxConcurrent,
+                      @Value("${app.db-bulkhead.interactive.acquire-timeout-ms:2000}") long interactiveAcquireTimeoutMs,
+                      @Value("${app.db-bulkhead.batch.max-concurrent:2}") int batchMaxConcurrent,
+                      @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize) {
+        this.interactivePermits = new Semaphore(interactiveMaxConcurrent, true);
+        this.batchPermits = new Semaphore(batchMaxConcurrent, true);
+        this.interactiveAcquireTimeoutMs = interactiveAcquireTimeoutMs;
+
+        if (interactiveMaxConcurrent + batchMaxConcurrent > poolSize) {
+            logger.warn("DB bulkhead permits ({} interactive + {} batch) exceed the pool size {} - batch jobs can still starve requests",
+                interactiveMaxConcurrent, batchMaxConcurrent, poolSize);
+        }
+        logger.info("DB bulkhead - interactive: {} permits ({}ms fail-fast), batch: {} permits, pool: {}",
+            interactiveMaxConcurrent, interactiveAcquireTimeoutMs, batchMaxConcurrent, poolSize);
+
+        Gauge.builder("db.bulkhead.available", interactivePermits, Semaphore::availablePermits)
+                .tag("workload", "interactive").register(meterRegistry);
+        Gauge.builder("db.bulkhead.available", batchPermits, Semaphore::availablePermits)
+                .tag("workload", "batch").register(meterRegistry);
+        Gauge.builder("db.bulkhead.queued", interactivePermits, Semaphore::getQueueLength)
+                .tag("workload", "interactive").register(meterRegistry);
+        Gauge.builder("db.bulkhead.queued", batchPermits, Semaphore::getQueueLength)
+                .tag("workload", "batch").register(meterRegistry);
+        this.interactiveWait = Timer.builder("db.bulkhead.wait").tag("workload", "interactive").register(meterRegistry);
+        this.batchWait = Timer.builder("db.bulkhead.wait").tag("workload", "batch").register(meterRegistry);
+        this.interactiveRejected = Counter.builder("db.bulkhead.rejected").tag("workload", "interactive").register(meterRegistry);
+    }
+
+    /**
+     * Runs request-path database work, failing fast when all interactive permits are taken.
+     *
+     * @throws DbBulkheadFullException when no permit frees up within the acquire timeout
+     */
+    public <T> T interactive(Supplier<T> work) {
+        if (holdsPermit.get()) {
+            return work.get();
+        }
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = interactivePermits.tryAcquire(interactiveAcquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DbBulkheadFullException("Interrupted while waiting for a database permit");
+        }
+        interactiveWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            interactiveRejected.increment();
+            logger.warn("DB bulkhead rejected interactive work after {}ms - {} permits in use",
+                interactiveAcquireTimeoutMs, interactivePermits.availablePermits());
+            throw new DbBulkheadFullException("Database is busy, please retry");
+        }
+        return runHolding(interactivePermits, work);
+    }
+
+    /**
+     * Runs scheduled or background database work, waiting as long as needed for a batch permit.
+     */
+    public <T> T batch(Supplier<T> work) {
+        if (holdsPermit.get()) {
+            return work.get();
+        }
+        long start = System.nanoTime();
+        batchPermits.acquireUninterruptibly();
+        batchWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return runHolding(batchPermits, work);
+    }
+
+    public void batch(Runnable work) {
+        batch(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    private <T> T runHolding(Semaphore permits, Supplier<T> work) {
+        holdsPermit.set(true);
+        try {
+            return work.get();
+        } finally {
+            holdsPermit.set(false);
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.itinerarly_BE.utl;
+
+/**
+ * Thrown when interactive database work cannot get a {@link DbBulkhead} permit in time. Controllers answer it with
+ * {@code 503 Service Unavailable} so clients retry instead of waiting on a saturated pool.
+ */
+public class DbBulkheadFullException extends RuntimeException {
+
+    public DbBulkheadFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.itinerarly_BE.utl;
+
+import com.example.itinerarly_BE.model.CacheInvalidation;
+import com.example.itinerarly_BE.repository.CacheInvalidationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * {@link InvalidationBus} over the shared database, for deployments without a message broker.
+ *
+ * <p>Published keys are coalesced in memory and inserted into {@code cache_invalidations} on the next poll; each poll
+ * then reads the rows above the last id this node has seen. With {@code app.cache.invalidation.db.poll-interval-ms}
+ * of 200 ms an invalidation typically reaches the other nodes within two poll intervals. A row whose insert commits
+ * after a higher id was already read is skipped, which is what the receiving caches' TTL is for. All database work
+ * runs on the batch side of {@link DbBulkhead}.
+ */
+public class DbPollingInvalidationBus implements InvalidationBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(DbPollingInvalidationBus.class);
+    private static final int PAGE_SIZE = 500;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final CacheInvalidationRepository repository;
+    private final DbBulkhead dbBulkhead;
+    private final Duration retention;
+    private final int maxPending;
+
+    private final Map<Key, Instant> pending = new ConcurrentHashMap<>();
+    private final List<Consumer<Invalidation>> listeners = new CopyOnWriteArrayList<>();
+    private final ReentrantLock pollLock = new ReentrantLock();
+    private long cursor = -1;
+
+    private final Counter dropped;
+    private final Counter failed;
+
+    public DbPollingInvalidationBus(CacheInvalidationRepository repository, DbBulkhead dbBulkhead, Duration retention,
+                                    int maxPending, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.dbBulkhead = dbBulkhead;
+        this.retention = retention;
+        this.maxPending = maxPending;
+
+        Gauge.builder("cache.invalidation.bus.pending", pending, Map::size).tag("bus", "db").register(meterRegistry);
+        this.dropped = Counter.builder("cache.invalidation.bus.dropped").tag("bus", "db").register(meterRegistry);
+        this.failed = Counter.builder("cache.invalidation.bus.failed").tag("bus", "db").register(meterRegistry);
+    }
+
+    @Override
+    public void publish(String cache, String key) {
+        if (pending.size() >= maxPending) {
+            dropped.increment();
+            return;
+        }
+        // Keep the first publish time so the receivers' lag includes the wait for the next flush
+        pending.putIfAbsent(new Key(cache, key), Instant.now());
+    }
+
+    @Override
+    public void subscribe(Consumer<Invalidation> listener) {
+        listeners.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.invalidation.db.poll-interval-ms:200}")
+    public void poll() {
+        pollLock.lock();
+        try {
+            if (cursor < 0) {
+                // Earlier invalidations concern entries this node has not cached yet
+                cursor = dbBulkhead.batch(repository::findMaxId);
+            }
+            flush();
+            List<CacheInvalidation> rows;
+            do {
+                long after = cursor;
+                rows = dbBulkhead.batch(() -> repository.findTop500ByIdGreaterThanOrderByIdAsc(after));
+                for (CacheInvalidation row : rows) {
+                    cursor = row.getId();
+                    if (!nodeId.equals(row.getOrigin())) {
+                        deliver(new Invalidation(row.getCacheName(), row.getCacheKey(), row.getOrigin(), row.getPublishedAt()));
+                    }
+                }
+            } while (rows.size() == PAGE_SIZE);
+        } catch (Exception e) {
+            failed.increment();
+            logger.warn("Cache invalidation poll failed: {}", e.getMessage());
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.invalidation.db.purge-interval-ms:60000}")
+    public void purge() {
+        try {
+            long deleted = dbBulkhead.batch(() -> repository.deleteByPublishedAtBefore(Instant.now().minus(retention)));
+            logger.debug("Purged {} cache invalidations older than {}", deleted, retention);
+        } catch (Exception e) {
+            logger.warn("Cache invalidation purge failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pollLock.lock();
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.warn("Could not publish {} cache invalidations on shutdown: {}", pending.size(), e.getMessage());
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Key, Instant> taken = new HashMap<>();
+        List<CacheInvalidation> rows = new ArrayList<>();
+        for (Map.Entry<Key, Instant> entry : pending.entrySet()) {
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                taken.put(entry.getKey(), entry.getValue());
+                CacheInvalidation row = new CacheInvalidation();
+                row.setCacheName(entry.getKey().cache());
+                row.setCacheKey(entry.getKey().key());
+                row.setOrigin(nodeId);
+                row.setPublishedAt(entry.getValue());
+                rows.add(row);
+            }
+        }
+        try {
+            dbBulkhead.batch(() -> repository.saveAll(rows));
+        } catch (RuntimeException e) {
+            // Retry on the next poll; a newer publish of the same key keeps its own time
+            taken.forEach(pending::putIfAbsent);
+            throw e;
+        }
+    }
+
+    private void deliver(Invalidation invalidation) {
+        for (Consumer<Invalidation> listener : listeners) {
+            try {
+                listener.accept(invalidation);
+            } catch (Exception e) {
+                logger.error("Cache invalidation listener failed for {} {}: {}", invalidation.cache(), invalidation.key(), e.getMessage());
+            }
+        }
+    }
+
+    private record Key(String cache, String key) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.itinerarly_BE.utl;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * GitHub: a numeric user id and the login as username. Users with a private email get
+ * {@code <login>@github.local} instead.
+ */
+@Component
+public class GitHubProfileExtractor implements OAuthProfileExtractor {
+
+    @Override
+    public String registrationId() {
+        return "github";
+    }
+
+    @Override
+    public String oauthId(Map<String, Object> attributes) {
+        Object id = attributes.get("id");
+        if (id instanceof Number number) {
+            return Long.toString(number.longValue());
+        }
+        return (String) id;
+    }
+
+    @Override
+    public OAuthProfile extract(Map<String, Object> attributes) {
+        String login = (String) attributes.get("login");
+        String email = (String) attributes.get("email");
+        return new OAuthProfile(oauthId(attributes), "github", email != null ? email : login + "@github.local",
+                (String) attributes.get("name"), login, (String) attributes.get("avatar_url"));
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.itinerarly_BE.utl;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Google OpenID Connect: the subject is the user id and the email doubles as username.
+ */
+@Component
+public class GoogleProfileExtractor implements OAuthProfileExtractor {
+
+    @Override
+    public String registrationId() {
+        return "google";
+    }
+
+    @Override
+    public String oauthId(Map<String, Object> attributes) {
+        return (String) attributes.get("sub");
+    }
+
+    @Override
+    public OAuthProfile extract(Map<String, Object> attributes) {
+        String email = (String) attributes.get("email");
+        return new OAuthProfile(oauthId(attributes), "google", email, (String) attributes.get("name"), email,
+                (String) attributes.get("picture"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.itinerarly_BE.utl;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * {@link InvalidationBus} within one JVM, delivering synchronously on the publishing thread. A single instance is
+ * the single-node setup ({@code app.cache.invalidation.bus=memory}); {@link #connect()} adds further simulated nodes
+ * for tests.
+ */
+public class InMemoryInvalidationBus implements InvalidationBus {
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Set<InMemoryInvalidationBus> peers;
+    private final List<Consumer<Invalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    public InMemoryInvalidationBus() {
+        this(new CopyOnWriteArraySet<>());
+    }
+
+    private InMemoryInvalidationBus(Set<InMemoryInvalidationBus> peers) {
+        this.peers = peers;
+        peers.add(this);
+    }
+
+    /**
+     * Another node on the same bus.
+     */
+    public InMemoryInvalidationBus connect() {
+        return new InMemoryInvalidationBus(peers);
+    }
+
+    @Override
+    public void publish(String cache, String key) {
+        Invalidation invalidation = new Invalidation(cache, key, nodeId, Instant.now());
+        for (InMemoryInvalidationBus peer : peers) {
+            if (peer != this) {
+                peer.listeners.forEach(listener -> listener.accept(invalidation));
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<Invalidation> listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.itinerarly_BE.utl;
+
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * Broadcasts "this key changed" between application nodes so each can drop its in-process copy.
+ *
+ * <p>Delivery is best effort and at most once: caches fed by a bus still need a TTL to bound staleness when a message
+ * is lost. A node never receives its own messages.
+ */
+public interface InvalidationBus {
+
+    /**
+     * Tells the other nodes that {@code key} in {@code cache} changed. Never blocks on the transport.
+     */
+    void publish(String cache, String key);
+
+    /**
+     * Registers a listener for invalidations published by other nodes. Listeners run on the bus's delivery thread and
+     * must not block.
+     */
+    void subscribe(Consumer<Invalidation> listener);
+
+    /**
+     * @param origin      id of the publishing node
+     * @param publishedAt publisher's wall clock, so lag measured across nodes includes their clock skew
+     */
+    record Invalidation(String cache, String key, String origin, Instant publishedAt) {
+    }
+}
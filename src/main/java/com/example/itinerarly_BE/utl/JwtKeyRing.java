@@ -0,0 +1,174 @@
+package com.example.itinerarly_BE.utl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.SignatureException;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Signing and verification keys for {@link JwtTokenUtil}.
+ *
+ * <p>With a PKCS#12 keystore ({@code app.jwt.keystore}) tokens are signed ES256 with the {@code app.jwt.active-kid}
+ * entry and carry its alias as {@code kid}; every other alias, private key or certificate only, still verifies. To
+ * rotate, add a key, make it active, and drop the old alias once its tokens have expired. Tokens without a
+ * {@code kid} are HS512 tokens from {@code JWT_SECRET}, accepted as long as the secret is set, so moving from HS512
+ * to ES256 does not log anyone out.
+ *
+ * <p>The ring is immutable: verification is a read from an unmodifiable map, and the JWKS document with the public
+ * keys is serialized once.
+ */
+public final class JwtKeyRing extends SigningKeyResolverAdapter {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final String activeKid;
+    private final Key signingKey;
+    private final SignatureAlgorithm algorithm;
+    private final Key hmacKey;
+    private final Map<String, PublicKey> verificationKeys;
+    private final byte[] jwks;
+
+    private JwtKeyRing(String activeKid, Key signingKey, SignatureAlgorithm algorithm, Key hmacKey,
+                       Map<String, PublicKey> verificationKeys) {
+        this.activeKid = activeKid;
+        this.signingKey = signingKey;
+        this.algorithm = algorithm;
+        this.hmacKey = hmacKey;
+        this.verificationKeys = verificationKeys;
+        this.jwks = toJwks(verificationKeys);
+    }
+
+    /**
+     * HS512 only, the behaviour without a keystore. {@code hmacKey} may be {@code null} if the secret is unusable.
+     */
+    public static JwtKeyRing hmac(Key hmacKey) {
+        return new JwtKeyRing(null, hmacKey, SignatureAlgorithm.HS512, hmacKey, Map.of());
+    }
+
+    /**
+     * ES256 with the P-256 keys in {@code keystore}, signing with {@code activeKid}.
+     *
+     * @throws IllegalStateException if the keystore cannot be read, the active alias has no private key, or a key
+     *                               is not on P-256
+     */
+    public static JwtKeyRing es256(Resource keystore, char[] password, String activeKid, Key hmacKey) {
+        try (InputStream in = keystore.getInputStream()) {
+            KeyStore store = KeyStore.getInstance("PKCS12");
+            store.load(in, password);
+
+            Map<String, PublicKey> publicKeys = new LinkedHashMap<>();
+            for (String alias : Collections.list(store.aliases())) {
+                Certificate certificate = store.getCertificate(alias);
+                if (certificate == null) {
+                    continue;
+                }
+                PublicKey publicKey = certificate.getPublicKey();
+                if (!(publicKey instanceof ECPublicKey ec) || ec.getParams().getCurve().getField().getFieldSize() != 256) {
+                    throw new IllegalStateException("JWT key '" + alias + "' is not a P-256 EC key");
+                }
+                publicKeys.put(alias, publicKey);
+            }
+
+            Key activeKey = store.getKey(activeKid, password);
+            if (!(activeKey instanceof PrivateKey privateKey) || !publicKeys.containsKey(activeKid)) {
+                throw new IllegalStateException("JWT keystore has no private key for active kid '" + activeKid
+                        + "', entries: " + publicKeys.keySet());
+            }
+            return new JwtKeyRing(activeKid, privateKey, SignatureAlgorithm.ES256, hmacKey, Map.copyOf(publicKeys));
+        } catch (IOException | java.security.GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot load JWT keystore " + keystore.getDescription(), e);
+        }
+    }
+
+    public boolean canSign() {
+        return signingKey != null;
+    }
+
+    public boolean canVerify() {
+        return hmacKey != null || !verificationKeys.isEmpty();
+    }
+
+    String activeKid() {
+        return activeKid;
+    }
+
+    Key signingKey() {
+        return signingKey;
+    }
+
+    SignatureAlgorithm algorithm() {
+        return algorithm;
+    }
+
+    /**
+     * The public keys as a JWK Set, serialized once when the ring was built. Empty for HS512.
+     */
+    public byte[] jwks() {
+        return jwks;
+    }
+
+    @Override
+    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+        String kid = header.getKeyId();
+        if (kid == null) {
+            if (hmacKey == null) {
+                throw new SignatureException("Token has no kid and no JWT_SECRET is configured");
+            }
+            return hmacKey;
+        }
+        PublicKey key = verificationKeys.get(kid);
+        if (key == null) {
+            throw new SignatureException("Unknown JWT kid '" + kid + "'");
+        }
+        return key;
+    }
+
+    private static byte[] toJwks(Map<String, PublicKey> publicKeys) {
+        List<Map<String, String>> keys = new ArrayList<>();
+        publicKeys.forEach((kid, key) -> {
+            ECPublicKey ec = (ECPublicKey) key;
+            Map<String, String> jwk = new LinkedHashMap<>();
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("kid", kid);
+            jwk.put("use", "sig");
+            jwk.put("alg", "ES256");
+            jwk.put("x", coordinate(ec.getW().getAffineX()));
+            jwk.put("y", coordinate(ec.getW().getAffineY()));
+            keys.add(jwk);
+        });
+        try {
+            return OBJECT_MAPPER.writeValueAsBytes(Map.of("keys", keys));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize JWKS", e);
+        }
+    }
+
+    // RFC 7518 6.2.1.2: unsigned big-endian, padded to the 32-byte field size
+    private static String coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] padded = new byte[32];
+        int length = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - length, padded, 32 - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(padded);
+    }
+}
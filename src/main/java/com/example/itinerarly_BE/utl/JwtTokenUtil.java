@@ -1,63 +1,245 @@
 package com.example.itinerarly_BE.utl;
 
+import com.example.itinerarly_BE.model.User;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Component;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.DecodingException;
+import io.jsonwebtoken.io.Decoders;
 
+import javax.crypto.spec.SecretKeySpec;
+import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Issues and checks the {@code auth-token}, HS512 with {@code JWT_SECRET} or, with {@code app.jwt.keystore} set,
+ * ES256 with rotating keys from {@link JwtKeyRing} whose public half is published at {@code /.well-known/jwks.json}.
+ *
+ * <p>{@code app.jwt.claims} picks what goes into the token besides {@code exp}. The default compact set is the
+ * internal user id ({@code uid}) and the provider-scoped subject ({@code sub}, e.g. {@code google:1234}); the profile
+ * is served by {@code /api/v1/user/profile}. Listing {@code name,email,login,id,avatar,iat} restores the old full
+ * token, which is several times larger and travels in the cookie of every request.
+ *
+ * <p>Tokens are short-lived access tokens ({@code app.jwt.access-token-ttl-seconds}); {@link #parseAccessToken}
+ * checks them without touching the session or the database, and the browser renews them through the refresh token
+ * (see {@code RefreshTokenService}). Only tokens carrying {@code uid} and {@code sub} identify a caller.
+ * Verified tokens are remembered (up to {@code app.jwt.verified-cache-size}) so a browser sending the same cookie
+ * on every call pays for the signature check once per token.
+ */
 @Component
 public class JwtTokenUtil {
 
+    private static final Logger logger = LoggerFactory.getLogger(JwtTokenUtil.class);
+
+    static final Set<String> SUPPORTED_CLAIMS = Set.of("uid", "sub", "iat", "name", "email", "login", "id", "avatar");
+
 @Value("${JWT_SECRET}")
     private  String jwtSecret;
 
-    private final int jwtExpirationMs = 86400000;
+    @Value("${app.jwt.claims:uid,sub}")
+    private List<String> claimNames;
+
+    @Value("${app.jwt.access-token-ttl-seconds:900}")
+    private long accessTokenTtlSeconds;
+
+    @Value("${app.jwt.verified-cache-size:10000}")
+    private int verifiedCacheSize;
+
+    @Value("${app.jwt.keystore:}")
+    private String keystoreLocation;
+
+    @Value("${app.jwt.keystore-password:}")
+    private String keystorePassword;
 
-    public String generateToken(Authentication authentication) {
-        Object principal = authentication.getPrincipal();
+    @Value("${app.jwt.active-kid:}")
+    private String activeKid;
+
+    @Value("${app.jwt.accept-hs512:true}")
+    private boolean acceptHs512;
+
+    private JwtKeyRing keyRing = JwtKeyRing.hmac(null);
+    private JwtParser parser;
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        for (String claim : claimNames) {
+            if (!SUPPORTED_CLAIMS.contains(claim)) {
+                throw new IllegalStateException("Unsupported claim '" + claim + "' in app.jwt.claims, expected any of " + SUPPORTED_CLAIMS);
+            }
+        }
+        if (!claimNames.contains("uid") || !claimNames.contains("sub")) {
+            logger.warn("app.jwt.claims {} lacks uid or sub - API calls will fall back to the session", claimNames);
+        }
+        // Decode the secret once instead of on every sign and parse
+        Key hmacKey = null;
+        try {
+            hmacKey = new SecretKeySpec(Decoders.BASE64.decode(jwtSecret), SignatureAlgorithm.HS512.getJcaName());
+        } catch (DecodingException e) {
+            logger.error("JWT_SECRET is not valid base64, logins will fail until it is fixed: {}", e.getMessage());
+        }
+        if (keystoreLocation == null || keystoreLocation.isBlank()) {
+            keyRing = JwtKeyRing.hmac(hmacKey);
+        } else {
+            keyRing = JwtKeyRing.es256(new DefaultResourceLoader().getResource(keystoreLocation),
+                    keystorePassword.toCharArray(), activeKid, acceptHs512 ? hmacKey : null);
+            logger.info("Signing JWTs with ES256 key '{}', HS512 tokens {}", activeKid, acceptHs512 ? "still accepted" : "rejected");
+        }
+        if (keyRing.canVerify()) {
+            parser = Jwts.parserBuilder().setSigningKeyResolver(keyRing).build();
+        }
+    }
+
+    /**
+     * Access token for a user renewing through a refresh token, where there is no OAuth2 login to read profile
+     * claims from; they come from the stored user instead.
+     */
+    public String generateToken(User user) {
+        return generateToken(null, user);
+    }
+
+    public String generateToken(Authentication authentication, User user) {
+        requireKey();
+        Object principal = authentication != null ? authentication.getPrincipal() : null;
+        OAuth2User oauth2User = principal instanceof OAuth2User o ? o : null;
+        Date now = new Date();
         Map<String, Object> claims = new HashMap<>();
 
-        if (principal instanceof OAuth2User oauth2User) {
-            claims.put("name", oauth2User.getAttribute("name"));
-            claims.put("email", oauth2User.getAttribute("email"));
-            claims.put("login", oauth2User.getAttribute("login"));
-            claims.put("id", oauth2User.getAttribute("id"));
-            
-            // Fix avatar URL handling for different providers
-            String avatarUrl = oauth2User.getAttribute("avatar_url"); // GitHub
-            if (avatarUrl == null) {
-                avatarUrl = oauth2User.getAttribute("picture"); // Google
+        for (String claim : claimNames) {
+            switch (claim) {
+                case "uid" -> claims.put("uid", user.getId());
+                case "sub" -> claims.put("sub", user.getProvider() + ":" + user.getOauthId());
+                case "iat" -> claims.put("iat", now.getTime() / 1000);
+                case "avatar" -> {
+                    if (oauth2User != null) {
+                        // Fix avatar URL handling for different providers
+                        String avatarUrl = oauth2User.getAttribute("avatar_url"); // GitHub
+                        if (avatarUrl == null) {
+                            avatarUrl = oauth2User.getAttribute("picture"); // Google
+                        }
+                        claims.put("avatar", avatarUrl);
+                    } else {
+                        claims.put("avatar", user.getAvatarUrl());
+                    }
+                }
+                default -> {
+                    if (oauth2User != null) {
+                        claims.put(claim, oauth2User.getAttribute(claim));
+                    } else {
+                        claims.put(claim, storedClaim(claim, user));
+                    }
+                }
             }
-            
-            claims.put("avatar", avatarUrl);
         }
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder();
+        if (keyRing.activeKid() != null) {
+            builder.setHeaderParam("kid", keyRing.activeKid());
+        }
+        return builder
                 .setClaims(claims)
-                .setIssuedAt(new Date())
-                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(SignatureAlgorithm.HS512, jwtSecret)
+                .setExpiration(new Date(now.getTime() + accessTokenTtlSeconds * 1000))
+                .signWith(keyRing.signingKey(), keyRing.algorithm())
                 .compact();
     }
 
     public Map<String, Object> getClaimsFromToken(String token) {
-        return Jwts.parser()
-                .setSigningKey(jwtSecret)
-                .parseClaimsJws(token)
-                .getBody();
+        if (parser == null) {
+            throw new IllegalStateException("No JWT verification key configured");
+        }
+        return parser.parseClaimsJws(token).getBody();
     }
+
     public boolean validateToken(String token) {
+        if (parser == null) {
+            return false;
+        }
         try {
-            Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token);
+            parser.parseClaimsJws(token);
             return true;
         } catch (Exception e) {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Verifies the signature and expiry and returns who the token was issued to, or {@code null} when the token is
+     * invalid, expired or lacks {@code uid}/{@code sub}.
+     */
+    public AccessTokenPrincipal parseAccessToken(String token) {
+        if (parser == null) {
+            return null;
+        }
+        VerifiedToken verified = verifiedTokens.get(token);
+        if (verified != null) {
+            if (System.currentTimeMillis() < verified.expiresAtMillis()) {
+                return verified.principal();
+            }
+            verifiedTokens.remove(token);
+            return null;
+        }
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            Number uid = claims.get("uid", Number.class);
+            String subject = claims.getSubject();
+            int separator = subject != null ? subject.indexOf(':') : -1;
+            if (uid == null || separator < 0) {
+                return null;
+            }
+            AccessTokenPrincipal principal =
+                    new AccessTokenPrincipal(uid.longValue(), subject.substring(separator + 1), subject.substring(0, separator));
+            if (verifiedTokens.size() >= verifiedCacheSize) {
+                verifiedTokens.clear();
+            }
+            verifiedTokens.put(token, new VerifiedToken(principal, claims.getExpiration().getTime()));
+            return principal;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public long getAccessTokenTtlSeconds() {
+        return accessTokenTtlSeconds;
+    }
+
+    /**
+     * JWK Set of the ES256 verification keys, serialized once at startup; {@code {"keys":[]}} when signing HS512.
+     */
+    public byte[] getJwks() {
+        return keyRing.jwks();
+    }
+
+    private static Object storedClaim(String claim, User user) {
+        return switch (claim) {
+            case "name" -> user.getName();
+            case "email" -> user.getEmail();
+            case "login" -> "github".equals(user.getProvider()) ? user.getUsername() : null;
+            case "id" -> "github".equals(user.getProvider()) ? user.getOauthId() : null;
+            default -> null;
+        };
+    }
+
+    private void requireKey() {
+        if (!keyRing.canSign()) {
+            throw new IllegalStateException("JWT_SECRET is not valid base64");
+        }
+    }
+
+    private record VerifiedToken(AccessTokenPrincipal principal, long expiresAtMillis) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.itinerarly_BE.utl;
+
+import com.example.itinerarly_BE.model.User;
+
+/**
+ * The user fields an OAuth2 provider reports at login, already normalized by its {@link OAuthProfileExtractor}.
+ */
+public record OAuthProfile(String oauthId, String provider, String email, String name, String username, String avatarUrl) {
+
+    /**
+     * Copies the provider fields onto {@code user}, leaving id, token balance and login time alone.
+     */
+    public User applyTo(User user) {
+        user.setOauthId(oauthId);
+        user.setProvider(provider);
+        user.setEmail(email);
+        user.setName(name);
+        user.setUsername(username);
+        user.setAvatarUrl(avatarUrl);
+        return user;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.itinerarly_BE.utl;
+
+import java.util.Map;
+
+/**
+ * Maps one provider's OAuth2 user attributes to an {@link OAuthProfile}. Implementations are Spring beans picked up
+ * by {@link OAuthProfileExtractors}; supporting a new provider means adding its client registration and one of these.
+ */
+public interface OAuthProfileExtractor {
+
+    /**
+     * The {@code spring.security.oauth2.client.registration.<id>} this extractor handles, also stored as
+     * {@link com.example.itinerarly_BE.model.User#getProvider()}.
+     */
+    String registrationId();
+
+    /**
+     * The provider's stable user id, or {@code null} if the attributes lack it.
+     */
+    String oauthId(Map<String, Object> attributes);
+
+    OAuthProfile extract(Map<String, Object> attributes);
+}
@@ -0,0 +1,51 @@
+package com.example.itinerarly_BE.utl;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * All {@link OAuthProfileExtractor}s, looked up by the client registration id of the login rather than by guessing
+ * the provider from the attributes.
+ */
+@Component
+public class OAuthProfileExtractors {
+
+    private final Map<String, OAuthProfileExtractor> extractors;
+
+    public OAuthProfileExtractors(List<OAuthProfileExtractor> extractors) {
+        this.extractors = Map.copyOf(extractors.stream()
+                .collect(Collectors.toMap(OAuthProfileExtractor::registrationId, Function.identity())));
+    }
+
+    /**
+     * The extractor for {@code registrationId}, or {@code null} for a provider without one.
+     */
+    public OAuthProfileExtractor forRegistration(String registrationId) {
+        return extractors.get(registrationId);
+    }
+
+    /**
+     * The profile of an OAuth2 login, or {@code null} if the provider is not supported.
+     */
+    public OAuthProfile extract(OAuth2AuthenticationToken authentication) {
+        OAuthProfileExtractor extractor = extractors.get(authentication.getAuthorizedClientRegistrationId());
+        return extractor != null ? extractor.extract(authentication.getPrincipal().getAttributes()) : null;
+    }
+
+    /**
+     * The provider user id of a session authenticated by OAuth2 login, or {@code null} for any other authentication.
+     */
+    public String oauthId(Authentication authentication) {
+        if (authentication instanceof OAuth2AuthenticationToken oauth2) {
+            OAuthProfileExtractor extractor = extractors.get(oauth2.getAuthorizedClientRegistrationId());
+            return extractor != null ? extractor.oauthId(oauth2.getPrincipal().getAttributes()) : null;
+        }
+        return null;
+    }
+}
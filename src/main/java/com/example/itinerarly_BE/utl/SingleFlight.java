@@ -0,0 +1,77 @@
+package com.example.itinerarly_BE.utl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the work, callers arriving while it runs wait
+ * for its result (or exception) instead of repeating it. Nothing is kept once the call returns, so this is not a cache.
+ *
+ * <p>After the underlying data changes, call {@link #forget} so later callers start a fresh call instead of joining
+ * one that may have read the old value. The work must not call back into the same flight with the same key.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter executed;
+    private final Counter shared;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.executed = Counter.builder("singleflight.calls").tag("flight", name).tag("result", "executed")
+                .register(meterRegistry);
+        this.shared = Counter.builder("singleflight.calls").tag("flight", name).tag("result", "shared")
+                .description("Calls that waited for a call already in flight instead of running the work")
+                .register(meterRegistry);
+        Gauge.builder("singleflight.in.flight", inFlight, Map::size).tag("flight", name).register(meterRegistry);
+    }
+
+    public V execute(K key, Supplier<V> work) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, call);
+        if (running != null) {
+            shared.increment();
+            return await(running);
+        }
+
+        executed.increment();
+        try {
+            V result = work.get();
+            call.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Lets the next caller for {@code key} start a new call; callers already waiting still get the running result.
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    private static <V> V await(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.itinerarly_BE.utl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keyed rolling-window quotas, e.g. 6 per 24 hours and 2 per minute, all of which must have room for a use to be
+ * allowed.
+ *
+ * <p>A window's limit can be {@link Window#DAILY}, which stands for the daily token limit passed in with each call, so
+ * one window set fits every plan.
+ *
+ * <p>Each window is split into {@code slotsPerWindow} slots and every key keeps one ring of counters per window, so
+ * memory per key is fixed no matter how many uses it records. A use is counted until its whole slot has left the
+ * window, up to one slot longer than the period; the quota is never exceeded, it may free up slightly late.
+ *
+ * <p>All methods take the wall-clock time so {@link #snapshot snapshots} stay valid across restarts. A snapshot holds
+ * only the uses recorded by this instance, not those {@link #restore restored} from other snapshots, so every use is
+ * in exactly one snapshot and restoring several of them adds up to the total. Keys whose windows have emptied are
+ * dropped by {@link #evictIdle} without losing anything.
+ */
+public class SlidingWindowQuota {
+
+    private static final int SNAPSHOT_FORMAT = 2;
+
+    private final List<Window> windows;
+    private final int slots;
+    private final long[] slotMillis;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public SlidingWindowQuota(List<Window> windows, int slotsPerWindow) {
+        if (slotsPerWindow < 1 || slotsPerWindow > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("slots per window must be between 1 and " + Short.MAX_VALUE);
+        }
+        this.windows = List.copyOf(windows);
+        this.slots = slotsPerWindow;
+        this.slotMillis = new long[this.windows.size()];
+        for (int w = 0; w < slotMillis.length; w++) {
+            slotMillis[w] = Math.max(1, this.windows.get(w).period().toMillis() / slotsPerWindow);
+        }
+    }
+
+    public boolean isEnabled() {
+        return !windows.isEmpty();
+    }
+
+    public List<Window> getWindows() {
+        return windows;
+    }
+
+    /**
+     * Whether any window takes its limit from the daily token limit passed in.
+     */
+    public boolean hasDailyWindows() {
+        for (Window window : windows) {
+            if (window.limit() == Window.DAILY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * How long a use can stay counted: the longest period plus one of its slots.
+     */
+    public Duration getRetention() {
+        Duration retention = Duration.ZERO;
+        for (int w = 0; w < windows.size(); w++) {
+            Duration window = windows.get(w).period().plusMillis(slotMillis[w]);
+            retention = window.compareTo(retention) > 0 ? window : retention;
+        }
+        return retention;
+    }
+
+    /**
+     * Records one use if every window has room for it.
+     *
+     * @param dailyLimit the key's daily token limit, the limit of {@link Window#DAILY} windows
+     */
+    public boolean tryConsume(String key, int dailyLimit, long nowMillis) {
+        if (!isEnabled()) {
+            return true;
+        }
+        while (true) {
+            Counters c = counters.computeIfAbsent(key, k -> new Counters(windows.size(), slots));
+            synchronized (c) {
+                if (c.retired) {
+                    continue;
+                }
+                advance(c, nowMillis);
+                for (int w = 0; w < windows.size(); w++) {
+                    if (c.totals[w] >= windows.get(w).limitFor(dailyLimit)) {
+                        return false;
+                    }
+                }
+                for (int w = 0; w < windows.size(); w++) {
+                    int index = w * slots + ring(c.heads[w]);
+                    c.counts[index]++;
+                    c.own[index]++;
+                    c.totals[w]++;
+                }
+                c.dirty = true;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes back the most recent use, for a consume that failed after {@link #tryConsume} allowed it. The use is
+     * taken from those recorded here, or from restored ones if there are none.
+     */
+    public void refund(String key, long nowMillis) {
+        Counters c = counters.get(key);
+        if (c == null) {
+            return;
+        }
+        synchronized (c) {
+            advance(c, nowMillis);
+            for (int w = 0; w < windows.size(); w++) {
+                int index = latest(c.own, c, w);
+                if (index >= 0) {
+                    c.own[index]--;
+                } else {
+                    index = latest(c.counts, c, w);
+                }
+                if (index >= 0) {
+                    c.counts[index]--;
+                    c.totals[w]--;
+                }
+            }
+            c.dirty = true;
+        }
+    }
+
+    /**
+     * Uses left in the tightest window, {@link Integer#MAX_VALUE} without windows.
+     */
+    public int remaining(String key, int dailyLimit, long nowMillis) {
+        int remaining = Integer.MAX_VALUE;
+        for (Usage usage : usage(key, dailyLimit, nowMillis)) {
+            remaining = Math.min(remaining, usage.remaining());
+        }
+        return remaining;
+    }
+
+    public List<Usage> usage(String key, int dailyLimit, long nowMillis) {
+        List<Usage> usage = new ArrayList<>(windows.size());
+        Counters c = counters.get(key);
+        if (c == null) {
+            windows.forEach(window -> usage.add(new Usage(window, window.limitFor(dailyLimit), 0, 0)));
+            return usage;
+        }
+        synchronized (c) {
+            advance(c, nowMillis);
+            for (int w = 0; w < windows.size(); w++) {
+                Window window = windows.get(w);
+                usage.add(new Usage(window, window.limitFor(dailyLimit), c.totals[w],
+                        c.totals[w] > 0 ? oldestExpiry(c, w) : 0));
+            }
+        }
+        return usage;
+    }
+
+    /**
+     * Encodes this instance's uses of every key changed since its last snapshot and clears the change mark; only
+     * non-empty slots are written. Keys that failed to save must be passed to {@link #markDirty}.
+     */
+    public Map<String, byte[]> snapshotDirty(long nowMillis) {
+        Map<String, byte[]> snapshots = new HashMap<>();
+        counters.forEach((key, c) -> {
+            synchronized (c) {
+                if (c.dirty && !c.retired) {
+                    advance(c, nowMillis);
+                    snapshots.put(key, encode(c));
+                    c.dirty = false;
+                }
+            }
+        });
+        return snapshots;
+    }
+
+    public byte[] snapshot(String key, long nowMillis) {
+        Counters c = counters.get(key);
+        if (c == null) {
+            return null;
+        }
+        synchronized (c) {
+            advance(c, nowMillis);
+            return encode(c);
+        }
+    }
+
+    public void markDirty(String key) {
+        Counters c = counters.get(key);
+        if (c != null) {
+            synchronized (c) {
+                c.dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Adds the uses in a snapshot to the key's counters, without making them part of this instance's snapshots.
+     * Windows whose limit, period or slot count changed since the snapshot was taken are skipped, as are uses that
+     * have left their window.
+     */
+    public void restore(String key, byte[] snapshot, long nowMillis) {
+        if (!isEnabled()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot))) {
+            if (in.readUnsignedByte() != SNAPSHOT_FORMAT) {
+                return;
+            }
+            int windowCount = in.readUnsignedByte();
+            while (true) {
+                Counters c = counters.computeIfAbsent(key, k -> new Counters(windows.size(), slots));
+                synchronized (c) {
+                    if (c.retired) {
+                        continue;
+                    }
+                    advance(c, nowMillis);
+                    for (int i = 0; i < windowCount; i++) {
+                        restoreWindow(c, in);
+                    }
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt quota snapshot for " + key, e);
+        }
+    }
+
+    public int evictIdle(long nowMillis) {
+        int evicted = 0;
+        for (Map.Entry<String, Counters> entry : counters.entrySet()) {
+            Counters c = entry.getValue();
+            synchronized (c) {
+                advance(c, nowMillis);
+                boolean empty = true;
+                for (int total : c.totals) {
+                    empty &= total == 0;
+                }
+                if (!empty || c.dirty) {
+                    continue;
+                }
+                c.retired = true;
+            }
+            if (counters.remove(entry.getKey(), c)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    private void advance(Counters c, long nowMillis) {
+        for (int w = 0; w < windows.size(); w++) {
+            long slot = nowMillis / slotMillis[w];
+            long head = c.heads[w];
+            if (slot <= head) {
+                continue;
+            }
+            long steps = Math.min(slot - head, slots);
+            for (long i = 1; i <= steps; i++) {
+                int index = w * slots + ring(head + i);
+                c.totals[w] -= c.counts[index];
+                c.counts[index] = 0;
+                c.own[index] = 0;
+            }
+            c.heads[w] = slot;
+        }
+    }
+
+    private int latest(int[] counts, Counters c, int w) {
+        for (int age = 0; age < slots; age++) {
+            int index = w * slots + ring(c.heads[w] - age);
+            if (counts[index] > 0) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private long oldestExpiry(Counters c, int w) {
+        for (int age = slots - 1; age >= 0; age--) {
+            if (c.counts[w * slots + ring(c.heads[w] - age)] > 0) {
+                return (c.heads[w] - age + slots) * slotMillis[w];
+            }
+        }
+        return 0;
+    }
+
+    private byte[] encode(Counters c) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(SNAPSHOT_FORMAT);
+            out.writeByte(windows.size());
+            for (int w = 0; w < windows.size(); w++) {
+                out.writeInt(windows.get(w).limit());
+                out.writeLong(windows.get(w).period().toMillis());
+                out.writeShort(slots);
+                out.writeLong(c.heads[w]);
+                int used = 0;
+                for (int i = 0; i < slots; i++) {
+                    used += c.own[w * slots + i] > 0 ? 1 : 0;
+                }
+                out.writeShort(used);
+                for (int age = 0; age < slots; age++) {
+                    int count = c.own[w * slots + ring(c.heads[w] - age)];
+                    if (count > 0) {
+                        out.writeShort(age);
+                        out.writeInt(count);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void restoreWindow(Counters c, DataInputStream in) throws IOException {
+        int snapshotLimit = in.readInt();
+        long snapshotPeriodMillis = in.readLong();
+        int snapshotSlots = in.readUnsignedShort();
+        long snapshotHead = in.readLong();
+        int used = in.readUnsignedShort();
+        int w = 0;
+        while (w < windows.size() && (windows.get(w).limit() != snapshotLimit
+                || windows.get(w).period().toMillis() != snapshotPeriodMillis || snapshotSlots != slots)) {
+            w++;
+        }
+        for (int i = 0; i < used; i++) {
+            long slot = snapshotHead - in.readUnsignedShort();
+            int count = in.readInt();
+            if (w == windows.size() || slot <= c.heads[w] - slots) {
+                continue;
+            }
+            // A snapshot from a node whose clock ran ahead is counted now rather than in the future
+            int index = w * slots + ring(Math.min(slot, c.heads[w]));
+            c.counts[index] += count;
+            c.totals[w] += count;
+        }
+    }
+
+    private int ring(long slot) {
+        return (int) Math.floorMod(slot, (long) slots);
+    }
+
+    /**
+     * At most {@code limit} uses in any {@code period}, or as many as the daily token limit when the limit is
+     * {@link #DAILY}.
+     */
+    public record Window(int limit, Duration period) {
+
+        public static final int DAILY = -1;
+
+        public Window {
+            if ((limit < 0 && limit != DAILY) || period.isNegative() || period.isZero()) {
+                throw new IllegalArgumentException("Quota window needs a limit >= 0 and a positive period: " + limit + "/" + period);
+            }
+        }
+
+        public int limitFor(int dailyLimit) {
+            return limit == DAILY ? dailyLimit : limit;
+        }
+    }
+
+    /**
+     * @param limit          the window's limit for this key
+     * @param resetsAtMillis when the oldest counted use leaves the window, {@code 0} if nothing is counted
+     */
+    public record Usage(Window window, int limit, int used, long resetsAtMillis) {
+        public int remaining() {
+            return Math.max(0, limit - used);
+        }
+    }
+
+    private static final class Counters {
+        private final int[] counts;
+        // The part of counts recorded by this instance, which is what its snapshots hold
+        private final int[] own;
+        private final long[] heads;
+        private final int[] totals;
+        private boolean dirty;
+        private boolean retired;
+
+        private Counters(int windows, int slots) {
+            this.counts = new int[windows * slots];
+            this.own = new int[windows * slots];
+            this.heads = new long[windows];
+            this.totals = new int[windows];
+        }
+    }
+}
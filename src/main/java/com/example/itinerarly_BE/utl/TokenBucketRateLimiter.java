@@ -0,0 +1,110 @@
+package com.example.itinerarly_BE.utl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keyed token buckets updated with compare-and-set, so concurrent requests never block each other.
+ *
+ * <p>Memory is bounded by {@code maxKeys}. An unseen key arriving at a full table makes room for itself: every bucket
+ * that has refilled completely is dropped, which loses no state, or the least recently used one if none has. Each new
+ * client therefore still gets a bucket of its own, and a flood of fresh keys can at worst reset someone's bucket, not
+ * lock them out. {@link #evictIdle} drops buckets idle for {@code idleTimeout} and refilled completely.
+ */
+public class TokenBucketRateLimiter {
+
+    private final int capacity;
+    private final double tokensPerNano;
+    private final int maxKeys;
+    private final long idleTimeoutNanos;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public TokenBucketRateLimiter(int capacity, double refillPerSecond, int maxKeys, long idleTimeout, TimeUnit unit) {
+        if (capacity <= 0 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("capacity and refill rate must be positive");
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.maxKeys = maxKeys;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+    }
+
+    /**
+     * Takes one token from the key's bucket.
+     *
+     * @return {@code 0} if the request may proceed, otherwise the nanoseconds until a token becomes available
+     */
+    public long tryAcquire(String key, long nowNanos) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys) {
+                makeRoom(nowNanos);
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(capacity, nowNanos));
+        }
+
+        while (true) {
+            State current = bucket.state.get();
+            double available = refill(current, nowNanos);
+            if (available < 1.0) {
+                return (long) Math.ceil((1.0 - available) / tokensPerNano);
+            }
+            State next = new State(available - 1.0, Math.max(current.updatedAt, nowNanos));
+            if (bucket.state.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public int evictIdle(long nowNanos) {
+        int evicted = 0;
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            State state = entry.getValue().state.get();
+            boolean idle = nowNanos - state.updatedAt > idleTimeoutNanos && refill(state, nowNanos) >= capacity;
+            if (idle && buckets.remove(entry.getKey(), entry.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private void makeRoom(long nowNanos) {
+        Map.Entry<String, Bucket> leastRecentlyUsed = null;
+        long leastRecentUpdate = 0;
+        boolean freed = false;
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            State state = entry.getValue().state.get();
+            if (refill(state, nowNanos) >= capacity) {
+                freed |= buckets.remove(entry.getKey(), entry.getValue());
+            } else if (leastRecentlyUsed == null || state.updatedAt - leastRecentUpdate < 0) {
+                leastRecentlyUsed = entry;
+                leastRecentUpdate = state.updatedAt;
+            }
+        }
+        if (!freed && leastRecentlyUsed != null) {
+            buckets.remove(leastRecentlyUsed.getKey(), leastRecentlyUsed.getValue());
+        }
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private double refill(State state, long nowNanos) {
+        long elapsed = Math.max(0, nowNanos - state.updatedAt);
+        return Math.min(capacity, state.tokens + elapsed * tokensPerNano);
+    }
+
+    private static final class Bucket {
+        private final AtomicReference<State> state;
+
+        private Bucket(int capacity, long nowNanos) {
+            this.state = new AtomicReference<>(new State(capacity, nowNanos));
+        }
+    }
+
+    private record State(double tokens, long updatedAt) {
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.itinerarly_BE.benchmark;
+
+import com.example.itinerarly_BE.config.CachingCorsConfiguration;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.CorsConfigurationSource;
+import org.springframework.web.cors.DefaultCorsProcessor;
+import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import org.springframework.web.filter.CorsFilter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CORS cost per request for a Vercel preview origin. {@code previous*} is the old setup: a path-matched
+ * {@link UrlBasedCorsConfigurationSource} in the security filter, then a second evaluation by Spring MVC's handler
+ * mapping. {@code current*} is the single filter with {@link CachingCorsConfiguration}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CorsBenchmark {
+
+    private static final List<String> ORIGINS = List.of(
+            "http://localhost:3000", "http://localhost:*", "https://itinerarly-fe.vercel.app", "https://*.vercel.app");
+    private static final String ORIGIN = "https://itinerarly-fe-git-feature-x.vercel.app";
+
+    private CorsFilter previousFilter;
+    private CorsConfiguration previousMvcConfig;
+    private DefaultCorsProcessor mvcProcessor;
+    private CorsFilter currentFilter;
+    private FilterChain chain;
+
+    @Setup
+    public void setUp() {
+        CorsConfiguration previous = configure(new CorsConfiguration());
+        previous.setAllowedOriginPatterns(ORIGINS);
+        UrlBasedCorsConfigurationSource previousSource = new UrlBasedCorsConfigurationSource();
+        previousSource.registerCorsConfiguration("/**", previous);
+        previousFilter = new CorsFilter(previousSource);
+        previousMvcConfig = previous;
+        mvcProcessor = new DefaultCorsProcessor();
+
+        CorsConfiguration current = configure(new CachingCorsConfiguration(ORIGINS, 1000));
+        CorsConfigurationSource currentSource = request -> current;
+        currentFilter = new CorsFilter(currentSource);
+
+        chain = (req, res) -> { };
+    }
+
+    @Benchmark
+    public MockHttpServletResponse previousPreflight() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        previousFilter.doFilter(preflight(), response, chain);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse currentPreflight() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        currentFilter.doFilter(preflight(), response, chain);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse previousSimpleRequest() throws Exception {
+        MockHttpServletRequest request = simpleRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        previousFilter.doFilter(request, response, (req, res) -> mvcProcessor.processRequest(previousMvcConfig, request, response));
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse currentSimpleRequest() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        currentFilter.doFilter(simpleRequest(), response, chain);
+        return response;
+    }
+
+    private static CorsConfiguration configure(CorsConfiguration configuration) {
+        configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS", "HEAD", "PATCH"));
+        configuration.setAllowedHeaders(List.of("*"));
+        configuration.setAllowCredentials(true);
+        configuration.setExposedHeaders(List.of("Set-Cookie", "Authorization", "X-Auth-Token"));
+        configuration.setMaxAge(3600L);
+        return configuration;
+    }
+
+    private static MockHttpServletRequest preflight() {
+        MockHttpServletRequest request = new MockHttpServletRequest("OPTIONS", "/api/v1/tokens/consume");
+        request.addHeader("Origin", ORIGIN);
+        request.addHeader("Access-Control-Request-Method", "POST");
+        request.addHeader("Access-Control-Request-Headers", "content-type");
+        return request;
+    }
+
+    private static MockHttpServletRequest simpleRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/tokens/remaining");
+        request.addHeader("Origin", ORIGIN);
+        return request;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CorsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
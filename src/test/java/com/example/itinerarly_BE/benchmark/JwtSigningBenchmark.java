@@ -0,0 +1,85 @@
+package com.example.itinerarly_BE.benchmark;
+
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.utl.AccessTokenPrincipal;
+import com.example.itinerarly_BE.utl.JwtTokenUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HS512 against ES256 in {@link JwtTokenUtil}. {@code sign} is a login or refresh, {@code verify} a full signature
+ * check as done for a token the verified-token cache has not seen yet, and {@code verifyCached} what every further
+ * request with the same cookie costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtSigningBenchmark {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(
+            "benchmark-secret-key-for-hs512-signing-padded-out-to-64-bytes-xx".getBytes(StandardCharsets.UTF_8));
+
+    @Param({"HS512", "ES256"})
+    public String algorithm;
+
+    private JwtTokenUtil jwtTokenUtil;
+    private User user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        // Without Spring Boot, logback defaults to DEBUG on the console, which would be all this measures
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+
+        jwtTokenUtil = new JwtTokenUtil();
+        ReflectionTestUtils.setField(jwtTokenUtil, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtTokenUtil, "claimNames", List.of("uid", "sub"));
+        ReflectionTestUtils.setField(jwtTokenUtil, "accessTokenTtlSeconds", 900L);
+        ReflectionTestUtils.setField(jwtTokenUtil, "verifiedCacheSize", 10000);
+        if ("ES256".equals(algorithm)) {
+            ReflectionTestUtils.setField(jwtTokenUtil, "keystoreLocation", "classpath:jwt-test-keys.p12");
+            ReflectionTestUtils.setField(jwtTokenUtil, "keystorePassword", "changeit");
+            ReflectionTestUtils.setField(jwtTokenUtil, "activeKid", "2026-10");
+        }
+        ReflectionTestUtils.invokeMethod(jwtTokenUtil, "init");
+
+        user = new User();
+        user.setId(12345L);
+        user.setOauthId("109876543210987654321");
+        user.setProvider("google");
+        token = jwtTokenUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtTokenUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public Map<String, Object> verify() {
+        return jwtTokenUtil.getClaimsFromToken(token);
+    }
+
+    @Benchmark
+    public AccessTokenPrincipal verifyCached() {
+        return jwtTokenUtil.parseAccessToken(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtSigningBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.itinerarly_BE.benchmark;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of checking the {@code auth-token} on a request. {@code previous} is the old full token parsed the old way,
+ * decoding the base64 secret on every call; {@code current} is the compact token through the parser built once in
+ * {@code JwtTokenUtil}. {@code main} also prints the Cookie header each variant sends with every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtTokenBenchmark {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(
+            "benchmark-secret-key-for-hs512-signing-padded-out-to-64-bytes-xx".getBytes(StandardCharsets.UTF_8));
+    private static final String SESSION_COOKIE = "JSESSIONID=" + "A1B2C3D4E5F6A7B8C9D0E1F2A3B4C5D6";
+
+    private String fullToken;
+    private String compactToken;
+    private JwtParser cachedParser;
+
+    @Setup
+    public void setUp() {
+        fullToken = fullToken();
+        compactToken = compactToken();
+        cachedParser = Jwts.parserBuilder().setSigningKey(key()).build();
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public Claims previousFullToken() {
+        return Jwts.parser().setSigningKey(SECRET).parseClaimsJws(fullToken).getBody();
+    }
+
+    @Benchmark
+    public Claims cachedParserFullToken() {
+        return cachedParser.parseClaimsJws(fullToken).getBody();
+    }
+
+    @Benchmark
+    public Claims currentCompactToken() {
+        return cachedParser.parseClaimsJws(compactToken).getBody();
+    }
+
+    static String fullToken() {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("name", "Test User");
+        claims.put("email", "test.user@example.com");
+        claims.put("login", null);
+        claims.put("id", null);
+        claims.put("avatar", "https://lh3.googleusercontent.com/a/ACg8ocJ0aBcDeFgHiJkLmNoPqRsTuVwXyZ0123456789abcdefghijklmno=s96-c");
+        claims.put("iat", System.currentTimeMillis() / 1000);
+        return sign(claims);
+    }
+
+    static String compactToken() {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("uid", 12345L);
+        claims.put("sub", "google:109876543210987654321");
+        return sign(claims);
+    }
+
+    private static String sign(Map<String, Object> claims) {
+        return Jwts.builder()
+                .setClaims(claims)
+                .setExpiration(new Date(System.currentTimeMillis() + 86400000))
+                .signWith(key(), SignatureAlgorithm.HS512)
+                .compact();
+    }
+
+    private static Key key() {
+        return new SecretKeySpec(Decoders.BASE64.decode(SECRET), SignatureAlgorithm.HS512.getJcaName());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String userInfo = URLEncoder.encode("{\"name\":\"Test User\",\"email\":\"test.user@example.com\",\"provider\":\"google\"}",
+                StandardCharsets.UTF_8);
+        String previous = "auth-token=" + fullToken() + "; userInfo=" + userInfo + "; isLoggedIn=true; " + SESSION_COOKIE;
+        String current = "auth-token=" + compactToken() + "; isLoggedIn=true; " + SESSION_COOKIE;
+        System.out.printf("Cookie header: previous %d bytes, compact token without userInfo %d bytes%n",
+                previous.length(), current.length());
+        new Runner(new OptionsBuilder().include(JwtTokenBenchmark.class.getSimpleName()).build()).run();
+    }
+}
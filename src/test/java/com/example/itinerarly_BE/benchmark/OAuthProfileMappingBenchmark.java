@@ -0,0 +1,99 @@
+package com.example.itinerarly_BE.benchmark;
+
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.utl.GitHubProfileExtractor;
+import com.example.itinerarly_BE.utl.GoogleProfileExtractor;
+import com.example.itinerarly_BE.utl.OAuthProfileExtractors;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping OAuth2 login attributes to a {@link User}. {@code previous} is the provider sniffing the success handler
+ * used to do ({@code iss} contains "google", else {@code login} present, one {@code getAttribute} per field);
+ * {@code registry} looks the extractor up by registration id and reads each attribute once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OAuthProfileMappingBenchmark {
+
+    @Param({"google", "github"})
+    public String provider;
+
+    private OAuth2AuthenticationToken authentication;
+    private OAuthProfileExtractors extractors;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> attributes = new HashMap<>();
+        if ("google".equals(provider)) {
+            attributes.put("iss", "https://accounts.google.com");
+            attributes.put("sub", "109876543210987654321");
+            attributes.put("email", "test.user@example.com");
+            attributes.put("email_verified", true);
+            attributes.put("name", "Test User");
+            attributes.put("given_name", "Test");
+            attributes.put("family_name", "User");
+            attributes.put("picture", "https://lh3.googleusercontent.com/a/ACg8ocJ0aBcDeFgHiJkLmNoPqRsTuVwXyZ=s96-c");
+        } else {
+            attributes.put("id", 583231);
+            attributes.put("login", "octocat");
+            attributes.put("node_id", "MDQ6VXNlcjU4MzIzMQ==");
+            attributes.put("name", "The Octocat");
+            attributes.put("email", null);
+            attributes.put("company", "@github");
+            attributes.put("avatar_url", "https://avatars.githubusercontent.com/u/583231?v=4");
+        }
+        DefaultOAuth2User principal = new DefaultOAuth2User(AuthorityUtils.createAuthorityList("OAUTH2_USER"),
+                attributes, "google".equals(provider) ? "sub" : "login");
+        authentication = new OAuth2AuthenticationToken(principal, principal.getAuthorities(), provider);
+        extractors = new OAuthProfileExtractors(List.of(new GoogleProfileExtractor(), new GitHubProfileExtractor()));
+    }
+
+    @Benchmark
+    public User previous() {
+        OAuth2User oauth2User = authentication.getPrincipal();
+        User user = new User();
+        if (oauth2User.getAttribute("iss") != null && oauth2User.getAttribute("iss").toString().contains("google")) {
+            user.setOauthId(oauth2User.getAttribute("sub").toString());
+            user.setProvider("google");
+            user.setEmail(oauth2User.getAttribute("email"));
+            user.setName(oauth2User.getAttribute("name"));
+            user.setUsername(oauth2User.getAttribute("email"));
+            user.setAvatarUrl(oauth2User.getAttribute("picture"));
+        } else if (oauth2User.getAttribute("login") != null) {
+            user.setOauthId(oauth2User.getAttribute("id").toString());
+            user.setProvider("github");
+            String email = oauth2User.getAttribute("email");
+            String username = oauth2User.getAttribute("login");
+            user.setEmail(email != null ? email : username + "@github.local");
+            user.setName(oauth2User.getAttribute("name"));
+            user.setUsername(username);
+            user.setAvatarUrl(oauth2User.getAttribute("avatar_url"));
+        }
+        return user;
+    }
+
+    @Benchmark
+    public User registry() {
+        return extractors.extract(authentication).applyTo(new User());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OAuthProfileMappingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
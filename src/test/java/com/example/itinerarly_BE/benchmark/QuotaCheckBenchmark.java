@@ -0,0 +1,82 @@
+package com.example.itinerarly_BE.benchmark;
+
+import com.example.itinerarly_BE.utl.SlidingWindowQuota;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the in-memory rolling quota check that sits on every token use: an allowed use (taken back so the
+ * windows never fill), a refused use and the remaining-count read behind {@code /remaining}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuotaCheckBenchmark {
+
+    private static final int USERS = 10_000;
+
+    private SlidingWindowQuota quota;
+    private SlidingWindowQuota full;
+
+    @State(Scope.Thread)
+    public static class Caller {
+        String oauthId;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            oauthId = "oauth-" + (Thread.currentThread().threadId() % USERS);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        List<SlidingWindowQuota.Window> windows = List.of(
+                new SlidingWindowQuota.Window(6, Duration.ofHours(24)),
+                new SlidingWindowQuota.Window(2, Duration.ofMinutes(1)));
+        quota = new SlidingWindowQuota(windows, 60);
+        full = new SlidingWindowQuota(windows, 60);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < USERS; i++) {
+            quota.tryConsume("oauth-" + i, 0, now);
+            full.tryConsume("oauth-" + i, 0, now);
+            full.tryConsume("oauth-" + i, 0, now);
+        }
+    }
+
+    @Benchmark
+    public boolean consumeAndRefund(Caller caller) {
+        long now = System.currentTimeMillis();
+        boolean allowed = quota.tryConsume(caller.oauthId, 0, now);
+        quota.refund(caller.oauthId, now);
+        return allowed;
+    }
+
+    @Benchmark
+    public boolean rejected(Caller caller) {
+        return full.tryConsume(caller.oauthId, 0, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public int remaining(Caller caller) {
+        return quota.remaining(caller.oauthId, 0, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int remainingContended(Caller caller) {
+        return quota.remaining(caller.oauthId, 0, System.currentTimeMillis());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(QuotaCheckBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.itinerarly_BE.benchmark;
+
+import com.example.itinerarly_BE.config.RateLimitFilter;
+import com.example.itinerarly_BE.utl.TokenBucketRateLimiter;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@link RateLimitFilter} on an allowed request compared with calling the chain directly.
+ * Buckets are sized so the limiter never rejects during the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitFilterBenchmark {
+
+    private RateLimitFilter filter;
+    private FilterChain chain;
+
+    @State(Scope.Thread)
+    public static class Exchange {
+        MockHttpServletRequest request;
+        MockHttpServletResponse response;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            long thread = Thread.currentThread().threadId();
+            MockHttpSession session = new MockHttpSession();
+            session.setAttribute("oauth_id", "oauth-" + thread);
+            request = new MockHttpServletRequest("GET", "/api/v1/tokens/remaining");
+            request.setRemoteAddr("10.0.0." + (thread % 250));
+            request.setSession(session);
+            response = new MockHttpServletResponse();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        filter = new RateLimitFilter(true,
+                new TokenBucketRateLimiter(Integer.MAX_VALUE, 1e9, 10_000, 10, TimeUnit.MINUTES),
+                new TokenBucketRateLimiter(Integer.MAX_VALUE, 1e9, 10_000, 10, TimeUnit.MINUTES));
+        chain = (req, res) -> { };
+    }
+
+    @Benchmark
+    public void baselineChain(Exchange exchange) throws Exception {
+        chain.doFilter(exchange.request, exchange.response);
+    }
+
+    @Benchmark
+    public void rateLimitedChain(Exchange exchange) throws Exception {
+        filter.doFilter(exchange.request, exchange.response, chain);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void rateLimitedChainContended(Exchange exchange) throws Exception {
+        filter.doFilter(exchange.request, exchange.response, chain);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RateLimitFilterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.itinerarly_BE.benchmark;
+
+import com.example.itinerarly_BE.config.JwtAuthenticationFilter;
+import com.example.itinerarly_BE.controller.TokenController;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.QuotaSnapshotRepository;
+import com.example.itinerarly_BE.service.PlanCatalog;
+import com.example.itinerarly_BE.service.QuotaService;
+import com.example.itinerarly_BE.service.ResourceVersionCache;
+import com.example.itinerarly_BE.service.TokenService;
+import com.example.itinerarly_BE.service.UserCache;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.JwtTokenUtil;
+import com.example.itinerarly_BE.utl.SlidingWindowQuota;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextHolderFilter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Throughput of {@code GET /api/v1/tokens/remaining} by how the caller is identified. Both variants run behind
+ * Spring Security's {@link SecurityContextHolderFilter}; {@code session} reads the security context and user
+ * attributes from the HTTP session as before, {@code accessToken} verifies the Bearer token in memory and never
+ * opens the session. The balance lookup is stubbed so only the auth path differs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RemainingTokensAuthBenchmark {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(
+            "benchmark-secret-key-for-hs512-signing-padded-out-to-64-bytes-xx".getBytes());
+    private static final String OAUTH_ID = "109876543210987654321";
+
+    private MockMvc sessionMvc;
+    private MockMvc accessTokenMvc;
+    private MockHttpSession session;
+    private String bearer;
+
+    @Setup
+    public void setUp() {
+        // Without Spring Boot, logback defaults to DEBUG on the console, which would be all this measures
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+
+        TokenService tokenService = Mockito.mock(TokenService.class);
+        Mockito.when(tokenService.getRemainingTokens(OAUTH_ID)).thenReturn(4);
+        TokenController tokenController = new TokenController();
+        ReflectionTestUtils.setField(tokenController, "tokenService", tokenService);
+        ReflectionTestUtils.setField(tokenController, "resourceVersionCache", new ResourceVersionCache(1000, 0));
+        ReflectionTestUtils.setField(tokenController, "quotaService", new QuotaService(new SlidingWindowQuota(List.of(), 60),
+                Mockito.mock(QuotaSnapshotRepository.class), new DbBulkhead(new SimpleMeterRegistry(), 4, 2000, 1, 5),
+                TransactionOperations.withoutTransaction(), Mockito.mock(UserCache.class), Mockito.mock(PlanCatalog.class),
+                new SimpleMeterRegistry()));
+
+        JwtTokenUtil jwtTokenUtil = new JwtTokenUtil();
+        ReflectionTestUtils.setField(jwtTokenUtil, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtTokenUtil, "claimNames", List.of("uid", "sub"));
+        ReflectionTestUtils.setField(jwtTokenUtil, "accessTokenTtlSeconds", 900L);
+        ReflectionTestUtils.setField(jwtTokenUtil, "verifiedCacheSize", 10000);
+        ReflectionTestUtils.invokeMethod(jwtTokenUtil, "init");
+
+        SecurityContextHolderFilter contextFilter = new SecurityContextHolderFilter(new HttpSessionSecurityContextRepository());
+        sessionMvc = MockMvcBuilders.standaloneSetup(tokenController).addFilters(contextFilter).build();
+        accessTokenMvc = MockMvcBuilders.standaloneSetup(tokenController)
+                .addFilters(contextFilter, new JwtAuthenticationFilter(jwtTokenUtil)).build();
+
+        DefaultOAuth2User principal = new DefaultOAuth2User(AuthorityUtils.createAuthorityList("OAUTH2_USER"),
+                Map.of("sub", OAUTH_ID, "email", "test.user@example.com"), "sub");
+        session = new MockHttpSession();
+        session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY,
+                new SecurityContextImpl(new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google")));
+        session.setAttribute("jwt_token", "opaque");
+        session.setAttribute("user_id", 7L);
+        session.setAttribute("user_email", "test.user@example.com");
+        session.setAttribute("oauth_id", OAUTH_ID);
+
+        User user = new User();
+        user.setId(7L);
+        user.setOauthId(OAUTH_ID);
+        user.setProvider("google");
+        bearer = "Bearer " + jwtTokenUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public MvcResult session() throws Exception {
+        return sessionMvc.perform(get("/api/v1/tokens/remaining").session(session)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult accessToken() throws Exception {
+        return accessTokenMvc.perform(get("/api/v1/tokens/remaining").header("Authorization", bearer)).andReturn();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RemainingTokensAuthBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.itinerarly_BE.benchmark;
+
+import com.example.itinerarly_BE.model.TokenUsage;
+import com.example.itinerarly_BE.service.TokenUsageRecorder;
+import com.example.itinerarly_BE.service.UsageRollupService;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * What the token usage ledger adds to a {@code /consume}: queueing a use while the background writer drains into an
+ * in-memory H2 database, against a disabled recorder and against the synchronous single-row insert per request it
+ * replaces. Against MySQL the insert costs a network round trip on top.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenUsageRecordBenchmark {
+
+    private static final int USERS = 10_000;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TokenUsageRecorder recorder;
+    private TokenUsageRecorder disabled;
+
+    @State(Scope.Thread)
+    public static class Caller {
+        String oauthId;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            oauthId = "oauth-" + (Thread.currentThread().threadId() % USERS);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:usage-" + UUID.randomUUID(), "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE token_usage (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "oauth_id VARCHAR(255) NOT NULL, source VARCHAR(16) NOT NULL, tokens INT NOT NULL, "
+                + "used_at TIMESTAMP(6) NOT NULL)");
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DbBulkhead dbBulkhead = new DbBulkhead(meterRegistry, 4, 2000, 1, 5);
+        // Rollups only add to the writer's work, not to what a request pays
+        UsageRollupService rollups = mock(UsageRollupService.class);
+        recorder = new TokenUsageRecorder(jdbcTemplate, rollups, dbBulkhead, TransactionOperations.withoutTransaction(),
+                meterRegistry, true, 100_000, 500, "drop", 50, 10_000);
+        recorder.start();
+        disabled = new TokenUsageRecorder(jdbcTemplate, rollups, dbBulkhead, TransactionOperations.withoutTransaction(),
+                new SimpleMeterRegistry(), false, 1, 1, "drop", 0, 0);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        recorder.shutdown();
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public void queued(Caller caller) {
+        recorder.record(caller.oauthId, TokenUsage.Source.CONSUME, 1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void queuedContended(Caller caller) {
+        recorder.record(caller.oauthId, TokenUsage.Source.CONSUME, 1);
+    }
+
+    @Benchmark
+    public void disabled(Caller caller) {
+        disabled.record(caller.oauthId, TokenUsage.Source.CONSUME, 1);
+    }
+
+    @Benchmark
+    public int insertPerRequest(Caller caller) {
+        return jdbcTemplate.update("INSERT INTO token_usage (oauth_id, source, tokens, used_at) VALUES (?, ?, ?, ?)",
+                caller.oauthId, TokenUsage.Source.CONSUME.name(), 1, Timestamp.from(Instant.now()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TokenUsageRecordBenchmark.class.getSimpleName()).build()).run();
+    }
+}
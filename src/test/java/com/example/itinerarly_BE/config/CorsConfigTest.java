@@ -0,0 +1,112 @@
+package com.example.itinerarly_BE.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.CorsConfigurationSource;
+import org.springframework.web.filter.CorsFilter;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorsConfigTest {
+
+    private static final List<String> PATTERNS =
+            List.of("http://localhost:*", "https://*.vercel.app", "https://itinerarly-fe.vercel.app",
+                    "http://127.0.0.1:[*]", "http://0.0.0.0:[3000,3001]");
+
+    private CorsFilter corsFilter;
+
+    @BeforeEach
+    void setUp() {
+        CorsConfig corsConfig = new CorsConfig();
+        ReflectionTestUtils.setField(corsConfig, "frontendUrl", "https://itinerarly.example.com");
+        ReflectionTestUtils.setField(corsConfig, "allowedOriginPatterns", List.of("http://localhost:*", "https://*.vercel.app"));
+        ReflectionTestUtils.setField(corsConfig, "originCacheSize", 100);
+        CorsConfigurationSource source = corsConfig.corsConfigurationSource();
+        corsFilter = new CorsFilter(source);
+    }
+
+    @Test
+    void shouldMatchOriginsLikeSpringPatternMatching() {
+        // Given
+        CachingCorsConfiguration caching = new CachingCorsConfiguration(PATTERNS, 100);
+        CorsConfiguration reference = new CorsConfiguration();
+        reference.setAllowedOriginPatterns(PATTERNS);
+        List<String> origins = List.of(
+                "http://localhost", "http://localhost:3000", "http://localhost:8080/", "http://localhost.evil.com",
+                "http://localhost:",
+                "https://localhost:3000", "https://itinerarly-fe.vercel.app", "https://ITINERARLY-FE.vercel.app",
+                "https://preview-123.vercel.app", "https://vercel.app", "https://evil.com/.vercel.app",
+                "http://preview.vercel.app", "https://preview.vercel.app.evil.com", "http://127.0.0.1", "http://127.0.0.1:9000",
+                "http://0.0.0.0:3001", "http://0.0.0.0:3002", "null", "");
+
+        // When / Then - twice, so cached decisions are checked too
+        for (int round = 0; round < 2; round++) {
+            for (String origin : origins) {
+                assertEquals(reference.checkOrigin(origin), caching.checkOrigin(origin), origin);
+            }
+        }
+    }
+
+    @Test
+    void shouldBoundCachedOriginDecisions() {
+        // Given
+        CachingCorsConfiguration caching = new CachingCorsConfiguration(PATTERNS, 10);
+
+        // When
+        for (int i = 0; i < 25; i++) {
+            caching.checkOrigin("https://attacker-" + i + ".example.com");
+        }
+
+        // Then
+        assertTrue(caching.cachedOrigins() <= 10);
+        assertEquals("https://preview.vercel.app", caching.checkOrigin("https://preview.vercel.app"));
+    }
+
+    @Test
+    void shouldAnswerPreflightForAllowedOrigin() throws Exception {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("OPTIONS", "/api/v1/tokens/consume");
+        request.addHeader("Origin", "https://preview-42.vercel.app");
+        request.addHeader("Access-Control-Request-Method", "POST");
+        request.addHeader("Access-Control-Request-Headers", "content-type");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        // When
+        corsFilter.doFilter(request, response, chain);
+
+        // Then
+        assertEquals(200, response.getStatus());
+        assertNull(chain.getRequest(), "preflight must not reach the application");
+        assertEquals("https://preview-42.vercel.app", response.getHeader("Access-Control-Allow-Origin"));
+        assertEquals("true", response.getHeader("Access-Control-Allow-Credentials"));
+        assertEquals("3600", response.getHeader("Access-Control-Max-Age"));
+    }
+
+    @Test
+    void shouldAllowConfiguredFrontendAndRejectOtherOrigins() throws Exception {
+        // Given
+        MockHttpServletRequest allowed = new MockHttpServletRequest("GET", "/api/v1/tokens/remaining");
+        allowed.addHeader("Origin", "https://itinerarly.example.com");
+        MockHttpServletRequest rejected = new MockHttpServletRequest("GET", "/api/v1/tokens/remaining");
+        rejected.addHeader("Origin", "https://evil.example.com");
+        MockHttpServletResponse allowedResponse = new MockHttpServletResponse();
+        MockHttpServletResponse rejectedResponse = new MockHttpServletResponse();
+
+        // When
+        corsFilter.doFilter(allowed, allowedResponse, new MockFilterChain());
+        corsFilter.doFilter(rejected, rejectedResponse, new MockFilterChain());
+
+        // Then
+        assertEquals("https://itinerarly.example.com", allowedResponse.getHeader("Access-Control-Allow-Origin"));
+        assertEquals(403, rejectedResponse.getStatus());
+        assertNull(rejectedResponse.getHeader("Access-Control-Allow-Origin"));
+    }
+}
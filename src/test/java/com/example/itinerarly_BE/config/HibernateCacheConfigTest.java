@@ -0,0 +1,163 @@
+package com.example.itinerarly_BE.config;
+
+import com.example.itinerarly_BE.model.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.cache.CacheManager;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HibernateCacheConfigTest {
+
+    private CacheManager cacheManager;
+    private SessionFactory sessionFactory;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = HibernateCacheConfig.createCacheManager(100, 60);
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:l2-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .setProperty("hibernate.generate_statistics", "true");
+        HibernateCacheConfig.hibernateProperties(cacheManager).forEach(configuration.getProperties()::put);
+        sessionFactory = configuration.buildSessionFactory();
+        statistics = sessionFactory.getStatistics();
+
+        sessionFactory.inTransaction(session -> {
+            User user = new User();
+            user.setOauthId("oauth-1");
+            user.setProvider("google");
+            user.setName("Test User");
+            user.setDailyTokens(6);
+            session.persist(user);
+        });
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionFactory.close();
+        cacheManager.close();
+    }
+
+    @Test
+    void shouldServeRepeatedNaturalIdReadsFromCache() {
+        // When
+        User first = sessionFactory.fromSession(session -> findByOauthId(session, "oauth-1"));
+        long statementsAfterFirstRead = statistics.getPrepareStatementCount();
+        User second = sessionFactory.fromSession(session -> findByOauthId(session, "oauth-1"));
+        User third = sessionFactory.fromSession(session -> findByOauthId(session, "oauth-1"));
+
+        // Then
+        assertEquals(6, first.getDailyTokens());
+        assertEquals(6, third.getDailyTokens());
+        assertEquals(first.getId(), second.getId());
+        assertEquals(statementsAfterFirstRead, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getNaturalIdCacheHitCount() >= 2);
+        assertTrue(statistics.getSecondLevelCacheHitCount() >= 2);
+    }
+
+    @Test
+    void shouldEvictCachedUsersOnBulkUpdate() {
+        // Given
+        sessionFactory.fromSession(session -> findByOauthId(session, "oauth-1"));
+
+        // When
+        sessionFactory.inTransaction(session -> session.createMutationQuery(
+                        "UPDATE User u SET u.dailyTokens = u.dailyTokens - 1 WHERE u.oauthId = :oauthId AND u.lastTokenRefresh = :day")
+                .setParameter("oauthId", "oauth-1")
+                .setParameter("day", LocalDate.now())
+                .executeUpdate());
+        User afterUpdate = sessionFactory.fromSession(session -> findByOauthId(session, "oauth-1"));
+
+        // Then
+        assertEquals(5, afterUpdate.getDailyTokens());
+    }
+
+    @Test
+    void shouldUpdateCacheOnEntityWrite() {
+        // Given
+        sessionFactory.fromSession(session -> findByOauthId(session, "oauth-1"));
+
+        // When
+        sessionFactory.inTransaction(session -> findByOauthId(session, "oauth-1").setDailyTokens(10));
+        long statementsAfterWrite = statistics.getPrepareStatementCount();
+        User afterWrite = sessionFactory.fromSession(session -> findByOauthId(session, "oauth-1"));
+
+        // Then
+        assertEquals(10, afterWrite.getDailyTokens());
+        assertEquals(statementsAfterWrite, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void shouldReadDatabaseThroughQueriesEvenWhenCached() {
+        // Given - cached, then changed behind Hibernate's back as another node would
+        sessionFactory.fromSession(session -> findByOauthId(session, "oauth-1"));
+        sessionFactory.inTransaction(session -> session.doWork(connection ->
+                connection.createStatement().executeUpdate("UPDATE users SET daily_tokens = 2")));
+
+        // When - the query UserRepository.findByOauthId derives
+        User queried = sessionFactory.fromSession(session -> session
+                .createSelectionQuery("FROM User u WHERE u.oauthId = :oauthId", User.class)
+                .setParameter("oauthId", "oauth-1")
+                .getSingleResult());
+
+        // Then
+        assertEquals(2, queried.getDailyTokens());
+    }
+
+    @Test
+    void shouldLoadFromDatabaseForUnknownOauthId() {
+        // When
+        User missing = sessionFactory.fromSession(session -> findByOauthId(session, "unknown"));
+
+        // Then
+        assertNull(missing);
+        assertEquals(1, statistics.getNaturalIdCacheMissCount());
+    }
+
+    @Test
+    void shouldNotCacheWhenDisabled() {
+        // Given - the properties used with app.hibernate-cache.enabled=false
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:l2-off-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .setProperty("hibernate.generate_statistics", "true");
+        HibernateCacheConfig.DISABLED.forEach(configuration.getProperties()::put);
+
+        try (SessionFactory uncached = configuration.buildSessionFactory()) {
+            uncached.inTransaction(session -> {
+                User user = new User();
+                user.setOauthId("oauth-1");
+                user.setProvider("google");
+                session.persist(user);
+            });
+
+            // When
+            uncached.fromSession(session -> findByOauthId(session, "oauth-1"));
+            uncached.fromSession(session -> findByOauthId(session, "oauth-1"));
+
+            // Then
+            assertFalse(uncached.getSessionFactoryOptions().isSecondLevelCacheEnabled());
+            assertEquals(0, uncached.getStatistics().getSecondLevelCacheHitCount());
+        }
+    }
+
+    private static User findByOauthId(Session session, String oauthId) {
+        // Same lookup as UserRepositoryImpl.findReadOnlyByOauthId
+        return session.bySimpleNaturalId(User.class).load(oauthId);
+    }
+}
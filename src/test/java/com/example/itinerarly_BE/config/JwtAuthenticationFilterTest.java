@@ -0,0 +1,163 @@
+package com.example.itinerarly_BE.config;
+
+import com.example.itinerarly_BE.controller.TokenController;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.QuotaSnapshotRepository;
+import com.example.itinerarly_BE.service.PlanCatalog;
+import com.example.itinerarly_BE.service.QuotaService;
+import com.example.itinerarly_BE.service.ResourceVersionCache;
+import com.example.itinerarly_BE.service.TokenService;
+import com.example.itinerarly_BE.service.UserCache;
+import com.example.itinerarly_BE.utl.AccessTokenPrincipal;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.JwtTokenUtil;
+import com.example.itinerarly_BE.utl.SlidingWindowQuota;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class JwtAuthenticationFilterTest {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(
+            "test-secret-key-for-testing-purposes-only-padded-to-64-bytes-HS5".getBytes());
+
+    private JwtTokenUtil jwtTokenUtil;
+    private JwtAuthenticationFilter filter;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        jwtTokenUtil = jwtTokenUtil(900);
+        filter = new JwtAuthenticationFilter(jwtTokenUtil);
+
+        user = new User();
+        user.setId(7L);
+        user.setOauthId("109876543210987654321");
+        user.setProvider("google");
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void shouldAuthenticateBearerTokenWithoutLoadingSessionContext() throws Exception {
+        // Given - the session-backed context must stay untouched
+        SecurityContextHolder.getContextHolderStrategy().setDeferredContext(() -> {
+            throw new AssertionError("session security context was loaded");
+        });
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/tokens/remaining");
+        request.addHeader("Authorization", "Bearer " + jwtTokenUtil.generateToken(user));
+        MockFilterChain chain = new MockFilterChain();
+
+        // When
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Then
+        assertNotNull(chain.getRequest());
+        assertTrue(filter.hasValidAccessToken(request));
+        assertEquals(new AccessTokenPrincipal(7L, "109876543210987654321", "google"), AccessTokenPrincipal.current());
+        assertNull(request.getSession(false));
+    }
+
+    @Test
+    void shouldAuthenticateAccessTokenCookie() throws Exception {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/tokens/remaining");
+        request.setCookies(new Cookie("auth-token", jwtTokenUtil.generateToken(user)));
+
+        // When
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertEquals("109876543210987654321", AccessTokenPrincipal.current().oauthId());
+    }
+
+    @Test
+    void shouldLeaveExpiredTokensToSessionFallback() throws Exception {
+        // Given
+        String expired = jwtTokenUtil(-1).generateToken(user);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/tokens/remaining");
+        request.addHeader("Authorization", "Bearer " + expired);
+        MockFilterChain chain = new MockFilterChain();
+
+        // When
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Then
+        assertNotNull(chain.getRequest());
+        assertFalse(filter.hasValidAccessToken(request), "expired tokens must be routed to the session chain");
+        assertNull(AccessTokenPrincipal.current());
+    }
+
+    @Test
+    void shouldServeRemainingTokensFromAccessTokenAlone() throws Exception {
+        // Given
+        TokenService tokenService = mock(TokenService.class);
+        when(tokenService.getRemainingTokens("109876543210987654321")).thenReturn(4);
+        TokenController tokenController = new TokenController();
+        ReflectionTestUtils.setField(tokenController, "tokenService", tokenService);
+        ReflectionTestUtils.setField(tokenController, "resourceVersionCache", new ResourceVersionCache(100, 0));
+        ReflectionTestUtils.setField(tokenController, "quotaService", new QuotaService(new SlidingWindowQuota(List.of(), 60), mock(QuotaSnapshotRepository.class),
+                new DbBulkhead(new SimpleMeterRegistry(), 4, 2000, 1, 5), TransactionOperations.withoutTransaction(), mock(UserCache.class),
+                mock(PlanCatalog.class), new SimpleMeterRegistry()));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(tokenController).addFilters(filter).build();
+
+        // When
+        MvcResult result = mockMvc.perform(get("/api/v1/tokens/remaining")
+                        .header("Authorization", "Bearer " + jwtTokenUtil.generateToken(user)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.remainingTokens").value(4))
+                .andExpect(jsonPath("$.userId").value(7))
+                .andReturn();
+
+        // Then
+        assertNull(result.getRequest().getSession(false));
+    }
+
+    @Test
+    void shouldAuthenticateAsyncDispatchOfStreamedResponse() throws Exception {
+        // Given - the dispatch that completes a streamed response, after the original request thread let go
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/admin/users/export");
+        request.addHeader("Authorization", "Bearer " + jwtTokenUtil.generateToken(user));
+        request.setDispatcherType(DispatcherType.ASYNC);
+        WebAsyncUtils.getAsyncManager(request);
+
+        // When
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        // Then
+        assertEquals("109876543210987654321", AccessTokenPrincipal.current().oauthId());
+    }
+
+    private static JwtTokenUtil jwtTokenUtil(long ttlSeconds) {
+        JwtTokenUtil jwtTokenUtil = new JwtTokenUtil();
+        ReflectionTestUtils.setField(jwtTokenUtil, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtTokenUtil, "claimNames", List.of("uid", "sub"));
+        ReflectionTestUtils.setField(jwtTokenUtil, "accessTokenTtlSeconds", ttlSeconds);
+        ReflectionTestUtils.invokeMethod(jwtTokenUtil, "init");
+        return jwtTokenUtil;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.itinerarly_BE.config;
+
+import com.example.itinerarly_BE.utl.SlidingWindowQuota;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuotaConfigTest {
+
+    @Test
+    void shouldParseDailyAndFixedLimits() {
+        // When
+        List<SlidingWindowQuota.Window> windows = QuotaConfig.parseWindows("daily/24h, 2/1m");
+
+        // Then
+        assertEquals(List.of(
+                new SlidingWindowQuota.Window(SlidingWindowQuota.Window.DAILY, Duration.ofHours(24)),
+                new SlidingWindowQuota.Window(2, Duration.ofMinutes(1))), windows);
+    }
+
+    @Test
+    void shouldTurnQuotasOffWithAnEmptyList() {
+        // Given
+        QuotaConfig config = new QuotaConfig();
+        ReflectionTestUtils.setField(config, "windows", "");
+        ReflectionTestUtils.setField(config, "slotsPerWindow", 60);
+
+        // When
+        SlidingWindowQuota quota = config.slidingWindowQuota();
+
+        // Then
+        assertFalse(quota.isEnabled());
+    }
+
+    @Test
+    void shouldRejectMalformedWindows() {
+        assertThrows(IllegalArgumentException.class, () -> QuotaConfig.parseWindows("daily"));
+        assertThrows(NumberFormatException.class, () -> QuotaConfig.parseWindows("weekly/7d"));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.itinerarly_BE.config;
+
+import com.example.itinerarly_BE.utl.TokenBucketRateLimiter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTest {
+
+    private TokenBucketRateLimiter userLimiter;
+    private TokenBucketRateLimiter ipLimiter;
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        userLimiter = new TokenBucketRateLimiter(2, 1.0 / 60, 100, 10, TimeUnit.MINUTES);
+        ipLimiter = new TokenBucketRateLimiter(5, 1.0 / 60, 100, 10, TimeUnit.MINUTES);
+        filter = new RateLimitFilter(true, userLimiter, ipLimiter);
+    }
+
+    @Test
+    void shouldRejectUserOverCapacityWithRetryAfter() throws Exception {
+        // Given
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("oauth_id", "test-oauth-id");
+
+        // When
+        MockHttpServletResponse first = perform("/api/v1/tokens/remaining", "10.0.0.1", session);
+        MockHttpServletResponse second = perform("/api/v1/tokens/remaining", "10.0.0.1", session);
+        MockHttpServletResponse third = perform("/api/v1/tokens/remaining", "10.0.0.1", session);
+
+        // Then
+        assertEquals(200, first.getStatus());
+        assertEquals(200, second.getStatus());
+        assertEquals(429, third.getStatus());
+        assertEquals("60", third.getHeader("Retry-After"));
+        assertTrue(third.getContentAsString().contains("RATE_LIMITED"));
+    }
+
+    @Test
+    void shouldRejectAnonymousClientsPerIp() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, perform("/api/v1/auth/status", "10.0.0.2", null).getStatus());
+        }
+
+        assertEquals(429, perform("/api/v1/auth/status", "10.0.0.2", null).getStatus());
+        assertEquals(200, perform("/api/v1/auth/status", "10.0.0.3", null).getStatus());
+    }
+
+    @Test
+    void shouldNotThrottleNonApiOrPreflightRequests() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, perform("/test", "10.0.0.4", null).getStatus());
+
+            MockHttpServletRequest preflight = new MockHttpServletRequest("OPTIONS", "/api/v1/validate");
+            preflight.setRemoteAddr("10.0.0.4");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(preflight, response, new MockFilterChain());
+            assertEquals(200, response.getStatus());
+        }
+    }
+
+    @Test
+    void shouldRefillAndEvictIdleBuckets() {
+        long start = System.nanoTime();
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1.0, 100, 5, TimeUnit.SECONDS);
+
+        assertEquals(0, limiter.tryAcquire("client", start));
+        long wait = limiter.tryAcquire("client", start);
+        assertTrue(wait > 0 && wait <= TimeUnit.SECONDS.toNanos(1));
+        assertEquals(0, limiter.tryAcquire("client", start + TimeUnit.SECONDS.toNanos(1)));
+
+        assertEquals(0, limiter.evictIdle(start + TimeUnit.SECONDS.toNanos(2)));
+        assertEquals(1, limiter.evictIdle(start + TimeUnit.SECONDS.toNanos(10)));
+        assertEquals(0, limiter.size());
+    }
+
+    @Test
+    void shouldGiveNewKeysTheirOwnBucketWhenKeyTableIsFull() {
+        long now = System.nanoTime();
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 1.0 / 60, 2, 10, TimeUnit.MINUTES);
+
+        assertEquals(0, limiter.tryAcquire("a", now));
+        assertEquals(0, limiter.tryAcquire("b", now + 1));
+        assertEquals(0, limiter.tryAcquire("c", now + 2));
+        assertEquals(0, limiter.tryAcquire("d", now + 3));
+        assertEquals(2, limiter.size());
+
+        // "c" was used more recently than the evicted "a" and "b", so it keeps its drained bucket
+        assertTrue(limiter.tryAcquire("c", now + 4) > 0);
+        assertTrue(limiter.tryAcquire("d", now + 4) > 0);
+    }
+
+    @Test
+    void shouldDropRefilledBucketsBeforeTheLeastRecentlyUsedWhenKeyTableIsFull() {
+        long now = System.nanoTime();
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(2, 1.0, 2, 10, TimeUnit.MINUTES);
+
+        assertEquals(0, limiter.tryAcquire("drained", now));
+        assertEquals(0, limiter.tryAcquire("drained", now));
+        assertEquals(0, limiter.tryAcquire("refilled", now + 1));
+
+        // After a second "refilled" is full again, while the least recently used "drained" has one token back
+        long later = now + 1 + TimeUnit.SECONDS.toNanos(1);
+        assertEquals(0, limiter.tryAcquire("new", later));
+        assertEquals(2, limiter.size());
+        assertEquals(0, limiter.tryAcquire("drained", later));
+        assertTrue(limiter.tryAcquire("drained", later) > 0);
+    }
+
+    private MockHttpServletResponse perform(String uri, String remoteAddr, MockHttpSession session) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setRemoteAddr(remoteAddr);
+        if (session != null) {
+            request.setSession(session);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
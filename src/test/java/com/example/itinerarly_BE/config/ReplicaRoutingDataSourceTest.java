@@ -0,0 +1,155 @@
+package com.example.itinerarly_BE.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaRoutingDataSourceTest {
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    private ReplicaLagMonitor lagMonitor;
+    private JdbcTemplate routed;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primaryDb = h2("primary");
+        DataSource replicaDb = h2("replica");
+        primary = new JdbcTemplate(primaryDb);
+        replica = new JdbcTemplate(replicaDb);
+        for (JdbcTemplate db : new JdbcTemplate[] {primary, replica}) {
+            db.execute("CREATE TABLE users (oauth_id VARCHAR(64) PRIMARY KEY, daily_tokens INT)");
+            db.execute("INSERT INTO users VALUES ('test-oauth-id', 5)");
+        }
+        replica.execute("CREATE TABLE replica_lag (seconds INT)");
+        replica.execute("INSERT INTO replica_lag VALUES (0)");
+        // Mark the copies so each read shows where it was served from
+        replica.update("UPDATE users SET daily_tokens = 9");
+
+        lagMonitor = new ReplicaLagMonitor(replicaDb, "SELECT seconds FROM replica_lag", 5, new SimpleMeterRegistry());
+        lagMonitor.check();
+
+        DataSource routing = new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primaryDb, replicaDb, lagMonitor::isUsable));
+        routed = new JdbcTemplate(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRoutingDataSource.clearPrimaryPin();
+        primary.execute("DROP ALL OBJECTS");
+        replica.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void shouldServeReadOnlyTransactionsFromReplica() {
+        // When
+        Integer tokens = readOnly.execute(status -> balance());
+
+        // Then
+        assertEquals(9, tokens);
+    }
+
+    @Test
+    void shouldSendWritesAndNonTransactionalReadsToPrimary() {
+        // When
+        readWrite.executeWithoutResult(status ->
+                routed.update("UPDATE users SET daily_tokens = daily_tokens - 1 WHERE oauth_id = 'test-oauth-id'"));
+        ReplicaRoutingDataSource.clearPrimaryPin();
+
+        // Then
+        assertEquals(4, primary.queryForObject("SELECT daily_tokens FROM users", Integer.class));
+        assertEquals(9, replica.queryForObject("SELECT daily_tokens FROM users", Integer.class));
+        assertEquals(4, balance());
+        assertEquals(9, readOnly.<Integer>execute(status -> balance()));
+    }
+
+    @Test
+    void shouldReadOwnWritesFromPrimaryUntilPinIsCleared() {
+        // Given
+        primary.update("UPDATE users SET daily_tokens = 3");
+        readWrite.executeWithoutResult(status ->
+                routed.update("UPDATE users SET daily_tokens = daily_tokens - 1 WHERE oauth_id = 'test-oauth-id'"));
+
+        // When
+        Integer afterWrite = readOnly.execute(status -> balance());
+        ReplicaRoutingDataSource.clearPrimaryPin();
+        Integer nextRequest = readOnly.execute(status -> balance());
+
+        // Then
+        assertEquals(2, afterWrite);
+        assertEquals(9, nextRequest);
+    }
+
+    @Test
+    void shouldFallBackToPrimaryWhileReplicaLags() {
+        // Given
+        replica.update("UPDATE replica_lag SET seconds = 30");
+
+        // When
+        lagMonitor.check();
+        Integer whileLagging = readOnly.execute(status -> balance());
+        replica.update("UPDATE replica_lag SET seconds = 1");
+        lagMonitor.check();
+        Integer caughtUp = readOnly.execute(status -> balance());
+
+        // Then
+        assertEquals(5, whileLagging);
+        assertEquals(9, caughtUp);
+    }
+
+    @Test
+    void shouldFallBackToPrimaryWhenReplicationIsStopped() {
+        // Given
+        replica.update("UPDATE replica_lag SET seconds = NULL");
+
+        // When
+        lagMonitor.check();
+
+        // Then
+        assertFalse(lagMonitor.isUsable());
+        assertEquals(5, readOnly.<Integer>execute(status -> balance()));
+    }
+
+    @Test
+    void shouldNeverMarkAMissingReplicaUsable() {
+        // Given - DB_REPLICA_URL unset at startup
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ReplicaLagMonitor withoutReplica = new ReplicaLagMonitor(null, "SELECT seconds FROM replica_lag", 5,
+                meterRegistry);
+
+        // When
+        withoutReplica.check();
+
+        // Then
+        assertFalse(withoutReplica.isUsable());
+        assertNull(meterRegistry.find("db.replica.lag").gauge());
+    }
+
+    private Integer balance() {
+        return routed.queryForObject("SELECT daily_tokens FROM users WHERE oauth_id = 'test-oauth-id'", Integer.class);
+    }
+
+    private static DataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.itinerarly_BE.config;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.Compression;
+import org.springframework.boot.web.server.Http2;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerTuningConfigTest {
+
+    private static final String PROFILE_JSON = "{\"name\":\"Test User\",\"avatarUrl\":\"https://example.com/avatar.jpg\"}";
+
+    private WebServer webServer;
+    private URI baseUri;
+
+    @BeforeEach
+    void setUp() {
+        ServerTuningConfig config = new ServerTuningConfig();
+        ReflectionTestUtils.setField(config, "maxConcurrentStreams", 100);
+        ReflectionTestUtils.setField(config, "maxConcurrentStreamExecution", 20);
+        ReflectionTestUtils.setField(config, "http2KeepAliveTimeoutMs", 20000L);
+
+        Http2 http2 = new Http2();
+        http2.setEnabled(true);
+        Compression compression = new Compression();
+        compression.setEnabled(true);
+        compression.setMinResponseSize(DataSize.ofKilobytes(1));
+        compression.setMimeTypes(new String[]{"application/json"});
+
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        factory.setHttp2(http2);
+        factory.setCompression(compression);
+        config.serverTuningCustomizer().customize(factory);
+
+        webServer = factory.getWebServer(servletContext -> {
+            servletContext.addServlet("json", new HttpServlet() {
+                @Override
+                protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                    response.setContentType("application/json");
+                    int repeat = Integer.parseInt(request.getParameter("repeat"));
+                    response.getWriter().write("[" + String.join(",", Collections.nCopies(repeat, PROFILE_JSON)) + "]");
+                }
+            }).addMapping("/json");
+        });
+        webServer.start();
+        baseUri = URI.create("http://localhost:" + webServer.getPort());
+    }
+
+    @AfterEach
+    void tearDown() {
+        webServer.stop();
+    }
+
+    @Test
+    void shouldUpgradeToHttp2WithoutTls() throws Exception {
+        // Given
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+
+        // When
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(baseUri.resolve("/json?repeat=1")).build(), HttpResponse.BodyHandlers.ofString());
+
+        // Then
+        assertEquals(200, response.statusCode());
+        assertEquals(HttpClient.Version.HTTP_2, response.version());
+    }
+
+    @Test
+    void shouldCompressLargeJsonOnly() throws Exception {
+        // Given
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        // When
+        HttpResponse<byte[]> large = client.send(HttpRequest.newBuilder(baseUri.resolve("/json?repeat=100"))
+                .header("Accept-Encoding", "gzip").build(), HttpResponse.BodyHandlers.ofByteArray());
+        HttpResponse<byte[]> small = client.send(HttpRequest.newBuilder(baseUri.resolve("/json?repeat=1"))
+                .header("Accept-Encoding", "gzip").build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        // Then
+        assertEquals("gzip", large.headers().firstValue("Content-Encoding").orElse(null));
+        assertTrue(large.body().length < PROFILE_JSON.length() * 100 / 10);
+        assertTrue(small.headers().firstValue("Content-Encoding").isEmpty());
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.itinerarly_BE.controller;
+
+import com.example.itinerarly_BE.model.ProviderUsageRollup;
+import com.example.itinerarly_BE.model.UsagePeriod;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.UserSummary;
+import com.example.itinerarly_BE.service.PlanCatalog;
+import com.example.itinerarly_BE.service.TokenService;
+import com.example.itinerarly_BE.service.UsageRollupService;
+import com.example.itinerarly_BE.service.UserExportService;
+import com.example.itinerarly_BE.utl.AdminAccess;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ActiveProfiles("test")
+class AdminControllerTest {
+
+    private MockMvc mockMvc;
+    private PlanCatalog planCatalog;
+    private TokenService tokenService;
+    private UsageRollupService usageRollupService;
+    private UserExportService userExportService;
+
+    @BeforeEach
+    void setUp() {
+        planCatalog = mock(PlanCatalog.class);
+        tokenService = mock(TokenService.class);
+        usageRollupService = mock(UsageRollupService.class);
+        userExportService = mock(UserExportService.class);
+        AdminController adminController = new AdminController();
+        ReflectionTestUtils.setField(adminController, "adminAccess", new AdminAccess(List.of("admin-oauth-id")));
+        ReflectionTestUtils.setField(adminController, "planCatalog", planCatalog);
+        ReflectionTestUtils.setField(adminController, "tokenService", tokenService);
+        ReflectionTestUtils.setField(adminController, "usageRollupService", usageRollupService);
+        ReflectionTestUtils.setField(adminController, "userExportService", userExportService);
+        ReflectionTestUtils.setField(adminController, "objectMapper", new ObjectMapper());
+        mockMvc = MockMvcBuilders.standaloneSetup(adminController).build();
+    }
+
+    @Test
+    void shouldRefuseCallersNotListedAsAdmins() throws Exception {
+        // When / Then
+        mockMvc.perform(post("/api/v1/admin/plans/reload").session(session("test-oauth-id")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/api/v1/admin/plans/reload"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(planCatalog);
+    }
+
+    @Test
+    void shouldReloadPlansForAdmin() throws Exception {
+        // Given
+        when(planCatalog.reloadAndBroadcast()).thenReturn(new PlanCatalog.Snapshot(
+                Map.of("pro", new PlanCatalog.Limits("pro", "Pro", 50)), Instant.now()));
+        when(planCatalog.getDefaultPlanId()).thenReturn("free");
+
+        // When / Then
+        mockMvc.perform(post("/api/v1/admin/plans/reload").session(session("admin-oauth-id")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.plans[0].id").value("pro"))
+                .andExpect(jsonPath("$.plans[0].dailyTokenLimit").value(50))
+                .andExpect(jsonPath("$.defaultPlanId").value("free"));
+    }
+
+    @Test
+    void shouldChangeUsersPlan() throws Exception {
+        // Given
+        User user = new User();
+        user.setOauthId("test-oauth-id");
+        user.setPlanId("pro");
+        user.setDailyTokens(45);
+        when(tokenService.changePlan("test-oauth-id", "pro")).thenReturn(user);
+        when(tokenService.changePlan("test-oauth-id", "enterprise"))
+                .thenThrow(new IllegalArgumentException("Unknown plan: enterprise"));
+        when(planCatalog.resolve("pro")).thenReturn(new PlanCatalog.Limits("pro", "Pro", 50));
+        when(planCatalog.dailyTokenLimit(user)).thenReturn(50);
+
+        // When / Then
+        mockMvc.perform(put("/api/v1/admin/users/test-oauth-id/plan").session(session("admin-oauth-id"))
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"planId\":\"pro\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.planId").value("pro"))
+                .andExpect(jsonPath("$.remainingTokens").value(45));
+        mockMvc.perform(put("/api/v1/admin/users/test-oauth-id/plan").session(session("admin-oauth-id"))
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"planId\":\"enterprise\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorCode").value("UNKNOWN_PLAN"));
+    }
+
+    @Test
+    void shouldServeWeeklyProviderUsageFromRollups() throws Exception {
+        // Given - a Wednesday to a Thursday eight days later covers two weeks starting on Monday
+        ProviderUsageRollup rollup = new ProviderUsageRollup();
+        rollup.setPeriod(UsagePeriod.WEEK);
+        rollup.setPeriodStart(LocalDate.parse("2026-10-12"));
+        rollup.setProvider("github");
+        rollup.setTokens(42L);
+        rollup.setActiveUsers(7);
+        when(usageRollupService.providers(UsagePeriod.WEEK, LocalDate.parse("2026-10-12"), LocalDate.parse("2026-10-19")))
+                .thenReturn(List.of(rollup));
+
+        // When / Then
+        mockMvc.perform(get("/api/v1/admin/usage/providers").session(session("admin-oauth-id"))
+                        .param("period", "week").param("from", "2026-10-14").param("to", "2026-10-22"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.period").value("week"))
+                .andExpect(jsonPath("$.from").value("2026-10-12"))
+                .andExpect(jsonPath("$.to").value("2026-10-19"))
+                .andExpect(jsonPath("$.rows[0].periodStart").value("2026-10-12"))
+                .andExpect(jsonPath("$.rows[0].tokens").value(42))
+                .andExpect(jsonPath("$.rows[0].activeUsers").value(7));
+    }
+
+    @Test
+    void shouldRejectInvalidUsageQueries() throws Exception {
+        // When / Then
+        mockMvc.perform(get("/api/v1/admin/usage/providers").session(session("admin-oauth-id")).param("period", "month"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorCode").value("INVALID_USAGE_QUERY"));
+        mockMvc.perform(get("/api/v1/admin/usage/providers").session(session("admin-oauth-id"))
+                        .param("from", "2026-10-20").param("to", "2026-10-19"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/admin/usage/top-users").session(session("admin-oauth-id")).param("limit", "1000"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/admin/usage/providers").session(session("test-oauth-id")))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(usageRollupService);
+    }
+
+    @Test
+    void shouldListUsersWithCursorForNextPage() throws Exception {
+        // Given
+        when(userExportService.page(10, 2)).thenReturn(List.of(user(11), user(15)));
+        when(userExportService.page(15, 2)).thenReturn(List.of(user(16)));
+
+        // When / Then
+        mockMvc.perform(get("/api/v1/admin/users").session(session("admin-oauth-id"))
+                        .param("after", "10").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0].id").value(11))
+                .andExpect(jsonPath("$.users[1].oauthId").value("oauth-15"))
+                .andExpect(jsonPath("$.nextAfter").value(15));
+        mockMvc.perform(get("/api/v1/admin/users").session(session("admin-oauth-id"))
+                        .param("after", "15").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextAfter").isEmpty());
+        mockMvc.perform(get("/api/v1/admin/users").session(session("admin-oauth-id")).param("limit", "5000"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorCode").value("INVALID_USER_QUERY"));
+    }
+
+    @Test
+    void shouldStreamUserExportAsAttachment() throws Exception {
+        // Given
+        when(userExportService.export(eq(UserExportService.Format.CSV), any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write("id\r\n1\r\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+
+        // When
+        MvcResult result = mockMvc.perform(get("/api/v1/admin/users/export").session(session("admin-oauth-id"))
+                        .param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(header().string("Content-Disposition", startsWith("attachment;")))
+                .andExpect(content().string("id\r\n1\r\n"));
+    }
+
+    @Test
+    void shouldRejectExportForNonAdminsAndUnknownFormats() throws Exception {
+        // When
+        MvcResult forbidden = mockMvc.perform(get("/api/v1/admin/users/export").session(session("test-oauth-id")))
+                .andReturn();
+        MvcResult unknown = mockMvc.perform(get("/api/v1/admin/users/export").session(session("admin-oauth-id"))
+                        .param("format", "xlsx"))
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(forbidden))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("$.message").value("Admin access required"));
+        mockMvc.perform(asyncDispatch(unknown))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorCode").value("INVALID_USER_QUERY"));
+        verifyNoInteractions(userExportService);
+    }
+
+    private static UserSummary user(long id) {
+        return new UserSummary(id, "oauth-" + id, null, "User " + id, null, "github", null, 5,
+                LocalDate.parse("2026-10-19"), ZonedDateTime.parse("2026-10-19T08:30:00Z"));
+    }
+
+    private static MockHttpSession session(String oauthId) {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("jwt_token", "jwt");
+        session.setAttribute("oauth_id", oauthId);
+        return session;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.itinerarly_BE.controller;
+
+import com.example.itinerarly_BE.service.PlanCatalog;
+import com.example.itinerarly_BE.utl.AdminAccess;
+import com.example.itinerarly_BE.utl.DbBulkheadFullException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class ApiExceptionHandlerTest {
+
+    private MockMvc mockMvc;
+    private PlanCatalog planCatalog;
+
+    @BeforeEach
+    void setUp() {
+        planCatalog = mock(PlanCatalog.class);
+        AdminController adminController = new AdminController();
+        ReflectionTestUtils.setField(adminController, "adminAccess", new AdminAccess(List.of("admin-oauth-id")));
+        ReflectionTestUtils.setField(adminController, "planCatalog", planCatalog);
+        mockMvc = MockMvcBuilders.standaloneSetup(adminController)
+                .setControllerAdvice(new ApiExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void shouldAnswerBusyWhenTheBulkheadShedsTheRequest() throws Exception {
+        // Given
+        when(planCatalog.reloadAndBroadcast()).thenThrow(new DbBulkheadFullException("Database is busy, please retry"));
+
+        // When / Then
+        mockMvc.perform(post("/api/v1/admin/plans/reload").session(adminSession()))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.errorCode").value("DB_BUSY"))
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    @Test
+    void shouldAnswerInternalErrorForUnexpectedExceptions() throws Exception {
+        // Given
+        when(planCatalog.reloadAndBroadcast()).thenThrow(new IllegalStateException("boom"));
+
+        // When / Then
+        mockMvc.perform(post("/api/v1/admin/plans/reload").session(adminSession()))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.errorCode").value("INTERNAL_ERROR"));
+    }
+
+    @Test
+    void shouldKeepSpringMvcStatusesForUnsupportedMethods() throws Exception {
+        // When / Then
+        mockMvc.perform(put("/api/v1/admin/plans/reload").session(adminSession()))
+                .andExpect(status().isMethodNotAllowed());
+    }
+
+    private static MockHttpSession adminSession() {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("jwt_token", "jwt");
+        session.setAttribute("oauth_id", "admin-oauth-id");
+        return session;
+    }
+}
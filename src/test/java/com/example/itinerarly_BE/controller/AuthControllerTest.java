@@ -0,0 +1,70 @@
+package com.example.itinerarly_BE.controller;
+
+import com.example.itinerarly_BE.utl.AccessTokenPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class AuthControllerTest {
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new AuthController()).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void shouldReportAccessTokenCallerWithoutSession() throws Exception {
+        // Given
+        AccessTokenPrincipal principal = new AccessTokenPrincipal(1L, "test-oauth-id", "google");
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/auth/status"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.authenticated").value(true))
+                .andExpect(jsonPath("$.user.id").value(1))
+                .andExpect(jsonPath("$.user.provider").value("google"))
+                .andExpect(request().sessionAttributeDoesNotExist("jwt_token"));
+    }
+
+    @Test
+    void shouldReportSessionCallerWithoutAccessToken() throws Exception {
+        // Given
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("jwt_token", "session-jwt");
+        session.setAttribute("user_id", 1L);
+        session.setAttribute("user_email", "test@example.com");
+        session.setAttribute("user_name", "Test User");
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/auth/status").session(session))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.authenticated").value(true))
+                .andExpect(jsonPath("$.user.email").value("test@example.com"));
+    }
+
+    @Test
+    void shouldReportUnauthenticatedWithoutAccessTokenOrSession() throws Exception {
+        mockMvc.perform(get("/api/v1/auth/status"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.authenticated").value(false));
+    }
+}
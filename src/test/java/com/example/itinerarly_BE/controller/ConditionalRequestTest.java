@@ -0,0 +1,248 @@
+package com.example.itinerarly_BE.controller;
+
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.QuotaSnapshotRepository;
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.service.PlanCatalog;
+import com.example.itinerarly_BE.service.QuotaService;
+import com.example.itinerarly_BE.service.ResourceVersionCache;
+import com.example.itinerarly_BE.service.TokenBalanceChangedEvent;
+import com.example.itinerarly_BE.service.TokenService;
+import com.example.itinerarly_BE.service.UserCache;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.GitHubProfileExtractor;
+import com.example.itinerarly_BE.utl.GoogleProfileExtractor;
+import com.example.itinerarly_BE.utl.InMemoryInvalidationBus;
+import com.example.itinerarly_BE.utl.OAuthProfileExtractors;
+import com.example.itinerarly_BE.utl.SlidingWindowQuota;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class ConditionalRequestTest {
+
+    private MockMvc mockMvc;
+    private TokenService tokenService;
+    private UserRepository userRepository;
+    private ResourceVersionCache versionCache;
+    private UserCache userCache;
+    private User testUser;
+    private TokenController tokenController;
+
+    @BeforeEach
+    void setUp() {
+        tokenService = mock(TokenService.class);
+        userRepository = mock(UserRepository.class);
+        versionCache = new ResourceVersionCache(100, 0);
+        userCache = new UserCache(userRepository, new DbBulkhead(new SimpleMeterRegistry(), 4, 2000, 1, 5),
+                new InMemoryInvalidationBus(), versionCache, new SimpleMeterRegistry(), 100, 30, 0, 100, 300);
+
+        tokenController = new TokenController();
+        ReflectionTestUtils.setField(tokenController, "tokenService", tokenService);
+        ReflectionTestUtils.setField(tokenController, "resourceVersionCache", versionCache);
+        ReflectionTestUtils.setField(tokenController, "quotaService", quotaService(List.of()));
+        UserController userController = new UserController();
+        ReflectionTestUtils.setField(userController, "userCache", userCache);
+        ReflectionTestUtils.setField(userController, "resourceVersionCache", versionCache);
+        ReflectionTestUtils.setField(userController, "oauthProfileExtractors",
+                new OAuthProfileExtractors(List.of(new GoogleProfileExtractor(), new GitHubProfileExtractor())));
+
+        mockMvc = MockMvcBuilders.standaloneSetup(tokenController, userController)
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                .addPlaceholderValue("app.frontend.url", "http://localhost:3000")
+                .build();
+
+        testUser = new User();
+        testUser.setId(1L);
+        testUser.setOauthId("test-oauth-id");
+        testUser.setEmail("test@example.com");
+        testUser.setName("Test User");
+        testUser.setProvider("google");
+        testUser.setAvatarUrl("https://example.com/avatar.jpg");
+        testUser.setDailyTokens(5);
+        testUser.setLastTokenRefresh(LocalDate.now());
+        testUser.setLoginTime(ZonedDateTime.now(ZoneId.of("Asia/Kolkata")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void shouldAnswerUnchangedBalanceWithNotModifiedWithoutDatabase() throws Exception {
+        // Given
+        when(tokenService.getRemainingTokens("test-oauth-id")).thenReturn(5);
+        MockHttpServletResponse full = mockMvc.perform(get("/api/v1/tokens/remaining").session(session()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse();
+        String etag = full.getHeader("ETag");
+
+        // When
+        MockHttpServletResponse conditional = mockMvc.perform(get("/api/v1/tokens/remaining")
+                        .session(session())
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andReturn().getResponse();
+
+        // Then
+        verify(tokenService, times(1)).getRemainingTokens("test-oauth-id");
+        assertTrue(full.getContentAsByteArray().length > 0);
+        assertEquals(0, conditional.getContentAsByteArray().length);
+    }
+
+    @Test
+    void shouldReturnFullBalanceAfterConsumption() throws Exception {
+        // Given
+        when(tokenService.getRemainingTokens("test-oauth-id")).thenReturn(5, 4);
+        String etag = mockMvc.perform(get("/api/v1/tokens/remaining").session(session()))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // When
+        versionCache.onBalanceChanged(new TokenBalanceChangedEvent("test-oauth-id", 4));
+
+        // Then
+        mockMvc.perform(get("/api/v1/tokens/remaining").session(session()).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.remainingTokens").value(4));
+    }
+
+    @Test
+    void shouldCapBalanceByRollingQuotaAndRevalidateWhenQuotaChanges() throws Exception {
+        // Given - 2 per minute, one already used
+        QuotaService quotaService = quotaService(List.of(new SlidingWindowQuota.Window(2, Duration.ofMinutes(1))));
+        ReflectionTestUtils.setField(tokenController, "quotaService", quotaService);
+        when(tokenService.getRemainingTokens("test-oauth-id")).thenReturn(5);
+        quotaService.tryConsume("test-oauth-id");
+        String etag = mockMvc.perform(get("/api/v1/tokens/remaining").session(session()))
+                .andExpect(jsonPath("$.remainingTokens").value(1))
+                .andExpect(jsonPath("$.dailyTokens").value(5))
+                .andExpect(jsonPath("$.quotaWindows[0].used").value(1))
+                .andExpect(jsonPath("$.quotaWindows[0].nextTokenAt").exists())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // When - the quota changes without a balance change, as a token reservation does
+        quotaService.tryConsume("test-oauth-id");
+
+        // Then
+        mockMvc.perform(get("/api/v1/tokens/remaining").session(session()).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.remainingTokens").value(0));
+    }
+
+    @Test
+    void shouldAnswerUnchangedProfileWithNotModifiedWithoutDatabase() throws Exception {
+        // Given
+        authenticate();
+        when(userRepository.findReadOnlyByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
+        MockHttpServletResponse full = mockMvc.perform(get("/api/v1/user/profile"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("test@example.com"))
+                .andReturn().getResponse();
+        String etag = full.getHeader("ETag");
+
+        // When
+        MockHttpServletResponse conditional = mockMvc.perform(get("/api/v1/user/profile").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andReturn().getResponse();
+
+        // Then
+        verify(userRepository, times(1)).findReadOnlyByOauthId("test-oauth-id");
+        assertTrue(full.getContentAsByteArray().length > 100);
+        assertEquals(0, conditional.getContentAsByteArray().length);
+    }
+
+    @Test
+    void shouldRevalidateProfileAfterEviction() throws Exception {
+        // Given
+        authenticate();
+        when(userRepository.findReadOnlyByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
+        String etag = mockMvc.perform(get("/api/v1/user/profile")).andReturn().getResponse().getHeader("ETag");
+
+        // When
+        versionCache.evictProfile("test-oauth-id");
+        userCache.invalidate("test-oauth-id");
+        testUser.setName("Renamed User");
+
+        // Then
+        mockMvc.perform(get("/api/v1/user/profile").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Renamed User"));
+        verify(userRepository, times(2)).findReadOnlyByOauthId("test-oauth-id");
+    }
+
+    @Test
+    void shouldNotReuseBalanceTagFromPreviousDay() {
+        versionCache.putBalanceTag("test-oauth-id", ResourceVersionCache.balanceTag(0, LocalDate.now().minusDays(1)));
+
+        assertNull(versionCache.getBalanceTag("test-oauth-id"));
+        assertTrue(ResourceVersionCache.matches("\"x\", W/\"b3-2026-01-01\"", "W/\"b3-2026-01-01\""));
+        assertFalse(ResourceVersionCache.matches("W/\"b3-2026-01-01\"", "W/\"b2-2026-01-01\""));
+    }
+
+    @Test
+    void shouldIgnoreTagsReadBackBeforeReplicaSettles() {
+        // Given
+        ResourceVersionCache settlingCache = new ResourceVersionCache(100, 60);
+        settlingCache.onBalanceChanged(new TokenBalanceChangedEvent("test-oauth-id", 4));
+
+        // When - a lagging replica still returns the old balance and profile
+        settlingCache.putBalanceTag("test-oauth-id", ResourceVersionCache.balanceTag(5, LocalDate.now()));
+        settlingCache.putProfileTag("test-oauth-id", ResourceVersionCache.profileTag(testUser));
+
+        // Then
+        assertEquals(ResourceVersionCache.balanceTag(4, LocalDate.now()), settlingCache.getBalanceTag("test-oauth-id"));
+        assertNull(settlingCache.getProfileTag("test-oauth-id"));
+        settlingCache.putProfileTag("other-oauth-id", ResourceVersionCache.profileTag(testUser));
+        assertNotNull(settlingCache.getProfileTag("other-oauth-id"));
+    }
+
+    private static QuotaService quotaService(List<SlidingWindowQuota.Window> windows) {
+        return new QuotaService(new SlidingWindowQuota(windows, 60), mock(QuotaSnapshotRepository.class),
+                new DbBulkhead(new SimpleMeterRegistry(), 4, 2000, 1, 5), TransactionOperations.withoutTransaction(),
+                mock(UserCache.class), mock(PlanCatalog.class), new SimpleMeterRegistry());
+    }
+
+    private MockHttpSession session() {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("jwt_token", "jwt");
+        session.setAttribute("user_id", 1L);
+        session.setAttribute("user_email", "test@example.com");
+        session.setAttribute("oauth_id", "test-oauth-id");
+        return session;
+    }
+
+    private void authenticate() {
+        DefaultOAuth2User principal = new DefaultOAuth2User(AuthorityUtils.createAuthorityList("OAUTH2_USER"),
+                Map.of("sub", "test-oauth-id", "email", "test@example.com"), "sub");
+        SecurityContextHolder.getContext().setAuthentication(
+                new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.itinerarly_BE.controller;
+
+import com.example.itinerarly_BE.service.TokenBalanceChangedEvent;
+import com.example.itinerarly_BE.service.TokenBalanceStreamService;
+import com.example.itinerarly_BE.service.TokenService;
+import com.example.itinerarly_BE.utl.DbBulkheadFullException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class TokenBalanceStreamTest {
+
+    private MockMvc mockMvc;
+    private TokenService tokenService;
+    private TokenBalanceStreamService streamService;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        tokenService = mock(TokenService.class);
+        when(tokenService.getRemainingTokens("test-oauth-id")).thenReturn(6);
+
+        meterRegistry = new SimpleMeterRegistry();
+        streamService = new TokenBalanceStreamService(tokenService, meterRegistry, 100, 2, 60_000);
+
+        TokenController controller = new TokenController();
+        ReflectionTestUtils.setField(controller, "tokenBalanceStreamService", streamService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .addPlaceholderValue("app.frontend.url", "http://localhost:3000")
+                .build();
+    }
+
+    @Test
+    void shouldPushInitialBalanceAndLaterChanges() throws Exception {
+        // Given
+        MvcResult result = mockMvc.perform(get("/api/v1/tokens/stream").session(session()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // When
+        awaitContent(result, "\"remainingTokens\":6");
+        streamService.onBalanceChanged(new TokenBalanceChangedEvent("test-oauth-id", 5));
+        streamService.onBalanceChanged(new TokenBalanceChangedEvent("other-oauth-id", 1));
+
+        // Then
+        String body = awaitContent(result, "\"remainingTokens\":5");
+        assertTrue(body.contains("event:balance"));
+        assertFalse(body.contains("\"remainingTokens\":1"));
+        assertEquals(1, streamService.getConnectionCount());
+        assertEquals(1.0, meterRegistry.get("tokens.stream.connections").gauge().value());
+    }
+
+    @Test
+    void shouldSendHeartbeatComments() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/tokens/stream").session(session()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitContent(result, "\"remainingTokens\":6");
+
+        streamService.sendHeartbeats();
+
+        awaitContent(result, ":heartbeat");
+    }
+
+    @Test
+    void shouldRejectStreamsOverPerUserLimit() throws Exception {
+        mockMvc.perform(get("/api/v1/tokens/stream").session(session())).andExpect(request().asyncStarted());
+        mockMvc.perform(get("/api/v1/tokens/stream").session(session())).andExpect(request().asyncStarted());
+
+        mockMvc.perform(get("/api/v1/tokens/stream").session(session()))
+                .andExpect(status().isServiceUnavailable());
+        assertEquals(2, streamService.getConnectionCount());
+        assertEquals(1.0, meterRegistry.get("tokens.stream.rejected").counter().count());
+    }
+
+    @Test
+    void shouldAnswerBusyWithoutKeepingTheSlotWhenTheBalanceCannotBeRead() throws Exception {
+        when(tokenService.getRemainingTokens("test-oauth-id"))
+                .thenThrow(new DbBulkheadFullException("Database is busy, please retry"));
+
+        mockMvc.perform(get("/api/v1/tokens/stream").session(session()))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+        assertEquals(0, streamService.getConnectionCount());
+    }
+
+    @Test
+    void shouldRequireSession() throws Exception {
+        mockMvc.perform(get("/api/v1/tokens/stream"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private MockHttpSession session() {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("jwt_token", "jwt");
+        session.setAttribute("oauth_id", "test-oauth-id");
+        return session;
+    }
+
+    private String awaitContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String body = result.getResponse().getContentAsString();
+        while (!body.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            body = result.getResponse().getContentAsString();
+        }
+        assertTrue(body.contains(expected), "Expected stream to contain " + expected + " but was: " + body);
+        return body;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.itinerarly_BE.integration;
+
+import com.example.itinerarly_BE.ItinerarlyBeApplication;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Requests reach the application through the TLS-terminating proxy, so anonymous clients must be rate limited by the
+ * address the proxy forwards, not the proxy's own. The test client connects from loopback, which Tomcat trusts as an
+ * internal proxy.
+ */
+class ForwardedClientAddressIntegrationTest {
+
+    private static final int IP_CAPACITY = 2;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private ConfigurableApplicationContext app;
+    private int port;
+
+    @BeforeEach
+    void setUp() {
+        String jdbcUrl = "jdbc:h2:mem:forwarded-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        app = new SpringApplicationBuilder(ItinerarlyBeApplication.class)
+                .profiles("prod")
+                .run("--server.port=0",
+                        "--db-url=" + jdbcUrl,
+                        "--spring.datasource.url=" + jdbcUrl,
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--db-username=sa",
+                        "--db-password=",
+                        "--spring.datasource.hikari.connection-init-sql=",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--JWT-Secret=" + Base64.getEncoder().encodeToString("forwarded-test-secret-".repeat(4).getBytes()),
+                        "--github-client-id=test", "--github-secret=test",
+                        "--google-client-id=test", "--google-secret=test",
+                        "--app.rate-limit.ip.capacity=" + IP_CAPACITY);
+        port = ((WebServerApplicationContext) app).getWebServer().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        app.close();
+    }
+
+    @Test
+    void shouldGiveEachForwardedClientItsOwnBucket() throws Exception {
+        // Given - one client uses up its bucket behind the proxy
+        for (int i = 0; i < IP_CAPACITY; i++) {
+            assertEquals(200, status("203.0.113.10"));
+        }
+
+        // When
+        int sameClient = status("203.0.113.10");
+        int otherClient = status("203.0.113.11");
+
+        // Then
+        assertEquals(429, sameClient);
+        assertEquals(200, otherClient);
+    }
+
+    @Test
+    void shouldIgnoreAddressesClientsPutInFrontOfTheProxy() throws Exception {
+        // Given - the proxy appends the real address to whatever the client sent
+        for (int i = 0; i < IP_CAPACITY; i++) {
+            assertEquals(200, status("198.51.100." + i + ", 203.0.113.20"));
+        }
+
+        // When - a different spoofed address does not buy a fresh bucket
+        int spoofed = status("198.51.100.99, 203.0.113.20");
+
+        // Then
+        assertEquals(429, spoofed);
+    }
+
+    private int status(String forwardedFor) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/auth/status"))
+                .header("X-Forwarded-For", forwardedFor)
+                .header("X-Forwarded-Proto", "https")
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
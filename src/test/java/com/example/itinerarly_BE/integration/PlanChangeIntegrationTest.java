@@ -0,0 +1,162 @@
+package com.example.itinerarly_BE.integration;
+
+import com.example.itinerarly_BE.ItinerarlyBeApplication;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.service.PlanCatalog;
+import com.example.itinerarly_BE.service.TokenRefreshService;
+import com.example.itinerarly_BE.service.TokenService;
+import com.example.itinerarly_BE.service.UserCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Consumes, the daily refresh and a plan change racing on one user against a real database: every writer of
+ * {@code users.plan_id} and {@code users.daily_tokens} is a conditional UPDATE, so none of them undoes another.
+ */
+class PlanChangeIntegrationTest {
+
+    private static final int ROUNDS = 20;
+    private static final int CONSUMERS = 6;
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int PRO_LIMIT = 50;
+    private static final String OAUTH_ID = "plan-oauth-id";
+
+    private ConfigurableApplicationContext app;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        String jdbcUrl = "jdbc:h2:mem:plans-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        app = new SpringApplicationBuilder(ItinerarlyBeApplication.class)
+                .profiles("prod")
+                .run("--server.port=0",
+                        "--db-url=" + jdbcUrl,
+                        "--spring.datasource.url=" + jdbcUrl,
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--db-username=sa",
+                        "--db-password=",
+                        "--spring.datasource.hikari.connection-init-sql=",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--JWT-Secret=" + "plan-test-secret-".repeat(4),
+                        "--github-client-id=test", "--github-secret=test",
+                        "--google-client-id=test", "--google-secret=test",
+                        "--app.daily-token-limit=" + DEFAULT_LIMIT,
+                        "--app.rate-limit.enabled=false",
+                        // Every round replays the same day, which a rolling 24h window would carry over
+                        "--app.quota.windows=");
+        jdbcTemplate = app.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("INSERT INTO plans (id, name, daily_token_limit) VALUES ('pro', 'Pro', ?)", PRO_LIMIT);
+        app.getBean(PlanCatalog.class).reload();
+        User user = new User();
+        user.setOauthId(OAUTH_ID);
+        user.setEmail("plan@example.com");
+        app.getBean(UserRepository.class).save(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        app.close();
+    }
+
+    @Test
+    void shouldKeepEveryConsumeAndThePlanChangeWhenTheyRace() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            // Given - the full default allowance for today
+            resetUser(DEFAULT_LIMIT, LocalDate.now());
+
+            // When
+            int consumed = consumeWhileMovingToPro(false);
+
+            // Then - the upgrade adds the difference, and no consume writes the old plan or balance back
+            assertEquals(CONSUMERS, consumed, "round " + round);
+            assertEquals("pro", planId(), "round " + round);
+            assertEquals(PRO_LIMIT - CONSUMERS, balance(), "round " + round);
+        }
+    }
+
+    @Test
+    void shouldRefreshToTheNewPlanWhenThePlanChangeRacesTheDailyRefresh() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            // Given - refreshed yesterday, so the consumes and the midnight job race to refresh the row
+            resetUser(1, LocalDate.now().minusDays(1));
+
+            // When
+            int consumed = consumeWhileMovingToPro(true);
+
+            // Then - whichever ran first, today's balance is the new plan's limit less what was consumed
+            assertEquals(CONSUMERS, consumed, "round " + round);
+            assertEquals("pro", planId(), "round " + round);
+            assertEquals(PRO_LIMIT - CONSUMERS, balance(), "round " + round);
+        }
+    }
+
+    /**
+     * @return tokens consumed
+     */
+    private int consumeWhileMovingToPro(boolean withMidnightRefresh) throws Exception {
+        TokenService tokenService = app.getBean(TokenService.class);
+        TokenRefreshService tokenRefreshService = app.getBean(TokenRefreshService.class);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> consumes = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CONSUMERS; i++) {
+                consumes.add(executor.submit(() -> {
+                    start.await();
+                    return tokenService.consumeToken(OAUTH_ID);
+                }));
+            }
+            Future<User> planChange = executor.submit(() -> {
+                start.await();
+                return tokenService.changePlan(OAUTH_ID, "pro");
+            });
+            Future<?> refresh = executor.submit(() -> {
+                start.await();
+                if (withMidnightRefresh) {
+                    tokenRefreshService.refreshAllUserTokens();
+                }
+                return null;
+            });
+            start.countDown();
+            assertNotNull(planChange.get(30, TimeUnit.SECONDS));
+            refresh.get(30, TimeUnit.SECONDS);
+        }
+        int consumed = 0;
+        for (Future<Boolean> consume : consumes) {
+            consumed += consume.get(30, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        return consumed;
+    }
+
+    private void resetUser(int dailyTokens, LocalDate lastTokenRefresh) {
+        jdbcTemplate.update("UPDATE users SET plan_id = NULL, daily_tokens = ?, last_token_refresh = ? WHERE oauth_id = ?",
+                dailyTokens, lastTokenRefresh, OAUTH_ID);
+        // The row was changed behind the application's back
+        app.getBean(UserCache.class).invalidate(OAUTH_ID);
+    }
+
+    private String planId() {
+        return jdbcTemplate.queryForObject("SELECT plan_id FROM users WHERE oauth_id = ?", String.class, OAUTH_ID);
+    }
+
+    private int balance() {
+        return jdbcTemplate.queryForObject("SELECT daily_tokens FROM users WHERE oauth_id = ?", Integer.class, OAUTH_ID);
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.itinerarly_BE.integration;
+
+import com.example.itinerarly_BE.ItinerarlyBeApplication;
+import com.example.itinerarly_BE.config.TokenConfig;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.service.TokenReservationService;
+import com.example.itinerarly_BE.service.TokenService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Several application contexts sharing one database stand in for replicas behind a load balancer: together they
+ * must never hand out more tokens than the daily limit, through consumes or reservations, and every token they leased
+ * or held must be spent or returned.
+ */
+class TokenLeaseIntegrationTest {
+
+    private static final int NODES = 3;
+    private static final int CALLERS_PER_NODE = 40;
+    private static final String OAUTH_ID = "lease-oauth-id";
+
+    private final String jdbcUrl = "jdbc:h2:mem:leases-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void shouldNeverConsumeMoreThanTheDailyLimitAcrossNodes() throws Exception {
+        // Given - a user refreshed yesterday, so every node races to refresh the row before leasing from it
+        int dailyLimit = startNodesWithUserRefreshedYesterday();
+
+        // When - far more consumes than tokens, spread over all nodes at once
+        List<Future<Boolean>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (ConfigurableApplicationContext node : nodes) {
+                TokenService tokenService = node.getBean(TokenService.class);
+                for (int i = 0; i < CALLERS_PER_NODE; i++) {
+                    results.add(executor.submit(() -> tokenService.consumeToken(OAUTH_ID)));
+                }
+            }
+        }
+        int consumed = 0;
+        for (Future<Boolean> result : results) {
+            consumed += result.get(30, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        int consumedBeforeShutdown = consumed;
+        // Leftover leases go back to the row on shutdown
+        nodes.forEach(ConfigurableApplicationContext::close);
+
+        // Then
+        assertTrue(consumedBeforeShutdown > 0);
+        assertTrue(consumedBeforeShutdown <= dailyLimit, consumedBeforeShutdown + " tokens consumed, limit " + dailyLimit);
+        assertEquals(dailyLimit - consumedBeforeShutdown, balance());
+        // Every consume reached the usage ledger and its rollups before shutdown finished
+        assertEquals(consumedBeforeShutdown, count("SELECT COUNT(*) FROM token_usage WHERE oauth_id = ?"));
+        assertEquals(consumedBeforeShutdown,
+                count("SELECT SUM(tokens) FROM usage_rollup_users WHERE oauth_id = ? AND period = 'DAY'"));
+        assertEquals(consumedBeforeShutdown,
+                count("SELECT SUM(tokens) FROM usage_rollup_users WHERE oauth_id = ? AND period = 'WEEK'"));
+    }
+
+    @Test
+    void shouldNeverHandOutMoreThanTheDailyLimitWithReservationsAndLeases() throws Exception {
+        // Given
+        int dailyLimit = startNodesWithUserRefreshedYesterday();
+
+        // When - consumes, and reservations that are committed or released, on all nodes at once
+        List<Future<Integer>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (ConfigurableApplicationContext node : nodes) {
+                TokenService tokenService = node.getBean(TokenService.class);
+                TokenReservationService reservations = node.getBean(TokenReservationService.class);
+                for (int i = 0; i < CALLERS_PER_NODE; i++) {
+                    int caller = i;
+                    results.add(executor.submit(() -> switch (caller % 3) {
+                        case 0 -> tokenService.consumeToken(OAUTH_ID) ? 1 : 0;
+                        case 1 -> {
+                            String reservationId = reservations.reserve(OAUTH_ID);
+                            yield reservationId != null && reservations.commit(reservationId, OAUTH_ID) ? 1 : 0;
+                        }
+                        default -> {
+                            String reservationId = reservations.reserve(OAUTH_ID);
+                            if (reservationId != null) {
+                                reservations.release(reservationId, OAUTH_ID);
+                            }
+                            yield 0;
+                        }
+                    }));
+                }
+            }
+        }
+        int spent = 0;
+        for (Future<Integer> result : results) {
+            spent += result.get(30, TimeUnit.SECONDS);
+        }
+        int spentBeforeShutdown = spent;
+        nodes.forEach(ConfigurableApplicationContext::close);
+
+        // Then - released holds and leftover leases are back in the row, consumed and committed tokens are not
+        assertTrue(spentBeforeShutdown > 0);
+        assertTrue(spentBeforeShutdown <= dailyLimit, spentBeforeShutdown + " tokens spent, limit " + dailyLimit);
+        assertEquals(dailyLimit - spentBeforeShutdown, balance());
+        assertEquals(spentBeforeShutdown, count("SELECT COUNT(*) FROM token_usage WHERE oauth_id = ?"));
+    }
+
+    /**
+     * @return the daily token limit
+     */
+    private int startNodesWithUserRefreshedYesterday() {
+        for (int i = 0; i < NODES; i++) {
+            nodes.add(startNode(i == 0 ? "create" : "none"));
+        }
+        User user = new User();
+        user.setOauthId(OAUTH_ID);
+        user.setEmail("lease@example.com");
+        user.setDailyTokens(1);
+        user.setLastTokenRefresh(LocalDate.now().minusDays(1));
+        nodes.get(0).getBean(UserRepository.class).save(user);
+        return nodes.get(0).getBean(TokenConfig.class).getDailyTokenLimit();
+    }
+
+    private ConfigurableApplicationContext startNode(String ddlAuto) {
+        return new SpringApplicationBuilder(ItinerarlyBeApplication.class)
+                .profiles("prod")
+                .run("--server.port=0",
+                        "--db-url=" + jdbcUrl,
+                        "--spring.datasource.url=" + jdbcUrl,
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--db-username=sa",
+                        "--db-password=",
+                        "--spring.datasource.hikari.connection-init-sql=",
+                        "--spring.jpa.hibernate.ddl-auto=" + ddlAuto,
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--JWT-Secret=" + "lease-test-secret-".repeat(4),
+                        "--github-client-id=test", "--github-secret=test",
+                        "--google-client-id=test", "--google-secret=test",
+                        "--app.daily-token-limit=10",
+                        "--app.token-lease.enabled=true",
+                        "--app.token-lease.block-size=3",
+                        "--app.cache.invalidation.bus=db",
+                        "--app.cache.invalidation.db.poll-interval-ms=50",
+                        "--app.rate-limit.enabled=false");
+    }
+
+    private int balance() throws Exception {
+        return count("SELECT daily_tokens FROM users WHERE oauth_id = ?");
+    }
+
+    private int count(String sql) throws Exception {
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, "sa", "");
+             PreparedStatement query = connection.prepareStatement(sql)) {
+            query.setString(1, OAUTH_ID);
+            try (ResultSet row = query.executeQuery()) {
+                assertTrue(row.next());
+                return row.getInt(1);
+            }
+        }
+    }
+}
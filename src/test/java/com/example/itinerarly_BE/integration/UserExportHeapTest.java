@@ -0,0 +1,121 @@
+package com.example.itinerarly_BE.integration;
+
+import com.example.itinerarly_BE.ItinerarlyBeApplication;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.utl.JwtTokenUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exports half a million users from an application running in its own JVM with a heap far smaller than the users
+ * table, so the export only passes if it streams. The database is an H2 file with a small page cache, so the rows
+ * live on disk rather than in that heap.
+ */
+class UserExportHeapTest {
+
+    private static final int USERS = 500_000;
+    private static final String HEAP = "-Xmx128m";
+    private static final String ADMIN_OAUTH_ID = "export-admin";
+    private static final String RESULT = "EXPORTED ";
+
+    @Test
+    void shouldExportUsersTableLargerThanTheHeap(@TempDir Path dir) throws Exception {
+        // Given
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        Process process = new ProcessBuilder(java.toString(), HEAP, "-XX:+ExitOnOutOfMemoryError",
+                "-cp", System.getProperty("java.class.path"), UserExportHeapTest.class.getName(), dir.toString())
+                .redirectErrorStream(true)
+                .start();
+
+        // When
+        List<String> output = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            reader.lines().forEach(output::add);
+        }
+        boolean exited = process.waitFor(5, TimeUnit.MINUTES);
+
+        // Then
+        String log = String.join("\n", output.subList(Math.max(0, output.size() - 40), output.size()));
+        assertTrue(exited, "export did not finish");
+        assertEquals(0, process.exitValue(), log);
+        // The seeded users plus the admin, all 200 OK
+        assertTrue(output.contains(RESULT + "200 " + (USERS + 1)), log);
+    }
+
+    /**
+     * The application side: seeds the users, exports them over HTTP as an admin and prints the status and line count.
+     */
+    public static void main(String[] args) throws Exception {
+        String jdbcUrl = "jdbc:h2:file:" + Paths.get(args[0], "users") + ";CACHE_SIZE=4096";
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(ItinerarlyBeApplication.class)
+                .profiles("prod")
+                .run("--server.port=0",
+                        "--db-url=" + jdbcUrl,
+                        "--spring.datasource.url=" + jdbcUrl,
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--db-username=sa",
+                        "--db-password=",
+                        "--spring.datasource.hikari.connection-init-sql=",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--JWT-Secret=" + Base64.getEncoder().encodeToString(
+                                "export-test-secret-".repeat(4).getBytes(StandardCharsets.UTF_8)),
+                        "--github-client-id=test", "--github-secret=test",
+                        "--google-client-id=test", "--google-secret=test",
+                        "--app.admin.oauth-ids=" + ADMIN_OAUTH_ID,
+                        "--app.rate-limit.enabled=false",
+                        "--logging.level.root=WARN");
+        try {
+            JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+            for (int from = 1; from <= USERS; from += 50_000) {
+                jdbcTemplate.update("INSERT INTO users (oauth_id, email, name, username, provider, daily_tokens, "
+                        + "last_token_refresh, login_time) SELECT 'oauth-' || X, 'user' || X || '@example.com', "
+                        + "'User ' || X, 'user' || X, 'github', 10, CURRENT_DATE, CURRENT_TIMESTAMP "
+                        + "FROM SYSTEM_RANGE(?, ?)", from, Math.min(from + 49_999, USERS));
+            }
+            User admin = new User();
+            admin.setOauthId(ADMIN_OAUTH_ID);
+            admin.setEmail("admin@example.com");
+            admin = app.getBean(UserRepository.class).save(admin);
+            String token = app.getBean(JwtTokenUtil.class).generateToken(admin);
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+
+            HttpResponse<InputStream> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + port + "/api/v1/admin/users/export?format=ndjson"))
+                    .header("Authorization", "Bearer " + token)
+                    .build(), HttpResponse.BodyHandlers.ofInputStream());
+            long lines;
+            try (BufferedReader body = new BufferedReader(
+                    new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                lines = body.lines().count();
+            }
+            System.out.println(RESULT + response.statusCode() + " " + lines);
+        } finally {
+            app.close();
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.OAuthProfile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("test")
+class LoginPostProcessorTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserCache userCache;
+
+    private final List<Runnable> tasks = new ArrayList<>();
+    private SimpleMeterRegistry meterRegistry;
+    private LoginPostProcessor loginPostProcessor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        loginPostProcessor = new LoginPostProcessor(userRepository, new DbBulkhead(meterRegistry, 4, 2000, 1, 5),
+                new ResourceVersionCache(100, 0), userCache, meterRegistry, 2, tasks::add);
+    }
+
+    @Test
+    void shouldCoalesceRepeatedLoginsIntoOneUpdate() {
+        // Given
+        ZonedDateTime later = ZonedDateTime.now(ZoneId.of("Asia/Kolkata"));
+        when(userRepository.updateProfile(anyString(), any(), any(), any(), any(), any())).thenReturn(1);
+
+        // When
+        loginPostProcessor.submit(login("oauth-1", false, "Old Name", later.minusMinutes(1)));
+        loginPostProcessor.submit(login("oauth-1", false, "New Name", later));
+        tasks.forEach(Runnable::run);
+
+        // Then
+        assertEquals(1, tasks.size());
+        verify(userRepository).updateProfile("oauth-1", "user@example.com", "New Name", "user", "https://avatar", later);
+        verify(userCache).invalidate("oauth-1");
+        assertEquals(0, loginPostProcessor.getPendingCount());
+        assertEquals(1.0, meterRegistry.counter("auth.login.post_process.coalesced").count());
+    }
+
+    @Test
+    void shouldScheduleAgainForLoginAfterPreviousWasApplied() {
+        // Given
+        when(userRepository.updateProfile(anyString(), any(), any(), any(), any(), any())).thenReturn(1);
+        loginPostProcessor.submit(login("oauth-1", false, "First", ZonedDateTime.now()));
+        tasks.remove(0).run();
+
+        // When
+        loginPostProcessor.submit(login("oauth-1", false, "Second", ZonedDateTime.now()));
+        tasks.remove(0).run();
+
+        // Then
+        verify(userRepository, times(2)).updateProfile(eq("oauth-1"), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldOnlyAuditNewUsers() {
+        // When
+        loginPostProcessor.submit(login("oauth-new", true, "New User", ZonedDateTime.now()));
+        tasks.forEach(Runnable::run);
+
+        // Then
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void shouldDropUpdatesForNewUsersWhenQueueIsFull() {
+        // Given
+        loginPostProcessor.submit(login("oauth-1", false, "One", ZonedDateTime.now()));
+        loginPostProcessor.submit(login("oauth-2", false, "Two", ZonedDateTime.now()));
+
+        // When
+        loginPostProcessor.submit(login("oauth-3", false, "Three", ZonedDateTime.now()));
+        loginPostProcessor.submit(login("oauth-1", false, "One again", ZonedDateTime.now()));
+
+        // Then
+        assertEquals(2, tasks.size());
+        assertEquals(2, loginPostProcessor.getPendingCount());
+        assertEquals(1.0, meterRegistry.counter("auth.login.post_process.dropped").count());
+    }
+
+    @Test
+    void shouldSwallowDatabaseFailures() {
+        // Given
+        when(userRepository.updateProfile(anyString(), any(), any(), any(), any(), any()))
+                .thenThrow(new RuntimeException("Database error"));
+        loginPostProcessor.submit(login("oauth-1", false, "Name", ZonedDateTime.now()));
+
+        // When / Then
+        assertDoesNotThrow(() -> tasks.forEach(Runnable::run));
+        assertEquals(1.0, meterRegistry.counter("auth.login.post_process.failed").count());
+    }
+
+    private static LoginPostProcessor.Login login(String oauthId, boolean newUser, String name, ZonedDateTime loginTime) {
+        return new LoginPostProcessor.Login(new OAuthProfile(oauthId, "google", "user@example.com", name, "user",
+                "https://avatar"), newUser, loginTime);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.config.TokenConfig;
+import com.example.itinerarly_BE.model.Plan;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.PlanRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.InMemoryInvalidationBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("test")
+class PlanCatalogTest {
+
+    @Mock
+    private PlanRepository planRepository;
+
+    @Mock
+    private TokenConfig tokenConfig;
+
+    private SimpleMeterRegistry meterRegistry;
+    private InMemoryInvalidationBus bus;
+    private PlanCatalog planCatalog;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bus = new InMemoryInvalidationBus();
+        planCatalog = catalog(bus);
+    }
+
+    @Test
+    void shouldUseUsersPlanThenDefaultPlan() {
+        // Given
+        when(planRepository.findAll()).thenReturn(List.of(plan("free", 6), plan("pro", 50)));
+        planCatalog.reload();
+
+        // When / Then
+        assertEquals(50, planCatalog.dailyTokenLimit(user("pro")));
+        assertEquals(6, planCatalog.dailyTokenLimit(user(null)));
+        assertEquals(6, planCatalog.dailyTokenLimit(user("retired-plan")));
+        verifyNoInteractions(tokenConfig);
+    }
+
+    @Test
+    void shouldFallBackToConfiguredLimitWithoutDefaultPlan() {
+        // Given
+        when(tokenConfig.getDailyTokenLimit()).thenReturn(6);
+
+        // When
+        int limit = planCatalog.dailyTokenLimit(user(null));
+
+        // Then
+        assertEquals(6, limit);
+        assertNull(planCatalog.getSnapshot().loadedAt());
+    }
+
+    @Test
+    void shouldSwapSnapshotOnReloadWithoutTouchingTheOldOne() {
+        // Given
+        when(planRepository.findAll()).thenReturn(List.of(plan("pro", 50)), List.of(plan("pro", 80)));
+        PlanCatalog.Snapshot before = planCatalog.reload();
+
+        // When
+        PlanCatalog.Snapshot after = planCatalog.reload();
+
+        // Then
+        assertEquals(50, before.plans().get("pro").dailyTokenLimit());
+        assertEquals(80, after.plans().get("pro").dailyTokenLimit());
+        assertSame(after, planCatalog.getSnapshot());
+        assertThrows(UnsupportedOperationException.class, () -> after.plans().remove("pro"));
+    }
+
+    @Test
+    void shouldKeepPreviousPlansWhenReloadFails() {
+        // Given
+        when(planRepository.findAll()).thenReturn(List.of(plan("pro", 50)))
+                .thenThrow(new RuntimeException("Database error"));
+        planCatalog.reload();
+
+        // When
+        planCatalog.refresh();
+
+        // Then
+        assertEquals(50, planCatalog.dailyTokenLimit(user("pro")));
+        assertEquals(1.0, meterRegistry.get("plans.reloads").tag("result", "failure").counter().count());
+    }
+
+    @Test
+    void shouldReloadOtherNodesAfterBroadcast() throws Exception {
+        // Given - a second node loaded the old plans
+        when(planRepository.findAll()).thenReturn(List.of(plan("pro", 50)));
+        PlanCatalog otherNode = catalog(bus.connect());
+        otherNode.reload();
+        when(planRepository.findAll()).thenReturn(List.of(plan("pro", 80)));
+
+        // When
+        planCatalog.reloadAndBroadcast();
+
+        // Then - the other node reloads in the background
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (otherNode.dailyTokenLimit(user("pro")) != 80) {
+            assertTrue(System.nanoTime() < deadline, "other node did not reload");
+            Thread.sleep(5);
+        }
+        assertEquals(80, planCatalog.dailyTokenLimit(user("pro")));
+    }
+
+    private PlanCatalog catalog(InMemoryInvalidationBus nodeBus) {
+        return new PlanCatalog(planRepository, tokenConfig, new DbBulkhead(meterRegistry, 4, 2000, 1, 5), nodeBus,
+                meterRegistry, "free");
+    }
+
+    private static Plan plan(String id, int dailyTokenLimit) {
+        Plan plan = new Plan();
+        plan.setId(id);
+        plan.setName(id.toUpperCase());
+        plan.setDailyTokenLimit(dailyTokenLimit);
+        return plan;
+    }
+
+    private static User user(String planId) {
+        User user = new User();
+        user.setOauthId("oauth-" + planId);
+        user.setPlanId(planId);
+        return user;
+    }
+}
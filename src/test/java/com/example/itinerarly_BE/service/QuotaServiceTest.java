@@ -0,0 +1,191 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.model.QuotaSnapshot;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.QuotaSnapshotRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.SlidingWindowQuota;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("test")
+class QuotaServiceTest {
+
+    @Mock
+    private QuotaSnapshotRepository snapshotRepository;
+
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private PlanCatalog planCatalog;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SlidingWindowQuota quota;
+    private QuotaService quotaService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        quota = new SlidingWindowQuota(List.of(new SlidingWindowQuota.Window(3, Duration.ofHours(1))), 60);
+        quotaService = new QuotaService(quota, snapshotRepository, new DbBulkhead(meterRegistry, 4, 2000, 1, 5),
+                TransactionOperations.withoutTransaction(), userCache, planCatalog, meterRegistry);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldWriteOnlyUsersWhoseCountersChanged() {
+        // Given
+        QuotaSnapshot existing = new QuotaSnapshot();
+        existing.setOauthId("oauth-1");
+        when(snapshotRepository.findByNodeIdAndOauthIdIn(anyString(), anyCollection())).thenReturn(List.of(existing));
+        quotaService.tryConsume("oauth-1");
+        quotaService.tryConsume("oauth-2");
+
+        // When
+        quotaService.snapshot();
+        quotaService.snapshot();
+
+        // Then
+        ArgumentCaptor<List<QuotaSnapshot>> rows = ArgumentCaptor.forClass(List.class);
+        verify(snapshotRepository, times(1)).saveAll(rows.capture());
+        assertEquals(2, rows.getValue().size());
+        assertTrue(rows.getValue().contains(existing));
+        assertTrue(rows.getValue().stream().allMatch(row -> row.getCounters() != null && row.getUpdatedAt() != null));
+        assertEquals(2.0, meterRegistry.counter("quota.snapshots.written").count());
+        verify(snapshotRepository, times(2)).deleteByUpdatedAtBefore(any(Instant.class));
+    }
+
+    @Test
+    void shouldRetryFailedWritesOnNextSnapshot() {
+        // Given
+        when(snapshotRepository.findByNodeIdAndOauthIdIn(anyString(), anyCollection())).thenReturn(List.of());
+        when(snapshotRepository.saveAll(anyList())).thenThrow(new RuntimeException("Database error"))
+                .thenReturn(List.of());
+        quotaService.tryConsume("oauth-1");
+
+        // When
+        quotaService.snapshot();
+        quotaService.snapshot();
+
+        // Then
+        verify(snapshotRepository, times(2)).saveAll(anyList());
+        assertEquals(1.0, meterRegistry.counter("quota.snapshots.failed").count());
+        assertEquals(1.0, meterRegistry.counter("quota.snapshots.written").count());
+    }
+
+    @Test
+    void shouldRestoreCountersOnStartup() {
+        // Given - a previous instance used two tokens
+        SlidingWindowQuota previous = new SlidingWindowQuota(quota.getWindows(), 60);
+        long now = System.currentTimeMillis();
+        previous.tryConsume("oauth-1", 0, now);
+        previous.tryConsume("oauth-1", 0, now);
+        QuotaSnapshot row = new QuotaSnapshot();
+        row.setOauthId("oauth-1");
+        row.setCounters(previous.snapshot("oauth-1", now));
+        when(snapshotRepository.findByUpdatedAtAfter(any(Instant.class))).thenReturn(List.of(row));
+
+        // When
+        quotaService.restore();
+
+        // Then
+        assertEquals(1, quotaService.remaining("oauth-1"));
+        assertTrue(quotaService.tryConsume("oauth-1"));
+        assertFalse(quotaService.tryConsume("oauth-1"));
+        assertEquals(1.0, meterRegistry.counter("quota.rejected").count());
+        assertTrue(quotaService.retryAfterMillis("oauth-1") > 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldAddUpEveryInstanceAndWriteBackOnlyOwnUses() {
+        // Given - two other instances used a token each
+        long now = System.currentTimeMillis();
+        List<QuotaSnapshot> rows = List.of(otherInstance("node-a", now), otherInstance("node-b", now));
+        when(snapshotRepository.findByUpdatedAtAfter(any(Instant.class))).thenReturn(rows);
+        when(snapshotRepository.findByNodeIdAndOauthIdIn(anyString(), anyCollection())).thenReturn(List.of());
+
+        // When
+        quotaService.restore();
+        boolean third = quotaService.tryConsume("oauth-1");
+        boolean fourth = quotaService.tryConsume("oauth-1");
+        quotaService.snapshot();
+
+        // Then - the row written holds this instance's use, under its own node id
+        assertTrue(third);
+        assertFalse(fourth);
+        ArgumentCaptor<List<QuotaSnapshot>> written = ArgumentCaptor.forClass(List.class);
+        verify(snapshotRepository).saveAll(written.capture());
+        QuotaSnapshot own = written.getValue().get(0);
+        assertNotEquals("node-a", own.getNodeId());
+        assertNotEquals("node-b", own.getNodeId());
+        SlidingWindowQuota reread = new SlidingWindowQuota(quota.getWindows(), 60);
+        rows.forEach(row -> reread.restore("oauth-1", row.getCounters(), now));
+        reread.restore("oauth-1", own.getCounters(), now);
+        assertEquals(0, reread.remaining("oauth-1", 0, now));
+    }
+
+    @Test
+    void shouldAddRemainingUsesToBalanceTag() {
+        // When
+        String before = quotaService.tag("\"b-5\"", "oauth-1");
+        quotaService.tryConsume("oauth-1");
+        String after = quotaService.tag("\"b-5\"", "oauth-1");
+
+        // Then
+        assertEquals("\"b-5-q3\"", before);
+        assertEquals("\"b-5-q2\"", after);
+    }
+
+    @Test
+    void shouldLimitDailyWindowsByEachUsersPlan() {
+        // Given
+        SlidingWindowQuota daily = new SlidingWindowQuota(List.of(
+                new SlidingWindowQuota.Window(SlidingWindowQuota.Window.DAILY, Duration.ofHours(24))), 60);
+        QuotaService dailyQuotas = new QuotaService(daily, snapshotRepository, new DbBulkhead(meterRegistry, 4, 2000, 1, 5),
+                TransactionOperations.withoutTransaction(), userCache, planCatalog, meterRegistry);
+        User proUser = new User();
+        proUser.setPlanId("pro");
+        when(userCache.get("pro-user")).thenReturn(Optional.of(proUser));
+        when(userCache.get("unknown")).thenReturn(Optional.empty());
+        when(planCatalog.dailyTokenLimit(proUser)).thenReturn(3);
+        when(planCatalog.dailyTokenLimit((String) null)).thenReturn(1);
+
+        // When
+        boolean pro = dailyQuotas.tryConsume("pro-user") && dailyQuotas.tryConsume("pro-user");
+        boolean unknownFirst = dailyQuotas.tryConsume("unknown");
+        boolean unknownSecond = dailyQuotas.tryConsume("unknown");
+
+        // Then
+        assertTrue(pro);
+        assertEquals(1, dailyQuotas.remaining("pro-user"));
+        assertTrue(unknownFirst);
+        assertFalse(unknownSecond);
+    }
+
+    private QuotaSnapshot otherInstance(String nodeId, long now) {
+        SlidingWindowQuota other = new SlidingWindowQuota(quota.getWindows(), 60);
+        other.tryConsume("oauth-1", 0, now);
+        QuotaSnapshot row = new QuotaSnapshot("oauth-1", nodeId);
+        row.setCounters(other.snapshot("oauth-1", now));
+        return row;
+    }
+}
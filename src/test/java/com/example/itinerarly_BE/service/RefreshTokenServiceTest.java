@@ -0,0 +1,147 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.model.RefreshToken;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.RefreshTokenRepository;
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("test")
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Spy
+    private DbBulkhead dbBulkhead = new DbBulkhead(new SimpleMeterRegistry(), 4, 2000, 1, 5);
+
+    @InjectMocks
+    private RefreshTokenService refreshTokenService;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(refreshTokenService, "refreshTokenTtlSeconds", 3600L);
+
+        testUser = new User();
+        testUser.setId(1L);
+        testUser.setOauthId("test-oauth-id");
+        testUser.setProvider("google");
+    }
+
+    @Test
+    void shouldStoreOnlyTheHashOfIssuedTokens() {
+        // When
+        String rawToken = refreshTokenService.issue(testUser);
+
+        // Then
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        assertEquals(RefreshTokenService.hash(rawToken), saved.getValue().getTokenHash());
+        assertNotEquals(rawToken, saved.getValue().getTokenHash());
+        assertEquals(1L, saved.getValue().getUserId());
+        assertNotNull(saved.getValue().getFamilyId());
+    }
+
+    @Test
+    void shouldRotateIntoSameFamily() {
+        // Given
+        RefreshToken stored = storedToken("raw-token", Instant.now().plusSeconds(600), null);
+        when(refreshTokenRepository.findByTokenHash(RefreshTokenService.hash("raw-token"))).thenReturn(Optional.of(stored));
+        when(refreshTokenRepository.revoke(eq(10L), any())).thenReturn(1);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+
+        // When
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate("raw-token");
+
+        // Then
+        assertNotNull(rotation);
+        assertSame(testUser, rotation.user());
+        assertNotEquals("raw-token", rotation.refreshToken());
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        assertEquals("family-1", saved.getValue().getFamilyId());
+        verify(refreshTokenRepository, never()).revokeFamily(any(), any());
+    }
+
+    @Test
+    void shouldRevokeFamilyWhenSpentTokenIsReplayed() {
+        // Given
+        RefreshToken spent = storedToken("raw-token", Instant.now().plusSeconds(600), Instant.now().minusSeconds(5));
+        when(refreshTokenRepository.findByTokenHash(RefreshTokenService.hash("raw-token"))).thenReturn(Optional.of(spent));
+
+        // When
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate("raw-token");
+
+        // Then
+        assertNull(rotation);
+        verify(refreshTokenRepository).revokeFamily(eq("family-1"), any());
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void shouldTreatLosingConcurrentRefreshAsReuse() {
+        // Given - another request spent the token between the lookup and the update
+        RefreshToken stored = storedToken("raw-token", Instant.now().plusSeconds(600), null);
+        when(refreshTokenRepository.findByTokenHash(RefreshTokenService.hash("raw-token"))).thenReturn(Optional.of(stored));
+        when(refreshTokenRepository.revoke(eq(10L), any())).thenReturn(0);
+
+        // When
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate("raw-token");
+
+        // Then
+        assertNull(rotation);
+        verify(refreshTokenRepository).revokeFamily(eq("family-1"), any());
+    }
+
+    @Test
+    void shouldRejectExpiredAndUnknownTokens() {
+        // Given
+        RefreshToken expired = storedToken("expired-token", Instant.now().minusSeconds(1), null);
+        when(refreshTokenRepository.findByTokenHash(RefreshTokenService.hash("expired-token"))).thenReturn(Optional.of(expired));
+        when(refreshTokenRepository.revoke(eq(10L), any())).thenReturn(1);
+        when(refreshTokenRepository.findByTokenHash(RefreshTokenService.hash("unknown-token"))).thenReturn(Optional.empty());
+
+        // When / Then
+        assertNull(refreshTokenService.rotate("expired-token"));
+        assertNull(refreshTokenService.rotate("unknown-token"));
+        verify(refreshTokenRepository, never()).save(any());
+        verifyNoInteractions(userRepository);
+    }
+
+    private RefreshToken storedToken(String rawToken, Instant expiresAt, Instant revokedAt) {
+        RefreshToken token = new RefreshToken();
+        token.setId(10L);
+        token.setTokenHash(RefreshTokenService.hash(rawToken));
+        token.setFamilyId("family-1");
+        token.setUserId(1L);
+        token.setCreatedAt(Instant.now().minusSeconds(60));
+        token.setExpiresAt(expiresAt);
+        token.setRevokedAt(revokedAt);
+        return token;
+    }
+}
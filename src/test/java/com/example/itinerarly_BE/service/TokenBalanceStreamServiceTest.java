@@ -0,0 +1,128 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.utl.DbBulkheadFullException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenBalanceStreamServiceTest {
+
+    private static final String OAUTH_ID = "test-oauth-id";
+    private static final int MAX_CONNECTIONS_PER_USER = 3;
+
+    @Mock
+    private TokenService tokenService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TokenBalanceStreamService streamService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        streamService = new TokenBalanceStreamService(tokenService, meterRegistry, 100, MAX_CONNECTIONS_PER_USER, 60_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        streamService.shutdown();
+    }
+
+    @Test
+    void shouldFreeTheSlotWhenTheFirstBalanceReadFails() {
+        // Given
+        when(tokenService.getRemainingTokens(OAUTH_ID))
+                .thenThrow(new DbBulkheadFullException("Database is busy, please retry"))
+                .thenReturn(10);
+
+        // When
+        assertThrows(DbBulkheadFullException.class, () -> streamService.subscribe(OAUTH_ID));
+
+        // Then
+        assertEquals(0, streamService.getConnectionCount());
+        assertNotNull(streamService.subscribe(OAUTH_ID));
+        assertEquals(1, streamService.getConnectionCount());
+    }
+
+    @Test
+    void shouldNotLeakSlotsWhenEveryBalanceReadFails() {
+        // Given
+        when(tokenService.getRemainingTokens(OAUTH_ID))
+                .thenThrow(new DbBulkheadFullException("Database is busy, please retry"));
+
+        // When
+        for (int i = 0; i < MAX_CONNECTIONS_PER_USER * 2; i++) {
+            assertThrows(DbBulkheadFullException.class, () -> streamService.subscribe(OAUTH_ID));
+        }
+
+        // Then
+        assertEquals(0, streamService.getConnectionCount());
+        assertEquals(0, meterRegistry.counter("tokens.stream.rejected").count());
+    }
+
+    @Test
+    void shouldRejectStreamsBeyondThePerUserLimit() {
+        // Given
+        when(tokenService.getRemainingTokens(OAUTH_ID)).thenReturn(10);
+        for (int i = 0; i < MAX_CONNECTIONS_PER_USER; i++) {
+            assertNotNull(streamService.subscribe(OAUTH_ID));
+        }
+
+        // When
+        SseEmitter rejected = streamService.subscribe(OAUTH_ID);
+
+        // Then
+        assertNull(rejected);
+        assertEquals(MAX_CONNECTIONS_PER_USER, streamService.getConnectionCount());
+        assertEquals(1, meterRegistry.counter("tokens.stream.rejected").count());
+    }
+
+    @Test
+    void shouldNotExceedThePerUserLimitUnderConcurrentSubscribes() throws Exception {
+        // Given
+        when(tokenService.getRemainingTokens(OAUTH_ID)).thenReturn(10);
+        int requests = 32;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        List<Future<SseEmitter>> results = new ArrayList<>();
+
+        // When
+        try {
+            for (int i = 0; i < requests; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return streamService.subscribe(OAUTH_ID);
+                }));
+            }
+            start.countDown();
+            long opened = 0;
+            for (Future<SseEmitter> result : results) {
+                if (Objects.nonNull(result.get())) {
+                    opened++;
+                }
+            }
+
+            // Then
+            assertEquals(MAX_CONNECTIONS_PER_USER, opened);
+            assertEquals(MAX_CONNECTIONS_PER_USER, streamService.getConnectionCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.config.TokenConfig;
+import com.example.itinerarly_BE.model.Plan;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.PlanRepository;
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.InMemoryInvalidationBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("test")
+class TokenLeaseServiceTest {
+
+    private static final String OAUTH_ID = "test-oauth-id";
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlanRepository planRepository;
+
+    @Mock
+    private TokenConfig tokenConfig;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private SimpleMeterRegistry meterRegistry;
+    private DbBulkhead dbBulkhead;
+    private UserCache userCache;
+    private PlanCatalog planCatalog;
+    private User user;
+    private LocalDate today;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        dbBulkhead = new DbBulkhead(meterRegistry, 4, 2000, 1, 5);
+        userCache = new UserCache(userRepository, dbBulkhead, new InMemoryInvalidationBus(),
+                new ResourceVersionCache(100, 0), meterRegistry, 100, 30, 0, 100, 300);
+        planCatalog = new PlanCatalog(planRepository, tokenConfig, dbBulkhead, new InMemoryInvalidationBus(),
+                meterRegistry, "free");
+        today = LocalDate.now();
+
+        user = new User();
+        user.setOauthId(OAUTH_ID);
+        user.setDailyTokens(5);
+        user.setLastTokenRefresh(today);
+        when(userRepository.findReadOnlyByOauthId(OAUTH_ID)).thenReturn(Optional.of(user));
+    }
+
+    @Test
+    void shouldServeConsumesFromOneLeasedBlock() {
+        // Given
+        TokenLeaseService leases = leases(3, 30);
+        when(userRepository.debitDailyTokens(OAUTH_ID, 3, today)).thenReturn(1);
+
+        // When
+        boolean first = leases.tryConsume(OAUTH_ID);
+        boolean second = leases.tryConsume(OAUTH_ID);
+        boolean third = leases.tryConsume(OAUTH_ID);
+
+        // Then - one UPDATE for three consumes
+        assertTrue(first && second && third);
+        assertEquals(0, leases.localRemaining(OAUTH_ID));
+        verify(userRepository, times(1)).debitDailyTokens(anyString(), anyInt(), any());
+        assertEquals(3.0, meterRegistry.get("token.leases.tokens").tag("action", "leased").counter().count());
+    }
+
+    @Test
+    void shouldLeaseWhatIsLeftWhenTheRowHoldsLessThanABlock() {
+        // Given - 1 token left in the row
+        TokenLeaseService leases = leases(3, 30);
+        when(userRepository.debitDailyTokens(OAUTH_ID, 3, today)).thenReturn(0);
+        when(userRepository.findDailyTokens(OAUTH_ID, today)).thenReturn(Optional.of(1), Optional.of(0));
+        when(userRepository.debitDailyTokens(OAUTH_ID, 1, today)).thenReturn(1, 0);
+
+        // When
+        boolean first = leases.tryConsume(OAUTH_ID);
+        boolean second = leases.tryConsume(OAUTH_ID);
+
+        // Then
+        assertTrue(first);
+        assertFalse(second);
+    }
+
+    @Test
+    void shouldRefreshStaleRowConditionallyBeforeLeasing() {
+        // Given
+        user.setLastTokenRefresh(today.minusDays(1));
+        when(tokenConfig.getDailyTokenLimit()).thenReturn(6);
+        TokenLeaseService leases = leases(2, 30);
+        when(userRepository.refreshDailyTokens(OAUTH_ID, null, 6, today)).thenReturn(1);
+        when(userRepository.debitDailyTokens(OAUTH_ID, 2, today)).thenReturn(1);
+
+        // When
+        boolean consumed = leases.tryConsume(OAUTH_ID);
+
+        // Then
+        assertTrue(consumed);
+        verify(userRepository, never()).save(any(User.class));
+        verify(eventPublisher).publishEvent(new TokenBalanceChangedEvent(OAUTH_ID, 6));
+    }
+
+    @Test
+    void shouldRefreshToTheCurrentPlanWhenTheCachedUserIsOnAnOldOne() {
+        // Given - cached on the default plan, moved to pro since
+        user.setLastTokenRefresh(today.minusDays(1));
+        when(tokenConfig.getDailyTokenLimit()).thenReturn(6);
+        Plan pro = new Plan();
+        pro.setId("pro");
+        pro.setName("Pro");
+        pro.setDailyTokenLimit(50);
+        when(planRepository.findAll()).thenReturn(List.of(pro));
+        planCatalog.reload();
+        User current = new User();
+        current.setOauthId(OAUTH_ID);
+        current.setPlanId("pro");
+        current.setDailyTokens(1);
+        current.setLastTokenRefresh(today.minusDays(1));
+        TokenLeaseService leases = leases(2, 30);
+        when(userRepository.refreshDailyTokens(OAUTH_ID, null, 6, today)).thenReturn(0);
+        when(userRepository.findDailyTokens(OAUTH_ID, today)).thenReturn(Optional.empty());
+        when(userRepository.findByOauthId(OAUTH_ID)).thenReturn(Optional.of(current));
+        when(userRepository.refreshDailyTokens(OAUTH_ID, "pro", 50, today)).thenReturn(1);
+        when(userRepository.debitDailyTokens(OAUTH_ID, 2, today)).thenReturn(1);
+
+        // When
+        boolean consumed = leases.tryConsume(OAUTH_ID);
+
+        // Then - the old plan's limit is never written over the plan change
+        assertTrue(consumed);
+        verify(eventPublisher).publishEvent(new TokenBalanceChangedEvent(OAUTH_ID, 50));
+    }
+
+    @Test
+    void shouldReturnExpiredAndShutdownLeasesToTheRow() {
+        // Given - a lease that expires at once with 2 of its 3 tokens unused
+        TokenLeaseService leases = leases(3, 0);
+        when(userRepository.debitDailyTokens(OAUTH_ID, 3, today)).thenReturn(1);
+        when(userRepository.returnDailyTokens(OAUTH_ID, 2, today)).thenReturn(1);
+        leases.tryConsume(OAUTH_ID);
+
+        // When
+        leases.sweep();
+        leases.shutdown();
+
+        // Then
+        verify(userRepository, times(1)).returnDailyTokens(OAUTH_ID, 2, today);
+        assertEquals(0, leases.localRemaining(OAUTH_ID));
+        assertEquals(2.0, meterRegistry.get("token.leases.tokens").tag("action", "returned").counter().count());
+    }
+
+    @Test
+    void shouldRetryFailedReturnsOnNextSweep() {
+        // Given
+        TokenLeaseService leases = leases(3, 0);
+        when(userRepository.debitDailyTokens(OAUTH_ID, 3, today)).thenReturn(1);
+        when(userRepository.returnDailyTokens(OAUTH_ID, 3, today))
+                .thenThrow(new RuntimeException("Database error")).thenReturn(1);
+        leases.tryConsume(OAUTH_ID);
+        leases.putBack(OAUTH_ID);
+
+        // When
+        leases.sweep();
+        leases.sweep();
+
+        // Then
+        verify(userRepository, times(2)).returnDailyTokens(OAUTH_ID, 3, today);
+        assertEquals(1.0, meterRegistry.counter("token.leases.returns.failed").count());
+    }
+
+    @Test
+    void shouldCountThisNodesLeaseInTheBalance() {
+        // Given - 5 in the row before leasing, 2 after
+        TokenLeaseService leases = leases(3, 30);
+        when(userRepository.debitDailyTokens(OAUTH_ID, 3, today)).thenReturn(1);
+        leases.tryConsume(OAUTH_ID);
+        user.setDailyTokens(2);
+
+        // When
+        int balance = leases.balance(user);
+
+        // Then
+        assertEquals(4, balance);
+    }
+
+    private TokenLeaseService leases(int blockSize, long ttlSeconds) {
+        return new TokenLeaseService(userRepository, userCache, planCatalog, dbBulkhead, eventPublisher, meterRegistry,
+                true, blockSize, ttlSeconds);
+    }
+}
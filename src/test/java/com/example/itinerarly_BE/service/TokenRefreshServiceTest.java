@@ -1,38 +1,62 @@
 package com.example.itinerarly_BE.service;
 
 import com.example.itinerarly_BE.config.TokenConfig;
+import com.example.itinerarly_BE.model.Plan;
 import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.PlanRepository;
 import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.repository.UserSummary;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.InMemoryInvalidationBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
-import static org.mockito.ArgumentMatchers.any;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 @ActiveProfiles("test")
 class TokenRefreshServiceTest {
 
+    private static final int PAGE_SIZE = 500;
+
     @Mock
     private UserRepository userRepository;
 
     @Mock
     private TokenConfig tokenConfig;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlanRepository planRepository;
+
+    @Spy
+    private DbBulkhead dbBulkhead = new DbBulkhead(new SimpleMeterRegistry(), 4, 2000, 1, 5);
+
     @InjectMocks
     private TokenRefreshService tokenRefreshService;
 
     private User testUser1;
     private User testUser2;
+    private PlanCatalog planCatalog;
 
     @BeforeEach
     void setUp() {
@@ -51,59 +75,137 @@ class TokenRefreshServiceTest {
         testUser2.setLastTokenRefresh(LocalDate.now().minusDays(1));
 
         when(tokenConfig.getDailyTokenLimit()).thenReturn(10);
+        planCatalog = new PlanCatalog(planRepository, tokenConfig, dbBulkhead, new InMemoryInvalidationBus(),
+                new SimpleMeterRegistry(), "free");
+        ReflectionTestUtils.setField(tokenRefreshService, "planCatalog", planCatalog);
+        ReflectionTestUtils.setField(tokenRefreshService, "pageSize", PAGE_SIZE);
     }
 
     @Test
     void shouldRefreshAllUsersTokens() {
         // Given
-        List<User> users = Arrays.asList(testUser1, testUser2);
-        when(userRepository.findAll()).thenReturn(users);
-        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        givenUsers(testUser1, testUser2);
 
         // When
         tokenRefreshService.refreshAllUserTokens();
 
         // Then
-        verify(userRepository).save(argThat(user -> 
-            user.getDailyTokens() == 10 && 
-            user.getLastTokenRefresh().equals(LocalDate.now()) &&
-            user.getId().equals(1L)
-        ));
-        verify(userRepository).save(argThat(user ->
-            user.getDailyTokens() == 10 &&
-            user.getLastTokenRefresh().equals(LocalDate.now()) &&
-            user.getId().equals(2L)
-        ));
-        verify(userRepository, times(2)).save(any(User.class));
+        verify(userRepository).refreshDailyTokens("oauth-1", null, 10, LocalDate.now());
+        verify(userRepository).refreshDailyTokens("oauth-2", null, 10, LocalDate.now());
+        assertEquals(10, testUser1.getDailyTokens());
+        assertEquals(LocalDate.now(), testUser2.getLastTokenRefresh());
+        verify(userRepository, never()).findAll();
+        verify(userRepository, never()).save(any(User.class));
+        verify(eventPublisher).publishEvent(new TokenBalanceChangedEvent("oauth-1", 10));
+        verify(eventPublisher).publishEvent(new TokenBalanceChangedEvent("oauth-2", 10));
     }
 
     @Test
     void shouldHandleEmptyUserList() {
         // Given
-        when(userRepository.findAll()).thenReturn(Arrays.asList());
+        when(userRepository.findPageAfter(0L, Limit.of(PAGE_SIZE))).thenReturn(List.of());
 
         // When
         tokenRefreshService.refreshAllUserTokens();
 
         // Then
-        verify(userRepository, never()).save(any(User.class));
+        verify(userRepository, never()).refreshDailyTokens(anyString(), any(), anyInt(), any());
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
     void shouldRefreshEvenWhenUserHasMaxTokens() {
         // Given
         testUser1.setDailyTokens(10); // Already at max
-        List<User> users = Arrays.asList(testUser1);
-        when(userRepository.findAll()).thenReturn(users);
-        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        givenUsers(testUser1);
 
         // When
         tokenRefreshService.refreshAllUserTokens();
 
         // Then
-        verify(userRepository).save(argThat(user ->
-            user.getDailyTokens() == 10 &&
-            user.getLastTokenRefresh().equals(LocalDate.now())
-        ));
+        assertEquals(10, testUser1.getDailyTokens());
+        assertEquals(LocalDate.now(), testUser1.getLastTokenRefresh());
+    }
+
+    @Test
+    void shouldRefreshEachUserToTheirPlansLimit() {
+        // Given
+        Plan pro = new Plan();
+        pro.setId("pro");
+        pro.setName("Pro");
+        pro.setDailyTokenLimit(50);
+        when(planRepository.findAll()).thenReturn(List.of(pro));
+        planCatalog.reload();
+        testUser1.setPlanId("pro");
+        givenUsers(testUser1, testUser2);
+
+        // When
+        tokenRefreshService.refreshAllUserTokens();
+
+        // Then
+        assertEquals(50, testUser1.getDailyTokens());
+        assertEquals(10, testUser2.getDailyTokens());
+        verify(planRepository, times(1)).findAll();
+    }
+
+    @Test
+    void shouldLeaveBalancesAlreadyRefreshedToday() {
+        // Given - user 1 was refreshed by a request just after midnight and has spent 4 tokens since; user 2 was
+        // refreshed by another node between the page read and the UPDATE
+        testUser1.setLastTokenRefresh(LocalDate.now());
+        testUser1.setDailyTokens(6);
+        givenUsers(testUser1, testUser2);
+        when(userRepository.refreshDailyTokens("oauth-2", null, 10, LocalDate.now())).thenReturn(0);
+
+        // When
+        tokenRefreshService.refreshAllUserTokens();
+
+        // Then
+        assertEquals(6, testUser1.getDailyTokens());
+        verify(userRepository, never()).refreshDailyTokens(eq("oauth-1"), any(), anyInt(), any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void shouldContinueAfterTheLastIdOfAFullPage() {
+        // Given - a full page, then a short one
+        ReflectionTestUtils.setField(tokenRefreshService, "pageSize", 1);
+        when(userRepository.findPageAfter(0L, Limit.of(1))).thenReturn(List.of(summary(testUser1)));
+        when(userRepository.findPageAfter(1L, Limit.of(1))).thenReturn(List.of());
+        when(userRepository.refreshDailyTokens("oauth-1", null, 10, LocalDate.now())).thenReturn(1);
+
+        // When
+        tokenRefreshService.refreshAllUserTokens();
+
+        // Then
+        verify(userRepository, times(2)).findPageAfter(anyLong(), any());
+        verify(eventPublisher).publishEvent(new TokenBalanceChangedEvent("oauth-1", 10));
+    }
+
+    /**
+     * Serves {@code users} as one page and applies {@link UserRepository#refreshDailyTokens} to them the way the
+     * UPDATE does.
+     */
+    private void givenUsers(User... users) {
+        when(userRepository.findPageAfter(0L, Limit.of(PAGE_SIZE)))
+                .thenReturn(Arrays.stream(users).map(TokenRefreshServiceTest::summary).toList());
+        for (User user : users) {
+            lenient().when(userRepository.refreshDailyTokens(eq(user.getOauthId()), any(), anyInt(), any()))
+                    .thenAnswer(invocation -> {
+                        if (invocation.getArgument(3).equals(user.getLastTokenRefresh())
+                                || !Objects.equals(user.getPlanId(), invocation.getArgument(1))) {
+                            return 0;
+                        }
+                        user.setDailyTokens(invocation.getArgument(2));
+                        user.setLastTokenRefresh(invocation.getArgument(3));
+                        return 1;
+                    });
+        }
+    }
+
+    private static UserSummary summary(User user) {
+        return new UserSummary(user.getId(), user.getOauthId(), user.getEmail(), user.getName(), user.getUsername(),
+                user.getProvider(), user.getPlanId(), user.getDailyTokens(), user.getLastTokenRefresh(),
+                user.getLoginTime());
     }
 }
@@ -0,0 +1,229 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.config.TokenConfig;
+import com.example.itinerarly_BE.model.TokenUsage;
+import com.example.itinerarly_BE.repository.QuotaSnapshotRepository;
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.SlidingWindowQuota;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("test")
+class TokenReservationServiceTest {
+
+    private static final String OAUTH_ID = "test-oauth-id";
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TokenService tokenService;
+
+    @Mock
+    private TokenConfig tokenConfig;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TokenUsageRecorder tokenUsageRecorder;
+
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private TokenLeaseService tokenLeaseService;
+
+    @Spy
+    private DbBulkhead dbBulkhead = new DbBulkhead(new SimpleMeterRegistry(), 4, 2000, 1, 5);
+
+    @Spy
+    private QuotaService quotaService = quotaService(10);
+
+    @InjectMocks
+    private TokenReservationService reservationService;
+
+    @Test
+    void shouldTakeTokenOutOfBalanceWhenReserved() {
+        // Given
+        givenBalance(3);
+
+        // When
+        String reservationId = reservationService.reserve(OAUTH_ID);
+
+        // Then - /consume on any node now sees the lower balance
+        assertNotNull(reservationId);
+        verify(tokenService).debitToken(OAUTH_ID, LocalDate.now());
+        verify(tokenService, never()).getRemainingTokens(anyString());
+        verify(eventPublisher).publishEvent(new TokenBalanceChangedEvent(OAUTH_ID, 2));
+        assertTrue(reservationService.commit(reservationId, OAUTH_ID));
+        verify(tokenUsageRecorder).record(OAUTH_ID, TokenUsage.Source.RESERVATION, 1);
+        verify(userRepository, never()).returnDailyTokens(anyString(), anyInt(), any());
+    }
+
+    @Test
+    void shouldRejectReservationWhenTokensWereSpentElsewhere() {
+        // Given - a consume on another node took the last token
+        when(tokenService.debitToken(OAUTH_ID, LocalDate.now())).thenReturn(Optional.empty());
+
+        // When
+        String reservationId = reservationService.reserve(OAUTH_ID);
+
+        // Then
+        assertNull(reservationId);
+        assertEquals(10, quotaService.remaining(OAUTH_ID));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void shouldTakeTokenFromLeaseWhenLeasesAreEnabled() {
+        // Given - the row is drained into this node's lease
+        when(tokenConfig.getReservationTtlSeconds()).thenReturn(300L);
+        when(tokenLeaseService.isEnabled()).thenReturn(true);
+        when(tokenService.takeLeasedToken(OAUTH_ID)).thenReturn(true, false);
+        when(userRepository.returnDailyTokens(OAUTH_ID, 1, LocalDate.now())).thenReturn(1);
+
+        // When
+        String reservationId = reservationService.reserve(OAUTH_ID);
+        String overdrawn = reservationService.reserve(OAUTH_ID);
+        reservationService.release(reservationId, OAUTH_ID);
+
+        // Then - taken from the lease, given back to the row every node reads
+        assertNotNull(reservationId);
+        assertNull(overdrawn);
+        verify(tokenService, never()).debitToken(anyString(), any());
+        verify(userRepository).returnDailyTokens(OAUTH_ID, 1, LocalDate.now());
+        assertEquals(10, quotaService.remaining(OAUTH_ID));
+    }
+
+    @Test
+    void shouldGiveHeldTokenBackOnRelease() {
+        // Given
+        givenBalance(1);
+        String reservationId = reservationService.reserve(OAUTH_ID);
+        when(userRepository.returnDailyTokens(OAUTH_ID, 1, LocalDate.now())).thenReturn(1);
+
+        // When
+        assertTrue(reservationService.release(reservationId, OAUTH_ID));
+
+        // Then
+        verify(userRepository).returnDailyTokens(OAUTH_ID, 1, LocalDate.now());
+        assertFalse(reservationService.commit(reservationId, OAUTH_ID));
+        assertEquals(10, quotaService.remaining(OAUTH_ID));
+    }
+
+    @Test
+    void shouldGiveBackExpiredReservations() {
+        // Given
+        givenBalance(1);
+        String reservationId = reservationService.reserve(OAUTH_ID);
+        when(userRepository.returnDailyTokens(OAUTH_ID, 1, LocalDate.now())).thenReturn(1);
+
+        // When
+        int expired = reservationService.expireReservations(Instant.now().plusSeconds(301));
+
+        // Then
+        assertEquals(1, expired);
+        assertFalse(reservationService.commit(reservationId, OAUTH_ID));
+        verify(userRepository).returnDailyTokens(OAUTH_ID, 1, LocalDate.now());
+    }
+
+    @Test
+    void shouldRejectReservationOwnedByAnotherUser() {
+        // Given
+        givenBalance(1);
+        String reservationId = reservationService.reserve(OAUTH_ID);
+
+        // When & Then
+        assertFalse(reservationService.commit(reservationId, "other-oauth-id"));
+        assertTrue(reservationService.commit(reservationId, OAUTH_ID));
+        assertFalse(reservationService.commit(reservationId, OAUTH_ID));
+    }
+
+    @Test
+    void shouldRetryFailedReturnOnNextSweep() {
+        // Given
+        givenBalance(2);
+        String reservationId = reservationService.reserve(OAUTH_ID);
+        when(userRepository.returnDailyTokens(OAUTH_ID, 1, LocalDate.now()))
+                .thenThrow(new RuntimeException("connection refused"))
+                .thenReturn(1);
+
+        // When
+        assertTrue(reservationService.release(reservationId, OAUTH_ID));
+        reservationService.sweep();
+        reservationService.sweep();
+
+        // Then
+        verify(userRepository, times(2)).returnDailyTokens(OAUTH_ID, 1, LocalDate.now());
+    }
+
+    @Test
+    void shouldGiveBackOpenReservationsOnShutdown() {
+        // Given
+        givenBalance(2);
+        reservationService.reserve(OAUTH_ID);
+        when(userRepository.returnDailyTokens(OAUTH_ID, 1, LocalDate.now())).thenReturn(1);
+
+        // When
+        reservationService.shutdown();
+
+        // Then
+        verify(userRepository).returnDailyTokens(OAUTH_ID, 1, LocalDate.now());
+    }
+
+    @Test
+    void shouldCountHoldsAgainstRollingQuotaAndRefundReleasedOnes() {
+        // Given - 1 token per minute, 5 left for the day
+        QuotaService oncePerMinute = quotaService(1);
+        ReflectionTestUtils.setField(reservationService, "quotaService", oncePerMinute);
+        givenBalance(5);
+        when(tokenService.getRemainingTokens(OAUTH_ID)).thenReturn(4);
+
+        // When
+        String first = reservationService.reserve(OAUTH_ID);
+        String refused = reservationService.reserve(OAUTH_ID);
+        int availableWhileHeld = reservationService.getAvailableTokens(OAUTH_ID);
+        reservationService.release(first, OAUTH_ID);
+
+        // Then
+        assertNotNull(first);
+        assertNull(refused);
+        assertEquals(0, availableWhileHeld);
+        assertEquals(1, oncePerMinute.remaining(OAUTH_ID));
+        verify(tokenService, times(1)).debitToken(OAUTH_ID, LocalDate.now());
+    }
+
+    private void givenBalance(int tokens) {
+        when(tokenConfig.getReservationTtlSeconds()).thenReturn(300L);
+        when(tokenService.debitToken(OAUTH_ID, LocalDate.now())).thenReturn(Optional.of(tokens - 1));
+    }
+
+    private static QuotaService quotaService(int perMinute) {
+        return new QuotaService(new SlidingWindowQuota(List.of(new SlidingWindowQuota.Window(perMinute, Duration.ofMinutes(1))), 60),
+                mock(QuotaSnapshotRepository.class), new DbBulkhead(new SimpleMeterRegistry(), 4, 2000, 1, 5),
+                TransactionOperations.withoutTransaction(), mock(UserCache.class), mock(PlanCatalog.class),
+                new SimpleMeterRegistry());
+    }
+}
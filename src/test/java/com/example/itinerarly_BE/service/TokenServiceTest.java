@@ -1,21 +1,45 @@
 package com.example.itinerarly_BE.service;
 
 import com.example.itinerarly_BE.config.TokenConfig;
+import com.example.itinerarly_BE.model.Plan;
+import com.example.itinerarly_BE.model.TokenUsage;
 import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.PlanRepository;
+import com.example.itinerarly_BE.repository.QuotaSnapshotRepository;
 import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.InMemoryInvalidationBus;
+import com.example.itinerarly_BE.utl.SingleFlight;
+import com.example.itinerarly_BE.utl.SlidingWindowQuota;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,10 +52,30 @@ class TokenServiceTest {
     @Mock
     private TokenConfig tokenConfig;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TokenLeaseService tokenLeaseService;
+
+    @Mock
+    private TokenUsageRecorder tokenUsageRecorder;
+
+    @Mock
+    private PlanRepository planRepository;
+
+    @Spy
+    private DbBulkhead dbBulkhead = new DbBulkhead(new SimpleMeterRegistry(), 4, 2000, 1, 5);
+
+    @Spy
+    private QuotaService quotaService = quotaService(List.of());
+
     @InjectMocks
     private TokenService tokenService;
 
     private User testUser;
+    private PlanCatalog planCatalog;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     void setUp() {
@@ -43,12 +87,20 @@ class TokenServiceTest {
         testUser.setLastTokenRefresh(LocalDate.now());
 
         when(tokenConfig.getDailyTokenLimit()).thenReturn(10);
+        ReflectionTestUtils.setField(tokenService, "userCache", new UserCache(userRepository, dbBulkhead,
+                new InMemoryInvalidationBus(), new ResourceVersionCache(100, 0), new SimpleMeterRegistry(), 100, 30, 0, 100, 300));
+        planCatalog = new PlanCatalog(planRepository, tokenConfig, dbBulkhead, new InMemoryInvalidationBus(),
+                new SimpleMeterRegistry(), "free");
+        ReflectionTestUtils.setField(tokenService, "planCatalog", planCatalog);
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(tokenService, "remainingTokenReads",
+                new SingleFlight<String, Integer>("remaining-tokens", meterRegistry));
     }
 
     @Test
     void shouldReturnRemainingTokensWhenUserExists() {
         // Given
-        when(userRepository.findByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
+        when(userRepository.findReadOnlyByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
 
         // When
         int remainingTokens = tokenService.getRemainingTokens("test-oauth-id");
@@ -60,7 +112,7 @@ class TokenServiceTest {
     @Test
     void shouldReturnZeroWhenUserNotFound() {
         // Given
-        when(userRepository.findByOauthId("nonexistent-id")).thenReturn(Optional.empty());
+        when(userRepository.findReadOnlyByOauthId("nonexistent-id")).thenReturn(Optional.empty());
 
         // When
         int remainingTokens = tokenService.getRemainingTokens("nonexistent-id");
@@ -72,15 +124,36 @@ class TokenServiceTest {
     @Test
     void shouldConsumeTokenSuccessfully() {
         // Given
-        when(userRepository.findByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        givenBalanceUpdatesApplyTo(testUser);
 
         // When
         boolean result = tokenService.consumeToken("test-oauth-id");
 
-        // Then
+        // Then - one conditional debit, the row is neither read first nor written back
         assertTrue(result);
-        verify(userRepository).save(argThat(user -> user.getDailyTokens() == 4));
+        assertEquals(4, testUser.getDailyTokens());
+        verify(userRepository, never()).findByOauthId(anyString());
+        verify(userRepository, never()).save(any(User.class));
+        verify(eventPublisher).publishEvent(new TokenBalanceChangedEvent("test-oauth-id", 4));
+    }
+
+    @Test
+    void shouldRecordUsageOnlyForConsumedTokens() {
+        // Given - refreshed yesterday, so the consume starts with a refresh to the plan's limit
+        testUser.setLastTokenRefresh(LocalDate.now().minusDays(1));
+        when(userRepository.findByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
+        when(userRepository.findByOauthId("nonexistent-id")).thenReturn(Optional.empty());
+        givenBalanceUpdatesApplyTo(testUser);
+
+        // When
+        boolean consumed = tokenService.consumeToken("test-oauth-id");
+        boolean missing = tokenService.consumeToken("nonexistent-id");
+
+        // Then
+        assertTrue(consumed);
+        assertFalse(missing);
+        verify(tokenUsageRecorder, times(1)).record(anyString(), any(), anyInt());
+        verify(tokenUsageRecorder).record("test-oauth-id", TokenUsage.Source.CONSUME, 1);
     }
 
     @Test
@@ -88,12 +161,33 @@ class TokenServiceTest {
         // Given
         testUser.setDailyTokens(0);
         when(userRepository.findByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
+        givenBalanceUpdatesApplyTo(testUser);
 
         // When
         boolean result = tokenService.consumeToken("test-oauth-id");
 
         // Then
         assertFalse(result);
+        assertEquals(0, testUser.getDailyTokens());
+        verify(tokenUsageRecorder, never()).record(anyString(), any(), anyInt());
+    }
+
+    @Test
+    void shouldConsumeFromABalanceAnotherRequestRefreshedAfterTheFirstDebit() {
+        // Given - the first debit found yesterday's row, which another request refreshed to the full allowance
+        // before it was read
+        testUser.setDailyTokens(tokenConfig.getDailyTokenLimit());
+        when(userRepository.debitDailyTokens("test-oauth-id", 1, LocalDate.now())).thenReturn(0, 1);
+        when(userRepository.findByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
+        when(userRepository.findDailyTokens("test-oauth-id", LocalDate.now())).thenReturn(Optional.of(9));
+
+        // When
+        boolean result = tokenService.consumeToken("test-oauth-id");
+
+        // Then
+        assertTrue(result);
+        verify(userRepository, times(2)).debitDailyTokens("test-oauth-id", 1, LocalDate.now());
+        verify(eventPublisher).publishEvent(new TokenBalanceChangedEvent("test-oauth-id", 9));
     }
 
     @Test
@@ -101,17 +195,17 @@ class TokenServiceTest {
         // Given
         testUser.setLastTokenRefresh(LocalDate.now().minusDays(1));
         testUser.setDailyTokens(2);
+        when(userRepository.findReadOnlyByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
         when(userRepository.findByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        givenBalanceUpdatesApplyTo(testUser);
 
         // When
         int remainingTokens = tokenService.getRemainingTokens("test-oauth-id");
 
         // Then
         assertEquals(10, remainingTokens);
-        verify(userRepository).save(argThat(user ->
-            user.getDailyTokens() == 10 && user.getLastTokenRefresh().equals(LocalDate.now())
-        ));
+        verify(userRepository).refreshDailyTokens("test-oauth-id", null, 10, LocalDate.now());
+        verify(userRepository, never()).save(any(User.class));
     }
 
     @Test
@@ -126,4 +220,216 @@ class TokenServiceTest {
         assertFalse(result);
         verify(userRepository, never()).save(any(User.class));
     }
+    @Test
+    void shouldSkipLookupForOauthIdKnownToBeAbsent() {
+        // Given
+        testUser.setLastTokenRefresh(LocalDate.now().minusDays(1));
+        when(userRepository.findByOauthId("nonexistent-id")).thenReturn(Optional.empty());
+        when(userRepository.findByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
+        givenBalanceUpdatesApplyTo(testUser);
+        tokenService.consumeToken("nonexistent-id");
+
+        // When
+        boolean consumed = tokenService.consumeToken("nonexistent-id");
+        int remainingTokens = tokenService.getRemainingTokens("nonexistent-id");
+        boolean otherUserConsumed = tokenService.consumeToken("test-oauth-id");
+
+        // Then
+        assertFalse(consumed);
+        assertEquals(0, remainingTokens);
+        verify(userRepository, times(1)).findByOauthId("nonexistent-id");
+        verify(userRepository, never()).findReadOnlyByOauthId("nonexistent-id");
+        assertTrue(otherUserConsumed);
+        assertEquals(9, testUser.getDailyTokens());
+    }
+
+    @Test
+    void shouldShareOneReadAndRefreshBetweenConcurrentBalanceRequests() throws Exception {
+        // Given - a stale balance, and the refresh read is held until every other request has joined it
+        int callers = 8;
+        testUser.setLastTokenRefresh(LocalDate.now().minusDays(1));
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.findReadOnlyByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
+        when(userRepository.findByOauthId("test-oauth-id")).thenAnswer(invocation -> {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            User current = new User();
+            current.setOauthId("test-oauth-id");
+            current.setDailyTokens(0);
+            current.setLastTokenRefresh(LocalDate.now().minusDays(1));
+            return Optional.of(current);
+        });
+        when(userRepository.refreshDailyTokens("test-oauth-id", null, 10, LocalDate.now())).thenReturn(1);
+
+        // When
+        List<Future<Integer>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> tokenService.getRemainingTokens("test-oauth-id")));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (meterRegistry.get("singleflight.calls").tag("result", "shared").counter().count() < callers - 1) {
+                assertTrue(System.nanoTime() < deadline, "requests did not join the read in flight");
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            // Then
+            for (Future<Integer> result : results) {
+                assertEquals(10, result.get(5, TimeUnit.SECONDS));
+            }
+        }
+        verify(userRepository, times(1)).findReadOnlyByOauthId("test-oauth-id");
+        verify(userRepository, times(1)).findByOauthId("test-oauth-id");
+        verify(userRepository, times(1)).refreshDailyTokens(anyString(), any(), anyInt(), any());
+    }
+
+    @Test
+    void shouldRefuseConsumptionWhenRollingQuotaIsFull() {
+        // Given - 1 per minute on top of the daily balance
+        ReflectionTestUtils.setField(tokenService, "quotaService",
+                quotaService(List.of(new SlidingWindowQuota.Window(1, Duration.ofMinutes(1)))));
+        testUser.setLastTokenRefresh(LocalDate.now().minusDays(1));
+        when(userRepository.findByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
+        givenBalanceUpdatesApplyTo(testUser);
+
+        // When
+        boolean first = tokenService.consumeToken("test-oauth-id");
+        boolean second = tokenService.consumeToken("test-oauth-id");
+
+        // Then
+        assertTrue(first);
+        assertFalse(second);
+        assertEquals(9, testUser.getDailyTokens());
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    private static QuotaService quotaService(List<SlidingWindowQuota.Window> windows) {
+        return new QuotaService(new SlidingWindowQuota(windows, 60), mock(QuotaSnapshotRepository.class),
+                new DbBulkhead(new SimpleMeterRegistry(), 4, 2000, 1, 5), TransactionOperations.withoutTransaction(),
+                mock(UserCache.class), mock(PlanCatalog.class), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void shouldAdjustTodaysBalanceWhenPlanChanges() {
+        // Given - 5 of the default 10 left, then moved to a 50 token plan
+        when(planRepository.findAll()).thenReturn(List.of(plan("pro", 50)));
+        planCatalog.reload();
+        when(userRepository.findByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
+        givenPlanChangesApplyTo(testUser);
+
+        // When
+        User upgraded = tokenService.changePlan("test-oauth-id", "pro");
+        int upgradedBalance = upgraded.getDailyTokens();
+        User downgraded = tokenService.changePlan("test-oauth-id", null);
+
+        // Then
+        assertEquals(45, upgradedBalance);
+        assertEquals(5, downgraded.getDailyTokens());
+        assertNull(downgraded.getPlanId());
+        verify(userRepository).changePlan("test-oauth-id", null, "pro", 40, LocalDate.now());
+        verify(userRepository).changePlan("test-oauth-id", "pro", null, -40, LocalDate.now());
+        verify(userRepository, never()).save(any(User.class));
+        assertThrows(IllegalArgumentException.class, () -> tokenService.changePlan("test-oauth-id", "enterprise"));
+        verify(eventPublisher, times(2)).publishEvent(any(TokenBalanceChangedEvent.class));
+    }
+
+    @Test
+    void shouldRetakeDifferenceWhenAnotherPlanChangeGotInFirst() {
+        // Given - read on the default plan, but moved to pro before the update ran
+        when(planRepository.findAll()).thenReturn(List.of(plan("pro", 50), plan("team", 20)));
+        planCatalog.reload();
+        User onPro = new User();
+        onPro.setOauthId("test-oauth-id");
+        onPro.setPlanId("pro");
+        onPro.setDailyTokens(45);
+        onPro.setLastTokenRefresh(LocalDate.now());
+        when(userRepository.findByOauthId("test-oauth-id"))
+                .thenReturn(Optional.of(testUser), Optional.of(onPro), Optional.of(onPro));
+        when(userRepository.changePlan(eq("test-oauth-id"), isNull(), eq("team"), anyInt(), any())).thenReturn(0);
+        when(userRepository.changePlan(eq("test-oauth-id"), eq("pro"), eq("team"), anyInt(), any())).thenReturn(1);
+
+        // When
+        tokenService.changePlan("test-oauth-id", "team");
+
+        // Then - the second attempt takes the difference from pro, not from the default plan
+        verify(userRepository).changePlan("test-oauth-id", null, "team", 10, LocalDate.now());
+        verify(userRepository).changePlan("test-oauth-id", "pro", "team", -30, LocalDate.now());
+    }
+
+    @Test
+    void shouldRefreshToTheNewPlansLimitWhenPlanChangedSinceTheRead() {
+        // Given - read on the default plan, but moved to pro before the refresh ran
+        when(planRepository.findAll()).thenReturn(List.of(plan("pro", 50)));
+        planCatalog.reload();
+        testUser.setLastTokenRefresh(LocalDate.now().minusDays(1));
+        User row = new User();
+        row.setOauthId("test-oauth-id");
+        row.setPlanId("pro");
+        row.setDailyTokens(2);
+        row.setLastTokenRefresh(LocalDate.now().minusDays(1));
+        when(userRepository.findReadOnlyByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser));
+        when(userRepository.findByOauthId("test-oauth-id")).thenReturn(Optional.of(testUser), Optional.of(row));
+        givenBalanceUpdatesApplyTo(row);
+
+        // When
+        int remainingTokens = tokenService.getRemainingTokens("test-oauth-id");
+
+        // Then - the default plan's limit is never written over the plan change
+        assertEquals(50, remainingTokens);
+        assertEquals(50, row.getDailyTokens());
+        verify(userRepository).refreshDailyTokens("test-oauth-id", null, 10, LocalDate.now());
+        verify(userRepository).refreshDailyTokens("test-oauth-id", "pro", 50, LocalDate.now());
+    }
+
+    /**
+     * Applies the conditional balance UPDATEs to {@code user} the way the database does. Lenient, as a test only
+     * reaches the ones its path needs.
+     */
+    private void givenBalanceUpdatesApplyTo(User user) {
+        String oauthId = user.getOauthId();
+        lenient().when(userRepository.debitDailyTokens(eq(oauthId), anyInt(), any())).thenAnswer(invocation -> {
+            int count = invocation.getArgument(1);
+            if (!invocation.getArgument(2).equals(user.getLastTokenRefresh()) || user.getDailyTokens() < count) {
+                return 0;
+            }
+            user.setDailyTokens(user.getDailyTokens() - count);
+            return 1;
+        });
+        lenient().when(userRepository.refreshDailyTokens(eq(oauthId), any(), anyInt(), any())).thenAnswer(invocation -> {
+            if (invocation.getArgument(3).equals(user.getLastTokenRefresh())
+                    || !Objects.equals(user.getPlanId(), invocation.getArgument(1))) {
+                return 0;
+            }
+            user.setDailyTokens(invocation.getArgument(2));
+            user.setLastTokenRefresh(invocation.getArgument(3));
+            return 1;
+        });
+        lenient().when(userRepository.findDailyTokens(eq(oauthId), any())).thenAnswer(invocation ->
+                invocation.getArgument(1).equals(user.getLastTokenRefresh())
+                        ? Optional.of(user.getDailyTokens()) : Optional.empty());
+    }
+
+    /**
+     * Applies {@link UserRepository#changePlan} to {@code user} the way the UPDATE does.
+     */
+    private void givenPlanChangesApplyTo(User user) {
+        when(userRepository.changePlan(eq(user.getOauthId()), any(), any(), anyInt(), any())).thenAnswer(invocation -> {
+            if (!Objects.equals(user.getPlanId(), invocation.getArgument(1))) {
+                return 0;
+            }
+            user.setPlanId(invocation.getArgument(2));
+            if (invocation.getArgument(4).equals(user.getLastTokenRefresh())) {
+                user.setDailyTokens(Math.max(0, user.getDailyTokens() + invocation.<Integer>getArgument(3)));
+            }
+            return 1;
+        });
+    }
+
+    private static Plan plan(String id, int dailyTokenLimit) {
+        Plan plan = new Plan();
+        plan.setId(id);
+        plan.setName(id);
+        plan.setDailyTokenLimit(dailyTokenLimit);
+        return plan;
+    }
 }
@@ -0,0 +1,141 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.model.TokenUsage;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("test")
+class TokenUsageRecorderTest {
+
+    @Mock
+    private UsageRollupService usageRollupService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private DbBulkhead dbBulkhead;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        dbBulkhead = new DbBulkhead(meterRegistry, 4, 2000, 1, 5);
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:usage-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE token_usage (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "oauth_id VARCHAR(255) NOT NULL, source VARCHAR(16) NOT NULL, tokens INT NOT NULL, "
+                + "used_at TIMESTAMP(6) NOT NULL)");
+    }
+
+    @Test
+    void shouldWriteQueuedUsageInBatchesAndDrainOnShutdown() throws Exception {
+        // Given - queued before the writer starts, so it finds full batches
+        TokenUsageRecorder recorder = recorder(jdbcTemplate, 2000, "drop");
+        for (int i = 0; i < 1200; i++) {
+            recorder.record("oauth-" + (i % 7), i % 2 == 0 ? TokenUsage.Source.CONSUME : TokenUsage.Source.RESERVATION, 1);
+        }
+
+        // When
+        recorder.start();
+        recorder.shutdown();
+
+        // Then
+        assertEquals(1200, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM token_usage", Integer.class));
+        assertEquals(600, jdbcTemplate.queryForObject(
+                "SELECT SUM(tokens) FROM token_usage WHERE source = 'RESERVATION'", Integer.class));
+        assertEquals(0, recorder.getPendingCount());
+        assertEquals(1200.0, meterRegistry.counter("token.usage.written").count());
+        assertEquals(3, meterRegistry.get("token.usage.batch.rows").summary().count());
+        assertEquals(500.0, meterRegistry.get("token.usage.batch.rows").summary().max());
+        verify(usageRollupService, times(3)).apply(anyList());
+    }
+
+    @Test
+    void shouldDropUsageWhenQueueIsFull() {
+        // Given - no writer running
+        TokenUsageRecorder recorder = recorder(jdbcTemplate, 2, "drop");
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            recorder.record("oauth-1", TokenUsage.Source.CONSUME, 1);
+        }
+
+        // Then
+        assertEquals(2, recorder.getPendingCount());
+        assertEquals(2.0, meterRegistry.counter("token.usage.recorded").count());
+        assertEquals(1.0, meterRegistry.counter("token.usage.dropped").count());
+    }
+
+    @Test
+    void shouldWaitForRoomBeforeDroppingWithBlockPolicy() {
+        // Given
+        TokenUsageRecorder recorder = recorder(jdbcTemplate, 1, "block");
+        recorder.record("oauth-1", TokenUsage.Source.CONSUME, 1);
+
+        // When
+        long start = System.nanoTime();
+        recorder.record("oauth-1", TokenUsage.Source.CONSUME, 1);
+        long waitedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Then
+        assertTrue(waitedMillis >= 20, "waited " + waitedMillis + " ms");
+        assertEquals(1.0, meterRegistry.counter("token.usage.dropped").count());
+    }
+
+    @Test
+    void shouldRetryFailedBatch() throws Exception {
+        // Given
+        JdbcTemplate failing = mock(JdbcTemplate.class);
+        when(failing.batchUpdate(anyString(), anyList()))
+                .thenThrow(new RuntimeException("Database error"))
+                .thenReturn(new int[]{1});
+        TokenUsageRecorder recorder = recorder(failing, 10, "drop");
+        recorder.record("oauth-1", TokenUsage.Source.CONSUME, 1);
+
+        // When
+        recorder.start();
+        recorder.shutdown();
+
+        // Then
+        verify(failing, times(2)).batchUpdate(anyString(), anyList());
+        assertEquals(1.0, meterRegistry.counter("token.usage.written").count());
+        assertEquals(0.0, meterRegistry.counter("token.usage.failed").count());
+    }
+
+    @Test
+    void shouldRecordNothingWhenDisabled() throws Exception {
+        // Given
+        TokenUsageRecorder recorder = new TokenUsageRecorder(jdbcTemplate, usageRollupService, dbBulkhead,
+                TransactionOperations.withoutTransaction(), meterRegistry, false, 10, 500, "drop", 20, 5000);
+        recorder.start();
+
+        // When
+        recorder.record("oauth-1", TokenUsage.Source.CONSUME, 1);
+        recorder.shutdown();
+
+        // Then
+        assertEquals(0, recorder.getPendingCount());
+        assertEquals(List.of(0), jdbcTemplate.queryForList("SELECT COUNT(*) FROM token_usage", Integer.class));
+    }
+
+    private TokenUsageRecorder recorder(JdbcTemplate template, int queueCapacity, String overflow) {
+        return new TokenUsageRecorder(template, usageRollupService, dbBulkhead, TransactionOperations.withoutTransaction(),
+                meterRegistry, true, queueCapacity, 500, overflow, 20, 5000);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.model.TokenUsage;
+import com.example.itinerarly_BE.model.UsagePeriod;
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.ProviderUsageRollupRepository;
+import com.example.itinerarly_BE.repository.UserUsageRollupRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("test")
+class UsageRollupServiceTest {
+
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private UserUsageRollupRepository userRollupRepository;
+
+    @Mock
+    private ProviderUsageRollupRepository providerRollupRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:rollups-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE usage_rollup_users (period VARCHAR(8) NOT NULL, period_start DATE NOT NULL, "
+                + "oauth_id VARCHAR(255) NOT NULL, provider VARCHAR(32) NOT NULL, tokens BIGINT NOT NULL, "
+                + "PRIMARY KEY (period, period_start, oauth_id))");
+        jdbcTemplate.execute("CREATE TABLE usage_rollup_providers (period VARCHAR(8) NOT NULL, period_start DATE NOT NULL, "
+                + "provider VARCHAR(32) NOT NULL, tokens BIGINT NOT NULL, active_users INT NOT NULL, "
+                + "PRIMARY KEY (period, period_start, provider))");
+    }
+
+    @Test
+    void shouldSplitUsageAtMidnightIntoTwoDaysOfTheSameWeek() {
+        // Given - Wednesday 23:59:59 and Thursday 00:00:01
+        knownUser("github-user", "github");
+        UsageRollupService rollups = rollups(ZoneOffset.UTC);
+
+        // When
+        rollups.apply(List.of(
+                usage("github-user", "2026-10-14T23:59:59Z"),
+                usage("github-user", "2026-10-15T00:00:01Z")));
+
+        // Then
+        assertEquals(1, userTokens(UsagePeriod.DAY, "2026-10-14", "github-user"));
+        assertEquals(1, userTokens(UsagePeriod.DAY, "2026-10-15", "github-user"));
+        assertEquals(2, userTokens(UsagePeriod.WEEK, "2026-10-12", "github-user"));
+        assertEquals(Map.of("TOKENS", 1L, "ACTIVE_USERS", 1), provider(UsagePeriod.DAY, "2026-10-14", "github"));
+        assertEquals(Map.of("TOKENS", 1L, "ACTIVE_USERS", 1), provider(UsagePeriod.DAY, "2026-10-15", "github"));
+        assertEquals(Map.of("TOKENS", 2L, "ACTIVE_USERS", 1), provider(UsagePeriod.WEEK, "2026-10-12", "github"));
+    }
+
+    @Test
+    void shouldStartANewWeekOnMonday() {
+        // Given - Sunday 23:59:59 and Monday 00:00:01
+        knownUser("github-user", "github");
+        UsageRollupService rollups = rollups(ZoneOffset.UTC);
+
+        // When
+        rollups.apply(List.of(
+                usage("github-user", "2026-10-18T23:59:59Z"),
+                usage("github-user", "2026-10-19T00:00:01Z")));
+
+        // Then
+        assertEquals(1, userTokens(UsagePeriod.WEEK, "2026-10-12", "github-user"));
+        assertEquals(1, userTokens(UsagePeriod.WEEK, "2026-10-19", "github-user"));
+    }
+
+    @Test
+    void shouldUseTheServerTimeZoneForDayBoundaries() {
+        // Given - 20:00 UTC is 01:30 the next morning in India
+        knownUser("github-user", "github");
+        UsageRollupService rollups = rollups(ZoneId.of("Asia/Kolkata"));
+
+        // When
+        rollups.apply(List.of(usage("github-user", "2026-10-18T20:00:00Z")));
+
+        // Then
+        assertEquals(1, userTokens(UsagePeriod.DAY, "2026-10-19", "github-user"));
+        assertEquals(0, userTokens(UsagePeriod.DAY, "2026-10-18", "github-user"));
+    }
+
+    @Test
+    void shouldAddLaterBatchesToExistingRowsAndCountEachUserOncePerPeriod() {
+        // Given
+        knownUser("github-user", "github");
+        knownUser("google-user", "google");
+        UsageRollupService rollups = rollups(ZoneOffset.UTC);
+        rollups.apply(List.of(
+                usage("github-user", "2026-10-15T09:00:00Z"),
+                usage("google-user", "2026-10-15T09:00:01Z")));
+
+        // When - the GitHub user again later that day, then the next day
+        rollups.apply(List.of(
+                usage("github-user", "2026-10-15T18:00:00Z"),
+                usage("github-user", "2026-10-15T18:00:01Z")));
+        rollups.apply(List.of(usage("github-user", "2026-10-16T08:00:00Z")));
+
+        // Then
+        assertEquals(3, userTokens(UsagePeriod.DAY, "2026-10-15", "github-user"));
+        assertEquals(4, userTokens(UsagePeriod.WEEK, "2026-10-12", "github-user"));
+        assertEquals(Map.of("TOKENS", 3L, "ACTIVE_USERS", 1), provider(UsagePeriod.DAY, "2026-10-15", "github"));
+        assertEquals(Map.of("TOKENS", 1L, "ACTIVE_USERS", 1), provider(UsagePeriod.DAY, "2026-10-15", "google"));
+        assertEquals(Map.of("TOKENS", 4L, "ACTIVE_USERS", 1), provider(UsagePeriod.WEEK, "2026-10-12", "github"));
+        assertEquals(6.0, meterRegistry.get("usage.rollups.rows").tag("action", "updated").counter().count());
+        assertEquals(10.0, meterRegistry.get("usage.rollups.rows").tag("action", "inserted").counter().count());
+    }
+
+    @Test
+    void shouldRollUpUsageOfMissingUsersUnderUnknownProvider() {
+        // Given
+        when(userCache.get("deleted-user")).thenReturn(Optional.empty());
+        UsageRollupService rollups = rollups(ZoneOffset.UTC);
+
+        // When
+        rollups.apply(List.of(usage("deleted-user", "2026-10-15T09:00:00Z")));
+
+        // Then
+        assertEquals(Map.of("TOKENS", 1L, "ACTIVE_USERS", 1),
+                provider(UsagePeriod.DAY, "2026-10-15", UsageRollupService.UNKNOWN_PROVIDER));
+    }
+
+    private UsageRollupService rollups(ZoneId zone) {
+        return new UsageRollupService(jdbcTemplate, userCache, userRollupRepository, providerRollupRepository,
+                new DbBulkhead(meterRegistry, 4, 2000, 1, 5), meterRegistry, zone);
+    }
+
+    private long userTokens(UsagePeriod period, String start, String oauthId) {
+        List<Long> tokens = jdbcTemplate.queryForList("SELECT tokens FROM usage_rollup_users "
+                + "WHERE period = ? AND period_start = ? AND oauth_id = ?", Long.class,
+                period.name(), LocalDate.parse(start), oauthId);
+        return tokens.isEmpty() ? 0 : tokens.get(0);
+    }
+
+    private Map<String, Object> provider(UsagePeriod period, String start, String provider) {
+        return jdbcTemplate.queryForMap("SELECT tokens, active_users FROM usage_rollup_providers "
+                + "WHERE period = ? AND period_start = ? AND provider = ?", period.name(), LocalDate.parse(start), provider);
+    }
+
+    private static TokenUsageRecorder.Usage usage(String oauthId, String usedAt) {
+        return new TokenUsageRecorder.Usage(oauthId, TokenUsage.Source.CONSUME, 1, Instant.parse(usedAt));
+    }
+
+    private void knownUser(String oauthId, String provider) {
+        User user = new User();
+        user.setOauthId(oauthId);
+        user.setProvider(provider);
+        when(userCache.get(oauthId)).thenReturn(Optional.of(user));
+    }
+}
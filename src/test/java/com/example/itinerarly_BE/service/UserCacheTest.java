@@ -0,0 +1,254 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.model.User;
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import com.example.itinerarly_BE.utl.InMemoryInvalidationBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("test")
+class UserCacheTest {
+
+    private static final String OAUTH_ID = "test-oauth-id";
+
+    @Mock
+    private UserRepository repositoryA;
+
+    @Mock
+    private UserRepository repositoryB;
+
+    private SimpleMeterRegistry registryA;
+    private SimpleMeterRegistry registryB;
+    private ResourceVersionCache versionCacheB;
+    private UserCache nodeA;
+    private UserCache nodeB;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryInvalidationBus busA = new InMemoryInvalidationBus();
+        registryA = new SimpleMeterRegistry();
+        registryB = new SimpleMeterRegistry();
+        versionCacheB = new ResourceVersionCache(100, 0);
+        nodeA = cache(repositoryA, busA, new ResourceVersionCache(100, 0), registryA, 0);
+        nodeB = cache(repositoryB, busA.connect(), versionCacheB, registryB, 0);
+    }
+
+    @Test
+    void shouldServeRepeatedReadsFromMemory() {
+        // Given
+        when(repositoryA.findReadOnlyByOauthId(OAUTH_ID)).thenReturn(Optional.of(user(5)));
+
+        // When
+        nodeA.get(OAUTH_ID);
+        Optional<User> second = nodeA.get(OAUTH_ID);
+
+        // Then
+        assertEquals(5, second.orElseThrow().getDailyTokens());
+        verify(repositoryA, times(1)).findReadOnlyByOauthId(OAUTH_ID);
+        assertEquals(1.0, registryA.get("cache.gets").tag("cache", UserCache.CACHE_NAME)
+                .tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void shouldShareOneQueryBetweenConcurrentMisses() throws Exception {
+        // Given - the first load is held until every other caller has joined it
+        int callers = 16;
+        CountDownLatch release = new CountDownLatch(1);
+        when(repositoryA.findReadOnlyByOauthId(OAUTH_ID)).thenAnswer(invocation -> {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return Optional.of(user(5));
+        });
+
+        // When
+        List<Future<Optional<User>>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> nodeA.get(OAUTH_ID)));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (registryA.get("singleflight.calls").tag("result", "shared").counter().count() < callers - 1) {
+                assertTrue(System.nanoTime() < deadline, "callers did not join the load in flight");
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            // Then
+            for (Future<Optional<User>> result : results) {
+                assertEquals(5, result.get(5, TimeUnit.SECONDS).orElseThrow().getDailyTokens());
+            }
+        }
+        verify(repositoryA, times(1)).findReadOnlyByOauthId(OAUTH_ID);
+    }
+
+    @Test
+    void shouldInvalidateOtherNodesWhenBalanceChanges() {
+        // Given - both nodes have the user cached
+        when(repositoryA.findReadOnlyByOauthId(OAUTH_ID)).thenReturn(Optional.of(user(5)));
+        when(repositoryB.findReadOnlyByOauthId(OAUTH_ID)).thenReturn(Optional.of(user(5)), Optional.of(user(4)));
+        nodeA.get(OAUTH_ID);
+        nodeB.get(OAUTH_ID);
+        versionCacheB.putBalanceTag(OAUTH_ID, ResourceVersionCache.balanceTag(5, LocalDate.now()));
+
+        // When - a token is consumed on node A
+        nodeA.onBalanceChanged(new TokenBalanceChangedEvent(OAUTH_ID, 4));
+
+        // Then
+        assertEquals(4, nodeB.get(OAUTH_ID).orElseThrow().getDailyTokens());
+        verify(repositoryB).evictCached(OAUTH_ID);
+        verify(repositoryA, never()).evictCached(OAUTH_ID);
+        assertNull(versionCacheB.getBalanceTag(OAUTH_ID));
+        assertEquals(1.0, registryA.get("cache.invalidation.published").counter().count());
+        assertEquals(1.0, registryB.get("cache.invalidation.received").counter().count());
+        assertEquals(1, registryB.get("cache.invalidation.lag").timer().count());
+    }
+
+    @Test
+    void shouldNotCacheLoadThatRacedAnInvalidation() {
+        // Given - node A changes the user while node B is still reading the old row
+        when(repositoryB.findReadOnlyByOauthId(OAUTH_ID)).thenAnswer(invocation -> {
+            nodeA.invalidate(OAUTH_ID);
+            return Optional.of(user(5));
+        }).thenReturn(Optional.of(user(4)));
+
+        // When
+        Optional<User> raced = nodeB.get(OAUTH_ID);
+        Optional<User> next = nodeB.get(OAUTH_ID);
+
+        // Then
+        assertEquals(5, raced.orElseThrow().getDailyTokens());
+        assertEquals(4, next.orElseThrow().getDailyTokens());
+        verify(repositoryB, times(2)).findReadOnlyByOauthId(OAUTH_ID);
+    }
+
+    @Test
+    void shouldNotCacheReadsWhileReplicaSettles() {
+        // Given
+        UserCache settling = cache(repositoryA, new InMemoryInvalidationBus(), new ResourceVersionCache(100, 0),
+                new SimpleMeterRegistry(), 60);
+        when(repositoryA.findReadOnlyByOauthId(OAUTH_ID)).thenReturn(Optional.of(user(4)));
+        settling.invalidate(OAUTH_ID);
+
+        // When
+        settling.get(OAUTH_ID);
+        settling.get(OAUTH_ID);
+
+        // Then
+        verify(repositoryA, times(2)).findReadOnlyByOauthId(OAUTH_ID);
+        assertEquals(0, settling.size());
+    }
+
+    @Test
+    void shouldRememberMissingUsers() {
+        // Given
+        when(repositoryA.findReadOnlyByOauthId("unknown")).thenReturn(Optional.empty());
+
+        // When
+        nodeA.get("unknown");
+        Optional<User> second = nodeA.get("unknown");
+
+        // Then
+        assertTrue(second.isEmpty());
+        verify(repositoryA, times(1)).findReadOnlyByOauthId("unknown");
+        assertEquals(1.0, registryA.get("cache.gets").tag("cache", UserCache.ABSENT_CACHE_NAME)
+                .tag("result", "hit").functionCounter().count());
+        assertEquals(1, nodeA.absentSize());
+    }
+
+    @Test
+    void shouldForgetAbsenceOnEveryNodeWhenUserIsCreated() {
+        // Given - node B has seen the OAuth ID missing
+        when(repositoryB.findReadOnlyByOauthId(OAUTH_ID)).thenReturn(Optional.empty(), Optional.of(user(10)));
+        nodeB.get(OAUTH_ID);
+
+        // When - the user signs up through node A
+        nodeA.invalidate(OAUTH_ID);
+
+        // Then
+        assertFalse(nodeB.isKnownAbsent(OAUTH_ID));
+        assertEquals(10, nodeB.get(OAUTH_ID).orElseThrow().getDailyTokens());
+    }
+
+    @Test
+    void shouldNotRememberMissThatRacedUserCreation() {
+        // Given - the user is created on node A while node B's lookup is in flight
+        when(repositoryB.findReadOnlyByOauthId(OAUTH_ID)).thenAnswer(invocation -> {
+            nodeA.invalidate(OAUTH_ID);
+            return Optional.empty();
+        });
+
+        // When
+        nodeB.get(OAUTH_ID);
+
+        // Then
+        assertFalse(nodeB.isKnownAbsent(OAUTH_ID));
+    }
+
+    @Test
+    void shouldRememberDeletedUsersAndDropThemEverywhere() {
+        // Given
+        when(repositoryA.findReadOnlyByOauthId(OAUTH_ID)).thenReturn(Optional.of(user(5)));
+        when(repositoryB.findReadOnlyByOauthId(OAUTH_ID)).thenReturn(Optional.of(user(5)));
+        nodeA.get(OAUTH_ID);
+        nodeB.get(OAUTH_ID);
+        long deleteStart = System.nanoTime();
+
+        // When
+        nodeA.deleted(List.of(OAUTH_ID), deleteStart);
+
+        // Then
+        assertTrue(nodeA.get(OAUTH_ID).isEmpty());
+        assertTrue(nodeA.isKnownAbsent(OAUTH_ID));
+        assertEquals(0, nodeB.size());
+        verify(repositoryB).evictCached(OAUTH_ID);
+        verify(repositoryA, times(1)).findReadOnlyByOauthId(OAUTH_ID);
+    }
+
+    @Test
+    void shouldNotRememberDeletedUserThatLoggedInAgain() {
+        // Given - the user signs up again while the cleanup transaction runs
+        long deleteStart = System.nanoTime();
+        nodeA.invalidate(OAUTH_ID);
+
+        // When
+        nodeA.deleted(List.of(OAUTH_ID), deleteStart);
+
+        // Then
+        assertFalse(nodeA.isKnownAbsent(OAUTH_ID));
+    }
+
+    private static UserCache cache(UserRepository repository, InMemoryInvalidationBus bus,
+                                   ResourceVersionCache versionCache, SimpleMeterRegistry registry, long settleSeconds) {
+        return new UserCache(repository, new DbBulkhead(registry, 4, 2000, 1, 5), bus, versionCache, registry,
+                100, 30, settleSeconds, 100, 300);
+    }
+
+    private static User user(int dailyTokens) {
+        User user = new User();
+        user.setId(1L);
+        user.setOauthId(OAUTH_ID);
+        user.setEmail("test@example.com");
+        user.setDailyTokens(dailyTokens);
+        user.setLastTokenRefresh(LocalDate.now());
+        return user;
+    }
+}
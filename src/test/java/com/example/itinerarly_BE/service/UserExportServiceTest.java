@@ -0,0 +1,119 @@
+package com.example.itinerarly_BE.service;
+
+import com.example.itinerarly_BE.repository.UserRepository;
+import com.example.itinerarly_BE.repository.UserSummary;
+import com.example.itinerarly_BE.utl.DbBulkhead;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("test")
+class UserExportServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserExportService userExportService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userExportService = new UserExportService(userRepository, new DbBulkhead(meterRegistry, 4, 2000, 1, 5),
+                new Jackson2ObjectMapperBuilder().build(), meterRegistry, 2);
+    }
+
+    @Test
+    void shouldExportEveryPageAsNdjsonContinuingAfterTheLastId() throws Exception {
+        // Given - a full page, then a short one
+        when(userRepository.findPageAfter(0L, Limit.of(2))).thenReturn(List.of(user(3, "a"), user(7, "b")));
+        when(userRepository.findPageAfter(7L, Limit.of(2))).thenReturn(List.of(user(9, "c")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        long rows = userExportService.export(UserExportService.Format.NDJSON, out);
+
+        // Then
+        assertEquals(3, rows);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":3,\"oauthId\":\"a\""), lines[0]);
+        assertTrue(lines[0].contains("\"lastTokenRefresh\":\"2026-10-19\""), lines[0]);
+        assertTrue(lines[2].startsWith("{\"id\":9,"), lines[2]);
+        verify(userRepository, times(2)).findPageAfter(anyLong(), any());
+        assertEquals(3.0, meterRegistry.get("admin.export.rows").tag("format", "ndjson").counter().count());
+    }
+
+    @Test
+    void shouldAskForAnotherPageWhenTheLastOneWasFull() throws Exception {
+        // Given - the table ends exactly on a page boundary
+        when(userRepository.findPageAfter(0L, Limit.of(2))).thenReturn(List.of(user(1, "a"), user(2, "b")));
+        when(userRepository.findPageAfter(2L, Limit.of(2))).thenReturn(List.of());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        long rows = userExportService.export(UserExportService.Format.CSV, out);
+
+        // Then
+        assertEquals(2, rows);
+        assertEquals(3, out.toString(StandardCharsets.UTF_8).split("\r\n").length);
+    }
+
+    @Test
+    void shouldQuoteCsvAndDefuseFormulas() throws Exception {
+        // Given
+        UserSummary tricky = new UserSummary(5L, "oauth-5", null, "Doe, \"Jane\"", "=HYPERLINK(\"x\")", "github",
+                null, 10, LocalDate.parse("2026-10-19"), ZonedDateTime.parse("2026-10-19T08:30:00Z"));
+        when(userRepository.findPageAfter(0L, Limit.of(2))).thenReturn(List.of(tricky));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        userExportService.export(UserExportService.Format.CSV, out);
+
+        // Then
+        assertEquals("id,oauth_id,email,name,username,provider,plan_id,daily_tokens,last_token_refresh,login_time\r\n"
+                + "5,oauth-5,,\"Doe, \"\"Jane\"\"\",\"'=HYPERLINK(\"\"x\"\")\",github,,10,2026-10-19,2026-10-19T08:30Z\r\n",
+                out.toString(StandardCharsets.UTF_8));
+        assertEquals("'-1", UserExportService.csvCell("-1"));
+        assertEquals("\"a\nb\"", UserExportService.csvCell("a\nb"));
+    }
+
+    @Test
+    void shouldStopReadingWhenTheClientGoesAway() {
+        // Given
+        when(userRepository.findPageAfter(0L, Limit.of(2))).thenReturn(List.of(user(1, "a"), user(2, "b")));
+        OutputStream closed = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        // When / Then
+        assertThrows(IOException.class, () -> userExportService.export(UserExportService.Format.NDJSON, closed));
+        verify(userRepository, times(1)).findPageAfter(anyLong(), any());
+    }
+
+    private static UserSummary user(long id, String oauthId) {
+        return new UserSummary(id, oauthId, oauthId + "@example.com", "User " + id, oauthId, "github", "free", 5,
+                LocalDate.parse("2026-10-19"), ZonedDateTime.parse("2026-10-19T08:30:00Z"));
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.itinerarly_BE.utl;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DbBulkheadTest {
+
+    private static final int POOL_SIZE = 3;
+
+    private HikariDataSource dataSource;
+    private SimpleMeterRegistry meterRegistry;
+    private DbBulkhead bulkhead;
+    private ExecutorService batchJobs;
+    private final CountDownLatch releaseBatch = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:h2:mem:bulkhead;DB_CLOSE_DELAY=-1");
+        config.setUsername("sa");
+        config.setMaximumPoolSize(POOL_SIZE);
+        config.setConnectionTimeout(5000);
+        dataSource = new HikariDataSource(config);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS users");
+            statement.execute("CREATE TABLE users (oauth_id VARCHAR(64) PRIMARY KEY, daily_tokens INT)");
+            statement.execute("INSERT INTO users VALUES ('test-oauth-id', 5)");
+        }
+
+        meterRegistry = new SimpleMeterRegistry();
+        bulkhead = new DbBulkhead(meterRegistry, 2, 500, 1, POOL_SIZE);
+        batchJobs = Executors.newFixedThreadPool(POOL_SIZE * 2);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        releaseBatch.countDown();
+        batchJobs.shutdown();
+        assertTrue(batchJobs.awaitTermination(5, TimeUnit.SECONDS));
+        dataSource.close();
+    }
+
+    @Test
+    void shouldConsumeTokenWhileBatchJobsHoldConnections() throws Exception {
+        // Given - more batch jobs than the pool has connections, each holding its connection until released
+        CountDownLatch batchRunning = new CountDownLatch(1);
+        for (int i = 0; i < POOL_SIZE * 2; i++) {
+            batchJobs.submit(() -> bulkhead.batch(() -> holdConnection(batchRunning)));
+        }
+        assertTrue(batchRunning.await(5, TimeUnit.SECONDS));
+        awaitQueuedBatchJobs(POOL_SIZE * 2 - 1);
+
+        // When
+        long start = System.nanoTime();
+        int updated = bulkhead.interactive(this::consumeToken);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Then
+        assertEquals(1, updated);
+        assertTrue(elapsedMs < 1000, "token consumption waited " + elapsedMs + "ms behind batch work");
+        assertEquals(1, dataSource.getHikariPoolMXBean().getActiveConnections());
+        assertEquals(POOL_SIZE * 2 - 1, queuedBatchJobs());
+    }
+
+    @Test
+    void shouldFailFastWhenInteractivePermitsAreExhausted() throws Exception {
+        // Given - both interactive permits held by slow requests
+        CountDownLatch requestsRunning = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            batchJobs.submit(() -> bulkhead.interactive(() -> holdConnection(requestsRunning)));
+        }
+        assertTrue(requestsRunning.await(5, TimeUnit.SECONDS));
+
+        // When
+        long start = System.nanoTime();
+        assertThrows(DbBulkheadFullException.class, () -> bulkhead.interactive(this::consumeToken));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Then
+        assertTrue(elapsedMs < 2000, "rejection took " + elapsedMs + "ms");
+        assertEquals(1.0, meterRegistry.get("db.bulkhead.rejected").counter().count());
+        assertEquals(2, dataSource.getHikariPoolMXBean().getActiveConnections());
+    }
+
+    @Test
+    void shouldReuseOuterPermitForNestedCalls() {
+        // When
+        int updated = bulkhead.batch(() -> bulkhead.interactive(this::consumeToken));
+
+        // Then
+        assertEquals(1, updated);
+        assertEquals(2.0, meterRegistry.get("db.bulkhead.available").tag("workload", "interactive").gauge().value());
+        assertEquals(1.0, meterRegistry.get("db.bulkhead.available").tag("workload", "batch").gauge().value());
+    }
+
+    private int consumeToken() {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "UPDATE users SET daily_tokens = daily_tokens - 1 WHERE oauth_id = ? AND daily_tokens > 0")) {
+            statement.setString(1, "test-oauth-id");
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Void holdConnection(CountDownLatch started) {
+        try (Connection connection = dataSource.getConnection()) {
+            started.countDown();
+            releaseBatch.await();
+            return null;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private int queuedBatchJobs() {
+        return (int) meterRegistry.get("db.bulkhead.queued").tag("workload", "batch").gauge().value();
+    }
+
+    private void awaitQueuedBatchJobs(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queuedBatchJobs() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
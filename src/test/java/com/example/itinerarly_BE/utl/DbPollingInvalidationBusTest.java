@@ -0,0 +1,134 @@
+package com.example.itinerarly_BE.utl;
+
+import com.example.itinerarly_BE.model.CacheInvalidation;
+import com.example.itinerarly_BE.repository.CacheInvalidationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("test")
+class DbPollingInvalidationBusTest {
+
+    @Mock
+    private CacheInvalidationRepository repository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private DbPollingInvalidationBus bus;
+    private final List<InvalidationBus.Invalidation> received = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bus = new DbPollingInvalidationBus(repository, new DbBulkhead(meterRegistry, 4, 2000, 1, 5),
+                Duration.ofMinutes(10), 100, meterRegistry);
+        bus.subscribe(received::add);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldWriteEachPendingKeyOnce() {
+        // Given
+        when(repository.findMaxId()).thenReturn(10L);
+        bus.publish("users", "oauth-1");
+        bus.publish("users", "oauth-1");
+        bus.publish("users", "oauth-2");
+
+        // When
+        bus.poll();
+
+        // Then
+        ArgumentCaptor<List<CacheInvalidation>> rows = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveAll(rows.capture());
+        assertEquals(2, rows.getValue().size());
+        assertTrue(rows.getValue().stream().allMatch(row -> "users".equals(row.getCacheName())));
+    }
+
+    @Test
+    void shouldDeliverOtherNodesInvalidationsButNotOwn() {
+        // Given
+        when(repository.findMaxId()).thenReturn(10L);
+        List<CacheInvalidation> written = new ArrayList<>();
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<CacheInvalidation> rows = invocation.getArgument(0);
+            written.addAll(rows);
+            return rows;
+        });
+        bus.publish("users", "own-change");
+        when(repository.findTop500ByIdGreaterThanOrderByIdAsc(10L)).thenAnswer(invocation -> List.of(
+                row(11L, "users", "remote-change", "other-node"),
+                withId(written.get(0), 12L)));
+
+        // When
+        bus.poll();
+        bus.poll();
+
+        // Then
+        assertEquals(1, received.size());
+        assertEquals("remote-change", received.get(0).key());
+        assertEquals("other-node", received.get(0).origin());
+        verify(repository).findTop500ByIdGreaterThanOrderByIdAsc(12L);
+        verify(repository, times(1)).findMaxId();
+    }
+
+    @Test
+    void shouldRetryFailedWritesOnNextPoll() {
+        // Given
+        when(repository.findMaxId()).thenReturn(10L);
+        when(repository.saveAll(anyList())).thenThrow(new RuntimeException("Database error")).thenReturn(List.of());
+        bus.publish("users", "oauth-1");
+
+        // When
+        bus.poll();
+        bus.poll();
+
+        // Then
+        verify(repository, times(2)).saveAll(argThat(rows -> rows.iterator().hasNext()));
+        assertEquals(1.0, meterRegistry.counter("cache.invalidation.bus.failed", "bus", "db").count());
+    }
+
+    @Test
+    void shouldDropPublishesBeyondMaxPending() {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DbPollingInvalidationBus small = new DbPollingInvalidationBus(repository,
+                new DbBulkhead(registry, 4, 2000, 1, 5), Duration.ofMinutes(10), 1, registry);
+
+        // When
+        small.publish("users", "oauth-1");
+        small.publish("users", "oauth-2");
+
+        // Then
+        assertEquals(1.0, registry.counter("cache.invalidation.bus.dropped", "bus", "db").count());
+        assertEquals(1.0, registry.get("cache.invalidation.bus.pending").gauge().value());
+    }
+
+    private static CacheInvalidation row(long id, String cache, String key, String origin) {
+        CacheInvalidation row = new CacheInvalidation();
+        row.setId(id);
+        row.setCacheName(cache);
+        row.setCacheKey(key);
+        row.setOrigin(origin);
+        row.setPublishedAt(Instant.now());
+        return row;
+    }
+
+    private static CacheInvalidation withId(CacheInvalidation row, long id) {
+        row.setId(id);
+        return row;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.itinerarly_BE.utl;
+
+import com.example.itinerarly_BE.model.User;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtTokenUtilTest {
+
+    static final String SECRET = Base64.getEncoder().encodeToString(
+            "test-secret-key-for-testing-purposes-only-padded-to-64-bytes-HS5".getBytes());
+    static final List<String> FULL_CLAIMS = List.of("name", "email", "login", "id", "avatar", "iat");
+
+    private OAuth2AuthenticationToken authentication;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        DefaultOAuth2User principal = new DefaultOAuth2User(AuthorityUtils.createAuthorityList("OAUTH2_USER"),
+                Map.of("sub", "109876543210987654321", "name", "Test User", "email", "test.user@example.com",
+                        "picture", "https://lh3.googleusercontent.com/a/ACg8ocJ0aBcDeFgHiJkLmNoPqRsTuVwXyZ0123456789abcdefghijklmno=s96-c"),
+                "sub");
+        authentication = new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google");
+
+        user = new User();
+        user.setId(42L);
+        user.setOauthId("109876543210987654321");
+        user.setProvider("google");
+    }
+
+    @Test
+    void shouldIssueCompactTokenByDefault() {
+        // Given
+        JwtTokenUtil jwtTokenUtil = jwtTokenUtil(SECRET, List.of("uid", "sub"));
+
+        // When
+        String token = jwtTokenUtil.generateToken(authentication, user);
+
+        // Then
+        Map<String, Object> claims = jwtTokenUtil.getClaimsFromToken(token);
+        assertEquals(Set.of("uid", "sub", "exp"), claims.keySet());
+        assertEquals(42, claims.get("uid"));
+        assertEquals("google:109876543210987654321", claims.get("sub"));
+        assertTrue(jwtTokenUtil.validateToken(token));
+    }
+
+    @Test
+    void shouldKeepFullClaimSetAvailable() {
+        // Given
+        JwtTokenUtil jwtTokenUtil = jwtTokenUtil(SECRET, FULL_CLAIMS);
+
+        // When
+        Map<String, Object> claims = jwtTokenUtil.getClaimsFromToken(jwtTokenUtil.generateToken(authentication, user));
+
+        // Then
+        assertEquals("Test User", claims.get("name"));
+        assertEquals("test.user@example.com", claims.get("email"));
+        assertTrue(((String) claims.get("avatar")).startsWith("https://lh3.googleusercontent.com/"));
+        assertNotNull(claims.get("iat"));
+        assertFalse(claims.containsKey("uid"));
+    }
+
+    @Test
+    void shouldShrinkAuthToken() {
+        // When
+        String compact = jwtTokenUtil(SECRET, List.of("uid", "sub")).generateToken(authentication, user);
+        String full = jwtTokenUtil(SECRET, FULL_CLAIMS).generateToken(authentication, user);
+
+        // Then - header and HS512 signature are a fixed ~110 bytes, the rest is claims
+        assertTrue(full.length() - compact.length() > 150, "compact " + compact.length() + " vs full " + full.length());
+        assertTrue(compact.length() < 200, "compact token is " + compact.length() + " bytes");
+    }
+
+    @Test
+    void shouldRejectTokensSignedWithAnotherSecret() {
+        // Given
+        String otherSecret = Base64.getEncoder().encodeToString(new byte[64]);
+        String token = jwtTokenUtil(otherSecret, List.of("uid", "sub")).generateToken(authentication, user);
+
+        // When / Then
+        assertFalse(jwtTokenUtil(SECRET, List.of("uid", "sub")).validateToken(token));
+    }
+
+    @Test
+    void shouldStopAcceptingCachedTokenOnceExpired() throws InterruptedException {
+        // Given
+        JwtTokenUtil jwtTokenUtil = jwtTokenUtil(SECRET, List.of("uid", "sub"));
+        ReflectionTestUtils.setField(jwtTokenUtil, "accessTokenTtlSeconds", 1L);
+        String token = jwtTokenUtil.generateToken(user);
+        assertEquals(new AccessTokenPrincipal(42L, "109876543210987654321", "google"), jwtTokenUtil.parseAccessToken(token));
+
+        // When
+        Thread.sleep(1100);
+
+        // Then
+        assertNull(jwtTokenUtil.parseAccessToken(token));
+    }
+
+    @Test
+    void shouldRejectUnknownClaimNames() {
+        assertThrows(IllegalStateException.class, () -> jwtTokenUtil(SECRET, List.of("uid", "roles")));
+    }
+
+    @Test
+    void shouldFailLoginButNotStartupWhenSecretIsNotBase64() {
+        // Given
+        JwtTokenUtil jwtTokenUtil = jwtTokenUtil("not-base64-secret", List.of("uid", "sub"));
+
+        // When / Then
+        assertFalse(jwtTokenUtil.validateToken("a.b.c"));
+        assertThrows(IllegalStateException.class, () -> jwtTokenUtil.generateToken(authentication, user));
+    }
+
+    @Test
+    void shouldSignWithActiveKeyAndKeepVerifyingRetiredOne() {
+        // Given - a token signed before the rotation
+        String beforeRotation = es256JwtTokenUtil("2026-07", true).generateToken(user);
+
+        // When
+        JwtTokenUtil rotated = es256JwtTokenUtil("2026-10", true);
+        String afterRotation = rotated.generateToken(user);
+
+        // Then
+        assertEquals("2026-07", header(beforeRotation).get("kid").asText());
+        assertEquals("2026-10", header(afterRotation).get("kid").asText());
+        assertEquals("ES256", header(afterRotation).get("alg").asText());
+        assertEquals(new AccessTokenPrincipal(42L, "109876543210987654321", "google"), rotated.parseAccessToken(beforeRotation));
+        assertEquals(new AccessTokenPrincipal(42L, "109876543210987654321", "google"), rotated.parseAccessToken(afterRotation));
+    }
+
+    @Test
+    void shouldAcceptHs512TokensWithoutKidOnlyDuringMigration() {
+        // Given
+        String hs512 = jwtTokenUtil(SECRET, List.of("uid", "sub")).generateToken(user);
+
+        // When / Then
+        assertNotNull(es256JwtTokenUtil("2026-10", true).parseAccessToken(hs512));
+        assertNull(es256JwtTokenUtil("2026-10", false).parseAccessToken(hs512));
+    }
+
+    @Test
+    void shouldRejectUnknownKidAndHmacSignedWithKnownKid() {
+        // Given
+        JwtTokenUtil jwtTokenUtil = es256JwtTokenUtil("2026-10", true);
+        String unknownKid = hs512Token("2026-01");
+        String algorithmConfusion = hs512Token("2026-10");
+
+        // When / Then
+        assertFalse(jwtTokenUtil.validateToken(unknownKid));
+        assertFalse(jwtTokenUtil.validateToken(algorithmConfusion));
+        assertNull(jwtTokenUtil.parseAccessToken(algorithmConfusion));
+    }
+
+    @Test
+    void shouldPublishOnlyPublicKeysInJwks() throws Exception {
+        // When
+        JsonNode keys = new ObjectMapper().readTree(es256JwtTokenUtil("2026-10", true).getJwks()).get("keys");
+
+        // Then
+        assertEquals(2, keys.size());
+        for (JsonNode key : keys) {
+            assertEquals("EC", key.get("kty").asText());
+            assertEquals("P-256", key.get("crv").asText());
+            assertEquals(43, key.get("x").asText().length());
+            assertEquals(43, key.get("y").asText().length());
+            assertFalse(key.has("d"));
+        }
+        assertEquals("{\"keys\":[]}", new String(jwtTokenUtil(SECRET, List.of("uid", "sub")).getJwks(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldFailStartupWhenActiveKidIsMissing() {
+        assertThrows(IllegalStateException.class, () -> es256JwtTokenUtil("2027-01", true));
+    }
+
+    private static String hs512Token(String kid) {
+        return Jwts.builder()
+                .setHeaderParam("kid", kid)
+                .setClaims(Map.of("uid", 42, "sub", "google:109876543210987654321"))
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(Base64.getDecoder().decode(SECRET)), SignatureAlgorithm.HS512)
+                .compact();
+    }
+
+    private static JsonNode header(String token) {
+        try {
+            return new ObjectMapper().readTree(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))));
+        } catch (java.io.IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    static JwtTokenUtil es256JwtTokenUtil(String activeKid, boolean acceptHs512) {
+        JwtTokenUtil jwtTokenUtil = new JwtTokenUtil();
+        ReflectionTestUtils.setField(jwtTokenUtil, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtTokenUtil, "claimNames", List.of("uid", "sub"));
+        ReflectionTestUtils.setField(jwtTokenUtil, "accessTokenTtlSeconds", 900L);
+        ReflectionTestUtils.setField(jwtTokenUtil, "verifiedCacheSize", 100);
+        ReflectionTestUtils.setField(jwtTokenUtil, "keystoreLocation", "classpath:jwt-test-keys.p12");
+        ReflectionTestUtils.setField(jwtTokenUtil, "keystorePassword", "changeit");
+        ReflectionTestUtils.setField(jwtTokenUtil, "activeKid", activeKid);
+        ReflectionTestUtils.setField(jwtTokenUtil, "acceptHs512", acceptHs512);
+        jwtTokenUtil.init();
+        return jwtTokenUtil;
+    }
+
+    static JwtTokenUtil jwtTokenUtil(String secret, List<String> claims) {
+        JwtTokenUtil jwtTokenUtil = new JwtTokenUtil();
+        ReflectionTestUtils.setField(jwtTokenUtil, "jwtSecret", secret);
+        ReflectionTestUtils.setField(jwtTokenUtil, "claimNames", claims);
+        ReflectionTestUtils.setField(jwtTokenUtil, "accessTokenTtlSeconds", 900L);
+        ReflectionTestUtils.setField(jwtTokenUtil, "verifiedCacheSize", 100);
+        jwtTokenUtil.init();
+        return jwtTokenUtil;
+    }
+}
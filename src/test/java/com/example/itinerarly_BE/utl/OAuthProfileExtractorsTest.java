@@ -0,0 +1,73 @@
+package com.example.itinerarly_BE.utl;
+
+import com.example.itinerarly_BE.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OAuthProfileExtractorsTest {
+
+    private final OAuthProfileExtractors extractors =
+            new OAuthProfileExtractors(List.of(new GoogleProfileExtractor(), new GitHubProfileExtractor()));
+
+    @Test
+    void shouldMapGoogleAttributes() {
+        // Given
+        OAuth2AuthenticationToken authentication = login("google", Map.of("sub", "109876543210987654321",
+                "iss", "https://accounts.google.com", "email", "test.user@example.com", "name", "Test User",
+                "picture", "https://lh3.googleusercontent.com/a/photo"), "sub");
+
+        // When
+        OAuthProfile profile = extractors.extract(authentication);
+
+        // Then
+        assertEquals(new OAuthProfile("109876543210987654321", "google", "test.user@example.com", "Test User",
+                "test.user@example.com", "https://lh3.googleusercontent.com/a/photo"), profile);
+        assertEquals("109876543210987654321", extractors.oauthId(authentication));
+    }
+
+    @Test
+    void shouldMapGitHubAttributesWithPrivateEmail() {
+        // Given
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("id", 583231);
+        attributes.put("login", "octocat");
+        attributes.put("name", "The Octocat");
+        attributes.put("email", null);
+        attributes.put("avatar_url", "https://avatars.githubusercontent.com/u/583231");
+        OAuth2AuthenticationToken authentication = login("github", attributes, "login");
+
+        // When
+        User user = extractors.extract(authentication).applyTo(new User());
+
+        // Then
+        assertEquals("583231", user.getOauthId());
+        assertEquals("github", user.getProvider());
+        assertEquals("octocat@github.local", user.getEmail());
+        assertEquals("octocat", user.getUsername());
+        assertEquals("https://avatars.githubusercontent.com/u/583231", user.getAvatarUrl());
+    }
+
+    @Test
+    void shouldReturnNullForUnknownProvider() {
+        // Given
+        OAuth2AuthenticationToken authentication = login("gitlab", Map.of("sub", "42"), "sub");
+
+        // When / Then
+        assertNull(extractors.extract(authentication));
+        assertNull(extractors.oauthId(authentication));
+    }
+
+    private static OAuth2AuthenticationToken login(String registrationId, Map<String, Object> attributes, String nameKey) {
+        DefaultOAuth2User principal = new DefaultOAuth2User(AuthorityUtils.createAuthorityList("OAUTH2_USER"),
+                attributes, nameKey);
+        return new OAuth2AuthenticationToken(principal, principal.getAuthorities(), registrationId);
+    }
+}
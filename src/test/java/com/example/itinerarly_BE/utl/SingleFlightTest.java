@@ -0,0 +1,150 @@
+package com.example.itinerarly_BE.utl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+class SingleFlightTest {
+
+    private static final int CALLERS = 16;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SingleFlight<String, Integer> flight;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        flight = new SingleFlight<>("test", meterRegistry);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldRunWorkOnceForConcurrentCallers() throws Exception {
+        // Given
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        // When
+        List<Future<Integer>> results = startCallers(CALLERS, () -> {
+            executions.incrementAndGet();
+            await(release);
+            return 7;
+        });
+        awaitWaiting(CALLERS - 1);
+        release.countDown();
+
+        // Then
+        for (Future<Integer> result : results) {
+            assertEquals(7, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, executions.get());
+        assertEquals(CALLERS - 1, meterRegistry.get("singleflight.calls").tag("result", "shared").counter().count());
+    }
+
+    @Test
+    void shouldHandTheFailureToEveryWaitingCaller() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+
+        // When
+        List<Future<Integer>> results = startCallers(4, () -> {
+            await(release);
+            throw new IllegalStateException("Database error");
+        });
+        awaitWaiting(3);
+        release.countDown();
+
+        // Then
+        for (Future<Integer> result : results) {
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, failure.getCause());
+        }
+    }
+
+    @Test
+    void shouldStartFreshCallAfterForget() throws Exception {
+        // Given - a call is in flight
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> stale = executor.submit(() -> flight.execute("key", () -> {
+            await(release);
+            return 1;
+        }));
+        awaitInFlight(1);
+
+        // When
+        flight.forget("key");
+        int fresh = flight.execute("key", () -> 2);
+        release.countDown();
+
+        // Then
+        assertEquals(2, fresh);
+        assertEquals(1, stale.get(5, TimeUnit.SECONDS));
+        assertEquals(0.0, meterRegistry.get("singleflight.calls").tag("result", "shared").counter().count());
+    }
+
+    @Test
+    void shouldNotKeepResultsAfterTheCallReturns() {
+        // When
+        flight.execute("key", () -> 1);
+        int second = flight.execute("key", () -> 2);
+
+        // Then
+        assertEquals(2, second);
+        assertEquals(0.0, meterRegistry.get("singleflight.in.flight").gauge().value());
+    }
+
+    private List<Future<Integer>> startCallers(int count, Supplier<Integer> work) {
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            results.add(executor.submit(() -> flight.execute("key", work)));
+        }
+        return results;
+    }
+
+    private void awaitWaiting(int callers) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("singleflight.calls").tag("result", "shared").counter().count() < callers) {
+            assertTrue(System.nanoTime() < deadline, "callers did not join the call in flight");
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitInFlight(int calls) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("singleflight.in.flight").gauge().value() < calls) {
+            assertTrue(System.nanoTime() < deadline, "call did not start");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
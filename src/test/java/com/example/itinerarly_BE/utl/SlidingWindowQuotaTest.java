@@ -0,0 +1,252 @@
+package com.example.itinerarly_BE.utl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+class SlidingWindowQuotaTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long DAY = 24 * 60 * MINUTE;
+    private static final long START = 1_700_000_000_000L;
+    private static final int DAILY_LIMIT = 6;
+
+    private SlidingWindowQuota quota;
+
+    @BeforeEach
+    void setUp() {
+        quota = new SlidingWindowQuota(List.of(
+                new SlidingWindowQuota.Window(6, Duration.ofHours(24)),
+                new SlidingWindowQuota.Window(2, Duration.ofMinutes(1))), 60);
+    }
+
+    @Test
+    void shouldRefuseWhenAnyWindowIsFull() {
+        // When - two uses fill the minute window
+        boolean first = quota.tryConsume("user", DAILY_LIMIT, START);
+        boolean second = quota.tryConsume("user", DAILY_LIMIT, START);
+        boolean third = quota.tryConsume("user", DAILY_LIMIT, START);
+
+        // Then
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(third);
+        assertEquals(0, quota.remaining("user", DAILY_LIMIT, START));
+        assertEquals(4, quota.usage("user", DAILY_LIMIT, START).get(0).remaining());
+        assertEquals(2, quota.remaining("other-user", DAILY_LIMIT, START));
+    }
+
+    @Test
+    void shouldFreeUsesAsTheyLeaveTheWindowNotAtMidnight() {
+        // Given - the daily window filled over two hours
+        for (int i = 0; i < 6; i++) {
+            assertTrue(quota.tryConsume("user", DAILY_LIMIT, START + (i / 2) * 60 * MINUTE));
+        }
+
+        // When
+        boolean laterThatDay = quota.tryConsume("user", DAILY_LIMIT, START + 130 * MINUTE);
+        boolean nextDay = quota.tryConsume("user", DAILY_LIMIT, START + DAY + 30 * MINUTE);
+
+        // Then - only the two oldest uses have left the day
+        assertFalse(laterThatDay);
+        assertTrue(nextDay);
+        assertEquals(1, quota.usage("user", DAILY_LIMIT, START + DAY + 30 * MINUTE).get(0).remaining());
+    }
+
+    @Test
+    void shouldReportWhenTheOldestUseLeaves() {
+        // When
+        quota.tryConsume("user", DAILY_LIMIT, START);
+        quota.tryConsume("user", DAILY_LIMIT, START + 30_000);
+        List<SlidingWindowQuota.Usage> usage = quota.usage("user", DAILY_LIMIT, START + 30_000);
+
+        // Then - the oldest use counts until its whole slot has left the window
+        long minuteSlot = MINUTE / 60;
+        assertEquals((START / minuteSlot + 60) * minuteSlot, usage.get(1).resetsAtMillis());
+        assertTrue(usage.get(1).resetsAtMillis() <= START + MINUTE + minuteSlot);
+        assertEquals(0, quota.usage("idle", DAILY_LIMIT, START).get(1).resetsAtMillis());
+    }
+
+    @Test
+    void shouldTakeBackRefundedUse() {
+        // Given
+        quota.tryConsume("user", DAILY_LIMIT, START);
+        quota.tryConsume("user", DAILY_LIMIT, START);
+
+        // When
+        quota.refund("user", START + 1_000);
+
+        // Then
+        assertEquals(1, quota.remaining("user", DAILY_LIMIT, START + 1_000));
+        assertTrue(quota.tryConsume("user", DAILY_LIMIT, START + 1_000));
+    }
+
+    @Test
+    void shouldRestoreSnapshotIntoFreshQuota() {
+        // Given
+        quota.tryConsume("user", DAILY_LIMIT, START);
+        quota.tryConsume("user", DAILY_LIMIT, START + 20 * MINUTE);
+        Map<String, byte[]> dirty = quota.snapshotDirty(START + 20 * MINUTE);
+
+        // When - restored half an hour later on another node
+        SlidingWindowQuota restored = new SlidingWindowQuota(quota.getWindows(), 60);
+        restored.restore("user", dirty.get("user"), START + 50 * MINUTE);
+
+        // Then
+        assertEquals(1, dirty.size());
+        assertTrue(quota.snapshotDirty(START + 20 * MINUTE).isEmpty());
+        assertEquals(4, restored.usage("user", DAILY_LIMIT, START + 50 * MINUTE).get(0).remaining());
+        assertEquals(2, restored.usage("user", DAILY_LIMIT, START + 50 * MINUTE).get(1).remaining());
+    }
+
+    @Test
+    void shouldSkipWindowsThatChangedSinceTheSnapshot() {
+        // Given
+        quota.tryConsume("user", DAILY_LIMIT, START);
+        byte[] snapshot = quota.snapshot("user", START);
+
+        // When - the minute window was replaced by an hourly one
+        SlidingWindowQuota reconfigured = new SlidingWindowQuota(List.of(
+                new SlidingWindowQuota.Window(6, Duration.ofHours(24)),
+                new SlidingWindowQuota.Window(3, Duration.ofHours(1))), 60);
+        reconfigured.restore("user", snapshot, START);
+
+        // Then
+        assertEquals(5, reconfigured.usage("user", DAILY_LIMIT, START).get(0).remaining());
+        assertEquals(3, reconfigured.usage("user", DAILY_LIMIT, START).get(1).remaining());
+    }
+
+    @Test
+    void shouldMatchWindowsByLimitAndPeriod() {
+        // Given
+        quota.tryConsume("user", DAILY_LIMIT, START);
+        byte[] snapshot = quota.snapshot("user", START);
+
+        // When - the windows were reordered and the daily limit raised
+        SlidingWindowQuota reconfigured = new SlidingWindowQuota(List.of(
+                new SlidingWindowQuota.Window(2, Duration.ofMinutes(1)),
+                new SlidingWindowQuota.Window(10, Duration.ofHours(24))), 60);
+        reconfigured.restore("user", snapshot, START);
+
+        // Then
+        assertEquals(1, reconfigured.usage("user", DAILY_LIMIT, START).get(0).remaining());
+        assertEquals(10, reconfigured.usage("user", DAILY_LIMIT, START).get(1).remaining());
+    }
+
+    @Test
+    void shouldSnapshotOnlyUsesRecordedHere() {
+        // Given - another instance's snapshot with two uses
+        quota.tryConsume("user", DAILY_LIMIT, START);
+        quota.tryConsume("user", DAILY_LIMIT, START + MINUTE);
+        SlidingWindowQuota here = new SlidingWindowQuota(quota.getWindows(), 60);
+        here.restore("user", quota.snapshot("user", START + MINUTE), START + MINUTE);
+
+        // When
+        here.tryConsume("user", DAILY_LIMIT, START + 2 * MINUTE);
+        here.tryConsume("user", DAILY_LIMIT, START + 2 * MINUTE);
+        here.refund("user", START + 2 * MINUTE);
+        Map<String, byte[]> dirty = here.snapshotDirty(START + 2 * MINUTE);
+
+        // Then - the three uses count here, only the one made here is written
+        assertEquals(3, 6 - here.usage("user", DAILY_LIMIT, START + 2 * MINUTE).get(0).remaining());
+        SlidingWindowQuota reread = new SlidingWindowQuota(quota.getWindows(), 60);
+        reread.restore("user", dirty.get("user"), START + 2 * MINUTE);
+        assertEquals(5, reread.usage("user", DAILY_LIMIT, START + 2 * MINUTE).get(0).remaining());
+    }
+
+    @Test
+    void shouldEvictOnlyKeysWithNothingLeftToRemember() {
+        // Given
+        quota.tryConsume("user", DAILY_LIMIT, START);
+        quota.tryConsume("old-user", DAILY_LIMIT, START - 2 * DAY);
+        quota.snapshotDirty(START);
+
+        // When
+        int evicted = quota.evictIdle(START);
+
+        // Then
+        assertEquals(1, evicted);
+        assertEquals(1, quota.size());
+        assertEquals(1, quota.remaining("user", DAILY_LIMIT, START));
+    }
+
+    @Test
+    void shouldTakeTheLimitOfDailyWindowsFromEachCall() {
+        // Given
+        SlidingWindowQuota daily = new SlidingWindowQuota(List.of(
+                new SlidingWindowQuota.Window(SlidingWindowQuota.Window.DAILY, Duration.ofHours(24))), 60);
+        for (int i = 0; i < 2; i++) {
+            assertTrue(daily.tryConsume("free-user", 2, START));
+            assertTrue(daily.tryConsume("pro-user", 5, START));
+        }
+
+        // When
+        boolean free = daily.tryConsume("free-user", 2, START);
+        boolean pro = daily.tryConsume("pro-user", 5, START);
+
+        // Then
+        assertFalse(free);
+        assertTrue(pro);
+        assertTrue(daily.hasDailyWindows());
+        assertEquals(5, daily.usage("pro-user", 5, START).get(0).limit());
+        assertEquals(2, daily.remaining("pro-user", 5, START));
+    }
+
+    @Test
+    void shouldKeepCountingDailyWindowUsesAfterMidnight() {
+        // Given - the whole day's limit spent ten minutes before midnight
+        SlidingWindowQuota daily = new SlidingWindowQuota(List.of(
+                new SlidingWindowQuota.Window(SlidingWindowQuota.Window.DAILY, Duration.ofHours(24))), 60);
+        long beforeMidnight = START - 10 * MINUTE;
+        for (int i = 0; i < DAILY_LIMIT; i++) {
+            assertTrue(daily.tryConsume("user", DAILY_LIMIT, beforeMidnight));
+        }
+
+        // When
+        boolean afterMidnight = daily.tryConsume("user", DAILY_LIMIT, START + 10 * MINUTE);
+        boolean nextEvening = daily.tryConsume("user", DAILY_LIMIT, beforeMidnight + DAY + 30 * MINUTE);
+
+        // Then
+        assertFalse(afterMidnight);
+        assertTrue(nextEvening);
+    }
+
+    @Test
+    void shouldRestoreDailyWindowsFromSnapshots() {
+        // Given
+        List<SlidingWindowQuota.Window> windows = List.of(
+                new SlidingWindowQuota.Window(SlidingWindowQuota.Window.DAILY, Duration.ofHours(24)));
+        SlidingWindowQuota previous = new SlidingWindowQuota(windows, 60);
+        previous.tryConsume("user", DAILY_LIMIT, START);
+        previous.tryConsume("user", DAILY_LIMIT, START);
+
+        // When
+        SlidingWindowQuota restored = new SlidingWindowQuota(windows, 60);
+        restored.restore("user", previous.snapshot("user", START), START + MINUTE);
+
+        // Then
+        assertEquals(DAILY_LIMIT - 2, restored.remaining("user", DAILY_LIMIT, START + MINUTE));
+    }
+
+    @Test
+    void shouldAllowEverythingWithoutWindows() {
+        // Given
+        SlidingWindowQuota disabled = new SlidingWindowQuota(List.of(), 60);
+
+        // When
+        boolean allowed = disabled.tryConsume("user", DAILY_LIMIT, START);
+
+        // Then
+        assertTrue(allowed);
+        assertFalse(disabled.isEnabled());
+        assertEquals(Integer.MAX_VALUE, disabled.remaining("user", DAILY_LIMIT, START));
+        assertEquals(0, disabled.size());
+    }
+}